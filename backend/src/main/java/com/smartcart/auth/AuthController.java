@@ -1,5 +1,6 @@
 package com.smartcart.auth;
 
+import com.smartcart.auth.dto.AccountDeletionStatus;
 import com.smartcart.auth.dto.AuthResponse;
 import com.smartcart.auth.dto.LoginRequest;
 import com.smartcart.auth.dto.RefreshTokenRequest;
@@ -11,6 +12,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
+
 @RestController
 @RequestMapping("/api/auth")
 public class AuthController {
@@ -74,16 +77,32 @@ public class AuthController {
         }
     }
     
+    /**
+     * Deletion runs in the background: 202 with the job status, then poll the Location
+     */
     @DeleteMapping("/account")
-    public ResponseEntity<Void> deleteAccount(@RequestAttribute("userId") String userId) {
+    public ResponseEntity<AccountDeletionStatus> deleteAccount(@RequestAttribute("userId") String userId) {
         logger.info("Delete account request for userId: {}", userId);
         try {
-            authService.deleteAccount(userId);
-            logger.info("Account deleted successfully for userId: {}", userId);
-            return ResponseEntity.noContent().build();
+            AccountDeletionStatus status = authService.deleteAccount(userId);
+            logger.info("Account deletion started for userId: {} (job {})", userId, status.jobId());
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/auth/account/deletion/" + status.jobId()))
+                    .body(status);
         } catch (Exception e) {
             logger.error("Error in delete-account endpoint: {}", e.getMessage(), e);
             throw e;
         }
     }
+    
+    @GetMapping("/account/deletion/{jobId}")
+    public ResponseEntity<AccountDeletionStatus> getAccountDeletionStatus(
+            @RequestAttribute("userId") String userId,
+            @PathVariable String jobId) {
+        AccountDeletionStatus status = authService.getAccountDeletionStatus(userId, jobId);
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(status);
+    }
 }
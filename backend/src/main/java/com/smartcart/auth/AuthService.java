@@ -1,17 +1,15 @@
 package com.smartcart.auth;
 
+import com.smartcart.auth.dto.AccountDeletionStatus;
 import com.smartcart.auth.dto.AuthResponse;
 import com.smartcart.auth.model.User;
 import com.smartcart.auth.repository.OTPRepository;
 import com.smartcart.auth.repository.UserRepository;
+import com.smartcart.auth.service.AccountDeletionService;
 import com.smartcart.auth.service.JwtService;
-import com.smartcart.favorites.repository.MealFavoriteRepository;
-import com.smartcart.pantry.repository.PantryRepository;
-import com.smartcart.receipts.repository.ReceiptRepository;
-import com.smartcart.shoppinglist.repository.ShoppingListRepository;
+import com.smartcart.auth.service.PasswordHashingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.UUID;
@@ -21,42 +19,34 @@ public class AuthService {
     
     private static final Logger logger = LoggerFactory.getLogger(AuthService.class);
     
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
     private final UserRepository userRepository;
     private final OTPRepository otpRepository;
     private final JwtService jwtService;
-    private final PantryRepository pantryRepository;
-    private final ReceiptRepository receiptRepository;
-    private final MealFavoriteRepository mealFavoriteRepository;
-    private final ShoppingListRepository shoppingListRepository;
+    private final AccountDeletionService accountDeletionService;
     
-    public AuthService(PasswordEncoder passwordEncoder, UserRepository userRepository,
+    public AuthService(PasswordHashingService passwordHashingService, UserRepository userRepository,
                       OTPRepository otpRepository, JwtService jwtService,
-                      PantryRepository pantryRepository, ReceiptRepository receiptRepository,
-                      MealFavoriteRepository mealFavoriteRepository, ShoppingListRepository shoppingListRepository) {
-        this.passwordEncoder = passwordEncoder;
+                      AccountDeletionService accountDeletionService) {
+        this.passwordHashingService = passwordHashingService;
         this.userRepository = userRepository;
         this.otpRepository = otpRepository;
         this.jwtService = jwtService;
-        this.pantryRepository = pantryRepository;
-        this.receiptRepository = receiptRepository;
-        this.mealFavoriteRepository = mealFavoriteRepository;
-        this.shoppingListRepository = shoppingListRepository;
+        this.accountDeletionService = accountDeletionService;
     }
     
     public AuthResponse register(String username, String password) {
         logger.info("Starting registration for username: {}", username);
         try {
-            if (userRepository.existsByUsername(username)) {
-                logger.warn("Registration failed: User already exists - {}", username);
-                throw new RuntimeException("User already exists");
-            }
-            
             String userId = UUID.randomUUID().toString();
-            String hashedPassword = passwordEncoder.encode(password);
+            String hashedPassword = passwordHashingService.encode(password);
             
             User user = new User(userId, username, hashedPassword);
-            userRepository.save(user);
+            // The username claim and the user are written together, so two concurrent sign-ups can't both win
+            if (!userRepository.create(user)) {
+                logger.warn("Registration failed: User already exists - {}", username);
+                throw new RuntimeException("User already exists");
+            }
             logger.info("User account created successfully: {}", userId);
             
             String accessToken = jwtService.generateAccessToken(user.getUserId(), user.getUsername());
@@ -77,7 +67,7 @@ public class AuthService {
             throw new RuntimeException("No account found with this username.");
         }
         
-        String hashedPassword = passwordEncoder.encode(newPassword);
+        String hashedPassword = passwordHashingService.encode(newPassword);
         user.setHashedPassword(hashedPassword);
         userRepository.save(user);
         
@@ -96,7 +86,7 @@ public class AuthService {
             if (user == null) {
                 throw new RuntimeException("No account found with this username. Please sign up first.");
             }
-            if (!passwordEncoder.matches(password, user.getHashedPassword())) {
+            if (!passwordHashingService.matches(password, user.getHashedPassword())) {
                 throw new RuntimeException("Invalid password. Please try again.");
             }
             
@@ -113,11 +103,7 @@ public class AuthService {
     
     public AuthResponse refreshToken(String refreshToken) {
         try {
-            String userId = jwtService.extractUserId(refreshToken);
-            
-            if (!jwtService.validateToken(refreshToken, userId)) {
-                throw new RuntimeException("Invalid refresh token");
-            }
+            String userId = jwtService.verify(refreshToken).userId();
             
             User user = userRepository.findById(userId);
             if (user == null) {
@@ -133,60 +119,20 @@ public class AuthService {
         }
     }
     
-    public void deleteAccount(String userId) {
-        logger.info("Starting account deletion for userId: {}", userId);
-        
-        try {
-            User user = userRepository.findById(userId);
-            if (user == null) {
-                logger.warn("User not found for deletion: {}", userId);
-                throw new RuntimeException("User not found");
-            }
-            
-            String username = user.getUsername();
-            logger.info("Deleting all data for user: {} ({})", username, userId);
-            
-            try {
-                pantryRepository.deleteAllByUserId(userId);
-                logger.info("Deleted pantry items for user: {}", userId);
-            } catch (Exception e) {
-                logger.warn("Error deleting pantry items: {}", e.getMessage());
-            }
-            
-            try {
-                receiptRepository.deleteAllByUserId(userId);
-                logger.info("Deleted receipts for user: {}", userId);
-            } catch (Exception e) {
-                logger.warn("Error deleting receipts: {}", e.getMessage());
-            }
-            
-            try {
-                mealFavoriteRepository.deleteAllByUserId(userId);
-                logger.info("Deleted favorites for user: {}", userId);
-            } catch (Exception e) {
-                logger.warn("Error deleting favorites: {}", e.getMessage());
-            }
-            
-            try {
-                shoppingListRepository.deleteAllByUserId(userId);
-                logger.info("Deleted shopping lists for user: {}", userId);
-            } catch (Exception e) {
-                logger.warn("Error deleting shopping lists: {}", e.getMessage());
-            }
-            
-            try {
-                otpRepository.deleteAllByEmail(username);
-                logger.info("Deleted OTPs for login: {}", username);
-            } catch (Exception e) {
-                logger.warn("Error deleting OTPs: {}", e.getMessage());
-            }
-            
-            userRepository.delete(userId);
-            logger.info("Successfully deleted user account: {} ({})", username, userId);
-            
-        } catch (Exception e) {
-            logger.error("Error deleting account for userId {}: {}", userId, e.getMessage(), e);
-            throw new RuntimeException("Failed to delete account: " + e.getMessage(), e);
+    /**
+     * Start deleting the account in the background; see AccountDeletionService
+     */
+    public AccountDeletionStatus deleteAccount(String userId) {
+        User user = userRepository.findById(userId);
+        if (user == null) {
+            logger.warn("User not found for deletion: {}", userId);
+            throw new RuntimeException("User not found");
         }
+        logger.info("Deleting all data for user: {} ({})", user.getUsername(), userId);
+        return accountDeletionService.start(user);
+    }
+    
+    public AccountDeletionStatus getAccountDeletionStatus(String userId, String jobId) {
+        return accountDeletionService.getStatus(userId, jobId);
     }
 }
@@ -0,0 +1,18 @@
+package com.smartcart.auth.dto;
+
+import java.util.Map;
+
+/**
+ * Progress of a background account deletion.
+ * status is "running", "completed" or "failed"; tasks maps each data set
+ * (pantry, receipts, ...) to "pending", "done" or "failed", and deleted holds
+ * the number of records or files removed by each finished task.
+ */
+public record AccountDeletionStatus(
+    String jobId,
+    String status,
+    Map<String, String> tasks,
+    Map<String, Long> deleted,
+    long startedAt,
+    Long finishedAt
+) {}
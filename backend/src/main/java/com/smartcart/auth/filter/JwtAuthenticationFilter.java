@@ -35,37 +35,29 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         
         String authHeader = request.getHeader(AUTHORIZATION_HEADER);
-        String token = null;
-        String userId = null;
         
         // Extract token from Authorization header
-        if (authHeader != null && authHeader.startsWith(BEARER_PREFIX)) {
-            token = authHeader.substring(BEARER_PREFIX.length());
+        if (authHeader != null && authHeader.startsWith(BEARER_PREFIX)
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            String token = authHeader.substring(BEARER_PREFIX.length());
             try {
-                userId = jwtService.extractUserId(token);
+                // One verification (or a cache hit) yields the user id, username and expiry together
+                JwtService.VerifiedToken verified = jwtService.verify(token);
+                String userId = verified.userId();
                 
-                // Validate token
-                if (userId != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                    if (jwtService.validateToken(token, userId)) {
-                        String username = jwtService.extractUsername(token);
-                        
-                        // Create authentication object
-                        UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                                userId,
-                                null,
-                                Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"))
-                        );
-                        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                        SecurityContextHolder.getContext().setAuthentication(authToken);
-                        
-                        request.setAttribute("userId", userId);
-                        request.setAttribute("username", username);
-                        
-                        logger.debug("JWT authentication successful for user: {}", userId);
-                    } else {
-                        logger.debug("Invalid JWT token");
-                    }
-                }
+                // Create authentication object
+                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                        userId,
+                        null,
+                        Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"))
+                );
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(authToken);
+                
+                request.setAttribute("userId", userId);
+                request.setAttribute("username", verified.username());
+                
+                logger.debug("JWT authentication successful for user: {}", userId);
             } catch (Exception e) {
                 logger.debug("JWT parsing failed: {}", e.getMessage());
             }
@@ -0,0 +1,52 @@
+package com.smartcart.auth.model;
+
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+
+/**
+ * Username -> userId lookup entry. Written in the same transaction as the User,
+ * so a username can only be claimed once and login is a key lookup instead of a scan.
+ */
+@DynamoDbBean
+public class UsernameClaim {
+    private String username; // PK
+    private String userId;
+    private long createdAt;
+    
+    public UsernameClaim() {}
+    
+    public UsernameClaim(String username, String userId) {
+        this.username = username;
+        this.userId = userId;
+        this.createdAt = System.currentTimeMillis();
+    }
+    
+    @DynamoDbPartitionKey
+    @DynamoDbAttribute("username")
+    public String getUsername() {
+        return username;
+    }
+    
+    public void setUsername(String username) {
+        this.username = username;
+    }
+    
+    @DynamoDbAttribute("userId")
+    public String getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+    
+    @DynamoDbAttribute("createdAt")
+    public long getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -1,23 +1,100 @@
 package com.smartcart.auth.repository;
 
 import com.smartcart.auth.model.User;
+import com.smartcart.auth.model.UsernameClaim;
+import com.smartcart.common.job.JobCheckpoint;
+import com.smartcart.common.job.JobCheckpointRepository;
+import com.smartcart.common.job.SegmentScanJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Expression;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.PageIterable;
+import software.amazon.awssdk.enhanced.dynamodb.model.PutItemEnhancedRequest;
 import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.TransactPutItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.TransactWriteItemsEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
+import java.util.Map;
+
+/**
+ * Users are keyed by userId; usernames are claimed in a separate Usernames table
+ * so login is two key lookups and duplicate registrations fail atomically.
+ * Until UsernameClaimBackfillService has given every legacy user a claim, a missing
+ * claim still falls back to scanning Users.
+ */
 @Repository
 public class UserRepository {
     
-    private final DynamoDbTable<User> userTable;
+    private static final Logger logger = LoggerFactory.getLogger(UserRepository.class);
     private static final String TABLE_NAME = "Users";
+    private static final String USERNAMES_TABLE_NAME = "Usernames";
+    public static final String CLAIM_BACKFILL_JOB_NAME = "username-claim-backfill";
+    private static final long CLAIM_BACKFILL_CHECK_INTERVAL_MS = 60_000;
+    
+    private final DynamoDbEnhancedClient enhancedClient;
+    private final DynamoDbTable<User> userTable;
+    private final DynamoDbTable<UsernameClaim> usernameTable;
+    private final JobCheckpointRepository checkpointRepository;
+    // Accounts created before the Usernames table have no claim. Until the claim backfill
+    // is recorded as done, a missing claim falls back to the old scan; the flag forces it on.
+    private final boolean forceScanFallback;
+    private volatile boolean claimsBackfilled;
+    private volatile long nextClaimBackfillCheckAt;
     
     @Autowired
-    public UserRepository(DynamoDbEnhancedClient enhancedClient) {
+    public UserRepository(
+            DynamoDbEnhancedClient enhancedClient,
+            JobCheckpointRepository checkpointRepository,
+            @Value("${auth.username-scan-fallback:false}") boolean forceScanFallback) {
+        this.enhancedClient = enhancedClient;
         this.userTable = enhancedClient.table(TABLE_NAME, TableSchema.fromBean(User.class));
+        this.usernameTable = enhancedClient.table(USERNAMES_TABLE_NAME, TableSchema.fromBean(UsernameClaim.class));
+        this.checkpointRepository = checkpointRepository;
+        this.forceScanFallback = forceScanFallback;
+    }
+    
+    /**
+     * Claim the username and write the user in one transaction.
+     * Returns false if the username is already taken.
+     */
+    public boolean create(User user) {
+        // Legacy accounts have no claim yet, so the transaction alone wouldn't see them
+        if (scanFallbackActive() && findByUsername(user.getUsername()) != null) {
+            return false;
+        }
+        try {
+            enhancedClient.transactWriteItems(TransactWriteItemsEnhancedRequest.builder()
+                    .addPutItem(usernameTable, TransactPutItemEnhancedRequest.builder(UsernameClaim.class)
+                            .item(new UsernameClaim(user.getUsername(), user.getUserId()))
+                            .conditionExpression(notExists("username"))
+                            .build())
+                    .addPutItem(userTable, TransactPutItemEnhancedRequest.builder(User.class)
+                            .item(user)
+                            .conditionExpression(notExists("userId"))
+                            .build())
+                    .build());
+            return true;
+        } catch (TransactionCanceledException e) {
+            boolean conditionFailed = e.cancellationReasons().stream()
+                    .map(CancellationReason::code)
+                    .anyMatch("ConditionalCheckFailed"::equals);
+            if (conditionFailed) {
+                return false;
+            }
+            throw e;
+        }
     }
     
     public void save(User user) {
@@ -30,6 +107,41 @@ public class UserRepository {
     }
     
     public User findByUsername(String username) {
+        UsernameClaim claim = usernameTable.getItem(r -> r
+                .key(Key.builder().partitionValue(username).build())
+                .consistentRead(true));
+        if (claim != null) {
+            User user = userTable.getItem(r -> r
+                    .key(Key.builder().partitionValue(claim.getUserId()).build())
+                    .consistentRead(true));
+            return user != null && username.equals(user.getUsername()) ? user : null;
+        }
+        if (!scanFallbackActive()) {
+            return null;
+        }
+        
+        User user = scanByUsername(username);
+        if (user != null) {
+            claimUsername(user);
+        }
+        return user;
+    }
+    
+    public boolean existsByUsername(String username) {
+        return findByUsername(username) != null;
+    }
+    
+    /**
+     * Remove the user and release the username
+     */
+    public void delete(User user) {
+        enhancedClient.transactWriteItems(TransactWriteItemsEnhancedRequest.builder()
+                .addDeleteItem(usernameTable, Key.builder().partitionValue(user.getUsername()).build())
+                .addDeleteItem(userTable, Key.builder().partitionValue(user.getUserId()).build())
+                .build());
+    }
+    
+    private User scanByUsername(String username) {
         return userTable.scan(ScanEnhancedRequest.builder().build())
                 .items()
                 .stream()
@@ -38,12 +150,66 @@ public class UserRepository {
                 .orElse(null);
     }
     
-    public boolean existsByUsername(String username) {
-        return findByUsername(username) != null;
+    /**
+     * Write the username claim for an existing user unless the username is already claimed.
+     * Returns true if this call wrote it.
+     */
+    public boolean claimUsername(User user) {
+        try {
+            usernameTable.putItem(PutItemEnhancedRequest.builder(UsernameClaim.class)
+                    .item(new UsernameClaim(user.getUsername(), user.getUserId()))
+                    .conditionExpression(notExists("username"))
+                    .build());
+            logger.info("Backfilled username claim for user {}", user.getUserId());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            logger.debug("Username claim for user {} already exists", user.getUserId());
+            return false;
+        }
     }
     
-    public void delete(String userId) {
-        Key key = Key.builder().partitionValue(userId).build();
-        userTable.deleteItem(key);
+    public PageIterable<User> scanSegment(
+            int segment, int totalSegments, Map<String, AttributeValue> exclusiveStartKey, int pageSize) {
+        return userTable.scan(r -> r
+                .segment(segment)
+                .totalSegments(totalSegments)
+                .exclusiveStartKey(exclusiveStartKey)
+                .limit(pageSize)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL));
+    }
+    
+    /**
+     * Called once every user has a claim; lookups on this instance become key-only at once
+     */
+    public void markClaimsBackfilled() {
+        claimsBackfilled = true;
+    }
+    
+    private boolean scanFallbackActive() {
+        if (forceScanFallback) {
+            return true;
+        }
+        if (claimsBackfilled) {
+            return false;
+        }
+        // Another instance may finish the backfill; recheck its run record at most once a minute
+        long now = System.currentTimeMillis();
+        if (now >= nextClaimBackfillCheckAt) {
+            nextClaimBackfillCheckAt = now + CLAIM_BACKFILL_CHECK_INTERVAL_MS;
+            try {
+                JobCheckpoint run = checkpointRepository.findById(CLAIM_BACKFILL_JOB_NAME, SegmentScanJob.RUN_SEGMENT);
+                claimsBackfilled = run != null && run.isDone();
+            } catch (RuntimeException e) {
+                logger.warn("Could not read username claim backfill progress: {}", e.getMessage());
+            }
+        }
+        return !claimsBackfilled;
+    }
+    
+    private static Expression notExists(String attribute) {
+        return Expression.builder()
+                .expression("attribute_not_exists(#key)")
+                .putExpressionName("#key", attribute)
+                .build();
     }
 }
@@ -0,0 +1,204 @@
+package com.smartcart.auth.service;
+
+import com.smartcart.auth.dto.AccountDeletionStatus;
+import com.smartcart.auth.model.User;
+import com.smartcart.auth.repository.OTPRepository;
+import com.smartcart.auth.repository.UserRepository;
+import com.smartcart.common.util.BoundedCache;
+import com.smartcart.favorites.repository.MealFavoriteRepository;
+import com.smartcart.pantry.repository.PantryRepository;
+import com.smartcart.receipts.repository.ReceiptHashRepository;
+import com.smartcart.receipts.repository.ReceiptRepository;
+import com.smartcart.receipts.service.S3Service;
+import com.smartcart.shoppinglist.repository.ShoppingListRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Deletes an account in the background. Each data set is cleared by its own task,
+ * all running in parallel: partition queries with 25-item batch deletes for the
+ * DynamoDB tables and bulk DeleteObjects for stored receipt files. The user record
+ * (and username) goes last, and only if every task succeeded, so a failed job can
+ * simply be started again. Progress is kept in memory on the instance running the job.
+ */
+@Service
+public class AccountDeletionService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AccountDeletionService.class);
+    
+    private final UserRepository userRepository;
+    private final OTPRepository otpRepository;
+    private final PantryRepository pantryRepository;
+    private final ReceiptRepository receiptRepository;
+    private final ReceiptHashRepository receiptHashRepository;
+    private final S3Service s3Service;
+    private final MealFavoriteRepository mealFavoriteRepository;
+    private final ShoppingListRepository shoppingListRepository;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService executor;
+    // Finished jobs stay queryable for a while; running ones are also indexed by user
+    private final BoundedCache<String, Job> jobs;
+    private final Map<String, Job> runningByUser = new ConcurrentHashMap<>();
+    
+    public AccountDeletionService(
+            UserRepository userRepository,
+            OTPRepository otpRepository,
+            PantryRepository pantryRepository,
+            ReceiptRepository receiptRepository,
+            ReceiptHashRepository receiptHashRepository,
+            S3Service s3Service,
+            MealFavoriteRepository mealFavoriteRepository,
+            ShoppingListRepository shoppingListRepository,
+            MeterRegistry meterRegistry,
+            @Value("${auth.account-deletion.threads:4}") int threads,
+            @Value("${auth.account-deletion.status-ttl-minutes:60}") long statusTtlMinutes) {
+        this.userRepository = userRepository;
+        this.otpRepository = otpRepository;
+        this.pantryRepository = pantryRepository;
+        this.receiptRepository = receiptRepository;
+        this.receiptHashRepository = receiptHashRepository;
+        this.s3Service = s3Service;
+        this.mealFavoriteRepository = mealFavoriteRepository;
+        this.shoppingListRepository = shoppingListRepository;
+        this.meterRegistry = meterRegistry;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "account-deletion-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.jobs = new BoundedCache<>(1000, Duration.ofMinutes(statusTtlMinutes));
+    }
+    
+    /**
+     * Start deleting the user's data and return the job's initial status.
+     * If a deletion for this user is already running, that job is returned instead.
+     */
+    public AccountDeletionStatus start(User user) {
+        String userId = user.getUserId();
+        Job job = new Job(UUID.randomUUID().toString(), userId);
+        Job running = runningByUser.putIfAbsent(userId, job);
+        if (running != null) {
+            return running.status();
+        }
+        jobs.put(job.jobId, job);
+        logger.info("Starting account deletion job {} for user {}", job.jobId, userId);
+        
+        Map<String, Supplier<Long>> tasks = new LinkedHashMap<>();
+        tasks.put("pantry", () -> pantryRepository.deleteAllByUserId(userId));
+        tasks.put("receipts", () -> receiptRepository.deleteAllByUserId(userId));
+        tasks.put("receiptHashes", () -> receiptHashRepository.deleteAllByUserId(userId));
+        tasks.put("receiptFiles", () -> s3Service.deleteAllForUser(userId));
+        tasks.put("favorites", () -> mealFavoriteRepository.deleteAllByUserId(userId));
+        tasks.put("shoppingLists", () -> shoppingListRepository.deleteAllByUserId(userId));
+        tasks.put("otps", () -> {
+            otpRepository.deleteAllByEmail(user.getUsername());
+            return 0L;
+        });
+        
+        CompletableFuture<?>[] futures = tasks.entrySet().stream()
+                .map(task -> {
+                    job.tasks.put(task.getKey(), "pending");
+                    return CompletableFuture.supplyAsync(task.getValue(), executor)
+                            .whenComplete((deleted, error) -> job.finishTask(task.getKey(), deleted, error));
+                })
+                .toArray(CompletableFuture[]::new);
+        
+        CompletableFuture.allOf(futures).whenComplete((ignored, error) -> finish(job, user));
+        return job.status();
+    }
+    
+    /**
+     * Status of one of the user's deletion jobs, or null if unknown (or expired)
+     */
+    public AccountDeletionStatus getStatus(String userId, String jobId) {
+        Job job = jobs.get(jobId);
+        return job != null && job.userId.equals(userId) ? job.status() : null;
+    }
+    
+    private void finish(Job job, User user) {
+        String outcome = "failed";
+        try {
+            if (job.tasks.containsValue("failed")) {
+                logger.warn("Account deletion job {} for user {} failed; the account was kept so it can be retried: {}",
+                        job.jobId, job.userId, job.tasks);
+            } else {
+                userRepository.delete(user);
+                outcome = "completed";
+                logger.info("Account deletion job {} completed for user {}: {}", job.jobId, job.userId, job.deleted);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Account deletion job {} could not remove user {}: {}", job.jobId, job.userId, e.getMessage(), e);
+        } finally {
+            // Release the user before publishing the outcome, so a retry after seeing "failed" starts a new job
+            runningByUser.remove(job.userId, job);
+            job.finish(outcome);
+            // Re-put so the finished status stays queryable for the full TTL
+            jobs.put(job.jobId, job);
+            Timer.builder("auth.account.deletion.duration")
+                    .description("Time to delete all of an account's data")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.currentTimeMillis() - job.startedAt, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    private static final class Job {
+        private final String jobId;
+        private final String userId;
+        private final long startedAt = System.currentTimeMillis();
+        private final Map<String, String> tasks = new ConcurrentHashMap<>();
+        private final Map<String, Long> deleted = new ConcurrentHashMap<>();
+        private String status = "running";
+        private Long finishedAt;
+        
+        Job(String jobId, String userId) {
+            this.jobId = jobId;
+            this.userId = userId;
+        }
+        
+        void finishTask(String task, Long count, Throwable error) {
+            if (error != null) {
+                logger.warn("Account deletion job {}: deleting {} failed: {}", jobId, task, error.getMessage());
+                tasks.put(task, "failed");
+                return;
+            }
+            if (count != null) {
+                deleted.put(task, count);
+            }
+            tasks.put(task, "done");
+        }
+        
+        // Status and finish time change together, so a reader never sees one without the other
+        synchronized void finish(String outcome) {
+            finishedAt = System.currentTimeMillis();
+            status = outcome;
+        }
+        
+        synchronized AccountDeletionStatus status() {
+            return new AccountDeletionStatus(jobId, status, Map.copyOf(tasks), Map.copyOf(deleted), startedAt, finishedAt);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
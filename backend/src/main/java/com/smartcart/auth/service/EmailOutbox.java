@@ -0,0 +1,222 @@
+package com.smartcart.auth.service;
+
+import com.smartcart.common.exception.AppException;
+import com.smartcart.common.util.Backoff;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory outbox for transactional email. Requests only enqueue; a few worker
+ * threads drain the queue in small batches and hand each batch to the enabled
+ * providers in priority order (SendGrid, Gmail SMTP, SES), so whatever one provider
+ * fails to send falls over to the next. Emails no provider could send are retried
+ * with backoff, then dropped. The queue does not survive a restart, which is
+ * acceptable for short-lived verification and reset codes.
+ */
+@Service
+public class EmailOutbox {
+    
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutbox.class);
+    
+    private final List<EmailSender> providers;
+    private final MeterRegistry meterRegistry;
+    private final DelayQueue<Pending> queue = new DelayQueue<>();
+    private final ExecutorService workers;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Backoff backoff;
+    private volatile boolean running = true;
+    
+    @Autowired
+    public EmailOutbox(
+            SendGridEmailSender sendGridEmailSender,
+            SmtpEmailSender smtpEmailSender,
+            SesEmailSender sesEmailSender,
+            MeterRegistry meterRegistry,
+            @Value("${email.outbox.threads:2}") int threads,
+            @Value("${email.outbox.queue-capacity:500}") int queueCapacity,
+            @Value("${email.outbox.batch-size:10}") int batchSize,
+            @Value("${email.outbox.max-attempts:5}") int maxAttempts,
+            @Value("${email.outbox.backoff-initial-ms:2000}") long backoffInitialMs,
+            @Value("${email.outbox.backoff-max-ms:60000}") long backoffMaxMs) {
+        this(List.of(sendGridEmailSender, smtpEmailSender, sesEmailSender), meterRegistry,
+                threads, queueCapacity, batchSize, maxAttempts, Backoff.of(backoffInitialMs, backoffMaxMs));
+    }
+    
+    EmailOutbox(List<EmailSender> providers, MeterRegistry meterRegistry,
+                int threads, int queueCapacity, int batchSize, int maxAttempts, Backoff backoff) {
+        this.providers = providers.stream()
+                .filter(EmailSender::isEnabled)
+                .toList();
+        this.meterRegistry = meterRegistry;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+        meterRegistry.gauge("email.outbox.queue", queue, DelayQueue::size);
+        logger.info("Email outbox providers: {}", this.providers.stream().map(EmailSender::name).toList());
+        
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "email-outbox-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threads; i++) {
+            workers.submit(this::drain);
+        }
+    }
+    
+    /**
+     * Queue an email for delivery and return immediately.
+     * Fails with 503 when the outbox is full rather than letting it grow without bound.
+     */
+    public void enqueue(OutboundEmail email) {
+        if (queue.size() >= queueCapacity) {
+            Counter.builder("email.outbox.rejected")
+                    .description("Emails refused because the outbox was full")
+                    .register(meterRegistry)
+                    .increment();
+            throw new AppException(
+                    "Email outbox full (" + queueCapacity + ")",
+                    "We couldn't send your email right now. Please try again in a moment.",
+                    "SERVICE_UNAVAILABLE");
+        }
+        queue.add(new Pending(email, 1, System.nanoTime(), System.nanoTime()));
+    }
+    
+    private void drain() {
+        while (running) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<Pending> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                deliver(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Email outbox worker error: {}", e.getMessage(), e);
+            }
+        }
+    }
+    
+    private void deliver(List<Pending> batch) {
+        Map<OutboundEmail, Pending> byEmail = new IdentityHashMap<>();
+        batch.forEach(pending -> byEmail.put(pending.email(), pending));
+        List<OutboundEmail> remaining = new ArrayList<>(byEmail.keySet());
+        
+        if (providers.isEmpty()) {
+            remaining.forEach(email -> logger.info("No email provider configured. Email would be sent to: {} (subject: {})",
+                    email.to(), email.subject()));
+            return;
+        }
+        
+        for (EmailSender provider : providers) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            long started = System.nanoTime();
+            List<OutboundEmail> failed;
+            try {
+                failed = provider.send(remaining);
+            } catch (RuntimeException e) {
+                logger.error("Email provider {} failed: {}", provider.name(), e.getMessage(), e);
+                failed = remaining;
+            }
+            Timer.builder("email.send.duration")
+                    .description("Time for one provider to send a batch of emails")
+                    .tag("provider", provider.name())
+                    .tag("outcome", failed.isEmpty() ? "success" : failed.size() < remaining.size() ? "partial" : "failure")
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            
+            int sent = remaining.size() - failed.size();
+            if (sent > 0) {
+                counter("email.sent", provider.name()).increment(sent);
+                long now = System.nanoTime();
+                Timer latency = Timer.builder("email.outbox.latency")
+                        .description("Time from enqueueing an email to a provider accepting it")
+                        .register(meterRegistry);
+                Set<OutboundEmail> failedNow = Collections.newSetFromMap(new IdentityHashMap<>());
+                failedNow.addAll(failed);
+                remaining.stream()
+                        .filter(email -> !failedNow.contains(email))
+                        .forEach(email -> latency.record(now - byEmail.get(email).enqueuedAt(), TimeUnit.NANOSECONDS));
+                logger.info("Sent {} email(s) via {}", sent, provider.name());
+            }
+            remaining = failed;
+        }
+        
+        for (OutboundEmail email : remaining) {
+            retryOrDrop(byEmail.get(email));
+        }
+    }
+    
+    private void retryOrDrop(Pending pending) {
+        if (pending.attempt() >= maxAttempts || !running) {
+            counter("email.dropped", "all").increment();
+            logger.error("Giving up on email to {} after {} attempt(s)", pending.email().to(), pending.attempt());
+            return;
+        }
+        long delayMs = backoff.delayMillis(pending.attempt());
+        logger.warn("No provider could send email to {}; retrying in {} ms (attempt {}/{})",
+                pending.email().to(), delayMs, pending.attempt() + 1, maxAttempts);
+        queue.add(new Pending(pending.email(), pending.attempt() + 1, pending.enqueuedAt(),
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs)));
+    }
+    
+    private Counter counter(String name, String provider) {
+        return Counter.builder(name)
+                .tag("provider", provider)
+                .register(meterRegistry);
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        workers.shutdown();
+        workers.awaitTermination(5, TimeUnit.SECONDS);
+        if (!queue.isEmpty()) {
+            logger.warn("Email outbox stopped with {} unsent email(s)", queue.size());
+        }
+    }
+    
+    private record Pending(OutboundEmail email, int attempt, long enqueuedAt, long availableAt) implements Delayed {
+        
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(availableAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+        
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(availableAt, ((Pending) other).availableAt);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.smartcart.auth.service;
+
+import java.util.List;
+
+/**
+ * One email provider. The outbox tries enabled providers in priority order,
+ * handing each the emails the previous one could not send.
+ */
+public interface EmailSender {
+    
+    String name();
+    
+    boolean isEnabled();
+    
+    /**
+     * Send a batch and return the emails that could not be sent (the same instances)
+     */
+    List<OutboundEmail> send(List<OutboundEmail> emails);
+}
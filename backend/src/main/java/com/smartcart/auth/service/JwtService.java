@@ -1,31 +1,53 @@
 package com.smartcart.auth.service;
 
+import com.smartcart.common.util.BoundedCache;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
 import java.util.function.Function;
 
 @Service
 public class JwtService {
     
-    @Value("${jwt.secret:your-256-bit-secret-key-change-in-production-minimum-32-characters-long}")
-    private String secret;
+    private final long accessTokenExpiration;
+    private final long refreshTokenExpiration;
+    // Built once: deriving the key and parser per call showed up on every authenticated request
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+    // SHA-256 of the token -> claims it verified to; entries never outlive the token's own expiry
+    private final BoundedCache<String, VerifiedToken> verifiedTokens;
     
-    @Value("${jwt.access-token-expiration:3600000}")
-    private long accessTokenExpiration;
-    
-    @Value("${jwt.refresh-token-expiration:604800000}")
-    private long refreshTokenExpiration;
+    public JwtService(
+            @Value("${jwt.secret:your-256-bit-secret-key-change-in-production-minimum-32-characters-long}") String secret,
+            @Value("${jwt.access-token-expiration:3600000}") long accessTokenExpiration,
+            @Value("${jwt.refresh-token-expiration:604800000}") long refreshTokenExpiration,
+            @Value("${jwt.verified-cache.max-entries:10000}") int verifiedCacheMaxEntries,
+            @Value("${jwt.verified-cache.ttl-seconds:300}") long verifiedCacheTtlSeconds) {
+        this.accessTokenExpiration = accessTokenExpiration;
+        this.refreshTokenExpiration = refreshTokenExpiration;
+        this.signingKey = signingKey(secret);
+        this.parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+        this.verifiedTokens = new BoundedCache<>(verifiedCacheMaxEntries, Duration.ofSeconds(verifiedCacheTtlSeconds));
+    }
     
-    private SecretKey getSigningKey() {
+    private static SecretKey signingKey(String secret) {
         byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
         if (keyBytes.length < 32) {
             byte[] paddedKey = new byte[32];
@@ -35,6 +57,12 @@ public class JwtService {
         return Keys.hmacShaKeyFor(keyBytes);
     }
     
+    /**
+     * Claims of a token whose signature and expiry have been checked
+     */
+    public record VerifiedToken(String userId, String username, Instant expiresAt) {
+    }
+    
     public String generateAccessToken(String userId, String username) {
         Map<String, Object> claims = new HashMap<>();
         claims.put("username", username);
@@ -55,23 +83,52 @@ public class JwtService {
                 .subject(subject)
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
     
+    /**
+     * Verify the token once and return everything callers need from it. A token seen
+     * recently is served from the cache without re-checking the signature; expiry is
+     * still checked on every call. Throws a JwtException if the token is invalid or expired.
+     */
+    public VerifiedToken verify(String token) {
+        String tokenHash = hash(token);
+        VerifiedToken cached = verifiedTokens.get(tokenHash);
+        if (cached != null) {
+            if (cached.expiresAt().isAfter(Instant.now())) {
+                return cached;
+            }
+            verifiedTokens.invalidate(tokenHash);
+        }
+        
+        Claims claims = extractAllClaims(token);
+        if (claims.getSubject() == null || claims.getExpiration() == null) {
+            throw new MalformedJwtException("Token has no subject or expiration");
+        }
+        VerifiedToken verified = new VerifiedToken(
+                claims.getSubject(),
+                username(claims),
+                claims.getExpiration().toInstant());
+        verifiedTokens.put(tokenHash, verified);
+        return verified;
+    }
+    
     public String extractUserId(String token) {
         return extractClaim(token, Claims::getSubject);
     }
     
     /** Prefer claim {@code username}; fall back to legacy {@code email} for old tokens. */
     public String extractUsername(String token) {
-        return extractClaim(token, claims -> {
-            String u = claims.get("username", String.class);
-            if (u != null && !u.isEmpty()) {
-                return u;
-            }
-            return claims.get("email", String.class);
-        });
+        return extractClaim(token, JwtService::username);
+    }
+    
+    private static String username(Claims claims) {
+        String u = claims.get("username", String.class);
+        if (u != null && !u.isEmpty()) {
+            return u;
+        }
+        return claims.get("email", String.class);
     }
     
     public Date extractExpiration(String token) {
@@ -84,11 +141,7 @@ public class JwtService {
     }
     
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
     }
     
     public Boolean isTokenExpired(String token) {
@@ -101,10 +154,18 @@ public class JwtService {
     
     public Boolean validateToken(String token, String userId) {
         try {
-            final String tokenUserId = extractUserId(token);
-            return (tokenUserId.equals(userId) && !isTokenExpired(token));
+            return verify(token).userId().equals(userId);
         } catch (Exception e) {
             return false;
         }
     }
+    
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
 }
@@ -0,0 +1,6 @@
+package com.smartcart.auth.service;
+
+/**
+ * An email waiting in the outbox
+ */
+public record OutboundEmail(String to, String subject, String bodyText, String bodyHtml) {}
@@ -0,0 +1,118 @@
+package com.smartcart.auth.service;
+
+import com.sendgrid.Client;
+import com.sendgrid.Method;
+import com.sendgrid.Request;
+import com.sendgrid.Response;
+import com.sendgrid.SendGrid;
+import com.sendgrid.helpers.mail.Mail;
+import com.sendgrid.helpers.mail.objects.Content;
+import com.sendgrid.helpers.mail.objects.Email;
+import com.sendgrid.helpers.mail.objects.Personalization;
+import jakarta.annotation.PreDestroy;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends through the SendGrid API over one pooled HTTP client with short timeouts
+ */
+@Component
+public class SendGridEmailSender implements EmailSender {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SendGridEmailSender.class);
+    
+    private final boolean enabled;
+    private final String fromEmail;
+    private final CloseableHttpClient httpClient;
+    private final SendGrid sendGrid;
+    
+    public SendGridEmailSender(
+            @Value("${sendgrid.enabled:false}") boolean sendgridEnabled,
+            @Value("${sendgrid.api-key:}") String apiKey,
+            @Value("${sendgrid.from-email:smartcart2025.app@gmail.com}") String fromEmail,
+            @Value("${email.outbox.threads:2}") int outboxThreads,
+            @Value("${email.http.connect-timeout-ms:3000}") int connectTimeoutMs,
+            @Value("${email.http.read-timeout-ms:10000}") int readTimeoutMs) {
+        this.enabled = sendgridEnabled && apiKey != null && !apiKey.trim().isEmpty();
+        this.fromEmail = fromEmail;
+        if (enabled) {
+            // One connection per outbox worker is all that is ever in use
+            this.httpClient = HttpClients.custom()
+                    .setMaxConnTotal(outboxThreads)
+                    .setMaxConnPerRoute(outboxThreads)
+                    .setDefaultRequestConfig(RequestConfig.custom()
+                            .setConnectTimeout(connectTimeoutMs)
+                            .setConnectionRequestTimeout(connectTimeoutMs)
+                            .setSocketTimeout(readTimeoutMs)
+                            .build())
+                    .build();
+            this.sendGrid = new SendGrid(apiKey, new Client(httpClient));
+        } else {
+            this.httpClient = null;
+            this.sendGrid = null;
+        }
+    }
+    
+    @Override
+    public String name() {
+        return "sendgrid";
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    @Override
+    public List<OutboundEmail> send(List<OutboundEmail> emails) {
+        List<OutboundEmail> failed = new ArrayList<>();
+        for (OutboundEmail email : emails) {
+            try {
+                Response response = sendGrid.api(request(email));
+                if (response.getStatusCode() < 200 || response.getStatusCode() >= 300) {
+                    logger.error("SendGrid returned error status: {} - {}", response.getStatusCode(), response.getBody());
+                    failed.add(email);
+                }
+            } catch (IOException e) {
+                logger.error("Failed to send email via SendGrid: {}", e.getMessage());
+                failed.add(email);
+            }
+        }
+        return failed;
+    }
+    
+    private Request request(OutboundEmail email) throws IOException {
+        Mail mail = new Mail();
+        mail.setFrom(new Email(fromEmail, "SmartCart"));
+        mail.setSubject(email.subject());
+        // SendGrid requires text/plain before text/html
+        mail.addContent(new Content("text/plain", email.bodyText()));
+        mail.addContent(new Content("text/html", email.bodyHtml()));
+        
+        Personalization personalization = new Personalization();
+        personalization.addTo(new Email(email.to()));
+        mail.addPersonalization(personalization);
+        
+        Request request = new Request();
+        request.setMethod(Method.POST);
+        request.setEndpoint("mail/send");
+        request.setBody(mail.build());
+        return request;
+    }
+    
+    @PreDestroy
+    public void close() throws IOException {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.smartcart.auth.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.ses.SesClient;
+import software.amazon.awssdk.services.ses.model.Body;
+import software.amazon.awssdk.services.ses.model.Content;
+import software.amazon.awssdk.services.ses.model.Destination;
+import software.amazon.awssdk.services.ses.model.Message;
+import software.amazon.awssdk.services.ses.model.MessageRejectedException;
+import software.amazon.awssdk.services.ses.model.SendEmailRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends through AWS SES using the shared SES client
+ */
+@Component
+public class SesEmailSender implements EmailSender {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SesEmailSender.class);
+    
+    private final SesClient sesClient;
+    private final boolean enabled;
+    private final String fromEmail;
+    
+    public SesEmailSender(
+            ObjectProvider<SesClient> sesClient,
+            @Value("${aws.ses.enabled:false}") boolean sesEnabled,
+            @Value("${aws.ses.from-email:noreply@smartcart.com}") String fromEmail) {
+        this.sesClient = sesClient.getIfAvailable();
+        this.enabled = sesEnabled && this.sesClient != null;
+        this.fromEmail = fromEmail;
+    }
+    
+    @Override
+    public String name() {
+        return "ses";
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    @Override
+    public List<OutboundEmail> send(List<OutboundEmail> emails) {
+        List<OutboundEmail> failed = new ArrayList<>();
+        for (OutboundEmail email : emails) {
+            try {
+                String messageId = sesClient.sendEmail(request(email)).messageId();
+                logger.debug("Email sent via SES. MessageId: {}", messageId);
+            } catch (MessageRejectedException e) {
+                logger.warn("Email rejected by SES (likely unverified address in sandbox mode): {}", e.getMessage());
+                failed.add(email);
+            } catch (SdkException e) {
+                logger.error("Failed to send email via SES: {}", e.getMessage());
+                failed.add(email);
+            }
+        }
+        return failed;
+    }
+    
+    private SendEmailRequest request(OutboundEmail email) {
+        return SendEmailRequest.builder()
+            .destination(Destination.builder()
+                .toAddresses(email.to())
+                .build())
+            .message(Message.builder()
+                .subject(content(email.subject()))
+                .body(Body.builder()
+                    .text(content(email.bodyText()))
+                    .html(content(email.bodyHtml()))
+                    .build())
+                .build())
+            .source(fromEmail)
+            .build();
+    }
+    
+    private static Content content(String data) {
+        return Content.builder()
+            .data(data)
+            .charset("UTF-8")
+            .build();
+    }
+}
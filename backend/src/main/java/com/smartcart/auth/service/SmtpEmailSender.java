@@ -0,0 +1,106 @@
+package com.smartcart.auth.service;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Component;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends through Gmail SMTP. A whole batch goes over a single SMTP connection,
+ * so the TLS handshake and login are paid once per batch rather than per email.
+ */
+@Component
+public class SmtpEmailSender implements EmailSender {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SmtpEmailSender.class);
+    
+    private final JavaMailSender javaMailSender;
+    private final boolean enabled;
+    private final String fromEmail;
+    
+    public SmtpEmailSender(
+            ObjectProvider<JavaMailSender> javaMailSender,
+            @Value("${gmail.enabled:false}") boolean gmailEnabled,
+            @Value("${spring.mail.username:}") String mailUsername,
+            @Value("${sendgrid.enabled:false}") boolean sendgridEnabled,
+            @Value("${sendgrid.from-email:smartcart2025.app@gmail.com}") String sendgridFromEmail,
+            @Value("${aws.ses.from-email:noreply@smartcart.com}") String sesFromEmail) {
+        this.javaMailSender = javaMailSender.getIfAvailable();
+        this.enabled = gmailEnabled && this.javaMailSender != null;
+        if (gmailEnabled && this.javaMailSender == null) {
+            logger.error("Gmail is enabled but no JavaMailSender is configured; check spring.mail.* settings");
+        }
+        if (sendgridEnabled && !sendgridFromEmail.isEmpty()) {
+            this.fromEmail = sendgridFromEmail;
+        } else if (!mailUsername.isEmpty()) {
+            this.fromEmail = mailUsername;
+        } else {
+            this.fromEmail = sesFromEmail;
+        }
+    }
+    
+    @Override
+    public String name() {
+        return "smtp";
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    @Override
+    public List<OutboundEmail> send(List<OutboundEmail> emails) {
+        List<OutboundEmail> failed = new ArrayList<>();
+        Map<MimeMessage, OutboundEmail> messages = new IdentityHashMap<>();
+        for (OutboundEmail email : emails) {
+            try {
+                messages.put(message(email), email);
+            } catch (MessagingException | UnsupportedEncodingException e) {
+                logger.error("Could not build email to {}: {}", email.to(), e.getMessage());
+                failed.add(email);
+            }
+        }
+        if (messages.isEmpty()) {
+            return failed;
+        }
+        
+        try {
+            javaMailSender.send(messages.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            logger.error("Failed to send email via Gmail SMTP: {}", e.getMessage());
+            if (e.getFailedMessages().isEmpty()) {
+                failed.addAll(messages.values());
+            } else {
+                e.getFailedMessages().keySet().forEach(message -> failed.add(messages.get(message)));
+            }
+        } catch (MailException e) {
+            logger.error("Failed to send email via Gmail SMTP: {}", e.getMessage());
+            failed.addAll(messages.values());
+        }
+        return failed;
+    }
+    
+    private MimeMessage message(OutboundEmail email) throws MessagingException, UnsupportedEncodingException {
+        MimeMessage message = javaMailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setFrom(fromEmail, "SmartCart");
+        helper.setTo(email.to());
+        helper.setSubject(email.subject());
+        helper.setText(email.bodyText(), email.bodyHtml());
+        return message;
+    }
+}
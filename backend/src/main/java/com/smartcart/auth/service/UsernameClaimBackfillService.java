@@ -0,0 +1,93 @@
+package com.smartcart.auth.service;
+
+import com.smartcart.auth.model.User;
+import com.smartcart.auth.repository.UserRepository;
+import com.smartcart.common.job.JobCheckpointRepository;
+import com.smartcart.common.job.SegmentScanJob;
+import com.smartcart.common.util.CapacityBudget;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * One-off backfill that writes a Usernames claim for every user created before that
+ * table existed, as a SegmentScanJob over Users. Once every segment is done,
+ * UserRepository stops falling back to scanning Users for unknown usernames.
+ * Claims are conditional puts, so re-processing a user is harmless.
+ */
+@Service
+public class UsernameClaimBackfillService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(UsernameClaimBackfillService.class);
+    
+    private final UserRepository userRepository;
+    private final boolean enabled;
+    private final CapacityBudget writeBudget;
+    private final SegmentScanJob<User> job;
+    
+    public UsernameClaimBackfillService(
+            UserRepository userRepository,
+            JobCheckpointRepository checkpointRepository,
+            @Value("${auth.username-claim-backfill.enabled:true}") boolean enabled,
+            @Value("${auth.username-claim-backfill.segments:2}") int totalSegments,
+            @Value("${auth.username-claim-backfill.page-size:100}") int pageSize,
+            @Value("${auth.username-claim-backfill.read-capacity-per-second:10}") long readCapacityPerSecond,
+            @Value("${auth.username-claim-backfill.write-capacity-per-second:10}") long writeCapacityPerSecond,
+            @Value("${auth.username-claim-backfill.lease-minutes:5}") long leaseMinutes) {
+        this.userRepository = userRepository;
+        this.enabled = enabled;
+        this.writeBudget = new CapacityBudget(writeCapacityPerSecond);
+        this.job = new SegmentScanJob<>(UserRepository.CLAIM_BACKFILL_JOB_NAME, checkpointRepository,
+                userRepository::scanSegment, this::claim, userRepository::markClaimsBackfilled,
+                totalSegments, pageSize, readCapacityPerSecond, Duration.ofMinutes(leaseMinutes));
+    }
+    
+    /**
+     * Runs on startup, then again every retry interval to pick up segments
+     * left behind by an instance that stopped; a no-op once the job is complete
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${auth.username-claim-backfill.retry-interval-ms:600000}",
+            fixedDelayString = "${auth.username-claim-backfill.retry-interval-ms:600000}")
+    public void startIfEnabled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            start();
+        } catch (RuntimeException e) {
+            logger.warn("Could not start username claim backfill: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Start or resume the backfill in the background. Returns false if it has already finished.
+     */
+    public boolean start() {
+        if (job.start(false) == null) {
+            userRepository.markClaimsBackfilled();
+            return false;
+        }
+        return true;
+    }
+    
+    private boolean claim(User user) throws InterruptedException {
+        if (user.getUsername() == null) {
+            return false;
+        }
+        writeBudget.acquire();
+        return userRepository.claimUsername(user);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        job.shutdown();
+    }
+}
@@ -1,6 +1,8 @@
 package com.smartcart.common.config;
 
 import com.smartcart.auth.model.User;
+import com.smartcart.common.ratelimit.DynamoBucketProxyManager;
+import com.smartcart.pantry.repository.PantryRepository;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,6 +16,9 @@ import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Component
 public class DynamoTableInitializer {
     
@@ -42,12 +47,17 @@ public class DynamoTableInitializer {
         }
         
         initTable("Users", "userId");
+        initTable("Usernames", "username");
         initPantryItemsTable();
         initReceiptsTable();
         initShoppingListsTable();
         initMealFavoritesTable();
         initDealsTable();
         initOTPTable();
+        initReceiptJobsTable();
+        initReceiptHashesTable();
+        initJobCheckpointsTable();
+        initRateLimitBucketsTable();
     }
     
     private boolean shouldSkipInitialization() {
@@ -70,13 +80,15 @@ public class DynamoTableInitializer {
     private void initPantryItemsTable() {
         try {
             try {
-                dynamoDbClient.describeTable(DescribeTableRequest.builder()
+                DescribeTableResponse existing = dynamoDbClient.describeTable(DescribeTableRequest.builder()
                         .tableName("PantryItems")
                         .build());
                 logger.info("Table 'PantryItems' already exists");
+                addPantryExpiryIndexIfMissing(existing.table());
             } catch (ResourceNotFoundException e) {
                 logger.info("Creating table 'PantryItems'...");
                 
+                // expiry-index lets the expiry sweep query one day bucket across all users
                 CreateTableRequest createTableRequest = CreateTableRequest.builder()
                         .tableName("PantryItems")
                         .keySchema(
@@ -97,6 +109,19 @@ public class DynamoTableInitializer {
                                 AttributeDefinition.builder()
                                         .attributeName("sortKey")
                                         .attributeType(ScalarAttributeType.S)
+                                        .build(),
+                                AttributeDefinition.builder()
+                                        .attributeName("expiryEpochDay")
+                                        .attributeType(ScalarAttributeType.N)
+                                        .build()
+                        )
+                        .globalSecondaryIndexes(
+                                GlobalSecondaryIndex.builder()
+                                        .indexName("expiry-index")
+                                        .keySchema(pantryExpiryIndexKeySchema())
+                                        .projection(Projection.builder()
+                                                .projectionType(ProjectionType.ALL)
+                                                .build())
                                         .build()
                         )
                         .billingMode(BillingMode.PAY_PER_REQUEST)
@@ -114,6 +139,73 @@ public class DynamoTableInitializer {
         } catch (Exception e) {
             logger.error("Error initializing PantryItems table: {}", e.getMessage(), e);
         }
+        try {
+            // Consume request markers carry an expiry so DynamoDB deletes them after the dedupe window
+            dynamoDbClient.updateTimeToLive(UpdateTimeToLiveRequest.builder()
+                    .tableName("PantryItems")
+                    .timeToLiveSpecification(TimeToLiveSpecification.builder()
+                            .attributeName(PantryRepository.TTL_ATTRIBUTE)
+                            .enabled(true)
+                            .build())
+                    .build());
+        } catch (DynamoDbException e) {
+            // Already enabled, or not supported by the local emulator
+            logger.debug("Could not enable TTL on 'PantryItems': {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Tables created before an index existed get it added in place. DynamoDB backfills
+     * it in the background; the index can't be queried until that finishes.
+     */
+    private void addIndexIfMissing(TableDescription table, String indexName,
+                                   List<AttributeDefinition> attributeDefinitions, List<KeySchemaElement> keySchema) {
+        boolean hasIndex = table.hasGlobalSecondaryIndexes() && table.globalSecondaryIndexes().stream()
+                .anyMatch(index -> indexName.equals(index.indexName()));
+        if (hasIndex) {
+            return;
+        }
+        logger.info("Adding index '{}' to table '{}'...", indexName, table.tableName());
+        dynamoDbClient.updateTable(UpdateTableRequest.builder()
+                .tableName(table.tableName())
+                .attributeDefinitions(attributeDefinitions)
+                .globalSecondaryIndexUpdates(GlobalSecondaryIndexUpdate.builder()
+                        .create(CreateGlobalSecondaryIndexAction.builder()
+                                .indexName(indexName)
+                                .keySchema(keySchema)
+                                .projection(Projection.builder()
+                                        .projectionType(ProjectionType.ALL)
+                                        .build())
+                                .build())
+                        .build())
+                .build());
+    }
+    
+    // Only items with expiryEpochDay are indexed
+    private void addPantryExpiryIndexIfMissing(TableDescription table) {
+        addIndexIfMissing(table, "expiry-index",
+                List.of(
+                        AttributeDefinition.builder()
+                                .attributeName("userId")
+                                .attributeType(ScalarAttributeType.S)
+                                .build(),
+                        AttributeDefinition.builder()
+                                .attributeName("expiryEpochDay")
+                                .attributeType(ScalarAttributeType.N)
+                                .build()),
+                pantryExpiryIndexKeySchema());
+    }
+    
+    private static List<KeySchemaElement> pantryExpiryIndexKeySchema() {
+        return List.of(
+                KeySchemaElement.builder()
+                        .attributeName("expiryEpochDay")
+                        .keyType(KeyType.HASH)
+                        .build(),
+                KeySchemaElement.builder()
+                        .attributeName("userId")
+                        .keyType(KeyType.RANGE)
+                        .build());
     }
     
     private void initMealFavoritesTable() {
@@ -126,6 +218,8 @@ public class DynamoTableInitializer {
             } catch (ResourceNotFoundException e) {
                 logger.info("Creating table 'MealFavorites'...");
                 
+                // lastUsed-index lists a user's favorites most recently used first;
+                // a local index can only be defined here, at table creation
                 CreateTableRequest createTableRequest = CreateTableRequest.builder()
                         .tableName("MealFavorites")
                         .keySchema(
@@ -146,6 +240,28 @@ public class DynamoTableInitializer {
                                 AttributeDefinition.builder()
                                         .attributeName("favoriteId")
                                         .attributeType(ScalarAttributeType.S)
+                                        .build(),
+                                AttributeDefinition.builder()
+                                        .attributeName("lastUsed")
+                                        .attributeType(ScalarAttributeType.N)
+                                        .build()
+                        )
+                        .localSecondaryIndexes(
+                                LocalSecondaryIndex.builder()
+                                        .indexName("lastUsed-index")
+                                        .keySchema(
+                                                KeySchemaElement.builder()
+                                                        .attributeName("userId")
+                                                        .keyType(KeyType.HASH)
+                                                        .build(),
+                                                KeySchemaElement.builder()
+                                                        .attributeName("lastUsed")
+                                                        .keyType(KeyType.RANGE)
+                                                        .build()
+                                        )
+                                        .projection(Projection.builder()
+                                                .projectionType(ProjectionType.ALL)
+                                                .build())
                                         .build()
                         )
                         .billingMode(BillingMode.PAY_PER_REQUEST)
@@ -168,13 +284,21 @@ public class DynamoTableInitializer {
     private void initShoppingListsTable() {
         try {
             try {
-                dynamoDbClient.describeTable(DescribeTableRequest.builder()
+                DescribeTableResponse existing = dynamoDbClient.describeTable(DescribeTableRequest.builder()
                         .tableName("ShoppingLists")
                         .build());
                 logger.info("Table 'ShoppingLists' already exists");
+                addIndexIfMissing(existing.table(), "createdAt-index", createdAtIndexAttributes(),
+                        createdAtIndexKeySchema());
             } catch (ResourceNotFoundException e) {
                 logger.info("Creating table 'ShoppingLists'...");
                 
+                // createdAt-index lists a user's lists newest first
+                List<AttributeDefinition> attributeDefinitions = new ArrayList<>(createdAtIndexAttributes());
+                attributeDefinitions.add(AttributeDefinition.builder()
+                        .attributeName("listId")
+                        .attributeType(ScalarAttributeType.S)
+                        .build());
                 CreateTableRequest createTableRequest = CreateTableRequest.builder()
                         .tableName("ShoppingLists")
                         .keySchema(
@@ -187,14 +311,14 @@ public class DynamoTableInitializer {
                                         .keyType(KeyType.RANGE)
                                         .build()
                         )
-                        .attributeDefinitions(
-                                AttributeDefinition.builder()
-                                        .attributeName("userId")
-                                        .attributeType(ScalarAttributeType.S)
-                                        .build(),
-                                AttributeDefinition.builder()
-                                        .attributeName("listId")
-                                        .attributeType(ScalarAttributeType.S)
+                        .attributeDefinitions(attributeDefinitions)
+                        .globalSecondaryIndexes(
+                                GlobalSecondaryIndex.builder()
+                                        .indexName("createdAt-index")
+                                        .keySchema(createdAtIndexKeySchema())
+                                        .projection(Projection.builder()
+                                                .projectionType(ProjectionType.ALL)
+                                                .build())
                                         .build()
                         )
                         .billingMode(BillingMode.PAY_PER_REQUEST)
@@ -217,13 +341,21 @@ public class DynamoTableInitializer {
     private void initReceiptsTable() {
         try {
             try {
-                dynamoDbClient.describeTable(DescribeTableRequest.builder()
+                DescribeTableResponse existing = dynamoDbClient.describeTable(DescribeTableRequest.builder()
                         .tableName("Receipts")
                         .build());
                 logger.info("Table 'Receipts' already exists");
+                addIndexIfMissing(existing.table(), "createdAt-index", createdAtIndexAttributes(),
+                        createdAtIndexKeySchema());
             } catch (ResourceNotFoundException e) {
                 logger.info("Creating table 'Receipts'...");
                 
+                // createdAt-index lists a user's receipts newest first
+                List<AttributeDefinition> attributeDefinitions = new ArrayList<>(createdAtIndexAttributes());
+                attributeDefinitions.add(AttributeDefinition.builder()
+                        .attributeName("sortKey")
+                        .attributeType(ScalarAttributeType.S)
+                        .build());
                 CreateTableRequest createTableRequest = CreateTableRequest.builder()
                         .tableName("Receipts")
                         .keySchema(
@@ -232,18 +364,18 @@ public class DynamoTableInitializer {
                                         .keyType(KeyType.HASH)
                                         .build(),
                                 KeySchemaElement.builder()
-                                        .attributeName("receiptId")
+                                        .attributeName("sortKey")
                                         .keyType(KeyType.RANGE)
                                         .build()
                         )
-                        .attributeDefinitions(
-                                AttributeDefinition.builder()
-                                        .attributeName("userId")
-                                        .attributeType(ScalarAttributeType.S)
-                                        .build(),
-                                AttributeDefinition.builder()
-                                        .attributeName("receiptId")
-                                        .attributeType(ScalarAttributeType.S)
+                        .attributeDefinitions(attributeDefinitions)
+                        .globalSecondaryIndexes(
+                                GlobalSecondaryIndex.builder()
+                                        .indexName("createdAt-index")
+                                        .keySchema(createdAtIndexKeySchema())
+                                        .projection(Projection.builder()
+                                                .projectionType(ProjectionType.ALL)
+                                                .build())
                                         .build()
                         )
                         .billingMode(BillingMode.PAY_PER_REQUEST)
@@ -263,6 +395,31 @@ public class DynamoTableInitializer {
         }
     }
     
+    // (userId, createdAt) indexes list a user's receipts and shopping lists newest first
+    private static List<AttributeDefinition> createdAtIndexAttributes() {
+        return List.of(
+                AttributeDefinition.builder()
+                        .attributeName("userId")
+                        .attributeType(ScalarAttributeType.S)
+                        .build(),
+                AttributeDefinition.builder()
+                        .attributeName("createdAt")
+                        .attributeType(ScalarAttributeType.N)
+                        .build());
+    }
+    
+    private static List<KeySchemaElement> createdAtIndexKeySchema() {
+        return List.of(
+                KeySchemaElement.builder()
+                        .attributeName("userId")
+                        .keyType(KeyType.HASH)
+                        .build(),
+                KeySchemaElement.builder()
+                        .attributeName("createdAt")
+                        .keyType(KeyType.RANGE)
+                        .build());
+    }
+    
     private void initTable(String tableName, String partitionKey) {
         try {
             // Check if table exists
@@ -317,6 +474,23 @@ public class DynamoTableInitializer {
         }
     }
     
+    private void initRateLimitBucketsTable() {
+        initTable(DynamoBucketProxyManager.TABLE_NAME, DynamoBucketProxyManager.KEY_ATTRIBUTE);
+        try {
+            // Idle buckets carry an expiry so DynamoDB deletes them instead of keeping every client forever
+            dynamoDbClient.updateTimeToLive(UpdateTimeToLiveRequest.builder()
+                    .tableName(DynamoBucketProxyManager.TABLE_NAME)
+                    .timeToLiveSpecification(TimeToLiveSpecification.builder()
+                            .attributeName(DynamoBucketProxyManager.TTL_ATTRIBUTE)
+                            .enabled(true)
+                            .build())
+                    .build());
+        } catch (DynamoDbException e) {
+            // Already enabled, or not supported by the local emulator
+            logger.debug("Could not enable TTL on '{}': {}", DynamoBucketProxyManager.TABLE_NAME, e.getMessage());
+        }
+    }
+    
     private void initOTPTable() {
         try {
             try {
@@ -414,5 +588,170 @@ public class DynamoTableInitializer {
             logger.error("Error initializing Deals table: {}", e.getMessage(), e);
         }
     }
+    
+    private void initReceiptJobsTable() {
+        try {
+            try {
+                dynamoDbClient.describeTable(DescribeTableRequest.builder()
+                        .tableName("ReceiptJobs")
+                        .build());
+                logger.info("Table 'ReceiptJobs' already exists");
+            } catch (ResourceNotFoundException e) {
+                logger.info("Creating table 'ReceiptJobs'...");
+                
+                // status-availableAt-index lets workers query due jobs instead of scanning
+                CreateTableRequest createTableRequest = CreateTableRequest.builder()
+                        .tableName("ReceiptJobs")
+                        .keySchema(
+                                KeySchemaElement.builder()
+                                        .attributeName("jobId")
+                                        .keyType(KeyType.HASH)
+                                        .build()
+                        )
+                        .attributeDefinitions(
+                                AttributeDefinition.builder()
+                                        .attributeName("jobId")
+                                        .attributeType(ScalarAttributeType.S)
+                                        .build(),
+                                AttributeDefinition.builder()
+                                        .attributeName("status")
+                                        .attributeType(ScalarAttributeType.S)
+                                        .build(),
+                                AttributeDefinition.builder()
+                                        .attributeName("availableAt")
+                                        .attributeType(ScalarAttributeType.N)
+                                        .build()
+                        )
+                        .globalSecondaryIndexes(
+                                GlobalSecondaryIndex.builder()
+                                        .indexName("status-availableAt-index")
+                                        .keySchema(
+                                                KeySchemaElement.builder()
+                                                        .attributeName("status")
+                                                        .keyType(KeyType.HASH)
+                                                        .build(),
+                                                KeySchemaElement.builder()
+                                                        .attributeName("availableAt")
+                                                        .keyType(KeyType.RANGE)
+                                                        .build()
+                                        )
+                                        .projection(Projection.builder()
+                                                .projectionType(ProjectionType.ALL)
+                                                .build())
+                                        .build()
+                        )
+                        .billingMode(BillingMode.PAY_PER_REQUEST)
+                        .build();
+                
+                dynamoDbClient.createTable(createTableRequest);
+                logger.info("Table 'ReceiptJobs' created successfully");
+                
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error initializing ReceiptJobs table: {}", e.getMessage(), e);
+        }
+    }
+    
+    private void initReceiptHashesTable() {
+        try {
+            try {
+                dynamoDbClient.describeTable(DescribeTableRequest.builder()
+                        .tableName("ReceiptHashes")
+                        .build());
+                logger.info("Table 'ReceiptHashes' already exists");
+            } catch (ResourceNotFoundException e) {
+                logger.info("Creating table 'ReceiptHashes'...");
+                
+                CreateTableRequest createTableRequest = CreateTableRequest.builder()
+                        .tableName("ReceiptHashes")
+                        .keySchema(
+                                KeySchemaElement.builder()
+                                        .attributeName("userId")
+                                        .keyType(KeyType.HASH)
+                                        .build(),
+                                KeySchemaElement.builder()
+                                        .attributeName("contentHash")
+                                        .keyType(KeyType.RANGE)
+                                        .build()
+                        )
+                        .attributeDefinitions(
+                                AttributeDefinition.builder()
+                                        .attributeName("userId")
+                                        .attributeType(ScalarAttributeType.S)
+                                        .build(),
+                                AttributeDefinition.builder()
+                                        .attributeName("contentHash")
+                                        .attributeType(ScalarAttributeType.S)
+                                        .build()
+                        )
+                        .billingMode(BillingMode.PAY_PER_REQUEST)
+                        .build();
+                
+                dynamoDbClient.createTable(createTableRequest);
+                logger.info("Table 'ReceiptHashes' created successfully");
+                
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error initializing ReceiptHashes table: {}", e.getMessage(), e);
+        }
+    }
+    
+    private void initJobCheckpointsTable() {
+        try {
+            try {
+                dynamoDbClient.describeTable(DescribeTableRequest.builder()
+                        .tableName("JobCheckpoints")
+                        .build());
+                logger.info("Table 'JobCheckpoints' already exists");
+            } catch (ResourceNotFoundException e) {
+                logger.info("Creating table 'JobCheckpoints'...");
+                
+                CreateTableRequest createTableRequest = CreateTableRequest.builder()
+                        .tableName("JobCheckpoints")
+                        .keySchema(
+                                KeySchemaElement.builder()
+                                        .attributeName("jobName")
+                                        .keyType(KeyType.HASH)
+                                        .build(),
+                                KeySchemaElement.builder()
+                                        .attributeName("segment")
+                                        .keyType(KeyType.RANGE)
+                                        .build()
+                        )
+                        .attributeDefinitions(
+                                AttributeDefinition.builder()
+                                        .attributeName("jobName")
+                                        .attributeType(ScalarAttributeType.S)
+                                        .build(),
+                                AttributeDefinition.builder()
+                                        .attributeName("segment")
+                                        .attributeType(ScalarAttributeType.N)
+                                        .build()
+                        )
+                        .billingMode(BillingMode.PAY_PER_REQUEST)
+                        .build();
+                
+                dynamoDbClient.createTable(createTableRequest);
+                logger.info("Table 'JobCheckpoints' created successfully");
+                
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error initializing JobCheckpoints table: {}", e.getMessage(), e);
+        }
+    }
 }
-
@@ -23,6 +23,16 @@ public class MailConfig {
     @Value("${spring.mail.password:}")
     private String password;
     
+    // Outbox workers wait on these, so a stalled SMTP server only delays queued email
+    @Value("${spring.mail.properties.mail.smtp.connectiontimeout:5000}")
+    private int connectionTimeoutMs;
+    
+    @Value("${spring.mail.properties.mail.smtp.timeout:5000}")
+    private int readTimeoutMs;
+    
+    @Value("${spring.mail.properties.mail.smtp.writetimeout:5000}")
+    private int writeTimeoutMs;
+    
     @Bean
     public JavaMailSender javaMailSender() {
         JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
@@ -36,9 +46,9 @@ public class MailConfig {
         props.put("mail.smtp.auth", "true");
         props.put("mail.smtp.starttls.enable", "true");
         props.put("mail.smtp.starttls.required", "true");
-        props.put("mail.smtp.connectiontimeout", "5000");
-        props.put("mail.smtp.timeout", "5000");
-        props.put("mail.smtp.writetimeout", "5000");
+        props.put("mail.smtp.connectiontimeout", String.valueOf(connectionTimeoutMs));
+        props.put("mail.smtp.timeout", String.valueOf(readTimeoutMs));
+        props.put("mail.smtp.writetimeout", String.valueOf(writeTimeoutMs));
         props.put("mail.debug", "false");
         
         return mailSender;
@@ -3,9 +3,16 @@ package com.smartcart.common.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.textract.TextractClient;
+import software.amazon.awssdk.services.textract.TextractAsyncClient;
+
+import java.net.URI;
+import java.time.Duration;
 
 @Configuration
 public class TextractConfig {
@@ -13,16 +20,41 @@ public class TextractConfig {
     @Value("${aws.region:us-east-1}")
     private String awsRegion;
     
-    @Bean
-    public TextractClient textractClient() {
-        // Textract only works with real AWS, not local
-        // For local dev, use dummy credentials (TextractService will handle errors gracefully)
-        return TextractClient.builder()
+    @Value("${aws.textract.endpoint:}")
+    private String textractEndpoint;
+    
+    @Value("${aws.textract.max-concurrency:8}")
+    private int maxConcurrency;
+    
+    @Value("${aws.textract.call-timeout-ms:15000}")
+    private long callTimeoutMs;
+    
+    @Value("${aws.textract.attempt-timeout-ms:10000}")
+    private long attemptTimeoutMs;
+    
+    @Bean(destroyMethod = "close")
+    public TextractAsyncClient textractAsyncClient() {
+        // Timeouts are enforced by the SDK itself, which aborts the HTTP request
+        // instead of leaving it running after the caller gives up
+        var builder = TextractAsyncClient.builder()
                 .region(Region.of(awsRegion))
-                .credentialsProvider(software.amazon.awssdk.auth.credentials.StaticCredentialsProvider.create(
-                        software.amazon.awssdk.auth.credentials.AwsBasicCredentials.create("dummy", "dummy")))
-                .httpClient(software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient.builder().build())
-                .build();
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(maxConcurrency)
+                        .connectionAcquisitionTimeout(Duration.ofSeconds(5)))
+                .overrideConfiguration(ClientOverrideConfiguration.builder()
+                        .apiCallTimeout(Duration.ofMillis(callTimeoutMs))
+                        .apiCallAttemptTimeout(Duration.ofMillis(attemptTimeoutMs))
+                        .build());
+        
+        // If endpoint is provided (local fake Textract / LocalStack), use static credentials
+        if (textractEndpoint != null && !textractEndpoint.isEmpty()) {
+            builder.endpointOverride(URI.create(textractEndpoint))
+                   .credentialsProvider(StaticCredentialsProvider.create(
+                           AwsBasicCredentials.create("local", "local")));
+        } else {
+            builder.credentialsProvider(DefaultCredentialsProvider.create());
+        }
+        
+        return builder.build();
     }
 }
-
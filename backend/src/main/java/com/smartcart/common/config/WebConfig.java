@@ -3,6 +3,7 @@ package com.smartcart.common.config;
 import com.smartcart.common.filter.ErrorHandlingFilter;
 import com.smartcart.common.filter.RequestLoggingFilter;
 import com.smartcart.common.filter.UserIdExtractorFilter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -16,8 +17,10 @@ public class WebConfig {
     }
     
     @Bean
-    public RequestLoggingFilter requestLoggingFilter() {
-        return new RequestLoggingFilter();
+    public RequestLoggingFilter requestLoggingFilter(
+            @Value("${request-logging.body-sample-rate:0}") double bodySampleRate,
+            @Value("${request-logging.body-max-bytes:2048}") int bodyMaxBytes) {
+        return new RequestLoggingFilter(bodySampleRate, bodyMaxBytes);
     }
     
     @Bean
@@ -166,8 +166,10 @@ public class GlobalExceptionHandler {
         return switch (errorCode) {
             case "AUTH_ERROR", "USER_EXISTS" -> HttpStatus.UNAUTHORIZED;
             case "NOT_FOUND" -> HttpStatus.NOT_FOUND;
+            case "CONFLICT" -> HttpStatus.CONFLICT;
             case "VALIDATION_ERROR" -> HttpStatus.BAD_REQUEST;
             case "INTERNAL_ERROR" -> HttpStatus.INTERNAL_SERVER_ERROR;
+            case "SERVICE_UNAVAILABLE" -> HttpStatus.SERVICE_UNAVAILABLE;
             default -> HttpStatus.BAD_REQUEST;
         };
     }
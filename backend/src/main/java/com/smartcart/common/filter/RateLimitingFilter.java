@@ -1,32 +1,38 @@
 package com.smartcart.common.filter;
 
+import com.smartcart.common.util.BoundedCache;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
 import io.github.bucket4j.BucketConfiguration;
 import io.github.bucket4j.distributed.proxy.ProxyManager;
-import io.github.bucket4j.local.LocalBucketBuilder;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ServletRequestPathUtils;
 
 import java.io.IOException;
 import java.time.Duration;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Supplier;
 
 /**
  * Rate limiting filter using Bucket4j
  * Per-endpoint limits:
  * - Auth endpoints: 5 requests/minute
  * - Other endpoints: 100 requests/minute
+ * Buckets are keyed by client IP and the matched route pattern (/api/pantry/{id},
+ * not each id), and their state lives in the configured ProxyManager: per instance
+ * by default, or shared across instances with rate-limit.store=dynamo.
  */
 @Component
 @Order(1) // Run before other filters
@@ -34,20 +40,52 @@ public class RateLimitingFilter extends OncePerRequestFilter {
     
     private static final Logger logger = LoggerFactory.getLogger(RateLimitingFilter.class);
     
-    // In-memory buckets per user/IP (for MVP)
-    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private static final BucketConfiguration AUTH_LIMIT = BucketConfiguration.builder()
+            .addLimit(Bandwidth.simple(5, Duration.ofMinutes(1)))
+            .build();
+    private static final BucketConfiguration DEFAULT_LIMIT = BucketConfiguration.builder()
+            .addLimit(Bandwidth.simple(100, Duration.ofMinutes(1)))
+            .build();
+    
+    private final ProxyManager<String> proxyManager;
+    private final ObjectProvider<HandlerMapping> handlerMappingProvider;
+    // Bucket proxies only hold a key and configuration; the counts live in the proxy manager,
+    // so a proxy is dropped only after the client has been idle for the expiry
+    private final BoundedCache<String, Bucket> buckets;
+    private volatile HandlerMapping handlerMapping;
+    
+    @Autowired
+    public RateLimitingFilter(
+            ProxyManager<String> proxyManager,
+            @Qualifier("requestMappingHandlerMapping") ObjectProvider<HandlerMapping> handlerMappingProvider,
+            @Value("${rate-limit.max-buckets:10000}") int maxBuckets,
+            @Value("${rate-limit.idle-expiry-minutes:10}") long idleExpiryMinutes) {
+        this.proxyManager = proxyManager;
+        this.handlerMappingProvider = handlerMappingProvider;
+        this.buckets = BoundedCache.expiringAfterAccess(maxBuckets, Duration.ofMinutes(idleExpiryMinutes));
+    }
     
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         
+        String route = resolveRoute(request);
         String key = getKey(request);
-        Bucket bucket = getBucket(key, request.getRequestURI());
+        Bucket bucket = getBucket(key + ":" + route, route);
         
-        if (bucket.tryConsume(1)) {
+        boolean allowed;
+        try {
+            allowed = bucket.tryConsume(1);
+        } catch (RuntimeException e) {
+            // A rate limiter outage should not take the API down with it
+            logger.warn("Rate limit store unavailable, allowing request to {}: {}", route, e.getMessage());
+            allowed = true;
+        }
+        
+        if (allowed) {
             filterChain.doFilter(request, response);
         } else {
-            logger.warn("Rate limit exceeded for {} on {}", key, request.getRequestURI());
+            logger.warn("Rate limit exceeded for {} on {}", key, route);
             response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
             response.setContentType("application/json");
             response.getWriter().write("{\"error\":\"Too many requests. Please try again later.\"}");
@@ -64,27 +102,50 @@ public class RateLimitingFilter extends OncePerRequestFilter {
         return ipAddress;
     }
     
-    private Bucket getBucket(String key, String path) {
-        return buckets.computeIfAbsent(key + ":" + path, k -> {
-            // Auth endpoints: stricter limits
-            if (path.startsWith("/api/auth/")) {
-                return Bucket.builder()
-                        .addLimit(Bandwidth.simple(5, Duration.ofMinutes(1)))
-                        .build();
+    private Bucket getBucket(String key, String route) {
+        return buckets.getOrLoad(key, k -> proxyManager.builder()
+                // Auth endpoints: stricter limits; other endpoints: more lenient
+                .build(k, () -> route.startsWith("/api/auth/") ? AUTH_LIMIT : DEFAULT_LIMIT));
+    }
+    
+    /**
+     * The controller mapping pattern for the request. Paths that match no controller
+     * share one bucket per client, so scanning random URLs cannot create new buckets.
+     */
+    private String resolveRoute(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        HandlerMapping mapping = handlerMapping();
+        if (mapping == null) {
+            return path;
+        }
+        
+        boolean parsedHere = !ServletRequestPathUtils.hasParsedRequestPath(request);
+        try {
+            if (parsedHere) {
+                ServletRequestPathUtils.parseAndCache(request);
             }
-            // Other endpoints: more lenient
-            return Bucket.builder()
-                    .addLimit(Bandwidth.simple(100, Duration.ofMinutes(1)))
-                    .build();
-        });
+            if (mapping.getHandler(request) != null) {
+                Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                if (pattern != null) {
+                    return pattern.toString();
+                }
+            }
+        } catch (Exception e) {
+            // e.g. method not supported; the dispatcher reports that itself
+            logger.debug("No route match for {}: {}", path, e.getMessage());
+        } finally {
+            if (parsedHere) {
+                ServletRequestPathUtils.clearParsedRequestPath(request);
+            }
+        }
+        return path.startsWith("/api/auth/") ? "/api/auth/**" : "/**";
+    }
+    
+    private HandlerMapping handlerMapping() {
+        // Resolved on first request: the MVC mappings are not ready when filters are created
+        if (handlerMapping == null && handlerMappingProvider != null) {
+            handlerMapping = handlerMappingProvider.getIfAvailable();
+        }
+        return handlerMapping;
     }
 }
-
-
-
-
-
-
-
-
-
@@ -2,27 +2,60 @@ package com.smartcart.common.filter;
 
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.web.util.ContentCachingRequestWrapper;
-import org.springframework.web.util.ContentCachingResponseWrapper;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 /**
- * Logs all API requests with request ID, user ID, endpoint, method, status, and duration
+ * Logs all API requests with request ID, user ID, endpoint, method, status, and duration.
+ * Only metadata is logged by default, so requests and responses pass through untouched.
+ * Bodies are captured, truncated to max-bytes, for a sampled fraction of requests or for
+ * every request while this logger is at DEBUG. Auth routes are never captured (passwords,
+ * JWTs, OTP and reset codes), and credential-like JSON fields are masked everywhere else.
  */
 @Component
 public class RequestLoggingFilter extends OncePerRequestFilter {
     
     private static final Logger logger = LoggerFactory.getLogger(RequestLoggingFilter.class);
     
+    private static final List<String> CREDENTIAL_PATH_PREFIXES = List.of("/api/auth/");
+    // The value may be cut off by truncation, so the closing quote is optional
+    private static final Pattern SENSITIVE_FIELD = Pattern.compile(
+            "(\"(?i:password|newPassword|currentPassword|token|accessToken|refreshToken|idToken|"
+                    + "code|otp|resetCode|verificationCode|secret|apiKey|authorization)\"\\s*:\\s*)"
+                    + "\"(?:[^\"\\\\]|\\\\.)*\"?");
+    
+    private final double bodySampleRate;
+    private final int bodyMaxBytes;
+    
+    public RequestLoggingFilter(
+            @Value("${request-logging.body-sample-rate:0}") double bodySampleRate,
+            @Value("${request-logging.body-max-bytes:2048}") int bodyMaxBytes) {
+        this.bodySampleRate = bodySampleRate;
+        this.bodyMaxBytes = bodyMaxBytes;
+    }
+    
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
@@ -43,17 +76,19 @@ public class RequestLoggingFilter extends OncePerRequestFilter {
             MDC.put("userId", userId.substring(0, Math.min(8, userId.length())));
         }
         
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
         
-        // Wrap request/response to cache content for logging
-        ContentCachingRequestWrapper wrappedRequest = new ContentCachingRequestWrapper(request);
-        ContentCachingResponseWrapper wrappedResponse = new ContentCachingResponseWrapper(response);
+        // Streaming endpoints are never captured: that would hold the upload, event stream or bulk transfer in memory.
+        boolean captureBodies = !isStreaming(request) && !carriesCredentials(request) && shouldCaptureBodies();
+        ContentCachingRequestWrapper capturedRequest = captureBodies ? new ContentCachingRequestWrapper(request, bodyMaxBytes) : null;
+        BodyCapturingResponse capturedResponse = captureBodies ? new BodyCapturingResponse(response, bodyMaxBytes) : null;
         
         try {
-            filterChain.doFilter(wrappedRequest, wrappedResponse);
+            filterChain.doFilter(capturedRequest != null ? capturedRequest : request,
+                    capturedResponse != null ? capturedResponse : response);
         } finally {
-            long duration = System.currentTimeMillis() - startTime;
-            int status = wrappedResponse.getStatus();
+            long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            int status = response.getStatus();
             
             // Log request details
             logger.info("API Request: {} {} | Status: {} | Duration: {}ms | User: {}",
@@ -76,14 +111,47 @@ public class RequestLoggingFilter extends OncePerRequestFilter {
                         request.getMethod(), request.getRequestURI(), status, duration);
             }
             
-            // Copy response body back
-            wrappedResponse.copyBodyToResponse();
+            if (captureBodies) {
+                logger.info("Captured bodies: {} {} | Request: {} | Response: {}",
+                        request.getMethod(), request.getRequestURI(),
+                        body(capturedRequest.getContentAsByteArray(), request.getCharacterEncoding()),
+                        body(capturedResponse.getCaptured(), response.getCharacterEncoding()));
+            }
             
             // Clear MDC
             MDC.clear();
         }
     }
     
+    private boolean shouldCaptureBodies() {
+        return logger.isDebugEnabled()
+                || (bodySampleRate > 0 && ThreadLocalRandom.current().nextDouble() < bodySampleRate);
+    }
+    
+    private String body(byte[] content, String encoding) {
+        if (content.length == 0) {
+            return "(empty)";
+        }
+        Charset charset = encoding != null && Charset.isSupported(encoding) ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+        String text = redact(new String(content, 0, Math.min(content.length, bodyMaxBytes), charset));
+        return content.length >= bodyMaxBytes ? text + "...(truncated)" : text;
+    }
+    
+    static String redact(String body) {
+        return SENSITIVE_FIELD.matcher(body).replaceAll("$1\"***\"");
+    }
+    
+    private boolean carriesCredentials(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        return CREDENTIAL_PATH_PREFIXES.stream().anyMatch(uri::startsWith);
+    }
+    
+    private boolean isStreaming(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        return uri.endsWith("/stream-upload") || uri.endsWith("/events")
+                || uri.endsWith("/import") || uri.endsWith("/export");
+    }
+    
     private String extractUserId(HttpServletRequest request) {
         // Try to get userId from header (set by UserIdExtractorFilter)
         String userId = (String) request.getAttribute("userId");
@@ -99,5 +167,86 @@ public class RequestLoggingFilter extends OncePerRequestFilter {
         
         return null;
     }
+    
+    /**
+     * Writes straight through to the real response and keeps a copy of only the first
+     * maxBytes, unlike ContentCachingResponseWrapper which buffers the whole body.
+     */
+    private static final class BodyCapturingResponse extends HttpServletResponseWrapper {
+        
+        private final ByteArrayOutputStream captured;
+        private final int maxBytes;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+        
+        BodyCapturingResponse(HttpServletResponse response, int maxBytes) {
+            super(response);
+            this.maxBytes = maxBytes;
+            this.captured = new ByteArrayOutputStream(Math.min(maxBytes, 1024));
+        }
+        
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                ServletOutputStream delegate = super.getOutputStream();
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        delegate.write(b);
+                        if (captured.size() < maxBytes) {
+                            captured.write(b);
+                        }
+                    }
+                    
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        delegate.write(b, off, len);
+                        int room = maxBytes - captured.size();
+                        if (room > 0) {
+                            captured.write(b, off, Math.min(len, room));
+                        }
+                    }
+                    
+                    @Override
+                    public void flush() throws IOException {
+                        delegate.flush();
+                    }
+                    
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+                    
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        delegate.setWriteListener(listener);
+                    }
+                };
+            }
+            return outputStream;
+        }
+        
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+        
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            super.flushBuffer();
+        }
+        
+        byte[] getCaptured() {
+            if (writer != null) {
+                writer.flush();
+            }
+            return captured.toByteArray();
+        }
+    }
 }
-
@@ -0,0 +1,151 @@
+package com.smartcart.common.job;
+
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
+
+import java.util.Map;
+
+/**
+ * One row of a background job in JobCheckpoints: either the run record
+ * (segment SegmentScanJob.RUN_SEGMENT) or the progress of one scan segment,
+ * so an interrupted run can resume from the last completed page.
+ * Writes are conditional on version, and a segment is worked on only by
+ * the instance that holds its lease.
+ */
+@DynamoDbBean
+public class JobCheckpoint {
+    private String jobName; // PK
+    private int segment; // SK
+    private String runId;
+    private int totalSegments;
+    private Map<String, String> lastKey; // exclusive start key of the next page
+    private boolean done;
+    private long scanned;
+    private long updated;
+    private String owner;
+    private long leaseUntil;
+    private long version;
+    private long updatedAt;
+    
+    public JobCheckpoint() {}
+    
+    public JobCheckpoint(String jobName, int segment, String runId, int totalSegments) {
+        this.jobName = jobName;
+        this.segment = segment;
+        this.runId = runId;
+        this.totalSegments = totalSegments;
+        this.updatedAt = System.currentTimeMillis();
+    }
+    
+    @DynamoDbPartitionKey
+    @DynamoDbAttribute("jobName")
+    public String getJobName() {
+        return jobName;
+    }
+    
+    public void setJobName(String jobName) {
+        this.jobName = jobName;
+    }
+    
+    @DynamoDbSortKey
+    @DynamoDbAttribute("segment")
+    public int getSegment() {
+        return segment;
+    }
+    
+    public void setSegment(int segment) {
+        this.segment = segment;
+    }
+    
+    @DynamoDbAttribute("runId")
+    public String getRunId() {
+        return runId;
+    }
+    
+    public void setRunId(String runId) {
+        this.runId = runId;
+    }
+    
+    @DynamoDbAttribute("totalSegments")
+    public int getTotalSegments() {
+        return totalSegments;
+    }
+    
+    public void setTotalSegments(int totalSegments) {
+        this.totalSegments = totalSegments;
+    }
+    
+    @DynamoDbAttribute("lastKey")
+    public Map<String, String> getLastKey() {
+        return lastKey;
+    }
+    
+    public void setLastKey(Map<String, String> lastKey) {
+        this.lastKey = lastKey;
+    }
+    
+    @DynamoDbAttribute("done")
+    public boolean isDone() {
+        return done;
+    }
+    
+    public void setDone(boolean done) {
+        this.done = done;
+    }
+    
+    @DynamoDbAttribute("scanned")
+    public long getScanned() {
+        return scanned;
+    }
+    
+    public void setScanned(long scanned) {
+        this.scanned = scanned;
+    }
+    
+    @DynamoDbAttribute("updated")
+    public long getUpdated() {
+        return updated;
+    }
+    
+    public void setUpdated(long updated) {
+        this.updated = updated;
+    }
+    
+    @DynamoDbAttribute("owner")
+    public String getOwner() {
+        return owner;
+    }
+    
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+    
+    @DynamoDbAttribute("leaseUntil")
+    public long getLeaseUntil() {
+        return leaseUntil;
+    }
+    
+    public void setLeaseUntil(long leaseUntil) {
+        this.leaseUntil = leaseUntil;
+    }
+    
+    @DynamoDbAttribute("version")
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
+    @DynamoDbAttribute("updatedAt")
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
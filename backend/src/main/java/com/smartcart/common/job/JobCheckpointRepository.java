@@ -0,0 +1,73 @@
+package com.smartcart.common.job;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Expression;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Repository
+public class JobCheckpointRepository {
+    
+    private final DynamoDbTable<JobCheckpoint> checkpointTable;
+    private static final String TABLE_NAME = "JobCheckpoints";
+    
+    @Autowired
+    public JobCheckpointRepository(DynamoDbEnhancedClient enhancedClient) {
+        this.checkpointTable = enhancedClient.table(TABLE_NAME, TableSchema.fromBean(JobCheckpoint.class));
+    }
+    
+    public List<JobCheckpoint> findByJobName(String jobName) {
+        return checkpointTable.query(r -> r
+                        .queryConditional(QueryConditional.keyEqualTo(Key.builder().partitionValue(jobName).build()))
+                        .consistentRead(true))
+                .items()
+                .stream()
+                .collect(Collectors.toList());
+    }
+    
+    public JobCheckpoint findById(String jobName, int segment) {
+        return checkpointTable.getItem(r -> r
+                .key(Key.builder().partitionValue(jobName).sortValue(segment).build())
+                .consistentRead(true));
+    }
+    
+    /**
+     * Write the checkpoint only if the stored copy is still at the version it was read
+     * at (version 0: no copy stored yet), then bump its version. Of several instances
+     * writing the same checkpoint from the same read, exactly one succeeds.
+     */
+    public boolean tryPut(JobCheckpoint checkpoint) {
+        long expected = checkpoint.getVersion();
+        Expression condition = expected == 0
+                ? Expression.builder()
+                        .expression("attribute_not_exists(#version)")
+                        .expressionNames(Map.of("#version", "version"))
+                        .build()
+                : Expression.builder()
+                        .expression("#version = :expected")
+                        .expressionNames(Map.of("#version", "version"))
+                        .expressionValues(Map.of(":expected", AttributeValue.fromN(String.valueOf(expected))))
+                        .build();
+        checkpoint.setVersion(expected + 1);
+        try {
+            checkpointTable.putItem(r -> r.item(checkpoint).conditionExpression(condition));
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            checkpoint.setVersion(expected);
+            return false;
+        } catch (RuntimeException e) {
+            checkpoint.setVersion(expected);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.smartcart.common.job;
+
+import com.smartcart.common.util.CapacityBudget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.pagination.sync.SdkIterable;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Runs a parallel segment scan of a DynamoDB table as a resumable background job,
+ * one worker per segment, within a read capacity budget.
+ * <p>
+ * The job's run record and per-segment progress live in JobCheckpoints. Every instance
+ * may start the job: the run record is created once, and each segment is worked on only
+ * by the instance that claimed its lease with a conditional write. The holder renews the
+ * lease with every page checkpoint; a segment whose lease lapsed (its instance died) is
+ * picked up, from its last checkpoint, by the next instance to start the job.
+ * The last segment to finish marks the run done.
+ */
+public class SegmentScanJob<T> {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SegmentScanJob.class);
+    /** Sort key of the run record, next to segments 0..totalSegments-1 */
+    public static final int RUN_SEGMENT = -1;
+    
+    @FunctionalInterface
+    public interface SegmentScanner<T> {
+        SdkIterable<Page<T>> scan(int segment, int totalSegments,
+                                  Map<String, AttributeValue> exclusiveStartKey, int pageSize);
+    }
+    
+    @FunctionalInterface
+    public interface ItemProcessor<T> {
+        /**
+         * @return whether the item was updated
+         */
+        boolean process(T item) throws InterruptedException;
+    }
+    
+    private final String jobName;
+    private final JobCheckpointRepository checkpointRepository;
+    private final SegmentScanner<T> scanner;
+    private final ItemProcessor<T> processor;
+    private final Runnable onComplete;
+    private final int totalSegments;
+    private final int pageSize;
+    private final long leaseMillis;
+    private final CapacityBudget readBudget;
+    private final ExecutorService segmentExecutor;
+    private final String instanceId = UUID.randomUUID().toString();
+    
+    private volatile String currentRunId;
+    private volatile boolean stopRequested;
+    
+    public SegmentScanJob(String jobName, JobCheckpointRepository checkpointRepository,
+                          SegmentScanner<T> scanner, ItemProcessor<T> processor, Runnable onComplete,
+                          int totalSegments, int pageSize, long readCapacityPerSecond, Duration lease) {
+        this.jobName = jobName;
+        this.checkpointRepository = checkpointRepository;
+        this.scanner = scanner;
+        this.processor = processor;
+        this.onComplete = onComplete;
+        this.totalSegments = totalSegments;
+        this.pageSize = pageSize;
+        this.leaseMillis = lease.toMillis();
+        this.readBudget = new CapacityBudget(readCapacityPerSecond);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.segmentExecutor = Executors.newFixedThreadPool(totalSegments, runnable -> {
+            Thread thread = new Thread(runnable, jobName + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Work on the job's unfinished, unclaimed segments in the background and return the run id.
+     * With newRun=false this joins the current run, or returns null if it has finished;
+     * with newRun=true a new run replaces it. If this instance is already working on the job,
+     * nothing new is started and the current run id is returned.
+     */
+    public synchronized String start(boolean newRun) {
+        if (currentRunId != null) {
+            logger.info("Job {} already running on this instance: runId={}", jobName, currentRunId);
+            return currentRunId;
+        }
+        JobCheckpoint run = currentRun(newRun);
+        if (run == null) {
+            return null;
+        }
+        
+        String runId = run.getRunId();
+        currentRunId = runId;
+        stopRequested = false;
+        logger.info("Starting job {}: runId={}, segments={}", jobName, runId, run.getTotalSegments());
+        
+        CompletableFuture<?>[] segments = IntStream.range(0, run.getTotalSegments())
+                .mapToObj(segment -> CompletableFuture.runAsync(() -> runSegment(run, segment), segmentExecutor))
+                .toArray(CompletableFuture[]::new);
+        
+        CompletableFuture.allOf(segments).whenComplete((ignored, error) -> {
+            if (error != null) {
+                logger.error("Job {} stopped with errors; it resumes on next start: runId={}", jobName, runId, error);
+            } else {
+                finishRun(run);
+            }
+            synchronized (this) {
+                currentRunId = null;
+            }
+        });
+        return runId;
+    }
+    
+    /**
+     * Ask this instance's segments to stop after their current page; progress is kept
+     * and their leases are released
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+    
+    public String getCurrentRunId() {
+        return currentRunId;
+    }
+    
+    /**
+     * Whether the job's current run has finished every segment
+     */
+    public boolean isComplete() {
+        JobCheckpoint run = checkpointRepository.findById(jobName, RUN_SEGMENT);
+        return run != null && run.isDone();
+    }
+    
+    /**
+     * Progress of the current run, one checkpoint per segment that has started
+     */
+    public List<JobCheckpoint> getCheckpoints() {
+        List<JobCheckpoint> checkpoints = checkpointRepository.findByJobName(jobName);
+        String runId = checkpoints.stream()
+                .filter(checkpoint -> checkpoint.getSegment() == RUN_SEGMENT)
+                .map(JobCheckpoint::getRunId)
+                .findFirst()
+                .orElse(null);
+        return checkpoints.stream()
+                .filter(checkpoint -> checkpoint.getSegment() != RUN_SEGMENT)
+                .filter(checkpoint -> checkpoint.getRunId() != null && checkpoint.getRunId().equals(runId))
+                .toList();
+    }
+    
+    private JobCheckpoint currentRun(boolean newRun) {
+        for (int attempt = 0; attempt < 3; attempt++) {
+            JobCheckpoint run = checkpointRepository.findById(jobName, RUN_SEGMENT);
+            if (run != null && !newRun) {
+                return run.isDone() ? null : run;
+            }
+            JobCheckpoint next = new JobCheckpoint(jobName, RUN_SEGMENT, UUID.randomUUID().toString(), totalSegments);
+            next.setVersion(run != null ? run.getVersion() : 0);
+            if (checkpointRepository.tryPut(next)) {
+                return next;
+            }
+            // Another instance created or replaced the run first; join that one
+            newRun = false;
+        }
+        throw new IllegalStateException("Could not read or create the run record of job " + jobName);
+    }
+    
+    /**
+     * Take the segment's lease, or return null if it is done or another instance holds it.
+     * A checkpoint left by an earlier run is replaced with fresh progress.
+     */
+    private JobCheckpoint claimSegment(JobCheckpoint run, int segment) {
+        JobCheckpoint current = checkpointRepository.findById(jobName, segment);
+        long now = System.currentTimeMillis();
+        JobCheckpoint checkpoint;
+        if (current == null || !run.getRunId().equals(current.getRunId())) {
+            checkpoint = new JobCheckpoint(jobName, segment, run.getRunId(), run.getTotalSegments());
+            checkpoint.setVersion(current != null ? current.getVersion() : 0);
+        } else if (current.isDone() || (current.getLeaseUntil() > now && !instanceId.equals(current.getOwner()))) {
+            return null;
+        } else {
+            checkpoint = current;
+        }
+        checkpoint.setOwner(instanceId);
+        checkpoint.setLeaseUntil(now + leaseMillis);
+        checkpoint.setUpdatedAt(now);
+        if (!checkpointRepository.tryPut(checkpoint)) {
+            return null;
+        }
+        if (current != null && current.getOwner() != null && !instanceId.equals(current.getOwner())
+                && run.getRunId().equals(current.getRunId())) {
+            logger.warn("Job {} taking over segment {} after its lease lapsed", jobName, segment);
+        }
+        return checkpoint;
+    }
+    
+    private void runSegment(JobCheckpoint run, int segment) {
+        JobCheckpoint checkpoint = claimSegment(run, segment);
+        if (checkpoint == null) {
+            return;
+        }
+        
+        Iterator<Page<T>> pages = scanner
+                .scan(segment, run.getTotalSegments(), toStartKey(checkpoint.getLastKey()), pageSize)
+                .iterator();
+        boolean held = true;
+        try {
+            while (!stopRequested) {
+                readBudget.acquire();
+                if (!pages.hasNext()) {
+                    checkpoint.setDone(true);
+                    break;
+                }
+                Page<T> page = pages.next();
+                if (page.consumedCapacity() != null) {
+                    readBudget.settle(page.consumedCapacity().capacityUnits());
+                }
+                
+                for (T item : page.items()) {
+                    checkpoint.setScanned(checkpoint.getScanned() + 1);
+                    if (processor.process(item)) {
+                        checkpoint.setUpdated(checkpoint.getUpdated() + 1);
+                    }
+                }
+                
+                Map<String, AttributeValue> lastKey = page.lastEvaluatedKey();
+                if (lastKey == null || lastKey.isEmpty()) {
+                    checkpoint.setDone(true);
+                    break;
+                }
+                checkpoint.setLastKey(fromStartKey(lastKey));
+                held = saveCheckpoint(checkpoint, now() + leaseMillis);
+                if (!held) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (held) {
+                // Release the lease so a stopped segment can be resumed at once
+                saveCheckpoint(checkpoint, 0);
+            }
+        }
+    }
+    
+    /**
+     * @return false if another instance took the segment over, in which case this one stops
+     */
+    private boolean saveCheckpoint(JobCheckpoint checkpoint, long leaseUntil) {
+        checkpoint.setLeaseUntil(leaseUntil);
+        checkpoint.setUpdatedAt(now());
+        try {
+            if (checkpointRepository.tryPut(checkpoint)) {
+                return true;
+            }
+            logger.warn("Job {} lost segment {} to another instance; stopping it here",
+                    jobName, checkpoint.getSegment());
+            return false;
+        } catch (Exception e) {
+            logger.warn("Could not save job {} checkpoint for segment {}: {}",
+                    jobName, checkpoint.getSegment(), e.getMessage());
+            return true;
+        }
+    }
+    
+    private void finishRun(JobCheckpoint run) {
+        List<JobCheckpoint> segments = getCheckpoints();
+        boolean complete = segments.size() == run.getTotalSegments()
+                && segments.stream().allMatch(JobCheckpoint::isDone);
+        if (!complete) {
+            logger.info("Job {} pass finished on this instance: runId={}, stopped={}; other segments are "
+                    + "still running elsewhere or resume on next start", jobName, run.getRunId(), stopRequested);
+            return;
+        }
+        
+        run.setDone(true);
+        run.setScanned(segments.stream().mapToLong(JobCheckpoint::getScanned).sum());
+        run.setUpdated(segments.stream().mapToLong(JobCheckpoint::getUpdated).sum());
+        run.setUpdatedAt(now());
+        try {
+            // Fails harmlessly if another instance finished the last segment at the same time
+            checkpointRepository.tryPut(run);
+        } catch (Exception e) {
+            logger.warn("Could not mark job {} run {} done: {}", jobName, run.getRunId(), e.getMessage());
+        }
+        logger.info("Job {} complete: runId={}, scanned={}, updated={}",
+                jobName, run.getRunId(), run.getScanned(), run.getUpdated());
+        onComplete.run();
+    }
+    
+    private static Map<String, AttributeValue> toStartKey(Map<String, String> lastKey) {
+        if (lastKey == null || lastKey.isEmpty()) {
+            return null;
+        }
+        Map<String, AttributeValue> startKey = new LinkedHashMap<>();
+        lastKey.forEach((name, value) -> startKey.put(name, AttributeValue.fromS(value)));
+        return startKey;
+    }
+    
+    /**
+     * Checkpoints store string key attributes only, which is what every scanned table uses
+     */
+    private static Map<String, String> fromStartKey(Map<String, AttributeValue> lastKey) {
+        Map<String, String> stored = new LinkedHashMap<>();
+        lastKey.forEach((name, value) -> {
+            if (value.s() == null) {
+                throw new IllegalStateException("Key attribute " + name + " is not a string");
+            }
+            stored.put(name, value.s());
+        });
+        return stored;
+    }
+    
+    private static long now() {
+        return System.currentTimeMillis();
+    }
+    
+    public void shutdown() {
+        stopRequested = true;
+        segmentExecutor.shutdown();
+    }
+}
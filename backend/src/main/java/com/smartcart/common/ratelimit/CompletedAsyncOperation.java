@@ -0,0 +1,42 @@
+package com.smartcart.common.ratelimit;
+
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.AsyncCompareAndSwapOperation;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.CompareAndSwapOperation;
+import io.github.bucket4j.distributed.remote.RemoteBucketState;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Async view of a synchronous compare-and-swap operation. The proxy managers report
+ * async mode as unsupported, so Bucket4j only gets here if a caller asks for an async
+ * bucket anyway; each step then runs on the caller's thread and returns a completed future.
+ */
+class CompletedAsyncOperation implements AsyncCompareAndSwapOperation {
+    
+    private final CompareAndSwapOperation operation;
+    
+    CompletedAsyncOperation(CompareAndSwapOperation operation) {
+        this.operation = operation;
+    }
+    
+    @Override
+    public CompletableFuture<Optional<byte[]>> getStateData(Optional<Long> timeoutNanos) {
+        try {
+            return CompletableFuture.completedFuture(operation.getStateData(timeoutNanos));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> compareAndSwap(byte[] originalData, byte[] newData, RemoteBucketState newState,
+                                                     Optional<Long> timeoutNanos) {
+        try {
+            return CompletableFuture.completedFuture(
+                    operation.compareAndSwap(originalData, newData, newState, timeoutNanos));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
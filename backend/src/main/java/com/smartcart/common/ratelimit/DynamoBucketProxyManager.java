@@ -0,0 +1,129 @@
+package com.smartcart.common.ratelimit;
+
+import io.github.bucket4j.distributed.ExpirationAfterWriteStrategy;
+import io.github.bucket4j.distributed.proxy.ClientSideConfig;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.AbstractCompareAndSwapBasedProxyManager;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.AsyncCompareAndSwapOperation;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.CompareAndSwapOperation;
+import io.github.bucket4j.distributed.remote.RemoteBucketState;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Bucket4j proxy manager that keeps rate-limit buckets in DynamoDB, so every instance
+ * draws from the same buckets. Each consume is a consistent read followed by a put
+ * conditioned on the state it read. Items carry an expiresAt TTL set to when the
+ * bucket would be full again, so DynamoDB removes idle buckets on its own.
+ * That costs a strongly consistent GetItem (1 RCU) plus a conditional PutItem (1 WCU)
+ * on every API request, and a hot client's retries on contention, so it is opt-in
+ * (rate-limit.store=dynamo) for deployments that need limits shared across instances.
+ */
+@Component
+@ConditionalOnProperty(name = "rate-limit.store", havingValue = "dynamo")
+public class DynamoBucketProxyManager extends AbstractCompareAndSwapBasedProxyManager<String> {
+    
+    public static final String TABLE_NAME = "RateLimitBuckets";
+    public static final String KEY_ATTRIBUTE = "bucketKey";
+    public static final String TTL_ATTRIBUTE = "expiresAt";
+    private static final String STATE_ATTRIBUTE = "state";
+    
+    private static final ExpirationAfterWriteStrategy EXPIRATION =
+            ExpirationAfterWriteStrategy.basedOnTimeForRefillingBucketUpToMax(Duration.ofSeconds(10));
+    
+    private final DynamoDbClient dynamoDbClient;
+    
+    public DynamoBucketProxyManager(DynamoDbClient dynamoDbClient) {
+        super(ClientSideConfig.getDefault().withExpirationAfterWriteStrategy(EXPIRATION));
+        this.dynamoDbClient = dynamoDbClient;
+    }
+    
+    @Override
+    protected CompareAndSwapOperation beginCompareAndSwapOperation(String key) {
+        return new CompareAndSwapOperation() {
+            @Override
+            public Optional<byte[]> getStateData(Optional<Long> timeoutNanos) {
+                AttributeValue state = dynamoDbClient.getItem(GetItemRequest.builder()
+                                .tableName(TABLE_NAME)
+                                .key(Map.of(KEY_ATTRIBUTE, AttributeValue.fromS(key)))
+                                .consistentRead(true)
+                                .build())
+                        .item()
+                        .get(STATE_ATTRIBUTE);
+                return Optional.ofNullable(state).map(value -> value.b().asByteArray());
+            }
+            
+            @Override
+            public boolean compareAndSwap(byte[] originalData, byte[] newData, RemoteBucketState newState,
+                                          Optional<Long> timeoutNanos) {
+                long nowMillis = System.currentTimeMillis();
+                long ttlMillis = EXPIRATION.calculateTimeToLiveMillis(newState, nowMillis * 1_000_000);
+                PutItemRequest.Builder put = PutItemRequest.builder()
+                        .tableName(TABLE_NAME)
+                        .item(Map.of(
+                                KEY_ATTRIBUTE, AttributeValue.fromS(key),
+                                STATE_ATTRIBUTE, AttributeValue.fromB(SdkBytes.fromByteArray(newData)),
+                                TTL_ATTRIBUTE, AttributeValue.fromN(String.valueOf((nowMillis + ttlMillis) / 1000 + 1))));
+                if (originalData == null) {
+                    put.conditionExpression("attribute_not_exists(" + KEY_ATTRIBUTE + ")");
+                } else {
+                    put.conditionExpression("#state = :expected")
+                            .expressionAttributeNames(Map.of("#state", STATE_ATTRIBUTE))
+                            .expressionAttributeValues(Map.of(":expected",
+                                    AttributeValue.fromB(SdkBytes.fromByteArray(originalData))));
+                }
+                try {
+                    dynamoDbClient.putItem(put.build());
+                    return true;
+                } catch (ConditionalCheckFailedException e) {
+                    // Another request or instance changed the bucket first; Bucket4j retries
+                    return false;
+                }
+            }
+        };
+    }
+    
+    @Override
+    protected AsyncCompareAndSwapOperation beginAsyncCompareAndSwapOperation(String key) {
+        return new CompletedAsyncOperation(beginCompareAndSwapOperation(key));
+    }
+    
+    @Override
+    public void removeProxy(String key) {
+        dynamoDbClient.deleteItem(DeleteItemRequest.builder()
+                .tableName(TABLE_NAME)
+                .key(Map.of(KEY_ATTRIBUTE, AttributeValue.fromS(key)))
+                .build());
+    }
+    
+    @Override
+    protected CompletableFuture<Void> removeAsync(String key) {
+        try {
+            removeProxy(key);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    @Override
+    public boolean isAsyncModeSupported() {
+        return false;
+    }
+    
+    @Override
+    public boolean isExpireAfterWriteSupported() {
+        return true;
+    }
+}
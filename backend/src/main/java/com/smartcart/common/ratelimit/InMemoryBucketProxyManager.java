@@ -0,0 +1,84 @@
+package com.smartcart.common.ratelimit;
+
+import com.smartcart.common.util.BoundedCache;
+import io.github.bucket4j.distributed.proxy.ClientSideConfig;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.AbstractCompareAndSwapBasedProxyManager;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.AsyncCompareAndSwapOperation;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.CompareAndSwapOperation;
+import io.github.bucket4j.distributed.remote.RemoteBucketState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Single-process bucket store, the default (rate-limit.store=memory). Limits are
+ * per instance, so N instances behind a load balancer allow up to N times each limit. States live in a bounded cache and expire once a bucket
+ * has gone unused for the idle expiry, since every consume rewrites its state.
+ */
+@Component
+@ConditionalOnProperty(name = "rate-limit.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryBucketProxyManager extends AbstractCompareAndSwapBasedProxyManager<String> {
+    
+    private final BoundedCache<String, byte[]> states;
+    
+    public InMemoryBucketProxyManager(
+            @Value("${rate-limit.max-buckets:10000}") int maxBuckets,
+            @Value("${rate-limit.idle-expiry-minutes:10}") long idleExpiryMinutes) {
+        super(ClientSideConfig.getDefault());
+        this.states = new BoundedCache<>(maxBuckets, Duration.ofMinutes(idleExpiryMinutes));
+    }
+    
+    @Override
+    protected CompareAndSwapOperation beginCompareAndSwapOperation(String key) {
+        return new CompareAndSwapOperation() {
+            @Override
+            public Optional<byte[]> getStateData(Optional<Long> timeoutNanos) {
+                return Optional.ofNullable(states.get(key));
+            }
+            
+            @Override
+            public boolean compareAndSwap(byte[] originalData, byte[] newData, RemoteBucketState newState,
+                                          Optional<Long> timeoutNanos) {
+                boolean[] swapped = {false};
+                states.compute(key, (k, current) -> {
+                    if (current == null ? originalData != null : !Arrays.equals(current, originalData)) {
+                        return current;
+                    }
+                    swapped[0] = true;
+                    return newData;
+                });
+                return swapped[0];
+            }
+        };
+    }
+    
+    @Override
+    protected AsyncCompareAndSwapOperation beginAsyncCompareAndSwapOperation(String key) {
+        return new CompletedAsyncOperation(beginCompareAndSwapOperation(key));
+    }
+    
+    @Override
+    public void removeProxy(String key) {
+        states.invalidate(key);
+    }
+    
+    @Override
+    protected CompletableFuture<Void> removeAsync(String key) {
+        removeProxy(key);
+        return CompletableFuture.completedFuture(null);
+    }
+    
+    @Override
+    public boolean isAsyncModeSupported() {
+        return false;
+    }
+    
+    int size() {
+        return states.size();
+    }
+}
@@ -0,0 +1,37 @@
+package com.smartcart.common.util;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with jitter, capped at a maximum delay.
+ * Attempt 1 waits roughly initialDelay, attempt 2 twice that, and so on.
+ */
+public record Backoff(Duration initialDelay, Duration maxDelay) {
+    
+    public static Backoff of(long initialDelayMs, long maxDelayMs) {
+        return new Backoff(Duration.ofMillis(initialDelayMs), Duration.ofMillis(maxDelayMs));
+    }
+    
+    /**
+     * Upper bound of the delay for the given attempt (1-based), without jitter
+     */
+    public long ceilingMillis(int attempt) {
+        int exponent = Math.max(0, Math.min(attempt - 1, 30));
+        long delay = initialDelay.toMillis() << exponent;
+        if (delay <= 0 || delay > maxDelay.toMillis()) {
+            return maxDelay.toMillis();
+        }
+        return delay;
+    }
+    
+    /**
+     * Delay for the given attempt (1-based), jittered between half and the full ceiling
+     * so that callers failing together do not retry together
+     */
+    public long delayMillis(int attempt) {
+        long ceiling = ceilingMillis(attempt);
+        long half = ceiling / 2;
+        return half + ThreadLocalRandom.current().nextLong(ceiling - half + 1);
+    }
+}
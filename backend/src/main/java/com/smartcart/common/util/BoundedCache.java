@@ -0,0 +1,129 @@
+package com.smartcart.common.util;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Small in-process cache with least-recently-used eviction and a time-to-live.
+ * Entries expire ttl after they were last written, so data shared with other
+ * instances is never more than ttl stale; caches made with expiringAfterAccess
+ * count from the last read instead, for entries that only go stale by disuse. All operations are synchronized;
+ * loaders run outside the lock so a slow load does not block other keys.
+ */
+public class BoundedCache<K, V> {
+    
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final boolean expireAfterAccess;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    
+    public BoundedCache(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, false, System::nanoTime);
+    }
+    
+    BoundedCache(int maxEntries, Duration ttl, LongSupplier nanoClock) {
+        this(maxEntries, ttl, false, nanoClock);
+    }
+    
+    BoundedCache(int maxEntries, Duration ttl, boolean expireAfterAccess, LongSupplier nanoClock) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.expireAfterAccess = expireAfterAccess;
+        this.nanoClock = nanoClock;
+        // Access order: get() moves an entry to the tail, eviction takes the head
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > BoundedCache.this.maxEntries;
+            }
+        };
+    }
+    
+    /**
+     * A cache whose entries expire once they have gone idleTtl without being read or written
+     */
+    public static <K, V> BoundedCache<K, V> expiringAfterAccess(int maxEntries, Duration idleTtl) {
+        return new BoundedCache<>(maxEntries, idleTtl, true, System::nanoTime);
+    }
+    
+    /**
+     * The cached value, or null if absent or expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        // Expired entries stay until evicted so getStale() can still serve them
+        if (isExpired(entry)) {
+            return null;
+        }
+        if (expireAfterAccess) {
+            entries.put(key, new Entry<>(entry.value(), nanoClock.getAsLong()));
+        }
+        return entry.value();
+    }
+    
+    /**
+     * The cached value even if expired, for serving degraded reads when the source is down
+     */
+    public synchronized V getStale(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null ? entry.value() : null;
+    }
+    
+    /**
+     * The cached value, loading and caching it on a miss. Concurrent misses
+     * for the same key may each call the loader; the last one wins.
+     */
+    public V getOrLoad(K key, Function<K, V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = loader.apply(key);
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
+    }
+    
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, nanoClock.getAsLong()));
+    }
+    
+    /**
+     * Atomically replace the value. The function sees null for a missing or expired
+     * entry; returning null removes the entry.
+     */
+    public synchronized V compute(K key, BiFunction<K, V, V> remapping) {
+        V current = get(key);
+        V updated = remapping.apply(key, current);
+        if (updated == null) {
+            entries.remove(key);
+        } else if (updated != current) {
+            put(key, updated);
+        }
+        return updated;
+    }
+    
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    private boolean isExpired(Entry<V> entry) {
+        return nanoClock.getAsLong() - entry.writtenAt() > ttlNanos;
+    }
+    
+    private record Entry<V>(V value, long writtenAt) {
+    }
+}
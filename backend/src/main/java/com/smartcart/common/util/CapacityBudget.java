@@ -0,0 +1,46 @@
+package com.smartcart.common.util;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+
+import java.time.Duration;
+
+/**
+ * Caps background jobs to a DynamoDB capacity-unit budget per second.
+ * Callers take one unit before a request and settle the actual consumed
+ * capacity afterwards; overspend puts the bucket in debt, so the next
+ * request waits until it has been paid back.
+ */
+public class CapacityBudget {
+    
+    private final Bucket bucket;
+    
+    public CapacityBudget(long unitsPerSecond) {
+        this.bucket = Bucket.builder()
+                .addLimit(Bandwidth.builder()
+                        .capacity(unitsPerSecond)
+                        .refillGreedy(unitsPerSecond, Duration.ofSeconds(1))
+                        .build())
+                .build();
+    }
+    
+    /**
+     * Block until at least one unit is available
+     */
+    public void acquire() throws InterruptedException {
+        bucket.asBlocking().consume(1);
+    }
+    
+    /**
+     * Charge the rest of what the request actually consumed
+     */
+    public void settle(Double consumedUnits) {
+        if (consumedUnits == null) {
+            return;
+        }
+        long extra = (long) Math.ceil(consumedUnits) - 1;
+        if (extra > 0) {
+            bucket.consumeIgnoringRateLimits(extra);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.smartcart.common.util;
+
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deletes items 25 at a time with BatchWriteItem, resending unprocessed keys
+ * with backoff. Feed it a keys-only query so only the key attributes are read.
+ */
+public final class DynamoBatchDeletes {
+    
+    public static final int MAX_BATCH_WRITE_ITEMS = 25;
+    private static final int MAX_UNPROCESSED_RETRIES = 5;
+    private static final Backoff UNPROCESSED_BACKOFF = Backoff.of(100, 2000);
+    
+    private DynamoBatchDeletes() {}
+    
+    /**
+     * Delete every given item and return how many were deleted
+     */
+    public static <T> long deleteAll(DynamoDbEnhancedClient enhancedClient, DynamoDbTable<T> table, Iterable<T> items) {
+        long deleted = 0;
+        List<Key> batch = new ArrayList<>(MAX_BATCH_WRITE_ITEMS);
+        for (T item : items) {
+            batch.add(table.keyFrom(item));
+            if (batch.size() == MAX_BATCH_WRITE_ITEMS) {
+                deleted += deleteBatch(enhancedClient, table, batch);
+                batch.clear();
+            }
+        }
+        return deleted + deleteBatch(enhancedClient, table, batch);
+    }
+    
+    private static <T> int deleteBatch(DynamoDbEnhancedClient enhancedClient, DynamoDbTable<T> table, List<Key> keys) {
+        List<Key> pending = keys;
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            WriteBatch.Builder<T> batch = WriteBatch.builder(table.tableSchema().itemType().rawClass())
+                    .mappedTableResource(table);
+            pending.forEach(batch::addDeleteItem);
+            pending = enhancedClient.batchWriteItem(BatchWriteItemEnhancedRequest.builder()
+                            .writeBatches(batch.build())
+                            .build())
+                    .unprocessedDeleteItemsForTable(table);
+            if (pending.isEmpty()) {
+                break;
+            }
+            if (attempt >= MAX_UNPROCESSED_RETRIES) {
+                throw new IllegalStateException(
+                        "Batch delete on " + table.tableName() + " left " + pending.size() + " unprocessed items");
+            }
+            try {
+                Thread.sleep(UNPROCESSED_BACKOFF.delayMillis(attempt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted during batch delete on " + table.tableName(), e);
+            }
+        }
+        return keys.size();
+    }
+}
@@ -0,0 +1,51 @@
+package com.smartcart.common.util;
+
+import java.security.SecureRandom;
+
+/**
+ * ULID-style identifiers: 48-bit millisecond timestamp followed by 80 random bits,
+ * Crockford base32 encoded to 26 characters. Ids sort lexicographically by creation
+ * time, so DynamoDB range keys built from them come back in time order.
+ */
+public final class TimeOrderedId {
+    
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final SecureRandom RANDOM = new SecureRandom();
+    
+    private TimeOrderedId() {}
+    
+    public static String next() {
+        return next(System.currentTimeMillis());
+    }
+    
+    public static String next(long timestampMillis) {
+        byte[] random = new byte[10];
+        RANDOM.nextBytes(random);
+        
+        char[] chars = new char[26];
+        // 10 chars x 5 bits = 50 bits of timestamp (top 2 always zero for 48-bit values)
+        long time = timestampMillis;
+        for (int i = 9; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (time & 31)];
+            time >>>= 5;
+        }
+        // 16 chars x 5 bits = 80 random bits
+        long high = 0;
+        for (int i = 0; i < 5; i++) {
+            high = (high << 8) | (random[i] & 0xFF);
+        }
+        long low = 0;
+        for (int i = 5; i < 10; i++) {
+            low = (low << 8) | (random[i] & 0xFF);
+        }
+        for (int i = 17; i >= 10; i--) {
+            chars[i] = ALPHABET[(int) (high & 31)];
+            high >>>= 5;
+        }
+        for (int i = 25; i >= 18; i--) {
+            chars[i] = ALPHABET[(int) (low & 31)];
+            low >>>= 5;
+        }
+        return new String(chars);
+    }
+}
@@ -1,6 +1,7 @@
 package com.smartcart.favorites;
 
 import com.smartcart.favorites.dto.MealFavoriteDto;
+import com.smartcart.favorites.repository.MealFavoriteRepository;
 import com.smartcart.favorites.service.MealFavoriteService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -12,6 +13,10 @@ import java.util.Map;
 @RequestMapping("/api/favorites")
 public class MealFavoriteController {
     
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 25;
+    private static final int MAX_PAGE_SIZE = 100;
+    
     private final MealFavoriteService favoriteService;
     
     public MealFavoriteController(MealFavoriteService favoriteService) {
@@ -25,9 +30,26 @@ public class MealFavoriteController {
         return ResponseEntity.ok(favoriteService.create(userId, request.name(), request.mealServings()));
     }
     
+    /**
+     * Get favorites for user, most recently used first, one page at a time.
+     * The cursor for the next page is returned in the X-Next-Cursor header (absent on the last page).
+     */
     @GetMapping
-    public ResponseEntity<List<MealFavoriteDto>> getAll(@RequestAttribute("userId") String userId) {
-        return ResponseEntity.ok(favoriteService.getAllByUserId(userId));
+    public ResponseEntity<List<MealFavoriteDto>> getAll(
+            @RequestAttribute("userId") String userId,
+            @RequestParam(value = "limit", defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        MealFavoriteRepository.MealFavoritePage page = favoriteService.getPage(userId, pageSize, cursor);
+        List<MealFavoriteDto> favorites = page.items().stream()
+                .map(MealFavoriteDto::fromFavorite)
+                .toList();
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(favorites);
     }
     
     @GetMapping("/{favoriteId}")
@@ -2,6 +2,7 @@ package com.smartcart.favorites.model;
 
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondarySortKey;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
 
@@ -9,6 +10,9 @@ import java.util.Map;
 
 @DynamoDbBean
 public class MealFavorite {
+    // Local secondary index: same userId partition, sorted by lastUsed
+    public static final String LAST_USED_INDEX = "lastUsed-index";
+    
     private String userId;
     private String favoriteId;
     private String name;
@@ -65,6 +69,7 @@ public class MealFavorite {
         this.createdAt = createdAt;
     }
     
+    @DynamoDbSecondarySortKey(indexNames = LAST_USED_INDEX)
     @DynamoDbAttribute("lastUsed")
     public Long getLastUsed() {
         return lastUsed;
@@ -1,26 +1,59 @@
 package com.smartcart.favorites.repository;
 
+import com.smartcart.common.exception.AppException;
+import com.smartcart.common.util.DynamoBatchDeletes;
 import com.smartcart.favorites.model.MealFavorite;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbIndex;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
-import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Repository
 public class MealFavoriteRepository {
     
-    private final DynamoDbTable<MealFavorite> favoriteTable;
+    private static final Logger logger = LoggerFactory.getLogger(MealFavoriteRepository.class);
     private static final String TABLE_NAME = "MealFavorites";
+    private static final int LIST_ALL_PAGE_SIZE = 100;
+    // lastUsed is empty in cursors of the base-table fallback
+    private static final Pattern CURSOR = Pattern.compile("(\\d{1,19})?:([A-Za-z0-9-]{1,64})");
+    // How long a missing index is remembered before it is looked for again
+    private static final long INDEX_RECHECK_MILLIS = Duration.ofMinutes(10).toMillis();
+    
+    private final DynamoDbEnhancedClient enhancedClient;
+    private final DynamoDbClient dynamoDbClient;
+    private final DynamoDbTable<MealFavorite> favoriteTable;
+    private final DynamoDbIndex<MealFavorite> lastUsedIndex;
+    // A local secondary index can only be added when the table is created, so tables created
+    // before lastUsed-index existed fall back to paging the base table until it is recreated
+    private volatile long lastUsedIndexMissingUntil;
     
     @Autowired
-    public MealFavoriteRepository(DynamoDbEnhancedClient enhancedClient) {
+    public MealFavoriteRepository(DynamoDbEnhancedClient enhancedClient, DynamoDbClient dynamoDbClient) {
+        this.enhancedClient = enhancedClient;
+        this.dynamoDbClient = dynamoDbClient;
         this.favoriteTable = enhancedClient.table(TABLE_NAME, TableSchema.fromBean(MealFavorite.class));
+        this.lastUsedIndex = favoriteTable.index(MealFavorite.LAST_USED_INDEX);
     }
     
     public void save(MealFavorite favorite) {
@@ -35,14 +68,131 @@ public class MealFavoriteRepository {
         return favoriteTable.getItem(key);
     }
     
+    /**
+     * All of a user's favorites, most recently used first
+     */
     public List<MealFavorite> findAllByUserId(String userId) {
-        return favoriteTable.scan(ScanEnhancedRequest.builder().build())
-                .items()
-                .stream()
-                .filter(fav -> userId.equals(fav.getUserId()))
-                .sorted((a, b) -> Long.compare(b.getLastUsed() != null ? b.getLastUsed() : 0,
-                                               a.getLastUsed() != null ? a.getLastUsed() : 0))
-                .collect(Collectors.toList());
+        List<MealFavorite> favorites = new ArrayList<>();
+        String cursor = null;
+        do {
+            MealFavoritePage page = findPageByUserId(userId, LIST_ALL_PAGE_SIZE, cursor);
+            favorites.addAll(page.items());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return favorites;
+    }
+    
+    /**
+     * One page of a user's favorites, most recently used first, read in order from lastUsed-index.
+     * Pass the previous page's nextCursor to continue; it is null on the last page.
+     * <p>
+     * Without the index, pages come from the base table in favorite id order, with the same
+     * limit; a listing started that way continues that way. The index is looked for again
+     * every ten minutes, so a recreated table is picked up without a restart.
+     */
+    public MealFavoritePage findPageByUserId(String userId, int limit, String cursor) {
+        Map<String, AttributeValue> exclusiveStartKey = cursor != null && !cursor.isEmpty()
+                ? decodeCursor(userId, cursor)
+                : null;
+        boolean indexCursor = exclusiveStartKey == null || exclusiveStartKey.containsKey("lastUsed");
+        if (indexCursor && System.currentTimeMillis() >= lastUsedIndexMissingUntil) {
+            try {
+                Page<MealFavorite> page = lastUsedIndex.query(r -> r
+                                .queryConditional(QueryConditional.keyEqualTo(k -> k.partitionValue(userId)))
+                                .scanIndexForward(false)
+                                .limit(limit)
+                                .exclusiveStartKey(exclusiveStartKey))
+                        .iterator()
+                        .next();
+                return new MealFavoritePage(page.items(), nextCursor(page.lastEvaluatedKey()));
+            } catch (DynamoDbException e) {
+                if (!isMissingIndex(e)) {
+                    throw e;
+                }
+                logger.warn("Table '{}' has no {}; listing favorites in favorite id order until it is recreated",
+                        TABLE_NAME, MealFavorite.LAST_USED_INDEX);
+                lastUsedIndexMissingUntil = System.currentTimeMillis() + INDEX_RECHECK_MILLIS;
+            }
+        }
+        
+        Page<MealFavorite> page = favoriteTable.query(r -> r
+                        .queryConditional(QueryConditional.keyEqualTo(k -> k.partitionValue(userId)))
+                        .limit(limit)
+                        .exclusiveStartKey(baseTableKey(exclusiveStartKey)))
+                .iterator()
+                .next();
+        Map<String, AttributeValue> lastKey = page.lastEvaluatedKey();
+        return new MealFavoritePage(page.items(), lastKey != null && lastKey.containsKey("favoriteId")
+                ? encodeCursor("", lastKey.get("favoriteId").s())
+                : null);
+    }
+    
+    public record MealFavoritePage(List<MealFavorite> items, String nextCursor) {}
+    
+    private static String nextCursor(Map<String, AttributeValue> lastKey) {
+        return lastKey != null && lastKey.containsKey("favoriteId") && lastKey.containsKey("lastUsed")
+                ? encodeCursor(lastKey.get("lastUsed").n(), lastKey.get("favoriteId").s())
+                : null;
+    }
+    
+    private static Map<String, AttributeValue> baseTableKey(Map<String, AttributeValue> startKey) {
+        return startKey != null
+                ? Map.of("userId", startKey.get("userId"), "favoriteId", startKey.get("favoriteId"))
+                : null;
+    }
+    
+    private static boolean isMissingIndex(DynamoDbException e) {
+        String message = e.awsErrorDetails() != null ? e.awsErrorDetails().errorMessage() : e.getMessage();
+        return message != null && message.contains("specified index");
+    }
+    
+    // An index page ends on (userId, favoriteId, lastUsed); the partition is always the caller's own userId
+    private static String encodeCursor(String lastUsed, String favoriteId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((lastUsed + ":" + favoriteId).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static Map<String, AttributeValue> decodeCursor(String userId, String cursor) {
+        try {
+            Matcher matcher = CURSOR.matcher(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+            if (matcher.matches()) {
+                return matcher.group(1) == null
+                        ? Map.of(
+                                "userId", AttributeValue.fromS(userId),
+                                "favoriteId", AttributeValue.fromS(matcher.group(2)))
+                        : Map.of(
+                                "userId", AttributeValue.fromS(userId),
+                                "favoriteId", AttributeValue.fromS(matcher.group(2)),
+                                "lastUsed", AttributeValue.fromN(matcher.group(1)));
+            }
+        } catch (IllegalArgumentException e) {
+            // fall through
+        }
+        throw new AppException("Invalid page cursor", "VALIDATION_ERROR");
+    }
+    
+    /**
+     * Sets lastUsed in a single UpdateItem. Returns false if the favorite does not exist;
+     * the condition keeps the update from creating an empty item.
+     */
+    public boolean updateLastUsed(String userId, String favoriteId, long lastUsed) {
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(TABLE_NAME)
+                    .key(Map.of(
+                            "userId", AttributeValue.fromS(userId),
+                            "favoriteId", AttributeValue.fromS(favoriteId)))
+                    .updateExpression("SET #lastUsed = :lastUsed")
+                    .conditionExpression("attribute_exists(#favoriteId)")
+                    .expressionAttributeNames(Map.of(
+                            "#lastUsed", "lastUsed",
+                            "#favoriteId", "favoriteId"))
+                    .expressionAttributeValues(Map.of(":lastUsed", AttributeValue.fromN(Long.toString(lastUsed))))
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
     }
     
     public void delete(String userId, String favoriteId) {
@@ -53,11 +203,13 @@ public class MealFavoriteRepository {
         favoriteTable.deleteItem(key);
     }
     
-    public void deleteAllByUserId(String userId) {
-        List<MealFavorite> favorites = findAllByUserId(userId);
-        for (MealFavorite favorite : favorites) {
-            favoriteTable.deleteItem(favorite);
-        }
+    /**
+     * Delete every favorite in the user's partition with batched deletes; returns the number deleted
+     */
+    public long deleteAllByUserId(String userId) {
+        return DynamoBatchDeletes.deleteAll(enhancedClient, favoriteTable, favoriteTable.query(r -> r
+                        .queryConditional(QueryConditional.keyEqualTo(k -> k.partitionValue(userId)))
+                        .attributesToProject("userId", "favoriteId"))
+                .items());
     }
 }
-
@@ -37,17 +37,20 @@ public class MealFavoriteService {
                 .collect(Collectors.toList());
     }
     
+    /**
+     * One page of the user's favorites, most recently used first; see MealFavoriteRepository.findPageByUserId
+     */
+    public MealFavoriteRepository.MealFavoritePage getPage(String userId, int limit, String cursor) {
+        return repository.findPageByUserId(userId, limit, cursor);
+    }
+    
     public MealFavoriteDto getById(String userId, String favoriteId) {
         MealFavorite favorite = repository.findById(userId, favoriteId);
         return favorite != null ? MealFavoriteDto.fromFavorite(favorite) : null;
     }
     
     public void updateLastUsed(String userId, String favoriteId) {
-        MealFavorite favorite = repository.findById(userId, favoriteId);
-        if (favorite != null) {
-            favorite.setLastUsed(System.currentTimeMillis());
-            repository.save(favorite);
-        }
+        repository.updateLastUsed(userId, favoriteId, System.currentTimeMillis());
     }
     
     public void delete(String userId, String favoriteId) {
@@ -49,9 +49,7 @@ public class OptimizeController {
         OptimizeResponse response = optimizerService.optimize(userId, request);
         
         // Save shopping list to history
-        List<String> meals = request.mealServings().keySet().stream().toList();
-        int totalServings = request.mealServings().values().stream().mapToInt(Integer::intValue).sum();
-        shoppingListService.saveShoppingList(userId, response, meals, totalServings);
+        shoppingListService.saveShoppingList(userId, response, request.mealServings());
         
         return ResponseEntity.ok(response);
     }
@@ -155,11 +155,12 @@ public class OptimizerService {
         return result;
     }
     
-    public OptimizeResponse optimize(String userId, OptimizeRequest request) {
-        // Get all required ingredients from selected meals, multiplied by servings
+    /**
+     * All ingredients needed for the given meals, multiplied by servings and combined by name
+     */
+    public Map<String, Double> getRequiredIngredients(Map<String, Integer> mealServings) {
         Map<String, Double> requiredIngredients = new HashMap<>();
-        logger.info("Optimizing shopping list for meals: {}", request.mealServings().keySet());
-        for (Map.Entry<String, Integer> entry : request.mealServings().entrySet()) {
+        for (Map.Entry<String, Integer> entry : mealServings.entrySet()) {
             String mealId = entry.getKey();
             Integer servings = entry.getValue();
             double multiplier = servings != null && servings > 0 ? servings : 1.0;
@@ -176,9 +177,14 @@ public class OptimizerService {
             });
         }
         logger.info("Total required ingredients (after combining): {}", requiredIngredients);
-        
-        // Get user's pantry items
-        List<PantryItemDto> pantryItems = pantryService.getAllByUserId(userId);
+        return requiredIngredients;
+    }
+    
+    /**
+     * Pantry item used for each ingredient (exact, case-insensitive, normalized, then partial match).
+     * Ingredients with no pantry match are left out.
+     */
+    public Map<String, PantryItemDto> matchPantryItems(Collection<String> ingredients, List<PantryItemDto> pantryItems) {
         // Create case-insensitive and normalized pantry map for better matching
         Map<String, PantryItemDto> pantryMap = new HashMap<>();
         Map<String, PantryItemDto> pantryMapNormalized = new HashMap<>();
@@ -191,14 +197,8 @@ public class OptimizerService {
             pantryMapNormalized.put(item.name().toLowerCase(), item);
         }
         
-        // Check what can be satisfied from pantry
-        List<String> usesPantry = new ArrayList<>();
-        Map<String, Double> shoppingNeeds = new HashMap<>();
-        
-        for (Map.Entry<String, Double> entry : requiredIngredients.entrySet()) {
-            String ingredient = entry.getKey();
-            Double needed = entry.getValue();
-            
+        Map<String, PantryItemDto> matches = new HashMap<>();
+        for (String ingredient : ingredients) {
             // Try exact match first
             PantryItemDto pantryItem = pantryMap.get(ingredient);
             
@@ -238,6 +238,31 @@ public class OptimizerService {
                 }
             }
             
+            if (pantryItem != null) {
+                matches.put(ingredient, pantryItem);
+            }
+        }
+        return matches;
+    }
+    
+    public OptimizeResponse optimize(String userId, OptimizeRequest request) {
+        logger.info("Optimizing shopping list for meals: {}", request.mealServings().keySet());
+        Map<String, Double> requiredIngredients = getRequiredIngredients(request.mealServings());
+        
+        // Get user's pantry items
+        List<PantryItemDto> pantryItems = pantryService.getAllByUserId(userId);
+        Map<String, PantryItemDto> pantryMatches = matchPantryItems(requiredIngredients.keySet(), pantryItems);
+        
+        // Check what can be satisfied from pantry
+        List<String> usesPantry = new ArrayList<>();
+        Map<String, Double> shoppingNeeds = new HashMap<>();
+        
+        for (Map.Entry<String, Double> entry : requiredIngredients.entrySet()) {
+            String ingredient = entry.getKey();
+            Double needed = entry.getValue();
+            
+            PantryItemDto pantryItem = pantryMatches.get(ingredient);
+            
             if (pantryItem != null) {
                 // Try to convert units if needed
                 Double pantryQty = pantryItem.quantity();
@@ -609,6 +634,23 @@ public class OptimizerService {
         );
     }
     
+    /**
+     * Amount of an ingredient (in the catalog's unit for it) expressed in the pantry item's unit,
+     * or null if the units can't be converted. Count-like units are treated as one-to-one, as in optimize.
+     */
+    public Double toPantryUnits(String ingredient, double needed, PantryItemDto pantryItem) {
+        String pantryUnit = pantryItem.unit() != null ? pantryItem.unit() : "unit";
+        String neededUnit = getUnitForProduct(ingredient);
+        if (pantryUnit.equalsIgnoreCase(neededUnit)
+                || (isCountLikeUnit(pantryUnit) && isCountLikeUnit(neededUnit))) {
+            return needed;
+        }
+        if (!unitConversionService.areCompatible(pantryUnit, neededUnit)) {
+            return null;
+        }
+        return unitConversionService.convert(needed, neededUnit, pantryUnit);
+    }
+    
     private String getUnitForProduct(String product) {
         // Simple unit mapping - in production, this could come from a product catalog
         if (product.toLowerCase().contains("chicken") || product.toLowerCase().contains("beef") || 
@@ -1,30 +1,63 @@
 package com.smartcart.pantry;
 
+import com.smartcart.pantry.dto.ConsumePantryRequest;
 import com.smartcart.pantry.dto.CreatePantryItemRequest;
+import com.smartcart.pantry.dto.PantryConsumptionResult;
+import com.smartcart.pantry.dto.PantryImportResult;
 import com.smartcart.pantry.dto.PantryItemDto;
+import com.smartcart.pantry.dto.VersionedPantry;
+import com.smartcart.pantry.service.PantryConsumptionService;
 import com.smartcart.pantry.service.PantryService;
+import com.smartcart.pantry.service.PantryTransferService;
 import com.smartcart.pantry.service.ExpirationAlertService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/pantry")
 public class PantryController {
     
+    private static final String VERSION_HEADER = "X-Pantry-Version";
+    
     private final PantryService pantryService;
     private final ExpirationAlertService expirationAlertService;
+    private final PantryTransferService transferService;
+    private final PantryConsumptionService consumptionService;
     
-    public PantryController(PantryService pantryService, ExpirationAlertService expirationAlertService) {
+    public PantryController(
+            PantryService pantryService,
+            ExpirationAlertService expirationAlertService,
+            PantryTransferService transferService,
+            PantryConsumptionService consumptionService) {
         this.pantryService = pantryService;
         this.expirationAlertService = expirationAlertService;
+        this.transferService = transferService;
+        this.consumptionService = consumptionService;
     }
     
     @GetMapping
     public ResponseEntity<List<PantryItemDto>> getAll(@RequestAttribute("userId") String userId) {
-        return ResponseEntity.ok(pantryService.getAllByUserId(userId));
+        VersionedPantry pantry = pantryService.getVersionedByUserId(userId);
+        return ResponseEntity.ok()
+                .header(VERSION_HEADER, String.valueOf(pantry.version()))
+                .body(pantry.items());
+    }
+    
+    /**
+     * Cheap change check: clients can compare this before re-fetching the pantry
+     */
+    @GetMapping("/version")
+    public ResponseEntity<Map<String, Long>> getVersion(@RequestAttribute("userId") String userId) {
+        return ResponseEntity.ok(Map.of("version", pantryService.getVersion(userId)));
     }
     
     @PostMapping
@@ -50,10 +83,53 @@ public class PantryController {
         return ResponseEntity.noContent().build();
     }
     
+    /**
+     * Subtract everything a cooked shopping list or meal plan used, in one atomic batch.
+     * Fails with 409 if the pantry changed underneath and could not be re-planned.
+     */
+    @PostMapping("/consume")
+    public ResponseEntity<PantryConsumptionResult> consume(
+            @RequestAttribute("userId") String userId,
+            @RequestBody ConsumePantryRequest request) {
+        return ResponseEntity.ok(consumptionService.consume(userId, request));
+    }
+    
     @GetMapping("/expiring")
     public ResponseEntity<List<PantryItemDto>> getExpiringItems(@RequestAttribute("userId") String userId) {
         List<PantryItemDto> allItems = pantryService.getAllByUserId(userId);
         List<PantryItemDto> expiring = expirationAlertService.getExpiringItems(allItems);
         return ResponseEntity.ok(expiring);
     }
+    
+    /**
+     * Bulk import from an NDJSON or CSV body (with a header row), validated and written as it streams in.
+     * Valid rows are saved even if others are rejected; the response lists the rejected lines.
+     */
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    public ResponseEntity<PantryImportResult> importItems(
+            @RequestAttribute("userId") String userId,
+            @RequestHeader("Content-Type") String contentType,
+            HttpServletRequest request) throws IOException {
+        PantryTransferService.Format format = contentType.startsWith("text/csv")
+                ? PantryTransferService.Format.CSV
+                : PantryTransferService.Format.NDJSON;
+        return ResponseEntity.ok(transferService.importItems(userId, format, request.getInputStream()));
+    }
+    
+    /**
+     * Bulk export as NDJSON (default) or CSV, streamed one query page at a time
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportItems(
+            @RequestAttribute("userId") String userId,
+            @RequestParam(defaultValue = "ndjson") String format) {
+        PantryTransferService.Format exportFormat = PantryTransferService.parseFormat(format);
+        boolean csv = exportFormat == PantryTransferService.Format.CSV;
+        StreamingResponseBody body = out -> transferService.exportItems(userId, exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv") : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"pantry." + (csv ? "csv" : "ndjson") + "\"")
+                .body(body);
+    }
 }
@@ -0,0 +1,13 @@
+package com.smartcart.pantry.dto;
+
+import java.util.Map;
+
+/**
+ * What was cooked: either a saved shopping list (listId) or a meal plan (mealId -> servings).
+ * requestId is chosen by the client and kept across retries, so a retried request is applied once.
+ */
+public record ConsumePantryRequest(
+    String listId,
+    Map<String, Integer> mealServings,
+    String requestId
+) {}
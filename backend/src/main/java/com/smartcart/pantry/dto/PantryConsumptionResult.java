@@ -0,0 +1,23 @@
+package com.smartcart.pantry.dto;
+
+import java.util.List;
+
+/**
+ * Pantry decrements applied for a cooked list or meal plan.
+ * notInPantry lists ingredients with no matching pantry item; unconvertible those whose
+ * pantry item is in a unit the recipe amount can't be converted to.
+ */
+public record PantryConsumptionResult(
+    List<ConsumedItem> consumed,
+    List<String> notInPantry,
+    List<String> unconvertible
+) {
+    
+    public record ConsumedItem(
+        String productId,
+        String name,
+        double amount,
+        String unit,
+        double remaining
+    ) {}
+}
@@ -0,0 +1,16 @@
+package com.smartcart.pantry.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk import. Valid rows are saved even when others are rejected;
+ * errors lists the first rejected rows by line number.
+ */
+public record PantryImportResult(
+    int imported,
+    int rejected,
+    List<RowError> errors
+) {
+    
+    public record RowError(long line, String message) {}
+}
@@ -0,0 +1,21 @@
+package com.smartcart.pantry.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+
+/**
+ * One NDJSON line or CSV row of a bulk import. A productId (as written by export)
+ * overwrites that item, so re-importing an export is idempotent; without one a new item is created.
+ */
+public record PantryImportRow(
+    @Size(max = 64) @Pattern(regexp = "[A-Za-z0-9_-]*") String productId,
+    @NotBlank @Size(max = 200) String name,
+    @Min(0) double quantity,
+    String unit,
+    String estExpiry,
+    String packSize,
+    List<String> categories
+) {}
@@ -1,5 +1,7 @@
 package com.smartcart.pantry.dto;
 
+import com.smartcart.pantry.model.PantryItem;
+
 import java.util.List;
 
 public record PantryItemDto(
@@ -11,5 +13,22 @@ public record PantryItemDto(
     String estExpiry,
     String source,
     String packSize,
-    List<String> categories
-) {}
+    List<String> categories,
+    Long expiryEpochDay
+) {
+    
+    public static PantryItemDto from(PantryItem item) {
+        return new PantryItemDto(
+            item.getProductId(),
+            item.getName(),
+            item.getQuantity(),
+            item.getUnit(),
+            item.getLastUpdated(),
+            item.getEstExpiry(),
+            item.getSource(),
+            item.getPackSize(),
+            item.getCategories(),
+            item.getExpiryEpochDay()
+        );
+    }
+}
@@ -0,0 +1,11 @@
+package com.smartcart.pantry.dto;
+
+import java.util.List;
+
+/**
+ * A user's pantry items together with the version they were read at
+ */
+public record VersionedPantry(
+    long version,
+    List<PantryItemDto> items
+) {}
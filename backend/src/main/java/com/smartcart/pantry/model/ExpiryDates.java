@@ -0,0 +1,62 @@
+package com.smartcart.pantry.model;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Parses the free-form estExpiry strings stored on pantry items.
+ * Formatters are built once; callers should prefer the epoch day stored on the item
+ * and only fall back to parsing for items written before it existed.
+ */
+public final class ExpiryDates {
+    
+    private static final List<DateTimeFormatter> FALLBACK_FORMATS = List.of(
+            DateTimeFormatter.ofPattern("MM/dd/yyyy"),
+            DateTimeFormatter.ofPattern("MM-dd-yyyy"),
+            DateTimeFormatter.ofPattern("yyyy/MM/dd"),
+            DateTimeFormatter.ofPattern("dd/MM/yyyy"),
+            DateTimeFormatter.ofPattern("dd-MM-yyyy"));
+    
+    private ExpiryDates() {}
+    
+    /**
+     * ISO date (YYYY-MM-DD), epoch millis, or one of the common US/EU formats
+     */
+    public static LocalDate parse(String expiryStr) {
+        try {
+            return LocalDate.parse(expiryStr, DateTimeFormatter.ISO_DATE);
+        } catch (DateTimeParseException e) {
+            // Try timestamp format
+            try {
+                long timestamp = Long.parseLong(expiryStr);
+                return Instant.ofEpochMilli(timestamp).atZone(ZoneId.systemDefault()).toLocalDate();
+            } catch (NumberFormatException e2) {
+                for (DateTimeFormatter format : FALLBACK_FORMATS) {
+                    try {
+                        return LocalDate.parse(expiryStr, format);
+                    } catch (DateTimeParseException ignored) {
+                    }
+                }
+                throw new IllegalArgumentException("Unable to parse expiry date: " + expiryStr);
+            }
+        }
+    }
+    
+    /**
+     * Epoch day of the expiry date, or null if it is missing or unparseable
+     */
+    public static Long toEpochDay(String expiryStr) {
+        if (expiryStr == null || expiryStr.isBlank()) {
+            return null;
+        }
+        try {
+            return parse(expiryStr.trim()).toEpochDay();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
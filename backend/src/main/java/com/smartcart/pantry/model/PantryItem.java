@@ -2,6 +2,8 @@ package com.smartcart.pantry.model;
 
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondaryPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondarySortKey;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
 
@@ -9,6 +11,9 @@ import java.util.List;
 
 @DynamoDbBean
 public class PantryItem {
+    // Sparse: only items with a parseable expiry are indexed, grouped by day then user
+    public static final String EXPIRY_INDEX = "expiry-index";
+    
     private String userId; // PK
     private String sortKey; // SK: ITEM#<canonicalProductId>
     private String productId; // Extracted from sortKey for convenience
@@ -17,13 +22,16 @@ public class PantryItem {
     private String unit;
     private String lastUpdated;
     private String estExpiry;
+    private Long expiryEpochDay; // derived from estExpiry on write
     private String source;
     private String packSize;
     private List<String> categories;
+    private Long pantryVersion; // only set on the per-user META#VERSION item
     
     public PantryItem() {}
     
     @DynamoDbPartitionKey
+    @DynamoDbSecondarySortKey(indexNames = EXPIRY_INDEX)
     @DynamoDbAttribute("userId")
     public String getUserId() {
         return userId;
@@ -110,6 +118,18 @@ public class PantryItem {
     
     public void setEstExpiry(String estExpiry) {
         this.estExpiry = estExpiry;
+        // Normalize once here so expiry checks and the index don't re-parse the string
+        this.expiryEpochDay = ExpiryDates.toEpochDay(estExpiry);
+    }
+    
+    @DynamoDbSecondaryPartitionKey(indexNames = EXPIRY_INDEX)
+    @DynamoDbAttribute("expiryEpochDay")
+    public Long getExpiryEpochDay() {
+        return expiryEpochDay;
+    }
+    
+    public void setExpiryEpochDay(Long expiryEpochDay) {
+        this.expiryEpochDay = expiryEpochDay;
     }
     
     @DynamoDbAttribute("source")
@@ -138,4 +158,13 @@ public class PantryItem {
     public void setCategories(List<String> categories) {
         this.categories = categories;
     }
+    
+    @DynamoDbAttribute("pantryVersion")
+    public Long getPantryVersion() {
+        return pantryVersion;
+    }
+    
+    public void setPantryVersion(Long pantryVersion) {
+        this.pantryVersion = pantryVersion;
+    }
 }
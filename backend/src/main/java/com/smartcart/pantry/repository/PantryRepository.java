@@ -1,27 +1,156 @@
 package com.smartcart.pantry.repository;
 
+import com.smartcart.common.util.Backoff;
+import com.smartcart.common.exception.AppException;
+import com.smartcart.common.util.BoundedCache;
+import com.smartcart.common.util.DynamoBatchDeletes;
+import com.smartcart.common.util.CircuitBreaker;
 import com.smartcart.pantry.model.PantryItem;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.pagination.sync.SdkIterable;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbIndex;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Expression;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteResult;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.enhanced.dynamodb.model.PageIterable;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.enhanced.dynamodb.model.WriteBatch;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public class PantryRepository {
     
+    private static final Logger logger = LoggerFactory.getLogger(PantryRepository.class);
+    
+    private final DynamoDbEnhancedClient enhancedClient;
     private final DynamoDbTable<PantryItem> pantryTable;
+    private final DynamoDbIndex<PantryItem> expiryIndex;
+    private final DynamoDbClient dynamoDbClient;
     private static final String TABLE_NAME = "PantryItems";
     private static final String ITEM_PREFIX = "ITEM#";
+    // Per-user counter item, bumped by every write; lives in the same partition so one query reads both
+    private static final String VERSION_SORT_KEY = "META#VERSION";
+    private static final String VERSION_ATTRIBUTE = "pantryVersion";
+    private static final int MAX_TRANSACT_ITEMS = 100;
+    // One slot per transaction is taken by the version bump
+    public static final int MAX_ITEMS_PER_TRANSACTION = MAX_TRANSACT_ITEMS - 1;
+    // consumeQuantities also leaves room for its request marker and one guard item
+    public static final int MAX_CONSUME_ITEMS = MAX_ITEMS_PER_TRANSACTION - 2;
+    // Marks a consume request as applied; expires (and is TTL-deleted) after the caller's dedupe window
+    private static final String CONSUME_PREFIX = "CONSUME#";
+    public static final String TTL_ATTRIBUTE = "expiresAt";
+    public static final int CONSUME_MARKER_INDEX = 0;
+    public static final int CONSUME_GUARD_INDEX = 1;
+    public static final int MAX_BATCH_WRITE_ITEMS = 25;
+    private static final int MAX_UNPROCESSED_RETRIES = 5;
+    private static final Backoff UNPROCESSED_BACKOFF = Backoff.of(100, 2000);
+    private static final int MAX_CONFLICT_RETRIES = 3;
+    private static final Backoff CONFLICT_BACKOFF = Backoff.of(50, 1000);
+    
+    // ADD is applied server-side, so concurrent receipts for the same user cannot lose increments.
+    // Descriptive fields are only filled in when the item is created.
+    private static final String INCREMENT_EXPRESSION =
+            "ADD #quantity :qty " +
+            "SET #productId = :productId, #lastUpdated = :now, " +
+            "#name = if_not_exists(#name, :productId), " +
+            "#unit = if_not_exists(#unit, :unit), " +
+            "#source = if_not_exists(#source, :source)";
+    private static final Map<String, String> INCREMENT_NAMES = Map.of(
+            "#quantity", "quantity",
+            "#productId", "productId",
+            "#lastUpdated", "lastUpdated",
+            "#name", "name",
+            "#unit", "unit",
+            "#source", "source");
+    
+    private final BoundedCache<String, PantrySnapshot> cache;
+    private final CircuitBreaker queryBreaker;
+    private final int queryMaxAttempts;
+    private final Backoff queryBackoff;
+    private final MeterRegistry meterRegistry;
     
     @Autowired
-    public PantryRepository(DynamoDbEnhancedClient enhancedClient) {
+    public PantryRepository(
+            DynamoDbEnhancedClient enhancedClient,
+            DynamoDbClient dynamoDbClient,
+            MeterRegistry meterRegistry,
+            @Value("${pantry.cache.max-users:10000}") int cacheMaxUsers,
+            @Value("${pantry.cache.ttl-seconds:30}") long cacheTtlSeconds,
+            @Value("${pantry.query.max-attempts:3}") int queryMaxAttempts,
+            @Value("${pantry.query.backoff-initial-ms:100}") long backoffInitialMs,
+            @Value("${pantry.query.backoff-max-ms:1000}") long backoffMaxMs,
+            @Value("${pantry.query.breaker-failure-threshold:5}") int breakerFailureThreshold,
+            @Value("${pantry.query.breaker-open-seconds:30}") long breakerOpenSeconds) {
+        this.enhancedClient = enhancedClient;
         this.pantryTable = enhancedClient.table(TABLE_NAME, TableSchema.fromBean(PantryItem.class));
+        this.expiryIndex = pantryTable.index(PantryItem.EXPIRY_INDEX);
+        this.dynamoDbClient = dynamoDbClient;
+        this.meterRegistry = meterRegistry;
+        this.cache = new BoundedCache<>(cacheMaxUsers, Duration.ofSeconds(cacheTtlSeconds));
+        this.queryMaxAttempts = queryMaxAttempts;
+        this.queryBackoff = Backoff.of(backoffInitialMs, backoffMaxMs);
+        this.queryBreaker = new CircuitBreaker(breakerFailureThreshold, Duration.ofSeconds(breakerOpenSeconds));
+    }
+    
+    /**
+     * A user's pantry at a given version. items is null for a placeholder that only
+     * records a version this instance wrote; the next read reloads the items.
+     */
+    public record PantrySnapshot(long version, List<PantryItem> items) {
+        
+        boolean isLoaded() {
+            return items != null;
+        }
+        
+        PantrySnapshot with(long newVersion, PantryItem item) {
+            List<PantryItem> updated = new ArrayList<>(items.size() + 1);
+            for (PantryItem existing : items) {
+                if (!existing.getSortKey().equals(item.getSortKey())) {
+                    updated.add(existing);
+                }
+            }
+            updated.add(item);
+            updated.sort(Comparator.comparing(PantryItem::getSortKey));
+            return new PantrySnapshot(newVersion, List.copyOf(updated));
+        }
+        
+        PantrySnapshot without(long newVersion, String sortKey) {
+            return new PantrySnapshot(newVersion, items.stream()
+                    .filter(existing -> !existing.getSortKey().equals(sortKey))
+                    .toList());
+        }
     }
     
     public void save(PantryItem item) {
@@ -33,6 +162,73 @@ public class PantryRepository {
             }
         }
         pantryTable.putItem(item);
+        
+        // Write-through: patch the cached pantry if it is exactly one version behind
+        long version = incrementVersion(item.getUserId());
+        cache.compute(item.getUserId(), (userId, current) -> current != null && current.isLoaded()
+                && current.version() == version - 1
+                ? current.with(version, item)
+                : new PantrySnapshot(version, null));
+    }
+    
+    /**
+     * Put up to 25 items for one user in a single BatchWriteItem call, retrying any
+     * unprocessed items with backoff, then bump the pantry version once for the batch.
+     * Unlike save() this does not patch the cache; the next read reloads the pantry.
+     */
+    public void saveBatch(String userId, List<PantryItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        if (items.size() > MAX_BATCH_WRITE_ITEMS) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_WRITE_ITEMS + " items per batch");
+        }
+        
+        List<PantryItem> pending = items;
+        for (int attempt = 1; ; attempt++) {
+            WriteBatch.Builder<PantryItem> batch = WriteBatch.builder(PantryItem.class)
+                    .mappedTableResource(pantryTable);
+            pending.forEach(batch::addPutItem);
+            BatchWriteResult result = enhancedClient.batchWriteItem(BatchWriteItemEnhancedRequest.builder()
+                    .writeBatches(batch.build())
+                    .build());
+            pending = result.unprocessedPutItemsForTable(pantryTable);
+            if (pending.isEmpty()) {
+                break;
+            }
+            // Unprocessed items mean the partition is throttled; back off before resending them
+            if (attempt >= MAX_UNPROCESSED_RETRIES) {
+                throw new AppException(
+                        "Pantry batch write left " + pending.size() + " unprocessed items",
+                        "Some pantry items could not be saved. Please try again shortly.",
+                        "SERVICE_UNAVAILABLE");
+            }
+            logger.debug("Pantry batch write had {} unprocessed items, retrying (attempt {})", pending.size(), attempt);
+            try {
+                Thread.sleep(UNPROCESSED_BACKOFF.delayMillis(attempt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted during pantry batch write", e);
+            }
+        }
+        
+        long version = incrementVersion(userId);
+        cache.compute(userId, (key, current) -> new PantrySnapshot(version, null));
+    }
+    
+    /**
+     * A user's items read lazily page by page, bypassing the cache, so exporting
+     * a large pantry holds one page in memory at a time
+     */
+    public Stream<PantryItem> streamByUserId(String userId, int pageSize) {
+        return pantryTable.query(r -> r
+                        .queryConditional(QueryConditional.keyEqualTo(Key.builder()
+                                .partitionValue(userId)
+                                .build()))
+                        .limit(pageSize))
+                .items()
+                .stream()
+                .filter(item -> item.getSortKey() != null && item.getSortKey().startsWith(ITEM_PREFIX));
     }
     
     public PantryItem findByUserIdAndProductId(String userId, String productId) {
@@ -45,32 +241,384 @@ public class PantryRepository {
     }
     
     public List<PantryItem> findByUserId(String userId) {
-        // Query all items for this user (all items with sortKey starting with ITEM#)
-        // Query by partition key only - this will return all items for the user
+        return snapshot(userId).items();
+    }
+    
+    /**
+     * Monotonically increasing counter that changes with every write to the user's pantry.
+     * Downstream caches (optimize results, suggestions) can key on it.
+     */
+    public long getVersion(String userId) {
+        return snapshot(userId).version();
+    }
+    
+    /**
+     * Items and version from the cache, or from one consistent query on a miss.
+     * Cached items are shared: callers must not modify them.
+     * If DynamoDB is throttling or down, an expired cached copy is served if there is one;
+     * otherwise this fails with SERVICE_UNAVAILABLE rather than falling back to a table scan.
+     */
+    public PantrySnapshot snapshot(String userId) {
+        PantrySnapshot cached = cache.get(userId);
+        if (cached != null && cached.isLoaded()) {
+            return cached;
+        }
+        
+        PantrySnapshot loaded;
         try {
-            return pantryTable.query(r -> r
-                    .queryConditional(QueryConditional.keyEqualTo(Key.builder()
-                            .partitionValue(userId)
-                            .build()))
-            )
-            .items()
-            .stream()
-            .filter(item -> item.getSortKey() != null && item.getSortKey().startsWith(ITEM_PREFIX))
-            .collect(Collectors.toList());
-        } catch (Exception e) {
-            // If query fails (e.g., table doesn't exist or wrong schema), try scan as fallback
-            // This is a temporary workaround for development
+            loaded = loadWithRetry(userId);
+        } catch (RuntimeException e) {
+            return degraded(userId, e);
+        }
+        // A load that raced with a local write must not replace the newer state
+        cache.compute(userId, (key, current) -> current == null || loaded.version() >= current.version()
+                ? loaded
+                : current);
+        return loaded;
+    }
+    
+    /**
+     * All users' items expiring on one day, one page at a time, ordered by user.
+     * Reads the sparse expiry-index, so cost is proportional to the items due that day;
+     * items saved before expiryEpochDay existed are indexed by PantryExpiryBackfillService.
+     */
+    public SdkIterable<Page<PantryItem>> findExpiringOn(long epochDay, int pageSize) {
+        return expiryIndex.query(r -> r
+                .queryConditional(QueryConditional.keyEqualTo(Key.builder()
+                        .partitionValue(epochDay)
+                        .build()))
+                .limit(pageSize));
+    }
+    
+    /**
+     * One segment of a parallel scan for items that have an estExpiry but no expiryEpochDay,
+     * i.e. items the expiry-index can't see yet. Pages are fetched lazily.
+     */
+    public PageIterable<PantryItem> scanUnindexedExpirySegment(
+            int segment, int totalSegments, Map<String, AttributeValue> exclusiveStartKey, int pageSize) {
+        return pantryTable.scan(r -> r
+                .segment(segment)
+                .totalSegments(totalSegments)
+                .exclusiveStartKey(exclusiveStartKey)
+                .limit(pageSize)
+                .filterExpression(Expression.builder()
+                        .expression("attribute_exists(#estExpiry) AND attribute_not_exists(#expiryEpochDay)")
+                        .expressionNames(Map.of(
+                                "#estExpiry", "estExpiry",
+                                "#expiryEpochDay", "expiryEpochDay"))
+                        .build())
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL));
+    }
+    
+    /**
+     * Set expiryEpochDay on an existing item so the expiry-index picks it up.
+     * Only written if the item still has the scanned estExpiry and no epoch day, so a
+     * concurrent edit wins. Returns false if the item changed since it was scanned.
+     * The pantry version isn't bumped: no field a reader sees has changed.
+     */
+    public boolean setExpiryEpochDay(PantryItem item, long epochDay) {
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(TABLE_NAME)
+                    .key(Map.of(
+                            "userId", AttributeValue.fromS(item.getUserId()),
+                            "sortKey", AttributeValue.fromS(item.getSortKey())))
+                    .updateExpression("SET #expiryEpochDay = :epochDay")
+                    .conditionExpression("#estExpiry = :estExpiry AND attribute_not_exists(#expiryEpochDay)")
+                    .expressionAttributeNames(Map.of(
+                            "#estExpiry", "estExpiry",
+                            "#expiryEpochDay", "expiryEpochDay"))
+                    .expressionAttributeValues(Map.of(
+                            ":estExpiry", AttributeValue.fromS(item.getEstExpiry()),
+                            ":epochDay", AttributeValue.fromN(Long.toString(epochDay))))
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+    
+    private PantrySnapshot loadWithRetry(String userId) {
+        if (!queryBreaker.tryAcquire()) {
+            throw new CircuitOpenException();
+        }
+        for (int attempt = 1; ; attempt++) {
             try {
-                return pantryTable.scan()
-                        .items()
-                        .stream()
-                        .filter(item -> userId.equals(item.getUserId()) && 
-                                item.getSortKey() != null && 
-                                item.getSortKey().startsWith(ITEM_PREFIX))
-                        .collect(Collectors.toList());
-            } catch (Exception scanEx) {
-                // Table might not exist yet - return empty list
-                return List.of();
+                PantrySnapshot loaded = load(userId);
+                queryBreaker.onSuccess();
+                return loaded;
+            } catch (SdkException e) {
+                if (!isRetryable(e) || attempt >= queryMaxAttempts) {
+                    queryBreaker.onFailure();
+                    throw e;
+                }
+                logger.debug("Pantry query failed, retrying (attempt {}): {}", attempt, e.getMessage());
+                try {
+                    Thread.sleep(queryBackoff.delayMillis(attempt));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    queryBreaker.onFailure();
+                    throw e;
+                }
+            } catch (RuntimeException e) {
+                queryBreaker.onFailure();
+                throw e;
+            }
+        }
+    }
+    
+    private PantrySnapshot degraded(String userId, RuntimeException cause) {
+        PantrySnapshot stale = cache.getStale(userId);
+        boolean servedStale = stale != null && stale.isLoaded();
+        meterRegistry.counter("pantry.query.degraded", "outcome", servedStale ? "stale" : "unavailable").increment();
+        if (cause instanceof CircuitOpenException) {
+            // Already logged when the circuit opened; don't log every refused read
+            logger.debug("Pantry query circuit open for user {}", userId);
+        } else {
+            logger.warn("Pantry query unavailable for user {} ({}), {}", 
+                    userId, cause.getMessage(), servedStale ? "serving cached copy" : "failing request");
+        }
+        if (servedStale) {
+            return stale;
+        }
+        throw new AppException(
+                "Pantry query failed: " + cause.getMessage(),
+                "Your pantry is temporarily unavailable. Please try again shortly.",
+                "SERVICE_UNAVAILABLE");
+    }
+    
+    private static class CircuitOpenException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        CircuitOpenException() {
+            super("Pantry query circuit is open", null, false, false);
+        }
+    }
+    
+    private static boolean isRetryable(SdkException e) {
+        // Throttling and 5xx are worth another try; validation or missing-table errors are not
+        if (e instanceof AwsServiceException service) {
+            return service.isThrottlingException() || service.statusCode() >= 500;
+        }
+        return e.retryable();
+    }
+    
+    private PantrySnapshot load(String userId) {
+        // Query all items for this user (item rows plus the version row) in one request
+        long version = 0;
+        List<PantryItem> items = new ArrayList<>();
+        for (PantryItem item : pantryTable.query(r -> r
+                .queryConditional(QueryConditional.keyEqualTo(Key.builder()
+                        .partitionValue(userId)
+                        .build()))
+                .consistentRead(true))
+                .items()) {
+            if (VERSION_SORT_KEY.equals(item.getSortKey())) {
+                version = item.getPantryVersion() != null ? item.getPantryVersion() : 0;
+            } else if (item.getSortKey() != null && item.getSortKey().startsWith(ITEM_PREFIX)) {
+                items.add(item);
+            }
+        }
+        return new PantrySnapshot(version, List.copyOf(items));
+    }
+    
+    private long incrementVersion(String userId) {
+        return Long.parseLong(dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                .tableName(TABLE_NAME)
+                .key(versionKey(userId))
+                .updateExpression("ADD #version :one")
+                .expressionAttributeNames(Map.of("#version", VERSION_ATTRIBUTE))
+                .expressionAttributeValues(Map.of(":one", AttributeValue.fromN("1")))
+                .returnValues(ReturnValue.UPDATED_NEW)
+                .build())
+                .attributes()
+                .get(VERSION_ATTRIBUTE)
+                .n());
+    }
+    
+    private static Map<String, AttributeValue> versionKey(String userId) {
+        return Map.of(
+                "userId", AttributeValue.fromS(userId),
+                "sortKey", AttributeValue.fromS(VERSION_SORT_KEY));
+    }
+    
+    /**
+     * Atomically add quantities to a user's pantry, creating items that don't exist yet.
+     * Each chunk of up to 100 products is one TransactWriteItems call, so a typical
+     * receipt is a single round trip; each chunk also bumps the pantry version. The idempotency key makes a retried call within
+     * DynamoDB's 10 minute token window a no-op instead of a double increment; for that
+     * the request must be identical, so callers pass a stable timestamp and ordered map.
+     */
+    public void addQuantities(
+            String userId,
+            Map<String, Double> quantitiesByProductId,
+            String source,
+            String idempotencyKey,
+            long updatedAt) {
+        if (quantitiesByProductId.isEmpty()) {
+            return;
+        }
+        
+        String now = String.valueOf(updatedAt);
+        List<TransactWriteItem> writes = new ArrayList<>(quantitiesByProductId.size());
+        quantitiesByProductId.forEach((productId, quantity) -> writes.add(TransactWriteItem.builder()
+                .update(Update.builder()
+                        .tableName(TABLE_NAME)
+                        .key(Map.of(
+                                "userId", AttributeValue.fromS(userId),
+                                "sortKey", AttributeValue.fromS(ITEM_PREFIX + productId)))
+                        .updateExpression(INCREMENT_EXPRESSION)
+                        .expressionAttributeNames(INCREMENT_NAMES)
+                        .expressionAttributeValues(Map.of(
+                                ":qty", AttributeValue.fromN(Double.toString(quantity)),
+                                ":productId", AttributeValue.fromS(productId),
+                                ":now", AttributeValue.fromS(now),
+                                ":unit", AttributeValue.fromS("unit"),
+                                ":source", AttributeValue.fromS(source)))
+                        .build())
+                .build()));
+        
+        int chunkSize = MAX_ITEMS_PER_TRANSACTION;
+        TransactWriteItem versionBump = versionBump(userId);
+        int chunks = 0;
+        for (int start = 0; start < writes.size(); start += chunkSize) {
+            List<TransactWriteItem> chunk = new ArrayList<>(
+                    writes.subList(start, Math.min(start + chunkSize, writes.size())));
+            chunk.add(versionBump);
+            String token = UUID.nameUUIDFromBytes(
+                    (idempotencyKey + "#" + start).getBytes(StandardCharsets.UTF_8)).toString();
+            transactWithRetry(TransactWriteItemsRequest.builder()
+                    .transactItems(chunk)
+                    .clientRequestToken(token)
+                    .build());
+            chunks++;
+        }
+        
+        // Quantities were added server-side, so reload on next read; the placeholder
+        // keeps an older in-flight load from being cached over this write
+        int bumps = chunks;
+        cache.compute(userId, (key, current) -> current != null
+                ? new PantrySnapshot(current.version() + bumps, null)
+                : null);
+    }
+    
+    /**
+     * Atomically subtract quantities from existing pantry items in one TransactWriteItems call.
+     * Each decrement is conditional on the item still holding at least that much, so a concurrent
+     * edit cancels the transaction instead of going negative; the user's cached snapshot is then
+     * dropped, so callers catching the TransactionCanceledException re-plan from a fresh read.
+     * <p>
+     * The first write records requestKey as applied until markerExpiresAt (epoch seconds), and fails
+     * if it already is: the same consume request, however often it is retried, decrements at most
+     * once. An optional guard item (e.g. marking a list as cooked) goes second. Their cancellation
+     * reasons are at CONSUME_MARKER_INDEX and CONSUME_GUARD_INDEX. At most MAX_CONSUME_ITEMS amounts
+     * fit; larger plans can't be applied atomically and are refused.
+     */
+    public void consumeQuantities(
+            String userId,
+            Map<String, Double> amountsByProductId,
+            TransactWriteItem guard,
+            String requestKey,
+            long markerExpiresAt,
+            long updatedAt) {
+        if (amountsByProductId.isEmpty() && guard == null) {
+            return;
+        }
+        if (amountsByProductId.size() > MAX_CONSUME_ITEMS) {
+            throw new IllegalArgumentException("Cannot consume " + amountsByProductId.size()
+                    + " pantry items in one transaction (max " + MAX_CONSUME_ITEMS + ")");
+        }
+        
+        String now = String.valueOf(updatedAt);
+        List<TransactWriteItem> writes = new ArrayList<>(amountsByProductId.size() + 3);
+        writes.add(consumeMarker(userId, requestKey, markerExpiresAt, updatedAt / 1000));
+        if (guard != null) {
+            writes.add(guard);
+        }
+        amountsByProductId.forEach((productId, amount) -> writes.add(TransactWriteItem.builder()
+                .update(Update.builder()
+                        .tableName(TABLE_NAME)
+                        .key(Map.of(
+                                "userId", AttributeValue.fromS(userId),
+                                "sortKey", AttributeValue.fromS(ITEM_PREFIX + productId)))
+                        .updateExpression("SET #quantity = #quantity - :amount, #lastUpdated = :now")
+                        .conditionExpression("#quantity >= :amount")
+                        .expressionAttributeNames(Map.of(
+                                "#quantity", "quantity",
+                                "#lastUpdated", "lastUpdated"))
+                        .expressionAttributeValues(Map.of(
+                                ":amount", AttributeValue.fromN(Double.toString(amount)),
+                                ":now", AttributeValue.fromS(now)))
+                        .build())
+                .build()));
+        writes.add(versionBump(userId));
+        
+        try {
+            // The marker makes replays safe; the token only covers SDK retries of this exact request
+            transactWithRetry(TransactWriteItemsRequest.builder()
+                    .transactItems(writes)
+                    .clientRequestToken(UUID.randomUUID().toString())
+                    .build());
+        } catch (TransactionCanceledException e) {
+            // The cached items are what the failed plan was made from; they are stale
+            cache.invalidate(userId);
+            throw e;
+        }
+        
+        // Decremented server-side, so reload on next read
+        cache.compute(userId, (key, current) -> current != null
+                ? new PantrySnapshot(current.version() + 1, null)
+                : null);
+    }
+    
+    private static TransactWriteItem consumeMarker(String userId, String requestKey, long expiresAt, long nowSeconds) {
+        return TransactWriteItem.builder()
+                .put(Put.builder()
+                        .tableName(TABLE_NAME)
+                        .item(Map.of(
+                                "userId", AttributeValue.fromS(userId),
+                                "sortKey", AttributeValue.fromS(CONSUME_PREFIX + requestKey),
+                                TTL_ATTRIBUTE, AttributeValue.fromN(String.valueOf(expiresAt))))
+                        // TTL deletion lags, so an expired marker still in the table doesn't count
+                        .conditionExpression("attribute_not_exists(sortKey) OR #expiresAt < :now")
+                        .expressionAttributeNames(Map.of("#expiresAt", TTL_ATTRIBUTE))
+                        .expressionAttributeValues(Map.of(":now", AttributeValue.fromN(String.valueOf(nowSeconds))))
+                        .build())
+                .build();
+    }
+    
+    private static TransactWriteItem versionBump(String userId) {
+        return TransactWriteItem.builder()
+                .update(Update.builder()
+                        .tableName(TABLE_NAME)
+                        .key(versionKey(userId))
+                        .updateExpression("ADD #version :one")
+                        .expressionAttributeNames(Map.of("#version", VERSION_ATTRIBUTE))
+                        .expressionAttributeValues(Map.of(":one", AttributeValue.fromN("1")))
+                        .build())
+                .build();
+    }
+    
+    private void transactWithRetry(TransactWriteItemsRequest request) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                dynamoDbClient.transactWriteItems(request);
+                return;
+            } catch (TransactionCanceledException e) {
+                // Another transaction touching the same pantry items won the race; safe to replay
+                boolean conflict = e.cancellationReasons().stream()
+                        .map(CancellationReason::code)
+                        .anyMatch("TransactionConflict"::equals);
+                if (!conflict || attempt >= MAX_CONFLICT_RETRIES) {
+                    throw e;
+                }
+                logger.debug("Pantry transaction conflict, retrying (attempt {})", attempt);
+                try {
+                    Thread.sleep(CONFLICT_BACKOFF.delayMillis(attempt));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
             }
         }
     }
@@ -92,12 +640,25 @@ public class PantryRepository {
         
         // Delete using the item directly - Enhanced Client will extract keys from annotations
         pantryTable.deleteItem(item);
+        
+        long version = incrementVersion(userId);
+        String sortKey = item.getSortKey();
+        cache.compute(userId, (key, current) -> current != null && current.isLoaded()
+                && current.version() == version - 1
+                ? current.without(version, sortKey)
+                : new PantrySnapshot(version, null));
     }
     
-    public void deleteAllByUserId(String userId) {
-        List<PantryItem> items = findByUserId(userId);
-        for (PantryItem item : items) {
-            pantryTable.deleteItem(item);
-        }
+    /**
+     * Delete the user's whole partition (items and the version counter) with batched deletes.
+     * Returns the number of records deleted.
+     */
+    public long deleteAllByUserId(String userId) {
+        long deleted = DynamoBatchDeletes.deleteAll(enhancedClient, pantryTable, pantryTable.query(r -> r
+                        .queryConditional(QueryConditional.keyEqualTo(k -> k.partitionValue(userId)))
+                        .attributesToProject("userId", "sortKey"))
+                .items());
+        cache.invalidate(userId);
+        return deleted;
     }
 }
@@ -0,0 +1,195 @@
+package com.smartcart.pantry.service;
+
+import com.smartcart.common.exception.AppException;
+import com.smartcart.optimize.service.OptimizerService;
+import com.smartcart.pantry.dto.ConsumePantryRequest;
+import com.smartcart.pantry.dto.PantryConsumptionResult;
+import com.smartcart.pantry.dto.PantryItemDto;
+import com.smartcart.pantry.repository.PantryRepository;
+import com.smartcart.shoppinglist.service.ShoppingListService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * "Cook this list": works out how much of each pantry item a cooked list or meal plan used
+ * (same ingredient matching and unit conversion as the optimizer) and subtracts it all
+ * in one conditional TransactWriteItems call instead of one read-modify-write per item.
+ * A saved list is marked as cooked in the same transaction, so cooking it twice is refused
+ * rather than decrementing the pantry twice. Each request is also recorded under its key
+ * (the client's requestId, or what was cooked) for the dedupe window, so an HTTP retry of a
+ * request that already went through is refused too. Plans too large for one transaction are
+ * refused up front, so a consumption is never left half applied.
+ */
+@Service
+public class PantryConsumptionService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PantryConsumptionService.class);
+    private static final int MAX_PLAN_ATTEMPTS = 2;
+    private static final String CONDITION_FAILED = "ConditionalCheckFailed";
+    
+    private final PantryRepository pantryRepository;
+    private final OptimizerService optimizerService;
+    private final ShoppingListService shoppingListService;
+    private final long dedupeWindowSeconds;
+    
+    public PantryConsumptionService(
+            PantryRepository pantryRepository,
+            OptimizerService optimizerService,
+            ShoppingListService shoppingListService,
+            @Value("${pantry.consume.dedupe-window-minutes:10}") long dedupeWindowMinutes) {
+        this.pantryRepository = pantryRepository;
+        this.optimizerService = optimizerService;
+        this.shoppingListService = shoppingListService;
+        this.dedupeWindowSeconds = Duration.ofMinutes(dedupeWindowMinutes).toSeconds();
+    }
+    
+    public PantryConsumptionResult consume(String userId, ConsumePantryRequest request) {
+        boolean fromList = request.listId() != null && !request.listId().isBlank();
+        Map<String, Double> required = optimizerService.getRequiredIngredients(resolveMealServings(userId, request));
+        // The same for every attempt and every retry of this request
+        String requestKey = requestKey(request);
+        
+        for (int attempt = 1; ; attempt++) {
+            Plan plan = plan(userId, required);
+            if (plan.amounts().size() > PantryRepository.MAX_CONSUME_ITEMS) {
+                throw new AppException(
+                        "Consumption for user " + userId + " touches " + plan.amounts().size() + " pantry items",
+                        "That's too many pantry items to update at once. Please mark fewer meals as cooked at a time.",
+                        "VALIDATION_ERROR");
+            }
+            long now = System.currentTimeMillis();
+            TransactWriteItem guard = fromList ? shoppingListService.markCookedOnce(userId, request.listId(), now) : null;
+            try {
+                pantryRepository.consumeQuantities(userId, plan.amounts(), guard, requestKey,
+                        now / 1000 + dedupeWindowSeconds, now);
+            } catch (TransactionCanceledException e) {
+                List<CancellationReason> reasons = e.cancellationReasons();
+                if (failed(reasons, PantryRepository.CONSUME_MARKER_INDEX)) {
+                    throw new AppException(
+                            "Consume request " + requestKey + " already applied for user " + userId,
+                            "This was already applied, so your pantry wasn't changed again.",
+                            "CONFLICT");
+                }
+                if (guard != null && failed(reasons, PantryRepository.CONSUME_GUARD_INDEX)) {
+                    throw new AppException(
+                            "Shopping list " + request.listId() + " already cooked for user " + userId,
+                            "You've already marked this list as cooked, so your pantry wasn't changed again.",
+                            "CONFLICT");
+                }
+                boolean conditionFailed = reasons.stream()
+                        .map(CancellationReason::code)
+                        .anyMatch(CONDITION_FAILED::equals);
+                if (!conditionFailed) {
+                    throw e;
+                }
+                // Nothing was applied and the cached pantry was dropped, so re-planning reads it fresh
+                if (attempt >= MAX_PLAN_ATTEMPTS) {
+                    throw new AppException(
+                            "Pantry changed while consuming for user " + userId,
+                            "Your pantry changed while updating it. Please review it and try again.",
+                            "CONFLICT");
+                }
+                logger.debug("Pantry changed during consumption for user {}, re-planning", userId);
+                continue;
+            }
+            logger.info("Consumed {} pantry items for user {}", plan.amounts().size(), userId);
+            return plan.result();
+        }
+    }
+    
+    /**
+     * Identifies one consume request across client retries: the client's requestId, or else
+     * what was cooked, so an identical request within the dedupe window is applied once
+     */
+    static String requestKey(ConsumePantryRequest request) {
+        String identity;
+        if (request.requestId() != null && !request.requestId().isBlank()) {
+            identity = "request#" + request.requestId().trim();
+        } else if (request.listId() != null && !request.listId().isBlank()) {
+            identity = "list#" + request.listId();
+        } else {
+            identity = "meals#" + new TreeMap<>(request.mealServings());
+        }
+        return UUID.nameUUIDFromBytes(identity.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+    
+    private static boolean failed(List<CancellationReason> reasons, int index) {
+        return reasons.size() > index && CONDITION_FAILED.equals(reasons.get(index).code());
+    }
+    
+    private Map<String, Integer> resolveMealServings(String userId, ConsumePantryRequest request) {
+        if (request.listId() != null && !request.listId().isBlank()) {
+            Map<String, Integer> mealServings = shoppingListService.getMealServings(userId, request.listId());
+            if (mealServings == null) {
+                throw new AppException("Shopping list not found: " + request.listId(),
+                        "That shopping list no longer exists.", "NOT_FOUND");
+            }
+            return mealServings;
+        }
+        if (request.mealServings() == null || request.mealServings().isEmpty()) {
+            throw new AppException("Either a shopping list or meals are required.", "VALIDATION_ERROR");
+        }
+        return request.mealServings();
+    }
+    
+    /**
+     * Amount to take from each pantry item, capped at what the item holds.
+     * Several ingredients can match the same item (e.g. two kinds of bread), so amounts are summed per item.
+     */
+    private Plan plan(String userId, Map<String, Double> required) {
+        List<PantryItemDto> pantryItems = pantryRepository.findByUserId(userId).stream()
+                .map(PantryItemDto::from)
+                .toList();
+        Map<String, PantryItemDto> matches = optimizerService.matchPantryItems(required.keySet(), pantryItems);
+        
+        Map<String, Double> wanted = new LinkedHashMap<>();
+        Map<String, PantryItemDto> itemsById = new LinkedHashMap<>();
+        List<String> notInPantry = new ArrayList<>();
+        List<String> unconvertible = new ArrayList<>();
+        required.forEach((ingredient, needed) -> {
+            PantryItemDto item = matches.get(ingredient);
+            if (item == null) {
+                notInPantry.add(ingredient);
+                return;
+            }
+            Double amount = optimizerService.toPantryUnits(ingredient, needed, item);
+            if (amount == null) {
+                unconvertible.add(ingredient);
+                return;
+            }
+            wanted.merge(item.productId(), amount, Double::sum);
+            itemsById.put(item.productId(), item);
+        });
+        
+        Map<String, Double> amounts = new LinkedHashMap<>();
+        List<PantryConsumptionResult.ConsumedItem> consumed = new ArrayList<>();
+        wanted.forEach((productId, amount) -> {
+            PantryItemDto item = itemsById.get(productId);
+            double taken = Math.min(amount, item.quantity());
+            if (taken <= 0) {
+                return;
+            }
+            amounts.put(productId, taken);
+            consumed.add(new PantryConsumptionResult.ConsumedItem(
+                    productId, item.name(), taken, item.unit(), item.quantity() - taken));
+        });
+        return new Plan(amounts, new PantryConsumptionResult(consumed, notInPantry, unconvertible));
+    }
+    
+    private record Plan(Map<String, Double> amounts, PantryConsumptionResult result) {
+    }
+}
@@ -0,0 +1,12 @@
+package com.smartcart.pantry.service;
+
+import com.smartcart.pantry.model.PantryItem;
+
+import java.util.List;
+
+/**
+ * Published in-process by the expiry sweep, once per user per day bucket,
+ * with that user's items expiring on the given day. Alert channels listen for it.
+ */
+public record PantryExpiringEvent(String userId, long expiryEpochDay, List<PantryItem> items) {
+}
@@ -0,0 +1,93 @@
+package com.smartcart.pantry.service;
+
+import com.smartcart.common.job.JobCheckpointRepository;
+import com.smartcart.common.job.SegmentScanJob;
+import com.smartcart.common.util.CapacityBudget;
+import com.smartcart.pantry.model.ExpiryDates;
+import com.smartcart.pantry.model.PantryItem;
+import com.smartcart.pantry.repository.PantryRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * One-off backfill that sets expiryEpochDay on pantry items saved before it existed,
+ * so the sparse expiry-index (and with it the expiry sweep) can see them.
+ * A SegmentScanJob over the items that have estExpiry but no expiryEpochDay; updates
+ * are conditional on the scanned estExpiry, so re-processing an item is harmless.
+ */
+@Service
+public class PantryExpiryBackfillService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PantryExpiryBackfillService.class);
+    public static final String JOB_NAME = "pantry-expiry-backfill";
+    
+    private final PantryRepository pantryRepository;
+    private final boolean enabled;
+    private final CapacityBudget writeBudget;
+    private final SegmentScanJob<PantryItem> job;
+    
+    public PantryExpiryBackfillService(
+            PantryRepository pantryRepository,
+            JobCheckpointRepository checkpointRepository,
+            @Value("${pantry.expiry-backfill.enabled:true}") boolean enabled,
+            @Value("${pantry.expiry-backfill.segments:2}") int totalSegments,
+            @Value("${pantry.expiry-backfill.page-size:100}") int pageSize,
+            @Value("${pantry.expiry-backfill.read-capacity-per-second:10}") long readCapacityPerSecond,
+            @Value("${pantry.expiry-backfill.write-capacity-per-second:10}") long writeCapacityPerSecond,
+            @Value("${pantry.expiry-backfill.lease-minutes:5}") long leaseMinutes) {
+        this.pantryRepository = pantryRepository;
+        this.enabled = enabled;
+        this.writeBudget = new CapacityBudget(writeCapacityPerSecond);
+        this.job = new SegmentScanJob<>(JOB_NAME, checkpointRepository,
+                pantryRepository::scanUnindexedExpirySegment, this::indexExpiry, () -> {},
+                totalSegments, pageSize, readCapacityPerSecond, Duration.ofMinutes(leaseMinutes));
+    }
+    
+    /**
+     * Runs on startup, then again every retry interval to pick up segments
+     * left behind by an instance that stopped; a no-op once the job is complete
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${pantry.expiry-backfill.retry-interval-ms:600000}",
+            fixedDelayString = "${pantry.expiry-backfill.retry-interval-ms:600000}")
+    public void startIfEnabled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            start();
+        } catch (RuntimeException e) {
+            logger.warn("Could not start pantry expiry backfill: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Start or resume the backfill in the background. Returns false if it has already finished.
+     */
+    public boolean start() {
+        return job.start(false) != null;
+    }
+    
+    private boolean indexExpiry(PantryItem item) throws InterruptedException {
+        // Unparseable dates stay unindexed; ExpirationAlertService still parses them on read
+        Long epochDay = ExpiryDates.toEpochDay(item.getEstExpiry());
+        if (epochDay == null) {
+            return false;
+        }
+        writeBudget.acquire();
+        return pantryRepository.setExpiryEpochDay(item, epochDay);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        job.shutdown();
+    }
+}
@@ -0,0 +1,82 @@
+package com.smartcart.pantry.service;
+
+import com.smartcart.auth.model.User;
+import com.smartcart.auth.repository.UserRepository;
+import com.smartcart.auth.service.EmailService;
+import com.smartcart.pantry.model.PantryItem;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Emails users about pantry items found by the expiry sweep.
+ * The sweep reports every day bucket in its window each day, so an item would otherwise be
+ * reported once per day until it expires; only buckets that are exactly one of the configured
+ * lead days away are emailed (by default two days ahead and on the day itself).
+ * Users whose login isn't an email address are skipped.
+ */
+@Component
+public class PantryExpiryEmailNotifier {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PantryExpiryEmailNotifier.class);
+    
+    private final UserRepository userRepository;
+    private final EmailService emailService;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int[] leadDays;
+    
+    public PantryExpiryEmailNotifier(
+            UserRepository userRepository,
+            EmailService emailService,
+            MeterRegistry meterRegistry,
+            @Value("${pantry.expiry-alerts.enabled:true}") boolean enabled,
+            @Value("${pantry.expiry-alerts.lead-days:0,2}") int[] leadDays) {
+        this.userRepository = userRepository;
+        this.emailService = emailService;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.leadDays = leadDays;
+    }
+    
+    @EventListener
+    public void onPantryExpiring(PantryExpiringEvent event) {
+        if (!enabled || !isLeadDay(event.expiryEpochDay())) {
+            return;
+        }
+        User user = userRepository.findById(event.userId());
+        String email = user != null ? user.getUsername() : null;
+        if (email == null || !email.contains("@")) {
+            meterRegistry.counter("pantry.expiry.alerts.skipped").increment();
+            logger.debug("No email address for user {}, skipping expiry alert", event.userId());
+            return;
+        }
+        List<String> itemLines = event.items().stream()
+                .map(PantryExpiryEmailNotifier::describe)
+                .toList();
+        emailService.sendExpiryAlertEmail(email, LocalDate.ofEpochDay(event.expiryEpochDay()), itemLines);
+        meterRegistry.counter("pantry.expiry.alerts.emailed").increment();
+    }
+    
+    private boolean isLeadDay(long expiryEpochDay) {
+        long daysAway = expiryEpochDay - LocalDate.now().toEpochDay();
+        return Arrays.stream(leadDays).anyMatch(days -> days == daysAway);
+    }
+    
+    private static String describe(PantryItem item) {
+        String name = item.getName() != null ? item.getName() : item.getProductId();
+        String quantity = item.getQuantity() == Math.rint(item.getQuantity())
+                ? String.valueOf((long) item.getQuantity())
+                : String.valueOf(item.getQuantity());
+        return item.getUnit() != null && !item.getUnit().isBlank()
+                ? name + " (" + quantity + " " + item.getUnit() + ")"
+                : name + " (" + quantity + ")";
+    }
+}
@@ -0,0 +1,174 @@
+package com.smartcart.pantry.service;
+
+import com.smartcart.common.job.JobCheckpoint;
+import com.smartcart.common.job.JobCheckpointRepository;
+import com.smartcart.pantry.model.PantryItem;
+import com.smartcart.pantry.repository.PantryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Finds items expiring in the next few days across all users for proactive alerts.
+ * One paginated expiry-index query per day bucket instead of reading every pantry;
+ * each user's items for a day are published as a PantryExpiringEvent.
+ */
+@Service
+public class PantryExpirySweepService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PantryExpirySweepService.class);
+    public static final String JOB_NAME = "pantry-expiry-sweep";
+    
+    private final PantryRepository pantryRepository;
+    private final JobCheckpointRepository checkpointRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final int daysAhead;
+    private final int pageSize;
+    private final long claimLeaseMillis;
+    
+    public PantryExpirySweepService(
+            PantryRepository pantryRepository,
+            JobCheckpointRepository checkpointRepository,
+            ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry,
+            @Value("${pantry.expiry-sweep.days-ahead:3}") int daysAhead,
+            @Value("${pantry.expiry-sweep.page-size:200}") int pageSize,
+            @Value("${pantry.expiry-sweep.claim-lease-minutes:60}") long claimLeaseMinutes) {
+        this.pantryRepository = pantryRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.daysAhead = daysAhead;
+        this.pageSize = pageSize;
+        this.claimLeaseMillis = Duration.ofMinutes(claimLeaseMinutes).toMillis();
+    }
+    
+    /**
+     * Runs on pantry.expiry-sweep.cron ("-" disables it).
+     * Every instance fires; the first to record today's checkpoint runs the sweep.
+     * A claim left unfinished for longer than the lease (its instance died mid-sweep)
+     * is taken over by the next instance to fire, so the day isn't lost.
+     */
+    @Scheduled(cron = "${pantry.expiry-sweep.cron:-}")
+    public void scheduledSweep() {
+        LocalDate today = LocalDate.now();
+        JobCheckpoint claim = claimDay(today);
+        if (claim == null) {
+            logger.debug("Pantry expiry sweep for {} already claimed by another instance", today);
+            return;
+        }
+        
+        SweepResult result = sweep(today);
+        claim.setScanned(result.items());
+        claim.setUpdated(result.alerts());
+        claim.setDone(true);
+        claim.setUpdatedAt(System.currentTimeMillis());
+        try {
+            checkpointRepository.tryPut(claim);
+        } catch (Exception e) {
+            logger.warn("Could not save pantry expiry sweep checkpoint: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Record this instance's claim on the day, or return null if the day is done
+     * or claimed by a run still within its lease
+     */
+    private JobCheckpoint claimDay(LocalDate today) {
+        JobCheckpoint existing = checkpointRepository.findById(JOB_NAME, (int) today.toEpochDay());
+        long now = System.currentTimeMillis();
+        if (existing != null && (existing.isDone() || now - existing.getUpdatedAt() < claimLeaseMillis)) {
+            return null;
+        }
+        JobCheckpoint claim = new JobCheckpoint(
+                JOB_NAME, (int) today.toEpochDay(), UUID.randomUUID().toString(), daysAhead + 1);
+        claim.setLeaseUntil(now + claimLeaseMillis);
+        claim.setVersion(existing != null ? existing.getVersion() : 0);
+        if (!checkpointRepository.tryPut(claim)) {
+            return null;
+        }
+        if (existing != null) {
+            logger.warn("Taking over pantry expiry sweep for {}: run {} never finished", today, existing.getRunId());
+        }
+        return claim;
+    }
+    
+    /**
+     * Sweep the day buckets from today through today + daysAhead.
+     * A failed bucket is logged and skipped so the remaining days still alert.
+     */
+    public SweepResult sweep(LocalDate today) {
+        long startTime = System.currentTimeMillis();
+        long items = 0;
+        long alerts = 0;
+        for (int offset = 0; offset <= daysAhead; offset++) {
+            long epochDay = today.toEpochDay() + offset;
+            try {
+                SweepResult day = sweepDay(epochDay);
+                items += day.items();
+                alerts += day.alerts();
+            } catch (Exception e) {
+                logger.error("Pantry expiry sweep failed for {}: {}", LocalDate.ofEpochDay(epochDay), e.getMessage(), e);
+                meterRegistry.counter("pantry.expiry.sweep.failures").increment();
+            }
+        }
+        logger.info("Pantry expiry sweep finished: days={}, items={}, alerts={}, duration={}ms",
+                daysAhead + 1, items, alerts, System.currentTimeMillis() - startTime);
+        return new SweepResult(items, alerts);
+    }
+    
+    private SweepResult sweepDay(long epochDay) {
+        long items = 0;
+        long alerts = 0;
+        // The index sorts each day by userId, so a user's items arrive together across pages
+        String currentUser = null;
+        List<PantryItem> userItems = new ArrayList<>();
+        for (Page<PantryItem> page : pantryRepository.findExpiringOn(epochDay, pageSize)) {
+            for (PantryItem item : page.items()) {
+                if (item.getQuantity() <= 0) {
+                    continue;
+                }
+                if (!item.getUserId().equals(currentUser)) {
+                    alerts += publish(currentUser, epochDay, userItems);
+                    currentUser = item.getUserId();
+                    userItems = new ArrayList<>();
+                }
+                userItems.add(item);
+                items++;
+            }
+        }
+        alerts += publish(currentUser, epochDay, userItems);
+        meterRegistry.counter("pantry.expiry.sweep.items").increment(items);
+        return new SweepResult(items, alerts);
+    }
+    
+    private int publish(String userId, long epochDay, List<PantryItem> items) {
+        if (userId == null || items.isEmpty()) {
+            return 0;
+        }
+        try {
+            eventPublisher.publishEvent(new PantryExpiringEvent(userId, epochDay, List.copyOf(items)));
+        } catch (Exception e) {
+            // One user's failing alert must not stop the sweep for everyone after them
+            logger.warn("Expiry alert failed for user {}: {}", userId, e.getMessage());
+            return 0;
+        }
+        meterRegistry.counter("pantry.expiry.sweep.alerts").increment();
+        return 1;
+    }
+    
+    public record SweepResult(long items, long alerts) {
+    }
+}
@@ -2,6 +2,7 @@ package com.smartcart.pantry.service;
 
 import com.smartcart.pantry.dto.CreatePantryItemRequest;
 import com.smartcart.pantry.dto.PantryItemDto;
+import com.smartcart.pantry.dto.VersionedPantry;
 import com.smartcart.pantry.model.PantryItem;
 import com.smartcart.pantry.repository.PantryRepository;
 import org.springframework.stereotype.Service;
@@ -35,15 +36,32 @@ public class PantryService {
         item.setCategories(request.categories());
         
         pantryRepository.save(item);
-        return toDto(item);
+        return PantryItemDto.from(item);
     }
     
     public List<PantryItemDto> getAllByUserId(String userId) {
         return pantryRepository.findByUserId(userId).stream()
-                .map(this::toDto)
+                .map(PantryItemDto::from)
                 .collect(Collectors.toList());
     }
     
+    /**
+     * Items and version from one snapshot read, so the version always describes these items
+     */
+    public VersionedPantry getVersionedByUserId(String userId) {
+        PantryRepository.PantrySnapshot snapshot = pantryRepository.snapshot(userId);
+        return new VersionedPantry(snapshot.version(), snapshot.items().stream()
+                .map(PantryItemDto::from)
+                .collect(Collectors.toList()));
+    }
+    
+    /**
+     * Current pantry version; changes whenever the user's pantry does
+     */
+    public long getVersion(String userId) {
+        return pantryRepository.getVersion(userId);
+    }
+    
     public PantryItemDto update(String userId, String productId, CreatePantryItemRequest request) {
         PantryItem item = pantryRepository.findByUserIdAndProductId(userId, productId);
         if (item == null) {
@@ -59,7 +77,7 @@ public class PantryService {
         item.setCategories(request.categories());
         
         pantryRepository.save(item);
-        return toDto(item);
+        return PantryItemDto.from(item);
     }
     
     public void delete(String userId, String productId) {
@@ -69,18 +87,4 @@ public class PantryService {
         }
         pantryRepository.delete(userId, productId);
     }
-    
-    private PantryItemDto toDto(PantryItem item) {
-        return new PantryItemDto(
-            item.getProductId(),
-            item.getName(),
-            item.getQuantity(),
-            item.getUnit(),
-            item.getLastUpdated(),
-            item.getEstExpiry(),
-            item.getSource(),
-            item.getPackSize(),
-            item.getCategories()
-        );
-    }
 }
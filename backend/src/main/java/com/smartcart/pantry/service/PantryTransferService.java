@@ -0,0 +1,363 @@
+package com.smartcart.pantry.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartcart.common.exception.AppException;
+import com.smartcart.pantry.dto.PantryImportResult;
+import com.smartcart.pantry.dto.PantryImportRow;
+import com.smartcart.pantry.dto.PantryItemDto;
+import com.smartcart.pantry.model.PantryItem;
+import com.smartcart.pantry.repository.PantryRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Bulk pantry import and export as NDJSON or CSV.
+ * Import reads the body line by line, validates each row as it arrives and writes
+ * valid rows in BatchWriteItem chunks of 25; export streams query pages straight
+ * to the response. Neither holds the whole pantry in memory.
+ */
+@Service
+public class PantryTransferService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PantryTransferService.class);
+    private static final int MAX_REPORTED_ERRORS = 100;
+    // Column order for CSV export; import accepts these headers in any order
+    private static final List<String> CSV_COLUMNS = List.of(
+            "productId", "name", "quantity", "unit", "estExpiry", "packSize", "categories");
+    private static final String CATEGORY_SEPARATOR = ";";
+    
+    public enum Format {
+        NDJSON, CSV
+    }
+    
+    private final PantryRepository pantryRepository;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int maxImportItems;
+    private final int exportPageSize;
+    
+    public PantryTransferService(
+            PantryRepository pantryRepository,
+            ObjectMapper objectMapper,
+            Validator validator,
+            @Value("${pantry.transfer.max-import-items:5000}") int maxImportItems,
+            @Value("${pantry.transfer.export-page-size:100}") int exportPageSize) {
+        this.pantryRepository = pantryRepository;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.maxImportItems = maxImportItems;
+        this.exportPageSize = exportPageSize;
+    }
+    
+    public PantryImportResult importItems(String userId, Format format, InputStream body) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        ImportBatch batch = new ImportBatch(userId);
+        
+        Map<String, Integer> csvColumns = null;
+        if (format == Format.CSV) {
+            String header = reader.readLine();
+            if (header == null) {
+                return batch.finish();
+            }
+            // Spreadsheet exports often start with a byte order mark
+            csvColumns = parseCsvHeader(header.startsWith("\uFEFF") ? header.substring(1) : header);
+        }
+        
+        long lineNumber = format == Format.CSV ? 1 : 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (batch.rows() >= maxImportItems) {
+                batch.reject(lineNumber, "Import is limited to " + maxImportItems + " items; the rest were skipped");
+                break;
+            }
+            
+            PantryImportRow row;
+            try {
+                row = format == Format.CSV ? parseCsvRow(line, csvColumns) : parseJsonRow(line);
+            } catch (IllegalArgumentException e) {
+                batch.reject(lineNumber, e.getMessage());
+                continue;
+            }
+            String violation = validate(row);
+            if (violation != null) {
+                batch.reject(lineNumber, violation);
+                continue;
+            }
+            batch.add(toItem(userId, row));
+        }
+        
+        PantryImportResult result = batch.finish();
+        logger.info("Pantry import for user {}: format={}, imported={}, rejected={}",
+                userId, format, result.imported(), result.rejected());
+        return result;
+    }
+    
+    public void exportItems(String userId, Format format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            writer.write(String.join(",", CSV_COLUMNS));
+            writer.write("\n");
+        }
+        try (Stream<PantryItem> items = pantryRepository.streamByUserId(userId, exportPageSize)) {
+            for (PantryItem item : (Iterable<PantryItem>) items::iterator) {
+                writer.write(format == Format.CSV ? toCsvRow(item) : toJsonRow(item));
+                writer.write("\n");
+            }
+        }
+        writer.flush();
+    }
+    
+    /**
+     * Accumulates valid rows and writes them 25 at a time.
+     * A product id seen twice in one chunk flushes first, since a batch cannot put the same key twice.
+     */
+    private class ImportBatch {
+        private final String userId;
+        private final List<PantryItem> pending = new ArrayList<>(PantryRepository.MAX_BATCH_WRITE_ITEMS);
+        private final Set<String> pendingKeys = new HashSet<>();
+        private final List<PantryImportResult.RowError> errors = new ArrayList<>();
+        private int imported;
+        private int rejected;
+        
+        ImportBatch(String userId) {
+            this.userId = userId;
+        }
+        
+        int rows() {
+            return imported + pending.size() + rejected;
+        }
+        
+        void add(PantryItem item) {
+            if (!pendingKeys.add(item.getSortKey())) {
+                flush();
+                pendingKeys.add(item.getSortKey());
+            }
+            pending.add(item);
+            if (pending.size() >= PantryRepository.MAX_BATCH_WRITE_ITEMS) {
+                flush();
+            }
+        }
+        
+        void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new PantryImportResult.RowError(line, message));
+            }
+        }
+        
+        void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            pantryRepository.saveBatch(userId, List.copyOf(pending));
+            imported += pending.size();
+            pending.clear();
+            pendingKeys.clear();
+        }
+        
+        PantryImportResult finish() {
+            flush();
+            return new PantryImportResult(imported, rejected, List.copyOf(errors));
+        }
+    }
+    
+    private PantryImportRow parseJsonRow(String line) {
+        try {
+            return objectMapper.readValue(line, PantryImportRow.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid JSON: " + e.getOriginalMessage());
+        }
+    }
+    
+    private Map<String, Integer> parseCsvHeader(String header) {
+        List<String> names = splitCsvLine(header);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).trim();
+            for (String column : CSV_COLUMNS) {
+                if (column.equalsIgnoreCase(name)) {
+                    columns.putIfAbsent(column, i);
+                }
+            }
+        }
+        if (!columns.containsKey("name")) {
+            throw new AppException(
+                    "CSV header has no name column: " + header,
+                    "The CSV file needs a header row with at least a 'name' column.",
+                    "VALIDATION_ERROR");
+        }
+        return columns;
+    }
+    
+    private PantryImportRow parseCsvRow(String line, Map<String, Integer> columns) {
+        List<String> fields = splitCsvLine(line);
+        String quantity = csvField(fields, columns, "quantity");
+        String categories = csvField(fields, columns, "categories");
+        double parsedQuantity;
+        try {
+            parsedQuantity = quantity != null ? Double.parseDouble(quantity) : 0;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("quantity is not a number: " + quantity);
+        }
+        return new PantryImportRow(
+                csvField(fields, columns, "productId"),
+                csvField(fields, columns, "name"),
+                parsedQuantity,
+                csvField(fields, columns, "unit"),
+                csvField(fields, columns, "estExpiry"),
+                csvField(fields, columns, "packSize"),
+                categories != null
+                        ? Arrays.stream(categories.split(CATEGORY_SEPARATOR))
+                                .map(String::trim)
+                                .filter(category -> !category.isEmpty())
+                                .toList()
+                        : null);
+    }
+    
+    private static String csvField(List<String> fields, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+    
+    /**
+     * RFC 4180 fields on one line: commas inside double quotes, "" for a literal quote.
+     * Quoted fields spanning lines are not supported.
+     */
+    static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+    
+    private String validate(PantryImportRow row) {
+        Set<ConstraintViolation<PantryImportRow>> violations = validator.validate(row);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+    
+    private static PantryItem toItem(String userId, PantryImportRow row) {
+        PantryItem item = new PantryItem();
+        item.setUserId(userId);
+        item.setProductId(row.productId() != null && !row.productId().isEmpty()
+                ? row.productId()
+                : UUID.randomUUID().toString());
+        item.setName(row.name());
+        item.setQuantity(row.quantity());
+        item.setUnit(row.unit() != null ? row.unit() : "unit");
+        item.setLastUpdated(Instant.now().toString());
+        item.setEstExpiry(row.estExpiry());
+        item.setSource("import");
+        item.setPackSize(row.packSize());
+        item.setCategories(row.categories());
+        return item;
+    }
+    
+    private String toJsonRow(PantryItem item) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(PantryItemDto.from(item));
+    }
+    
+    private static String toCsvRow(PantryItem item) {
+        return Stream.of(
+                        item.getProductId(),
+                        item.getName(),
+                        formatQuantity(item.getQuantity()),
+                        item.getUnit(),
+                        item.getEstExpiry(),
+                        item.getPackSize(),
+                        item.getCategories() != null ? String.join(CATEGORY_SEPARATOR, item.getCategories()) : null)
+                .map(PantryTransferService::csvEscape)
+                .collect(Collectors.joining(","));
+    }
+    
+    private static String formatQuantity(double quantity) {
+        return quantity == Math.rint(quantity) && !Double.isInfinite(quantity)
+                ? String.valueOf((long) quantity)
+                : String.valueOf(quantity);
+    }
+    
+    private static String csvEscape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+    
+    public static Format parseFormat(String value) {
+        try {
+            return Format.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new AppException(
+                    "Unsupported pantry transfer format: " + value,
+                    "Format must be ndjson or csv.",
+                    "VALIDATION_ERROR");
+        }
+    }
+}
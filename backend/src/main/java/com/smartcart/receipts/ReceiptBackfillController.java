@@ -0,0 +1,105 @@
+package com.smartcart.receipts;
+
+import com.smartcart.common.job.JobCheckpoint;
+import com.smartcart.receipts.service.ReceiptBackfillService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admin endpoints for the catalog-change receipt backfill
+ */
+@RestController
+@RequestMapping("/api/receipts/admin/backfill")
+public class ReceiptBackfillController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReceiptBackfillController.class);
+    
+    private final ReceiptBackfillService backfillService;
+    
+    // Simple admin authentication for MVP (in production, use proper role-based auth)
+    @Value("${admin.token:admin-secret-token-change-in-production}")
+    private String adminToken;
+    
+    public ReceiptBackfillController(ReceiptBackfillService backfillService) {
+        this.backfillService = backfillService;
+    }
+    
+    /**
+     * Start (or resume) a backfill run
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> startBackfill(
+            @RequestHeader(value = "X-Admin-Token", required = false) String token,
+            @RequestParam(value = "resume", defaultValue = "true") boolean resume) {
+        
+        if (!isAdmin(token)) {
+            return unauthorized();
+        }
+        
+        String runId = backfillService.start(resume);
+        Map<String, Object> response = new HashMap<>();
+        response.put("runId", runId);
+        response.put("running", true);
+        return ResponseEntity.accepted().body(response);
+    }
+    
+    /**
+     * Progress of the current or last run, per scan segment
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getBackfillStatus(
+            @RequestHeader(value = "X-Admin-Token", required = false) String token) {
+        
+        if (!isAdmin(token)) {
+            return unauthorized();
+        }
+        
+        List<JobCheckpoint> checkpoints = backfillService.getCheckpoints();
+        Map<String, Object> response = new HashMap<>();
+        response.put("runId", backfillService.getCurrentRunId());
+        response.put("running", backfillService.getCurrentRunId() != null);
+        response.put("scanned", checkpoints.stream().mapToLong(JobCheckpoint::getScanned).sum());
+        response.put("updated", checkpoints.stream().mapToLong(JobCheckpoint::getUpdated).sum());
+        response.put("segmentsDone", checkpoints.stream().filter(JobCheckpoint::isDone).count());
+        response.put("segments", checkpoints.size());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Stop the current run after its in-flight pages; resume later with POST
+     */
+    @DeleteMapping
+    public ResponseEntity<Map<String, Object>> stopBackfill(
+            @RequestHeader(value = "X-Admin-Token", required = false) String token) {
+        
+        if (!isAdmin(token)) {
+            return unauthorized();
+        }
+        
+        backfillService.stop();
+        Map<String, Object> response = new HashMap<>();
+        response.put("stopping", true);
+        return ResponseEntity.accepted().body(response);
+    }
+    
+    private boolean isAdmin(String token) {
+        if (token == null || !token.equals(adminToken)) {
+            logger.warn("Unauthorized receipt backfill admin attempt");
+            return false;
+        }
+        return true;
+    }
+    
+    private ResponseEntity<Map<String, Object>> unauthorized() {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", "Unauthorized. Admin token required.");
+        return ResponseEntity.status(401).body(error);
+    }
+}
@@ -1,17 +1,29 @@
 package com.smartcart.receipts;
 
+import com.smartcart.common.util.TimeOrderedId;
 import com.smartcart.receipts.dto.ConfirmRequest;
+import com.smartcart.receipts.dto.MapLinesRequest;
+import com.smartcart.receipts.dto.MappedLineResponse;
 import com.smartcart.receipts.dto.PresignResponse;
 import com.smartcart.receipts.dto.ReceiptResponse;
 import com.smartcart.receipts.model.Receipt;
 import com.smartcart.receipts.repository.ReceiptRepository;
 import com.smartcart.receipts.service.S3Service;
-import com.smartcart.receipts.service.TextractService;
+import com.smartcart.receipts.service.ProductMatchResult;
+import com.smartcart.receipts.service.ReceiptDeduplicationService;
+import com.smartcart.receipts.service.ReceiptMapperService;
+import com.smartcart.receipts.service.ReceiptJobQueue;
+import com.smartcart.receipts.service.ReceiptRemapService;
+import com.smartcart.receipts.service.ReceiptStatusNotifier;
+import com.smartcart.receipts.service.ReceiptUploadService;
 import com.smartcart.receipts.service.FileValidationService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,21 +37,39 @@ import java.util.stream.Collectors;
 public class ReceiptController {
     
     private static final Logger logger = LoggerFactory.getLogger(ReceiptController.class);
+    private static final int DEFAULT_PAGE_SIZE = 25;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
     
     private final S3Service s3Service;
     private final ReceiptRepository receiptRepository;
-    private final TextractService textractService;
+    private final ReceiptJobQueue receiptJobQueue;
     private final FileValidationService fileValidationService;
+    private final ReceiptDeduplicationService deduplicationService;
+    private final ReceiptRemapService remapService;
+    private final ReceiptStatusNotifier statusNotifier;
+    private final ReceiptUploadService uploadService;
+    private final ReceiptMapperService mapperService;
     
     public ReceiptController(
             S3Service s3Service,
             ReceiptRepository receiptRepository,
-            TextractService textractService,
-            FileValidationService fileValidationService) {
+            ReceiptJobQueue receiptJobQueue,
+            FileValidationService fileValidationService,
+            ReceiptDeduplicationService deduplicationService,
+            ReceiptRemapService remapService,
+            ReceiptStatusNotifier statusNotifier,
+            ReceiptUploadService uploadService,
+            ReceiptMapperService mapperService) {
         this.s3Service = s3Service;
         this.receiptRepository = receiptRepository;
-        this.textractService = textractService;
+        this.receiptJobQueue = receiptJobQueue;
         this.fileValidationService = fileValidationService;
+        this.deduplicationService = deduplicationService;
+        this.remapService = remapService;
+        this.statusNotifier = statusNotifier;
+        this.uploadService = uploadService;
+        this.mapperService = mapperService;
     }
     
     /**
@@ -84,6 +114,23 @@ public class ReceiptController {
         return ResponseEntity.ok(new PresignResponse(uploadInfo.uploadUrl(), uploadInfo.s3Key()));
     }
     
+    /**
+     * Streaming upload: the raw request body (not multipart) is validated, hashed and piped to S3
+     * as it arrives, then queued for processing. Content-Type must be the file's type.
+     */
+    @PutMapping("/stream-upload")
+    public ResponseEntity<ReceiptResponse> streamUpload(
+            @RequestAttribute("userId") String userId,
+            @RequestHeader(value = "Content-Type", required = false) String contentType,
+            HttpServletRequest request) throws java.io.IOException {
+        
+        // Drop parameters such as "; charset=..."
+        String mediaType = contentType != null ? contentType.split(";")[0].trim() : null;
+        Receipt receipt = uploadService.upload(
+                userId, mediaType, request.getContentLengthLong(), request.getInputStream());
+        return ResponseEntity.ok(ReceiptResponse.fromReceipt(receipt));
+    }
+    
     /**
      * Direct upload endpoint for local development (alternative to S3)
      */
@@ -95,19 +142,38 @@ public class ReceiptController {
         // Validate file
         fileValidationService.validateFile(file);
         
-        String receiptId = UUID.randomUUID().toString();
+        String receiptId = TimeOrderedId.next();
         String s3Key = String.format("receipts/%s/%s.%s", 
                 userId, receiptId, 
                 file.getOriginalFilename() != null && file.getOriginalFilename().contains(".") 
                     ? file.getOriginalFilename().substring(file.getOriginalFilename().lastIndexOf(".") + 1)
                     : "jpg");
         
+        // Hash the upload while streaming it, without buffering the whole file
+        String contentHash;
+        try (java.io.InputStream in = file.getInputStream()) {
+            contentHash = ReceiptDeduplicationService.sha256(in);
+        } catch (java.io.IOException e) {
+            throw new IllegalArgumentException("Could not read uploaded file", e);
+        }
+        
         // Create receipt record
         Receipt receipt = new Receipt(userId, receiptId);
         receipt.setS3KeyOriginal(s3Key);
         receipt.setStatus("uploaded");
+        receipt.setContentHash(contentHash);
         receiptRepository.save(receipt);
         
+        // Same file uploaded before: reuse its results instead of analyzing again
+        Receipt original = deduplicationService.findProcessedDuplicate(userId, contentHash, receiptId);
+        if (original != null) {
+            deduplicationService.copyResults(original, receipt);
+            receiptRepository.save(receipt);
+            logger.info("Duplicate upload, reused results: userId={}, receiptId={}, original={}", 
+                    userId, receiptId, original.getReceiptId());
+            return ResponseEntity.ok(ReceiptResponse.fromReceipt(receipt));
+        }
+        
         // For local dev, mark as processed immediately with mock data
         // In production, this would trigger Textract processing
         receipt.setStatus("processed");
@@ -115,12 +181,15 @@ public class ReceiptController {
         receipt.setTotal(31.28);
         receipt.setPurchasedAt(java.time.LocalDate.now().toString());
         receiptRepository.save(receipt);
+        deduplicationService.record(userId, contentHash, receiptId);
         
         return ResponseEntity.ok(ReceiptResponse.fromReceipt(receipt));
     }
     
     /**
-     * Confirm upload and trigger Textract processing
+     * Confirm upload and trigger Textract processing. Idempotent: confirming a receipt
+     * that is already processed returns it as it is, and one that is still processing
+     * is not queued a second time.
      */
     @PostMapping("/confirm")
     public ResponseEntity<ReceiptResponse> confirmUpload(
@@ -146,6 +215,13 @@ public class ReceiptController {
             receiptRepository.save(receipt);
             logger.debug("Created receipt: userId={}, receiptId={}, sortKey={}", 
                     userId, receiptId, receipt.getSortKey());
+        } else if ("processed".equals(receipt.getStatus())) {
+            logger.debug("Receipt already processed, not re-processing: userId={}, receiptId={}", userId, receiptId);
+            return ResponseEntity.ok(ReceiptResponse.fromReceipt(receipt));
+        } else if ("processing".equals(receipt.getStatus())) {
+            // No-op while its job is queued or running; re-queues it if the first confirm stopped short
+            receiptJobQueue.enqueue(userId, receiptId, receipt.getS3KeyOriginal());
+            return ResponseEntity.ok(ReceiptResponse.fromReceipt(receipt));
         }
         
         receipt.setStatus("processing");
@@ -156,35 +232,37 @@ public class ReceiptController {
         }
         receiptRepository.save(receipt);
         
-        // For local development without AWS, skip Textract
-        // In production, this would trigger async Textract processing
-        // Process receipt asynchronously - TextractService will handle AWS errors gracefully
-        new Thread(() -> {
-            try {
-                textractService.processReceipt(userId, request.s3Key());
-            } catch (Exception e) {
-                // If TextractService fails, ReceiptProcessingService should handle it
-                logger.error("Error in receipt processing thread: {}", e.getMessage());
-            }
-        }).start();
+        // Hand off to the durable job queue; any instance's ReceiptJobWorker picks it up
+        receiptJobQueue.enqueue(userId, receiptId, request.s3Key());
         
         ReceiptResponse response = ReceiptResponse.fromReceipt(receipt);
         return ResponseEntity.ok(response);
     }
     
     /**
-     * Get all receipts for user
+     * Get receipts for user, newest first, one page at a time.
+     * The cursor for the next page is returned in the X-Next-Cursor header (absent on the last page).
+     * Line items are omitted unless includeLineItems=true.
      */
     @GetMapping
     public ResponseEntity<List<ReceiptResponse>> getUserReceipts(
-            @RequestAttribute("userId") String userId) {
+            @RequestAttribute("userId") String userId,
+            @RequestParam(value = "limit", defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "includeLineItems", defaultValue = "false") boolean includeLineItems) {
         
-        List<Receipt> receipts = receiptRepository.findAllByUserId(userId);
-        List<ReceiptResponse> responses = receipts.stream()
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        ReceiptRepository.ReceiptPage page = receiptRepository.findPageByUserId(
+                userId, pageSize, cursor, includeLineItems);
+        List<ReceiptResponse> responses = page.items().stream()
                 .map(ReceiptResponse::fromReceipt)
                 .collect(Collectors.toList());
         
-        return ResponseEntity.ok(responses);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(responses);
     }
     
     /**
@@ -203,6 +281,60 @@ public class ReceiptController {
         return ResponseEntity.ok(ReceiptResponse.fromReceipt(receipt));
     }
     
+    /**
+     * Stream the receipt's processing result as a single server-sent "status" event,
+     * instead of polling GET /{receiptId}. Sent immediately if processing already finished.
+     */
+    @GetMapping(value = "/{receiptId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamStatus(
+            @RequestAttribute("userId") String userId,
+            @PathVariable String receiptId) {
+        
+        SseEmitter emitter = statusNotifier.subscribe(userId, receiptId);
+        if (emitter == null) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        // Keep proxies from buffering the stream
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                .header("X-Accel-Buffering", "no")
+                .body(emitter);
+    }
+    
+    /**
+     * Re-run product mapping over the stored Textract result (no new Textract call)
+     */
+    @PostMapping("/{receiptId}/remap")
+    public ResponseEntity<ReceiptResponse> remapReceipt(
+            @RequestAttribute("userId") String userId,
+            @PathVariable String receiptId) {
+        
+        Receipt receipt = remapService.remap(userId, receiptId);
+        if (receipt == null) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        return ResponseEntity.ok(ReceiptResponse.fromReceipt(receipt));
+    }
+    
+    /**
+     * Map a set of raw receipt lines to canonical products in one call (results in request order)
+     */
+    @PostMapping("/map")
+    public ResponseEntity<List<MappedLineResponse>> mapLines(
+            @RequestAttribute("userId") String userId,
+            @Valid @RequestBody MapLinesRequest request) {
+        
+        List<String> lines = request.lines();
+        List<ProductMatchResult> matches = mapperService.mapToProducts(lines);
+        List<MappedLineResponse> responses = new java.util.ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            responses.add(MappedLineResponse.of(lines.get(i), matches.get(i)));
+        }
+        return ResponseEntity.ok(responses);
+    }
+    
     /**
      * Delete receipt
      */
@@ -0,0 +1,8 @@
+package com.smartcart.receipts.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record MapLinesRequest(@NotNull @Size(max = 500) List<String> lines) {}
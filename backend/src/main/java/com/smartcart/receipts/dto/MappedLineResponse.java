@@ -0,0 +1,19 @@
+package com.smartcart.receipts.dto;
+
+import com.smartcart.receipts.service.ProductMatchResult;
+
+public record MappedLineResponse(
+    String rawDesc,
+    String canonicalProductId,
+    double confidence,
+    String matchType
+) {
+    public static MappedLineResponse of(String rawDesc, ProductMatchResult match) {
+        return new MappedLineResponse(
+                rawDesc,
+                match.canonicalProductId(),
+                match.confidence(),
+                match.matchType()
+        );
+    }
+}
@@ -2,6 +2,8 @@ package com.smartcart.receipts.model;
 
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondaryPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondarySortKey;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
 
@@ -10,6 +12,9 @@ import java.util.ArrayList;
 
 @DynamoDbBean
 public class Receipt {
+    // A user's receipts newest first, whatever the form of their ids (legacy UUIDs or time-ordered)
+    public static final String CREATED_AT_INDEX = "createdAt-index";
+    
     private String userId; // PK
     private String sortKey; // SK: RECEIPT#<receiptId>
     private String receiptId; // Extracted from sortKey for convenience
@@ -21,6 +26,8 @@ public class Receipt {
     private String status; // "uploaded" | "processing" | "processed" | "failed"
     private List<ReceiptLineItem> lineItems;
     private long createdAt;
+    private String contentHash; // SHA-256 of the uploaded file, hex
+    private String duplicateOf; // receiptId whose results were reused, if any
     
     private static final String RECEIPT_PREFIX = "RECEIPT#";
     
@@ -38,6 +45,7 @@ public class Receipt {
     }
     
     @DynamoDbPartitionKey
+    @DynamoDbSecondaryPartitionKey(indexNames = CREATED_AT_INDEX)
     @DynamoDbAttribute("userId")
     public String getUserId() {
         return userId;
@@ -144,6 +152,7 @@ public class Receipt {
         this.lineItems = lineItems != null ? lineItems : new ArrayList<>();
     }
     
+    @DynamoDbSecondarySortKey(indexNames = CREATED_AT_INDEX)
     @DynamoDbAttribute("createdAt")
     public long getCreatedAt() {
         return createdAt;
@@ -152,5 +161,22 @@ public class Receipt {
     public void setCreatedAt(long createdAt) {
         this.createdAt = createdAt;
     }
+    
+    @DynamoDbAttribute("contentHash")
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
+    @DynamoDbAttribute("duplicateOf")
+    public String getDuplicateOf() {
+        return duplicateOf;
+    }
+    
+    public void setDuplicateOf(String duplicateOf) {
+        this.duplicateOf = duplicateOf;
+    }
 }
-
@@ -0,0 +1,65 @@
+package com.smartcart.receipts.model;
+
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
+
+/**
+ * Dedup index entry: which receipt first produced results for a given file hash.
+ * Scoped per user so one user's upload never reveals another user's receipt.
+ */
+@DynamoDbBean
+public class ReceiptHash {
+    private String userId; // PK
+    private String contentHash; // SK: SHA-256 hex of the uploaded bytes
+    private String receiptId;
+    private long createdAt;
+    
+    public ReceiptHash() {}
+    
+    public ReceiptHash(String userId, String contentHash, String receiptId) {
+        this.userId = userId;
+        this.contentHash = contentHash;
+        this.receiptId = receiptId;
+        this.createdAt = System.currentTimeMillis();
+    }
+    
+    @DynamoDbPartitionKey
+    @DynamoDbAttribute("userId")
+    public String getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+    
+    @DynamoDbSortKey
+    @DynamoDbAttribute("contentHash")
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
+    @DynamoDbAttribute("receiptId")
+    public String getReceiptId() {
+        return receiptId;
+    }
+    
+    public void setReceiptId(String receiptId) {
+        this.receiptId = receiptId;
+    }
+    
+    @DynamoDbAttribute("createdAt")
+    public long getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,170 @@
+package com.smartcart.receipts.model;
+
+import software.amazon.awssdk.enhanced.dynamodb.extensions.annotations.DynamoDbVersionAttribute;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondaryPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondarySortKey;
+
+/**
+ * A unit of receipt processing work in the durable job queue.
+ * One job per receipt (jobId == receiptId), so re-confirming an upload is idempotent.
+ * Claims are optimistic: every state change is a version-checked write.
+ */
+@DynamoDbBean
+public class ReceiptJob {
+    public static final String STATUS_INDEX = "status-availableAt-index";
+    
+    public static final String STATUS_PENDING = "pending";
+    public static final String STATUS_LEASED = "leased";
+    public static final String STATUS_DONE = "done";
+    public static final String STATUS_DEAD = "dead";
+    
+    private String jobId; // PK
+    private String userId;
+    private String s3Key;
+    private String status; // "pending" | "leased" | "done" | "dead"
+    private int attempts;
+    private long availableAt; // pending: next attempt time; leased: lease expiry
+    private String leaseOwner;
+    private String lastError;
+    private long createdAt;
+    private long updatedAt;
+    private Long version;
+    
+    public ReceiptJob() {}
+    
+    public ReceiptJob(String receiptId, String userId, String s3Key, long now) {
+        this.jobId = receiptId;
+        this.userId = userId;
+        this.s3Key = s3Key;
+        this.status = STATUS_PENDING;
+        this.availableAt = now;
+        this.createdAt = now;
+        this.updatedAt = now;
+    }
+    
+    public ReceiptJob copy() {
+        ReceiptJob copy = new ReceiptJob();
+        copy.jobId = jobId;
+        copy.userId = userId;
+        copy.s3Key = s3Key;
+        copy.status = status;
+        copy.attempts = attempts;
+        copy.availableAt = availableAt;
+        copy.leaseOwner = leaseOwner;
+        copy.lastError = lastError;
+        copy.createdAt = createdAt;
+        copy.updatedAt = updatedAt;
+        copy.version = version;
+        return copy;
+    }
+    
+    public boolean isActive() {
+        return STATUS_PENDING.equals(status) || STATUS_LEASED.equals(status);
+    }
+    
+    @DynamoDbPartitionKey
+    @DynamoDbAttribute("jobId")
+    public String getJobId() {
+        return jobId;
+    }
+    
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+    
+    @DynamoDbAttribute("userId")
+    public String getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+    
+    @DynamoDbAttribute("s3Key")
+    public String getS3Key() {
+        return s3Key;
+    }
+    
+    public void setS3Key(String s3Key) {
+        this.s3Key = s3Key;
+    }
+    
+    @DynamoDbSecondaryPartitionKey(indexNames = STATUS_INDEX)
+    @DynamoDbAttribute("status")
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    @DynamoDbAttribute("attempts")
+    public int getAttempts() {
+        return attempts;
+    }
+    
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+    
+    @DynamoDbSecondarySortKey(indexNames = STATUS_INDEX)
+    @DynamoDbAttribute("availableAt")
+    public long getAvailableAt() {
+        return availableAt;
+    }
+    
+    public void setAvailableAt(long availableAt) {
+        this.availableAt = availableAt;
+    }
+    
+    @DynamoDbAttribute("leaseOwner")
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+    
+    public void setLeaseOwner(String leaseOwner) {
+        this.leaseOwner = leaseOwner;
+    }
+    
+    @DynamoDbAttribute("lastError")
+    public String getLastError() {
+        return lastError;
+    }
+    
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+    
+    @DynamoDbAttribute("createdAt")
+    public long getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    @DynamoDbAttribute("updatedAt")
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+    
+    @DynamoDbVersionAttribute
+    @DynamoDbAttribute("version")
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
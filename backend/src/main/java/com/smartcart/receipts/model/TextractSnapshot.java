@@ -0,0 +1,146 @@
+package com.smartcart.receipts.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.SdkField;
+import software.amazon.awssdk.core.SdkPojo;
+import software.amazon.awssdk.core.util.SdkAutoConstructList;
+import software.amazon.awssdk.core.util.SdkAutoConstructMap;
+import software.amazon.awssdk.services.textract.model.AnalyzeExpenseResponse;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Raw AnalyzeExpense result in Textract's own JSON shape (ExpenseDocuments, SummaryFields,
+ * LineItemGroups, including geometry and block data). Stored gzipped in S3 next to the
+ * receipt image so receipts can be re-mapped later without calling Textract again.
+ */
+public record TextractSnapshot(JsonNode response) {
+    
+    private static final JsonNodeFactory JSON = JsonNodeFactory.instance;
+    
+    public record Field(String type, String text, Float confidence) {}
+    
+    public static TextractSnapshot from(AnalyzeExpenseResponse response) {
+        return new TextractSnapshot(toJson(response));
+    }
+    
+    /**
+     * A stored snapshot. Format 1 kept only type, text and confidence per field;
+     * those are rebuilt in the response shape so old receipts can still be re-mapped.
+     */
+    public static TextractSnapshot read(JsonNode stored) {
+        if (!stored.has("formatVersion")) {
+            return new TextractSnapshot(stored);
+        }
+        ObjectNode document = JSON.objectNode();
+        document.set("SummaryFields", compactFields(stored.path("summaryFields")));
+        ArrayNode lineItems = document.putArray("LineItemGroups").addObject().putArray("LineItems");
+        for (JsonNode item : stored.path("lineItems")) {
+            lineItems.addObject().set("LineItemExpenseFields", compactFields(item));
+        }
+        ObjectNode response = JSON.objectNode();
+        response.putArray("ExpenseDocuments").add(document);
+        return new TextractSnapshot(response);
+    }
+    
+    /**
+     * Typed summary fields (vendor, total, ...) of every expense document
+     */
+    public List<Field> summaryFields() {
+        List<Field> fields = new ArrayList<>();
+        for (JsonNode document : response.path("ExpenseDocuments")) {
+            addFields(fields, document.path("SummaryFields"));
+        }
+        return fields;
+    }
+    
+    /**
+     * Typed fields of every line item, one list per item
+     */
+    public List<List<Field>> lineItems() {
+        List<List<Field>> lineItems = new ArrayList<>();
+        for (JsonNode document : response.path("ExpenseDocuments")) {
+            for (JsonNode group : document.path("LineItemGroups")) {
+                for (JsonNode item : group.path("LineItems")) {
+                    List<Field> fields = new ArrayList<>();
+                    addFields(fields, item.path("LineItemExpenseFields"));
+                    lineItems.add(fields);
+                }
+            }
+        }
+        return lineItems;
+    }
+    
+    private static void addFields(List<Field> fields, JsonNode expenseFields) {
+        for (JsonNode field : expenseFields) {
+            JsonNode type = field.path("Type").path("Text");
+            JsonNode value = field.path("ValueDetection");
+            if (!type.isTextual() || !value.path("Text").isTextual()) {
+                continue;
+            }
+            JsonNode confidence = value.path("Confidence");
+            fields.add(new Field(type.asText(), value.path("Text").asText(),
+                    confidence.isNumber() ? confidence.floatValue() : null));
+        }
+    }
+    
+    private static ArrayNode compactFields(JsonNode fields) {
+        ArrayNode expenseFields = JSON.arrayNode();
+        for (JsonNode field : fields) {
+            ObjectNode expenseField = expenseFields.addObject();
+            expenseField.putObject("Type").set("Text", field.get("type"));
+            ObjectNode value = expenseField.putObject("ValueDetection");
+            value.set("Text", field.get("text"));
+            value.set("Confidence", field.get("confidence"));
+        }
+        return expenseFields;
+    }
+    
+    // SDK models list their members with wire names, so walking them gives back the service JSON
+    private static JsonNode toJson(Object value) {
+        if (value instanceof SdkPojo pojo) {
+            ObjectNode node = JSON.objectNode();
+            for (SdkField<?> field : pojo.sdkFields()) {
+                Object member = field.getValueOrDefault(pojo);
+                // Unset lists and maps come back as empty placeholders; Textract leaves them out
+                if (member != null && !(member instanceof SdkAutoConstructList)
+                        && !(member instanceof SdkAutoConstructMap)) {
+                    node.set(field.locationName(), toJson(member));
+                }
+            }
+            return node;
+        }
+        if (value instanceof List<?> list) {
+            ArrayNode array = JSON.arrayNode();
+            list.forEach(element -> array.add(toJson(element)));
+            return array;
+        }
+        if (value instanceof Map<?, ?> map) {
+            ObjectNode node = JSON.objectNode();
+            map.forEach((key, element) -> node.set(key.toString(), toJson(element)));
+            return node;
+        }
+        if (value instanceof Number number) {
+            return JSON.numberNode(new BigDecimal(number.toString()));
+        }
+        if (value instanceof Boolean bool) {
+            return JSON.booleanNode(bool);
+        }
+        if (value instanceof Instant instant) {
+            return JSON.numberNode(instant.getEpochSecond());
+        }
+        if (value instanceof SdkBytes bytes) {
+            return JSON.textNode(Base64.getEncoder().encodeToString(bytes.asByteArray()));
+        }
+        return JSON.textNode(value.toString());
+    }
+}
@@ -0,0 +1,90 @@
+package com.smartcart.receipts.repository;
+
+import com.smartcart.receipts.model.ReceiptJob;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbIndex;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * DynamoDB-backed job store. Version checks are done by the enhanced client's
+ * VersionedRecordExtension, so a lost race surfaces as ConditionalCheckFailedException.
+ */
+@Repository
+@ConditionalOnProperty(name = "receipts.jobs.store", havingValue = "dynamo", matchIfMissing = true)
+public class DynamoReceiptJobStore implements ReceiptJobStore {
+    
+    private static final String TABLE_NAME = "ReceiptJobs";
+    
+    private final DynamoDbTable<ReceiptJob> jobTable;
+    private final DynamoDbIndex<ReceiptJob> statusIndex;
+    
+    @Autowired
+    public DynamoReceiptJobStore(DynamoDbEnhancedClient enhancedClient) {
+        this.jobTable = enhancedClient.table(TABLE_NAME, TableSchema.fromBean(ReceiptJob.class));
+        this.statusIndex = jobTable.index(ReceiptJob.STATUS_INDEX);
+    }
+    
+    @Override
+    public ReceiptJob findById(String jobId) {
+        return jobTable.getItem(Key.builder().partitionValue(jobId).build());
+    }
+    
+    @Override
+    public boolean tryInsert(ReceiptJob job) {
+        // A null version makes the extension add attribute_not_exists(version)
+        job.setVersion(null);
+        try {
+            jobTable.putItem(job);
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+        job.setVersion(1L);
+        return true;
+    }
+    
+    @Override
+    public boolean tryUpdate(ReceiptJob job) {
+        long expected = job.getVersion();
+        try {
+            jobTable.putItem(job);
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+        job.setVersion(expected + 1);
+        return true;
+    }
+    
+    @Override
+    public List<ReceiptJob> findClaimable(long now, int limit) {
+        List<ReceiptJob> claimable = new ArrayList<>();
+        claimable.addAll(queryDue(ReceiptJob.STATUS_PENDING, now, limit));
+        claimable.addAll(queryDue(ReceiptJob.STATUS_LEASED, now, limit));
+        claimable.sort(Comparator.comparingLong(ReceiptJob::getAvailableAt));
+        return claimable.size() > limit ? claimable.subList(0, limit) : claimable;
+    }
+    
+    private List<ReceiptJob> queryDue(String status, long now, int limit) {
+        QueryConditional due = QueryConditional.sortLessThanOrEqualTo(
+                k -> k.partitionValue(status).sortValue(now));
+        
+        // GSI reads are eventually consistent; a stale candidate just loses the claim CAS
+        List<ReceiptJob> jobs = new ArrayList<>();
+        statusIndex.query(r -> r.queryConditional(due).limit(limit))
+                .stream()
+                .flatMap(page -> page.items().stream())
+                .limit(limit)
+                .forEach(jobs::add);
+        return jobs;
+    }
+}
@@ -0,0 +1,60 @@
+package com.smartcart.receipts.repository;
+
+import com.smartcart.receipts.model.ReceiptJob;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Single-process job store for tests and local development (receipts.jobs.store=memory).
+ * Not durable across restarts.
+ */
+@Repository
+@ConditionalOnProperty(name = "receipts.jobs.store", havingValue = "memory")
+public class InMemoryReceiptJobStore implements ReceiptJobStore {
+    
+    private final Map<String, ReceiptJob> jobs = new HashMap<>();
+    
+    @Override
+    public synchronized ReceiptJob findById(String jobId) {
+        ReceiptJob job = jobs.get(jobId);
+        return job != null ? job.copy() : null;
+    }
+    
+    @Override
+    public synchronized boolean tryInsert(ReceiptJob job) {
+        if (jobs.containsKey(job.getJobId())) {
+            return false;
+        }
+        job.setVersion(1L);
+        jobs.put(job.getJobId(), job.copy());
+        return true;
+    }
+    
+    @Override
+    public synchronized boolean tryUpdate(ReceiptJob job) {
+        ReceiptJob stored = jobs.get(job.getJobId());
+        if (stored == null || !Objects.equals(stored.getVersion(), job.getVersion())) {
+            return false;
+        }
+        job.setVersion(job.getVersion() + 1);
+        jobs.put(job.getJobId(), job.copy());
+        return true;
+    }
+    
+    @Override
+    public synchronized List<ReceiptJob> findClaimable(long now, int limit) {
+        return jobs.values().stream()
+                .filter(ReceiptJob::isActive)
+                .filter(job -> job.getAvailableAt() <= now)
+                .sorted(Comparator.comparingLong(ReceiptJob::getAvailableAt))
+                .limit(limit)
+                .map(ReceiptJob::copy)
+                .toList();
+    }
+}
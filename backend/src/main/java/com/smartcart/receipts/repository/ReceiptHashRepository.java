@@ -0,0 +1,55 @@
+package com.smartcart.receipts.repository;
+
+import com.smartcart.common.util.DynamoBatchDeletes;
+import com.smartcart.receipts.model.ReceiptHash;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+
+@Repository
+public class ReceiptHashRepository {
+    
+    private final DynamoDbEnhancedClient enhancedClient;
+    private final DynamoDbTable<ReceiptHash> hashTable;
+    private static final String TABLE_NAME = "ReceiptHashes";
+    
+    @Autowired
+    public ReceiptHashRepository(DynamoDbEnhancedClient enhancedClient) {
+        this.enhancedClient = enhancedClient;
+        this.hashTable = enhancedClient.table(TABLE_NAME, TableSchema.fromBean(ReceiptHash.class));
+    }
+    
+    public ReceiptHash find(String userId, String contentHash) {
+        Key key = Key.builder()
+                .partitionValue(userId)
+                .sortValue(contentHash)
+                .build();
+        return hashTable.getItem(key);
+    }
+    
+    public void save(ReceiptHash receiptHash) {
+        hashTable.putItem(receiptHash);
+    }
+    
+    public void delete(String userId, String contentHash) {
+        Key key = Key.builder()
+                .partitionValue(userId)
+                .sortValue(contentHash)
+                .build();
+        hashTable.deleteItem(key);
+    }
+    
+    /**
+     * Delete all of a user's dedup entries with batched deletes; returns the number deleted
+     */
+    public long deleteAllByUserId(String userId) {
+        return DynamoBatchDeletes.deleteAll(enhancedClient, hashTable, hashTable.query(r -> r
+                        .queryConditional(QueryConditional.keyEqualTo(k -> k.partitionValue(userId)))
+                        .attributesToProject("userId", "contentHash"))
+                .items());
+    }
+}
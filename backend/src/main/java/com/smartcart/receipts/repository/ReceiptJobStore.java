@@ -0,0 +1,32 @@
+package com.smartcart.receipts.repository;
+
+import com.smartcart.receipts.model.ReceiptJob;
+
+import java.util.List;
+
+/**
+ * Persistence for the receipt processing job queue.
+ * Implementations must make {@link #tryUpdate} a compare-and-set on the job version,
+ * which is what lets several backend instances claim from the same queue safely.
+ */
+public interface ReceiptJobStore {
+    
+    ReceiptJob findById(String jobId);
+    
+    /**
+     * Insert a new job. Returns false if a job with the same id already exists.
+     */
+    boolean tryInsert(ReceiptJob job);
+    
+    /**
+     * Write the job if its version still matches the stored one.
+     * Returns false if another writer got there first.
+     */
+    boolean tryUpdate(ReceiptJob job);
+    
+    /**
+     * Jobs that are pending or whose lease has expired, with availableAt <= now,
+     * oldest first. Results may be slightly stale; claims are re-checked by {@link #tryUpdate}.
+     */
+    List<ReceiptJob> findClaimable(long now, int limit);
+}
@@ -1,27 +1,63 @@
 package com.smartcart.receipts.repository;
 
+import com.smartcart.common.exception.AppException;
+import com.smartcart.common.util.DynamoBatchDeletes;
 import com.smartcart.receipts.model.Receipt;
+import com.smartcart.receipts.model.ReceiptLineItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbIndex;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.enhanced.dynamodb.model.PageIterable;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Repository
 public class ReceiptRepository {
     
+    private static final Logger logger = LoggerFactory.getLogger(ReceiptRepository.class);
+    
+    private final DynamoDbEnhancedClient enhancedClient;
     private final DynamoDbTable<Receipt> receiptTable;
+    private final DynamoDbIndex<Receipt> createdAtIndex;
+    private final DynamoDbClient dynamoDbClient;
     private static final String TABLE_NAME = "Receipts";
     private static final String RECEIPT_PREFIX = "RECEIPT#";
+    // createdAt is empty in cursors of the base-table fallback
+    private static final Pattern CURSOR = Pattern.compile("(-?\\d{1,19})?:(RECEIPT#.{1,128})");
+    
+    // Everything except lineItems, for list views
+    private static final List<String> SUMMARY_ATTRIBUTES = List.of(
+            "userId", "sortKey", "receiptId", "s3KeyOriginal", "s3KeyTextractJson", "storeName",
+            "total", "purchasedAt", "status", "createdAt", "contentHash", "duplicateOf");
     
     @Autowired
-    public ReceiptRepository(DynamoDbEnhancedClient enhancedClient) {
+    public ReceiptRepository(DynamoDbEnhancedClient enhancedClient, DynamoDbClient dynamoDbClient) {
+        this.enhancedClient = enhancedClient;
         this.receiptTable = enhancedClient.table(TABLE_NAME, TableSchema.fromBean(Receipt.class));
+        this.createdAtIndex = receiptTable.index(Receipt.CREATED_AT_INDEX);
+        this.dynamoDbClient = dynamoDbClient;
     }
     
     public void save(Receipt receipt) {
@@ -47,15 +83,181 @@ public class ReceiptRepository {
     public List<Receipt> findAllByUserId(String userId) {
         // Query all receipts for this user (all items with sortKey starting with RECEIPT#)
         return receiptTable.query(r -> r.queryConditional(
-                    QueryConditional.keyEqualTo(k -> k.partitionValue(userId))
+                    QueryConditional.sortBeginsWith(k -> k.partitionValue(userId).sortValue(RECEIPT_PREFIX))
                 ))
                 .items()
                 .stream()
-                .filter(receipt -> receipt.getSortKey() != null && receipt.getSortKey().startsWith(RECEIPT_PREFIX))
                 .sorted((a, b) -> Long.compare(b.getCreatedAt(), a.getCreatedAt()))
                 .collect(Collectors.toList());
     }
     
+    /**
+     * One page of a user's receipts, newest first, read in order from createdAt-index.
+     * The sort key can't be used for this: legacy UUID receipt ids sort above the
+     * time-ordered ids of newer receipts.
+     * Pass the previous page's nextCursor to continue; it is null on the last page.
+     * <p>
+     * The index is added to existing tables in place and can't be queried until it is built.
+     * Until then pages come from the base table, in sort key order, with the same limit and
+     * projection; a listing started that way continues that way.
+     */
+    public ReceiptPage findPageByUserId(String userId, int limit, String cursor, boolean includeLineItems) {
+        Map<String, AttributeValue> exclusiveStartKey = cursor != null && !cursor.isEmpty()
+                ? decodeCursor(userId, cursor)
+                : null;
+        if (exclusiveStartKey == null || exclusiveStartKey.containsKey("createdAt")) {
+            try {
+                Page<Receipt> page = createdAtIndex.query(r -> {
+                            r.queryConditional(QueryConditional.keyEqualTo(k -> k.partitionValue(userId)))
+                                    .scanIndexForward(false)
+                                    .limit(limit)
+                                    .exclusiveStartKey(exclusiveStartKey);
+                            if (!includeLineItems) {
+                                r.attributesToProject(SUMMARY_ATTRIBUTES);
+                            }
+                        })
+                        .iterator()
+                        .next();
+                return new ReceiptPage(page.items(), nextCursor(page.lastEvaluatedKey()));
+            } catch (DynamoDbException e) {
+                if (!isMissingIndex(e)) {
+                    throw e;
+                }
+                logger.warn("Table '{}' has no usable {}; listing receipts in sort key order",
+                        TABLE_NAME, Receipt.CREATED_AT_INDEX);
+            }
+        }
+        
+        Page<Receipt> page = receiptTable.query(r -> {
+                    r.queryConditional(QueryConditional.sortBeginsWith(k -> k.partitionValue(userId)
+                                    .sortValue(RECEIPT_PREFIX)))
+                            .scanIndexForward(false)
+                            .limit(limit)
+                            .exclusiveStartKey(baseTableKey(exclusiveStartKey));
+                    if (!includeLineItems) {
+                        r.attributesToProject(SUMMARY_ATTRIBUTES);
+                    }
+                })
+                .iterator()
+                .next();
+        Map<String, AttributeValue> lastKey = page.lastEvaluatedKey();
+        return new ReceiptPage(page.items(), lastKey != null && lastKey.containsKey("sortKey")
+                ? encodeCursor("", lastKey.get("sortKey").s())
+                : null);
+    }
+    
+    public record ReceiptPage(List<Receipt> items, String nextCursor) {}
+    
+    private static boolean isMissingIndex(DynamoDbException e) {
+        String message = e.awsErrorDetails() != null ? e.awsErrorDetails().errorMessage() : e.getMessage();
+        return message != null && message.contains("specified index");
+    }
+    
+    private static String nextCursor(Map<String, AttributeValue> lastKey) {
+        return lastKey != null && lastKey.containsKey("sortKey") && lastKey.containsKey("createdAt")
+                ? encodeCursor(lastKey.get("createdAt").n(), lastKey.get("sortKey").s())
+                : null;
+    }
+    
+    private static Map<String, AttributeValue> baseTableKey(Map<String, AttributeValue> startKey) {
+        return startKey != null ? Map.of("userId", startKey.get("userId"), "sortKey", startKey.get("sortKey")) : null;
+    }
+    
+    // An index page ends on (userId, sortKey, createdAt); the partition is always the caller's own userId
+    private static String encodeCursor(String createdAt, String sortKey) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt + ":" + sortKey).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static Map<String, AttributeValue> decodeCursor(String userId, String cursor) {
+        try {
+            Matcher matcher = CURSOR.matcher(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+            if (matcher.matches()) {
+                return matcher.group(1) == null
+                        ? Map.of(
+                                "userId", AttributeValue.fromS(userId),
+                                "sortKey", AttributeValue.fromS(matcher.group(2)))
+                        : Map.of(
+                                "userId", AttributeValue.fromS(userId),
+                                "sortKey", AttributeValue.fromS(matcher.group(2)),
+                                "createdAt", AttributeValue.fromN(matcher.group(1)));
+            }
+        } catch (IllegalArgumentException e) {
+            // fall through
+        }
+        throw new AppException("Invalid page cursor", "VALIDATION_ERROR");
+    }
+    
+    /**
+     * One segment of a parallel scan over all receipts, for background jobs.
+     * Pages are fetched lazily as the iterable is consumed.
+     */
+    public PageIterable<Receipt> scanSegment(
+            int segment, int totalSegments, Map<String, AttributeValue> exclusiveStartKey, int pageSize) {
+        return receiptTable.scan(r -> r
+                .segment(segment)
+                .totalSegments(totalSegments)
+                .exclusiveStartKey(exclusiveStartKey)
+                .limit(pageSize)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL));
+    }
+    
+    /**
+     * Rewrite the mapping of individual line items in place, leaving the rest of the
+     * receipt untouched. Each item is only written if its raw description is still the
+     * one that was re-matched. Returns the consumed write capacity.
+     */
+    public Double updateLineItemMappings(Receipt receipt, Map<Integer, ReceiptLineItem> changedItems) {
+        List<String> sets = new ArrayList<>();
+        List<String> removes = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        Map<String, String> names = new HashMap<>();
+        Map<String, AttributeValue> values = new HashMap<>();
+        names.put("#items", "lineItems");
+        names.put("#raw", "rawDesc");
+        names.put("#product", "canonicalProductId");
+        names.put("#confidence", "confidence");
+        
+        changedItems.forEach((index, item) -> {
+            String path = "#items[" + index + "]";
+            conditions.add(path + ".#raw = :raw" + index);
+            values.put(":raw" + index, AttributeValue.fromS(item.getRawDesc()));
+            if (item.getCanonicalProductId() != null) {
+                sets.add(path + ".#product = :product" + index);
+                values.put(":product" + index, AttributeValue.fromS(item.getCanonicalProductId()));
+            } else {
+                removes.add(path + ".#product");
+            }
+            if (item.getConfidence() != null) {
+                sets.add(path + ".#confidence = :confidence" + index);
+                values.put(":confidence" + index, AttributeValue.fromN(item.getConfidence().toString()));
+            } else {
+                removes.add(path + ".#confidence");
+            }
+        });
+        
+        StringBuilder update = new StringBuilder();
+        if (!sets.isEmpty()) {
+            update.append("SET ").append(String.join(", ", sets));
+        }
+        if (!removes.isEmpty()) {
+            update.append(update.length() > 0 ? " " : "").append("REMOVE ").append(String.join(", ", removes));
+        }
+        
+        UpdateItemResponse response = dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                .tableName(TABLE_NAME)
+                .key(Map.of(
+                        "userId", AttributeValue.fromS(receipt.getUserId()),
+                        "sortKey", AttributeValue.fromS(receipt.getSortKey())))
+                .updateExpression(update.toString())
+                .conditionExpression(String.join(" AND ", conditions))
+                .expressionAttributeNames(names)
+                .expressionAttributeValues(values)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build());
+        return response.consumedCapacity() != null ? response.consumedCapacity().capacityUnits() : null;
+    }
+    
     public void delete(String userId, String receiptId) {
         String sortKey = RECEIPT_PREFIX + receiptId;
         Key key = Key.builder()
@@ -65,11 +267,14 @@ public class ReceiptRepository {
         receiptTable.deleteItem(key);
     }
     
-    public void deleteAllByUserId(String userId) {
-        List<Receipt> receipts = findAllByUserId(userId);
-        for (Receipt receipt : receipts) {
-            receiptTable.deleteItem(receipt);
-        }
+    /**
+     * Delete every receipt in the user's partition with batched deletes; returns the number deleted.
+     * The stored files are removed separately (S3Service.deleteAllForUser).
+     */
+    public long deleteAllByUserId(String userId) {
+        return DynamoBatchDeletes.deleteAll(enhancedClient, receiptTable, receiptTable.query(r -> r
+                        .queryConditional(QueryConditional.keyEqualTo(k -> k.partitionValue(userId)))
+                        .attributesToProject("userId", "sortKey"))
+                .items());
     }
 }
-
@@ -30,6 +30,14 @@ public class FileValidationService {
     
     private static final long MAX_FILE_SIZE = 10 * 1024 * 1024; // 10MB
     
+    // Leading "magic" bytes of each allowed format
+    private static final byte[] JPEG_SIGNATURE = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] PDF_SIGNATURE = {'%', 'P', 'D', 'F', '-'};
+    
+    /** Bytes needed from the start of a file to check its signature */
+    public static final int SIGNATURE_LENGTH = PNG_SIGNATURE.length;
+    
     /**
      * Validate file type and size
      * @param file The uploaded file
@@ -72,6 +80,44 @@ public class FileValidationService {
                 filename, file.getSize(), contentType);
     }
     
+    /**
+     * Validate a declared upload length before reading the body (-1 means unknown)
+     */
+    public void validateDeclaredSize(long contentLength) {
+        if (contentLength == 0) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        if (contentLength > MAX_FILE_SIZE) {
+            throw new IllegalArgumentException(
+                    String.format("File size %d exceeds maximum size of %d bytes", 
+                            contentLength, MAX_FILE_SIZE));
+        }
+    }
+    
+    /**
+     * Check that the first bytes of the file match its declared content type,
+     * so a renamed or mislabeled file is rejected before it is stored
+     */
+    public void validateSignature(String contentType, byte[] head) {
+        byte[] expected = switch (contentType.toLowerCase()) {
+            case "image/jpeg", "image/jpg" -> JPEG_SIGNATURE;
+            case "image/png" -> PNG_SIGNATURE;
+            case "application/pdf" -> PDF_SIGNATURE;
+            default -> throw new IllegalArgumentException(
+                    String.format("Invalid file type: %s. Allowed types: %s", 
+                            contentType, ALLOWED_CONTENT_TYPES));
+        };
+        if (head.length < expected.length || 
+                !Arrays.equals(head, 0, expected.length, expected, 0, expected.length)) {
+            throw new IllegalArgumentException(
+                    String.format("File content does not match declared type %s", contentType));
+        }
+    }
+    
+    public long getMaxFileSize() {
+        return MAX_FILE_SIZE;
+    }
+    
     /**
      * Validate content type string (for pre-signed URLs)
      */
@@ -0,0 +1,127 @@
+package com.smartcart.receipts.service;
+
+import com.smartcart.common.job.JobCheckpoint;
+import com.smartcart.common.job.JobCheckpointRepository;
+import com.smartcart.common.job.SegmentScanJob;
+import com.smartcart.common.util.CapacityBudget;
+import com.smartcart.receipts.model.Receipt;
+import com.smartcart.receipts.model.ReceiptLineItem;
+import com.smartcart.receipts.repository.ReceiptRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Re-matches stored receipt line items after product catalog changes.
+ * A SegmentScanJob over the Receipts table that writes back only line items
+ * whose mapping changed, within a configured read/write capacity budget.
+ */
+@Service
+public class ReceiptBackfillService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReceiptBackfillService.class);
+    public static final String JOB_NAME = "receipt-catalog-backfill";
+    
+    private final ReceiptRepository receiptRepository;
+    private final ReceiptMapperService mapperService;
+    private final CapacityBudget writeBudget;
+    private final SegmentScanJob<Receipt> job;
+    
+    public ReceiptBackfillService(
+            ReceiptRepository receiptRepository,
+            JobCheckpointRepository checkpointRepository,
+            ReceiptMapperService mapperService,
+            @Value("${receipts.backfill.segments:4}") int totalSegments,
+            @Value("${receipts.backfill.page-size:100}") int pageSize,
+            @Value("${receipts.backfill.read-capacity-per-second:20}") long readCapacityPerSecond,
+            @Value("${receipts.backfill.write-capacity-per-second:10}") long writeCapacityPerSecond,
+            @Value("${receipts.backfill.lease-minutes:5}") long leaseMinutes) {
+        this.receiptRepository = receiptRepository;
+        this.mapperService = mapperService;
+        this.writeBudget = new CapacityBudget(writeCapacityPerSecond);
+        this.job = new SegmentScanJob<>(JOB_NAME, checkpointRepository,
+                receiptRepository::scanSegment, this::rematch, () -> {},
+                totalSegments, pageSize, readCapacityPerSecond, Duration.ofMinutes(leaseMinutes));
+    }
+    
+    /**
+     * Disabled unless receipts.backfill.cron is set
+     */
+    @Scheduled(cron = "${receipts.backfill.cron:-}")
+    public void scheduledBackfill() {
+        start(true);
+    }
+    
+    /**
+     * Start a backfill run in the background and return its run id.
+     * With resume=true an unfinished run continues from its checkpoints, including
+     * segments another instance left behind; otherwise, or if the last run finished,
+     * a new run starts. If a run is already active on this instance its id is returned.
+     */
+    public String start(boolean resume) {
+        String runId = resume ? job.start(false) : null;
+        return runId != null ? runId : job.start(true);
+    }
+    
+    /**
+     * Ask a running backfill to stop after its current page; progress is kept
+     */
+    public void stop() {
+        job.stop();
+    }
+    
+    public String getCurrentRunId() {
+        return job.getCurrentRunId();
+    }
+    
+    public List<JobCheckpoint> getCheckpoints() {
+        return job.getCheckpoints();
+    }
+    
+    private boolean rematch(Receipt receipt) throws InterruptedException {
+        List<ReceiptLineItem> lineItems = receipt.getLineItems();
+        Map<Integer, ReceiptLineItem> changed = new LinkedHashMap<>();
+        List<ProductMatchResult> matches = mapperService.mapToProducts(
+                lineItems.stream().map(ReceiptLineItem::getRawDesc).toList());
+        for (int i = 0; i < lineItems.size(); i++) {
+            ReceiptLineItem item = lineItems.get(i);
+            if (item.getRawDesc() == null || item.getRawDesc().isEmpty()) {
+                continue;
+            }
+            ProductMatchResult match = matches.get(i);
+            if (!Objects.equals(match.canonicalProductId(), item.getCanonicalProductId())) {
+                item.setCanonicalProductId(match.canonicalProductId());
+                item.setConfidence(match.confidence());
+                changed.put(i, item);
+            }
+        }
+        if (changed.isEmpty()) {
+            return false;
+        }
+        
+        writeBudget.acquire();
+        try {
+            writeBudget.settle(receiptRepository.updateLineItemMappings(receipt, changed));
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            // Receipt was re-processed or edited since it was scanned; its new items are current
+            logger.debug("Skipping receipt changed during backfill: receiptId={}", receipt.getReceiptId());
+            return false;
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        job.shutdown();
+    }
+}
@@ -0,0 +1,125 @@
+package com.smartcart.receipts.service;
+
+import com.smartcart.receipts.model.Receipt;
+import com.smartcart.receipts.model.ReceiptHash;
+import com.smartcart.receipts.repository.ReceiptHashRepository;
+import com.smartcart.receipts.repository.ReceiptRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Detects re-uploads of the same receipt file by SHA-256 of its bytes,
+ * so the earlier Textract result can be reused instead of paying for analysis again.
+ */
+@Service
+public class ReceiptDeduplicationService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReceiptDeduplicationService.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private final ReceiptHashRepository hashRepository;
+    private final ReceiptRepository receiptRepository;
+    private final S3Client s3Client;
+    private final String bucketName;
+    
+    public ReceiptDeduplicationService(
+            ReceiptHashRepository hashRepository,
+            ReceiptRepository receiptRepository,
+            S3Client s3Client,
+            @Value("${aws.s3.bucket}") String bucketName) {
+        this.hashRepository = hashRepository;
+        this.receiptRepository = receiptRepository;
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+    }
+    
+    /**
+     * SHA-256 of a stream, read in fixed-size chunks so the file is never held in memory
+     */
+    public static String sha256(InputStream in) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+    
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    /**
+     * Hash an object already uploaded to S3 (presigned upload path), streaming the body
+     */
+    public String hashS3Object(String s3Key) {
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(s3Key)
+                .build();
+        try (ResponseInputStream<GetObjectResponse> body = s3Client.getObject(request)) {
+            return sha256(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read receipt from S3: " + s3Key, e);
+        }
+    }
+    
+    /**
+     * Find an earlier, successfully processed receipt of the same user with the same file hash.
+     * Index entries pointing at deleted or unprocessed receipts are ignored.
+     */
+    public Receipt findProcessedDuplicate(String userId, String contentHash, String receiptId) {
+        ReceiptHash entry = hashRepository.find(userId, contentHash);
+        if (entry == null || entry.getReceiptId().equals(receiptId)) {
+            return null;
+        }
+        
+        Receipt original = receiptRepository.findById(userId, entry.getReceiptId());
+        if (original == null || !"processed".equals(original.getStatus())) {
+            logger.debug("Ignoring stale dedup entry: userId={}, receiptId={}", userId, entry.getReceiptId());
+            return null;
+        }
+        return original;
+    }
+    
+    /**
+     * Remember which receipt produced results for this hash
+     */
+    public void record(String userId, String contentHash, String receiptId) {
+        if (contentHash == null) {
+            return;
+        }
+        hashRepository.save(new ReceiptHash(userId, contentHash, receiptId));
+    }
+    
+    /**
+     * Copy the analysis results of the original receipt onto a re-upload of the same file
+     */
+    public void copyResults(Receipt original, Receipt duplicate) {
+        duplicate.setLineItems(new java.util.ArrayList<>(original.getLineItems()));
+        duplicate.setStoreName(original.getStoreName());
+        duplicate.setTotal(original.getTotal());
+        duplicate.setPurchasedAt(original.getPurchasedAt());
+        duplicate.setS3KeyTextractJson(original.getS3KeyTextractJson());
+        duplicate.setDuplicateOf(original.getReceiptId());
+        duplicate.setStatus("processed");
+    }
+}
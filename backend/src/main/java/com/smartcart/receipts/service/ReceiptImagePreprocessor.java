@@ -0,0 +1,220 @@
+package com.smartcart.receipts.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.textract.model.Document;
+import software.amazon.awssdk.services.textract.model.S3Object;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shrinks receipt photos before analysis: downscale so the longest edge is at most
+ * receipts.preprocess.max-dimension, convert to grayscale and re-encode as JPEG.
+ * The smaller image is sent to Textract inline instead of by S3 reference; the stored
+ * original is left untouched. PDFs, undecodable files and results that would not be
+ * smaller fall back to the S3 reference, as does everything when the pool is saturated.
+ */
+@Service
+public class ReceiptImagePreprocessor {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReceiptImagePreprocessor.class);
+    
+    // AnalyzeExpense limit for inline document bytes
+    private static final int MAX_INLINE_BYTES = 5 * 1024 * 1024;
+    
+    private final S3Client s3Client;
+    private final String bucketName;
+    private final boolean enabled;
+    private final int maxDimension;
+    private final float jpegQuality;
+    private final ThreadPoolExecutor executor;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary bytesSaved;
+    
+    public ReceiptImagePreprocessor(
+            S3Client s3Client,
+            MeterRegistry meterRegistry,
+            @Value("${aws.s3.bucket}") String bucketName,
+            @Value("${receipts.preprocess.enabled:true}") boolean enabled,
+            @Value("${receipts.preprocess.max-dimension:2000}") int maxDimension,
+            @Value("${receipts.preprocess.jpeg-quality:0.85}") float jpegQuality,
+            @Value("${receipts.preprocess.threads:2}") int threads,
+            @Value("${receipts.preprocess.queue-capacity:32}") int queueCapacity) {
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+        this.enabled = enabled;
+        this.maxDimension = maxDimension;
+        this.jpegQuality = jpegQuality;
+        this.meterRegistry = meterRegistry;
+        // Decoding is CPU and memory heavy: a fixed pool with a bounded queue caps both
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "receipt-preprocess-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.bytesSaved = DistributionSummary.builder("receipts.preprocess.bytes.saved")
+                .description("Bytes removed from receipt images before analysis")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * The document to analyze for an uploaded receipt. Never fails: any problem
+     * means the original is analyzed from S3 as before.
+     */
+    public CompletableFuture<Document> prepare(String s3Key) {
+        if (!enabled || !isImage(s3Key)) {
+            return CompletableFuture.completedFuture(s3Document(s3Key));
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> prepareNow(s3Key), executor);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Preprocessing pool full, analyzing original for {}", s3Key);
+            record("rejected", 0);
+            return CompletableFuture.completedFuture(s3Document(s3Key));
+        }
+    }
+    
+    private Document prepareNow(String s3Key) {
+        long start = System.nanoTime();
+        try {
+            GetObjectRequest request = GetObjectRequest.builder().bucket(bucketName).key(s3Key).build();
+            long originalBytes;
+            byte[] prepared;
+            try (ResponseInputStream<GetObjectResponse> body = s3Client.getObject(request)) {
+                originalBytes = body.response().contentLength();
+                prepared = normalize(body);
+            }
+            
+            if (prepared == null || prepared.length >= originalBytes || prepared.length > MAX_INLINE_BYTES) {
+                record("skipped", start);
+                return s3Document(s3Key);
+            }
+            
+            bytesSaved.record(originalBytes - prepared.length);
+            record("resized", start);
+            logger.debug("Preprocessed receipt {}: {} -> {} bytes", s3Key, originalBytes, prepared.length);
+            return Document.builder().bytes(SdkBytes.fromByteArrayUnsafe(prepared)).build();
+        } catch (Exception e) {
+            logger.warn("Could not preprocess receipt {}, analyzing original: {}", s3Key, e.getMessage());
+            record("failed", start);
+            return s3Document(s3Key);
+        }
+    }
+    
+    /**
+     * Decode, downscale to grayscale and re-encode. Returns null if the format is not readable.
+     */
+    private byte[] normalize(java.io.InputStream in) throws IOException {
+        BufferedImage decoded;
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                
+                // Subsample while decoding so a 12 MP photo is never fully materialized;
+                // the integer step keeps the decoded image at or above the target size
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = longest / maxDimension;
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                decoded = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+        
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(decoded.getWidth(), decoded.getHeight()));
+        int width = Math.max(1, (int) Math.round(decoded.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(decoded.getHeight() * scale));
+        
+        BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = gray.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(decoded, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(gray, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+    
+    private void record(String outcome, long startNanos) {
+        Timer timer = Timer.builder("receipts.preprocess.duration")
+                .description("Time spent preprocessing receipt images")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+        timer.record(startNanos == 0 ? 0 : System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    private Document s3Document(String s3Key) {
+        return Document.builder()
+                .s3Object(S3Object.builder()
+                        .bucket(bucketName)
+                        .name(s3Key)
+                        .build())
+                .build();
+    }
+    
+    private static boolean isImage(String s3Key) {
+        String key = s3Key.toLowerCase();
+        return key.endsWith(".jpg") || key.endsWith(".jpeg") || key.endsWith(".png");
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
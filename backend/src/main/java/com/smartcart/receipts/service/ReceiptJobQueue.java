@@ -0,0 +1,159 @@
+package com.smartcart.receipts.service;
+
+import com.smartcart.common.util.Backoff;
+import com.smartcart.receipts.model.ReceiptJob;
+import com.smartcart.receipts.repository.ReceiptJobStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Durable receipt processing queue.
+ * Workers claim jobs by taking a time-limited lease; if a worker dies the lease
+ * expires and another instance picks the job up. Failures are retried with
+ * exponential backoff until maxAttempts, after which the job is dead-lettered.
+ */
+@Service
+public class ReceiptJobQueue {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReceiptJobQueue.class);
+    private static final int MAX_ERROR_LENGTH = 500;
+    
+    private final ReceiptJobStore jobStore;
+    private final Clock clock;
+    private final long leaseMillis;
+    private final int maxAttempts;
+    private final Backoff backoff;
+    
+    @Autowired
+    public ReceiptJobQueue(
+            ReceiptJobStore jobStore,
+            @Value("${receipts.jobs.lease-ms:120000}") long leaseMillis,
+            @Value("${receipts.jobs.max-attempts:5}") int maxAttempts,
+            @Value("${receipts.jobs.backoff-initial-ms:5000}") long backoffInitialMs,
+            @Value("${receipts.jobs.backoff-max-ms:300000}") long backoffMaxMs) {
+        this(jobStore, Clock.systemUTC(), leaseMillis, maxAttempts, Backoff.of(backoffInitialMs, backoffMaxMs));
+    }
+    
+    ReceiptJobQueue(ReceiptJobStore jobStore, Clock clock, long leaseMillis, int maxAttempts, Backoff backoff) {
+        this.jobStore = jobStore;
+        this.clock = clock;
+        this.leaseMillis = leaseMillis;
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+    }
+    
+    /**
+     * Queue a receipt for processing. Idempotent: nothing changes while a job for the
+     * receipt is pending or leased, or once it is done, since processing a receipt again
+     * would add its items to the pantry twice. Only a dead job is reset and re-run.
+     */
+    public void enqueue(String userId, String receiptId, String s3Key) {
+        long now = clock.millis();
+        if (jobStore.tryInsert(new ReceiptJob(receiptId, userId, s3Key, now))) {
+            logger.info("Enqueued receipt job: receiptId={}", receiptId);
+            return;
+        }
+        
+        ReceiptJob existing = jobStore.findById(receiptId);
+        if (existing == null || existing.isActive()) {
+            logger.debug("Receipt job already queued: receiptId={}", receiptId);
+            return;
+        }
+        if (ReceiptJob.STATUS_DONE.equals(existing.getStatus())) {
+            logger.debug("Receipt job already done: receiptId={}", receiptId);
+            return;
+        }
+        
+        existing.setUserId(userId);
+        existing.setS3Key(s3Key);
+        existing.setStatus(ReceiptJob.STATUS_PENDING);
+        existing.setAttempts(0);
+        existing.setAvailableAt(now);
+        existing.setLeaseOwner(null);
+        existing.setLastError(null);
+        existing.setUpdatedAt(now);
+        if (jobStore.tryUpdate(existing)) {
+            logger.info("Re-enqueued receipt job: receiptId={}", receiptId);
+        }
+    }
+    
+    /**
+     * Lease up to {@code limit} due jobs for the given worker.
+     * Jobs another instance claimed first are skipped.
+     */
+    public List<ReceiptJob> claim(String owner, int limit) {
+        long now = clock.millis();
+        List<ReceiptJob> claimed = new ArrayList<>();
+        for (ReceiptJob job : jobStore.findClaimable(now, limit)) {
+            if (ReceiptJob.STATUS_LEASED.equals(job.getStatus())) {
+                logger.warn("Reclaiming expired lease: receiptId={}, previousOwner={}",
+                        job.getJobId(), job.getLeaseOwner());
+            }
+            job.setStatus(ReceiptJob.STATUS_LEASED);
+            job.setLeaseOwner(owner);
+            job.setAttempts(job.getAttempts() + 1);
+            job.setAvailableAt(now + leaseMillis);
+            job.setUpdatedAt(now);
+            if (jobStore.tryUpdate(job)) {
+                claimed.add(job);
+            }
+        }
+        return claimed;
+    }
+    
+    /**
+     * Mark a leased job as done. Returns false if the lease was lost meanwhile.
+     */
+    public boolean complete(ReceiptJob job) {
+        job.setStatus(ReceiptJob.STATUS_DONE);
+        job.setLeaseOwner(null);
+        job.setLastError(null);
+        job.setUpdatedAt(clock.millis());
+        return jobStore.tryUpdate(job);
+    }
+    
+    /**
+     * Record a failed attempt. The job is rescheduled with backoff, or dead-lettered
+     * once maxAttempts is reached. Returns true only if the job was dead-lettered.
+     */
+    public boolean fail(ReceiptJob job, String error) {
+        long now = clock.millis();
+        boolean dead = job.getAttempts() >= maxAttempts;
+        job.setStatus(dead ? ReceiptJob.STATUS_DEAD : ReceiptJob.STATUS_PENDING);
+        job.setAvailableAt(dead ? now : now + backoff.delayMillis(job.getAttempts()));
+        job.setLeaseOwner(null);
+        job.setLastError(truncate(error));
+        job.setUpdatedAt(now);
+        
+        if (!jobStore.tryUpdate(job)) {
+            logger.warn("Lost lease before recording failure: receiptId={}", job.getJobId());
+            return false;
+        }
+        if (dead) {
+            logger.error("Receipt job dead-lettered after {} attempts: receiptId={}, error={}",
+                    job.getAttempts(), job.getJobId(), error);
+        } else {
+            logger.warn("Receipt job attempt {} failed, retrying: receiptId={}, error={}",
+                    job.getAttempts(), job.getJobId(), error);
+        }
+        return dead;
+    }
+    
+    public ReceiptJob getJob(String receiptId) {
+        return jobStore.findById(receiptId);
+    }
+    
+    private String truncate(String error) {
+        if (error == null || error.length() <= MAX_ERROR_LENGTH) {
+            return error;
+        }
+        return error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -0,0 +1,135 @@
+package com.smartcart.receipts.service;
+
+import com.smartcart.receipts.model.ReceiptJob;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Polls the receipt job queue and starts claimed jobs on the async Textract pipeline.
+ * Every backend instance runs one of these; the lease on each job keeps them
+ * from processing the same receipt twice.
+ */
+@Service
+public class ReceiptJobWorker {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReceiptJobWorker.class);
+    
+    private final ReceiptJobQueue jobQueue;
+    private final TextractService textractService;
+    private final ReceiptProcessingService receiptProcessingService;
+    private final ExecutorService bookkeepingExecutor;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final String workerId;
+    private final int maxInFlight;
+    
+    @Value("${receipts.jobs.enabled:true}")
+    private boolean enabled;
+    
+    public ReceiptJobWorker(
+            ReceiptJobQueue jobQueue,
+            TextractService textractService,
+            ReceiptProcessingService receiptProcessingService,
+            @Value("${receipts.jobs.max-in-flight:16}") int maxInFlight) {
+        this.jobQueue = jobQueue;
+        this.textractService = textractService;
+        this.receiptProcessingService = receiptProcessingService;
+        this.maxInFlight = maxInFlight;
+        // Job store writes are blocking, so keep them off SDK response threads
+        AtomicInteger threadCount = new AtomicInteger();
+        this.bookkeepingExecutor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "receipt-job-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        String host = System.getenv("HOSTNAME");
+        this.workerId = (host != null ? host : "local") + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+    
+    /**
+     * Claims only up to maxInFlight jobs, so leases are never held by work
+     * that is still waiting for a Textract permit for longer than necessary
+     */
+    @Scheduled(fixedDelayString = "${receipts.jobs.poll-interval-ms:2000}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        
+        int capacity = maxInFlight - inFlight.get();
+        if (capacity <= 0) {
+            return;
+        }
+        
+        List<ReceiptJob> jobs;
+        try {
+            jobs = jobQueue.claim(workerId, capacity);
+        } catch (Exception e) {
+            logger.warn("Could not poll receipt job queue: {}", e.getMessage());
+            return;
+        }
+        
+        for (ReceiptJob job : jobs) {
+            inFlight.incrementAndGet();
+            logger.info("Processing receipt job: receiptId={}, attempt={}, worker={}",
+                    job.getJobId(), job.getAttempts(), workerId);
+            start(job).whenCompleteAsync((ignored, error) -> {
+                try {
+                    finish(job, error);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }, bookkeepingExecutor);
+        }
+    }
+    
+    private CompletableFuture<Void> start(ReceiptJob job) {
+        try {
+            return textractService.processReceiptAsync(job.getUserId(), job.getS3Key());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    private void finish(ReceiptJob job, Throwable error) {
+        if (error == null) {
+            if (!jobQueue.complete(job)) {
+                logger.warn("Receipt job finished after its lease was taken over: receiptId={}", job.getJobId());
+            }
+            return;
+        }
+        
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        String message = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+        try {
+            if (jobQueue.fail(job, message)) {
+                receiptProcessingService.markAsFailed(job.getUserId(), job.getS3Key(), message);
+            }
+        } catch (Exception storeError) {
+            // Lease will expire and the job will be retried by whoever claims it next
+            logger.error("Could not record receipt job failure: receiptId={}, error={}",
+                    job.getJobId(), storeError.getMessage());
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Unfinished jobs keep their lease and are picked up again once it expires
+        bookkeepingExecutor.shutdown();
+        if (!bookkeepingExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+            bookkeepingExecutor.shutdownNow();
+        }
+    }
+}
@@ -4,9 +4,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import com.smartcart.receipts.service.StringSimilarity;
 import com.smartcart.receipts.service.ProductMatchResult;
 
@@ -20,6 +26,24 @@ public class ReceiptMapperService {
     
     private static final Logger logger = LoggerFactory.getLogger(ReceiptMapperService.class);
     
+    // Descriptions with at least this many distinct texts are scored in parallel
+    private static final int PARALLEL_THRESHOLD = 32;
+    
+    // Compiled once: these run for every line of every receipt
+    private static final List<Pattern> NOISE_PATTERNS = Stream.of(
+            "club price", "member price", "sale", "discount", "txn", "transaction",
+            "subtotal", "tax", "total", "savings", "you saved", "rebate",
+            "coupon", "special", "limited time", "buy", "get", "free",
+            "store brand", "private label", "house brand")
+            .map(noise -> Pattern.compile("\\b" + Pattern.quote(noise) + "\\b"))
+            .toList();
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^a-z0-9\\s]");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern SIZE_UNIT = Pattern.compile(
+            "\\d+\\s*(oz|ounce|ounces|lb|lbs|pound|pounds|kg|kilogram|g|gram|grams|ml|milliliter|milliliters|l|liter|liters)\\b");
+    private static final Pattern PACK_SIZE = Pattern.compile("\\d+-?pack");
+    private static final Pattern COUNT_SIZE = Pattern.compile("\\d+\\s*count");
+    
     // Simple product catalog - in production, this would come from a database
     private static final Map<String, String> PRODUCT_MAP = new HashMap<>();
     
@@ -213,6 +237,44 @@ public class ReceiptMapperService {
             return ProductMatchResult.noMatch();
         }
         
+        ProductMatchResult result = score(toMatchKey(rawDescription));
+        logMatch(rawDescription, result);
+        return result;
+    }
+    
+    /**
+     * Batch version of {@link #mapToProductWithConfidence} for a whole receipt.
+     * Results are in input order. Identical descriptions (and descriptions that normalize
+     * to the same text) are scored once; large batches are scored in parallel.
+     */
+    public List<ProductMatchResult> mapToProducts(List<String> rawDescriptions) {
+        Map<String, String> keysByDescription = new HashMap<>();
+        for (String raw : rawDescriptions) {
+            if (raw != null && !raw.trim().isEmpty()) {
+                keysByDescription.computeIfAbsent(raw, this::toMatchKey);
+            }
+        }
+        
+        Set<String> distinctKeys = new HashSet<>(keysByDescription.values());
+        Stream<String> keys = distinctKeys.size() >= PARALLEL_THRESHOLD
+                ? distinctKeys.parallelStream()
+                : distinctKeys.stream();
+        Map<String, ProductMatchResult> resultsByKey = keys.collect(Collectors.toMap(key -> key, this::score));
+        
+        List<ProductMatchResult> results = new ArrayList<>(rawDescriptions.size());
+        for (String raw : rawDescriptions) {
+            String key = raw != null ? keysByDescription.get(raw) : null;
+            ProductMatchResult result = key != null ? resultsByKey.get(key) : ProductMatchResult.noMatch();
+            results.add(result);
+        }
+        logger.debug("Mapped {} descriptions ({} distinct)", rawDescriptions.size(), distinctKeys.size());
+        return results;
+    }
+    
+    /**
+     * Normalized text that matching is based on: noise words, punctuation and sizes removed
+     */
+    private String toMatchKey(String rawDescription) {
         // Strip store noise words
         String cleaned = stripStoreNoise(rawDescription);
         
@@ -220,18 +282,18 @@ public class ReceiptMapperService {
         String normalized = normalize(cleaned);
         
         // Detect and normalize size tokens
-        normalized = normalizeSizeTokens(normalized);
-        
+        return normalizeSizeTokens(normalized);
+    }
+    
+    private ProductMatchResult score(String normalized) {
         double bestScore = 0.0;
         String bestMatch = null;
         String bestMatchType = "none";
         
         // Try exact match first
-        for (Map.Entry<String, String> entry : PRODUCT_MAP.entrySet()) {
-            if (normalized.equals(entry.getKey())) {
-                logger.debug("Exact match: '{}' -> '{}'", rawDescription, entry.getValue());
-                return new ProductMatchResult(entry.getValue(), 1.0, "exact");
-            }
+        String exact = PRODUCT_MAP.get(normalized);
+        if (exact != null) {
+            return new ProductMatchResult(exact, 1.0, "exact");
         }
         
         // Try substring match (synonym matching)
@@ -258,15 +320,21 @@ public class ReceiptMapperService {
         
         // Return match if confidence >= 0.86 threshold (per spec)
         if (bestMatch != null && bestScore >= 0.86) {
-            logger.debug("Matched '{}' to '{}' with confidence {} ({})", 
-                    rawDescription, bestMatch, bestScore, bestMatchType);
             return new ProductMatchResult(bestMatch, bestScore, bestMatchType);
         }
         
-        logger.debug("No confident match found for '{}' (best score: {})", rawDescription, bestScore);
         return ProductMatchResult.noMatch();
     }
     
+    private void logMatch(String rawDescription, ProductMatchResult result) {
+        if (result.canonicalProductId() != null) {
+            logger.debug("Matched '{}' to '{}' with confidence {} ({})", 
+                    rawDescription, result.canonicalProductId(), result.confidence(), result.matchType());
+        } else {
+            logger.debug("No confident match found for '{}'", rawDescription);
+        }
+    }
+    
     /**
      * Maps a raw receipt description to a canonical product ID
      * Returns null if confidence is too low (will require user confirmation)
@@ -277,26 +345,17 @@ public class ReceiptMapperService {
     }
     
     private String normalize(String text) {
-        return text.toLowerCase()
-                .replaceAll("[^a-z0-9\\s]", "")
-                .replaceAll("\\s+", " ")
-                .trim();
+        String stripped = NON_ALPHANUMERIC.matcher(text.toLowerCase()).replaceAll("");
+        return WHITESPACE.matcher(stripped).replaceAll(" ").trim();
     }
     
     /**
      * Strip store noise words like "club price", "txn", "subtotal"
      */
     private String stripStoreNoise(String text) {
-        String[] noiseWords = {
-            "club price", "member price", "sale", "discount", "txn", "transaction",
-            "subtotal", "tax", "total", "savings", "you saved", "rebate",
-            "coupon", "special", "limited time", "buy", "get", "free",
-            "store brand", "private label", "house brand"
-        };
-        
         String cleaned = text.toLowerCase();
-        for (String noise : noiseWords) {
-            cleaned = cleaned.replaceAll("\\b" + Pattern.quote(noise) + "\\b", "");
+        for (Pattern noise : NOISE_PATTERNS) {
+            cleaned = noise.matcher(cleaned).replaceAll("");
         }
         return cleaned.trim();
     }
@@ -307,10 +366,9 @@ public class ReceiptMapperService {
     private String normalizeSizeTokens(String text) {
         // This removes size info for matching purposes
         // Actual size extraction can be done separately if needed
-        return text.replaceAll("\\d+\\s*(oz|ounce|ounces|lb|lbs|pound|pounds|kg|kilogram|g|gram|grams|ml|milliliter|milliliters|l|liter|liters)\\b", "")
-                .replaceAll("\\d+-?pack", "")
-                .replaceAll("\\d+\\s*count", "")
-                .trim();
+        String stripped = SIZE_UNIT.matcher(text).replaceAll("");
+        stripped = PACK_SIZE.matcher(stripped).replaceAll("");
+        return COUNT_SIZE.matcher(stripped).replaceAll("").trim();
     }
 }
 
@@ -2,19 +2,21 @@ package com.smartcart.receipts.service;
 
 import com.smartcart.receipts.model.Receipt;
 import com.smartcart.receipts.model.ReceiptLineItem;
+import com.smartcart.receipts.model.TextractSnapshot;
 import com.smartcart.receipts.repository.ReceiptRepository;
-import com.smartcart.pantry.model.PantryItem;
 import com.smartcart.pantry.repository.PantryRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.services.textract.model.AnalyzeExpenseResponse;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
 
 @Service
@@ -28,45 +30,89 @@ public class ReceiptProcessingService {
     @Autowired
     private PantryRepository pantryRepository;
     
+    @Autowired
+    private ReceiptDeduplicationService deduplicationService;
+    
+    @Autowired
+    private TextractSnapshotParser snapshotParser;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    /**
+     * Persist Textract results. Exceptions propagate so the job queue can retry.
+     */
     public void completeProcessing(
             String userId,
             String s3Key,
+            String contentHash,
             List<ReceiptLineItem> lineItems,
-            AnalyzeExpenseResponse textractResponse) {
+            TextractSnapshot textractSnapshot,
+            String snapshotKey) {
         
-        try {
-            // Find receipt by s3Key (extract receiptId from s3Key)
-            String receiptId = extractReceiptIdFromS3Key(s3Key);
-            Receipt receipt = receiptRepository.findById(userId, receiptId);
-            
-            if (receipt == null) {
-                logger.error("Receipt not found for userId: {}, s3Key: {}", userId, s3Key);
-                return;
-            }
-            
-            // Extract store name and total from Textract response
-            String storeName = extractStoreName(textractResponse);
-            Double total = extractTotal(textractResponse);
-            String purchasedAt = LocalDate.now().format(DateTimeFormatter.ISO_DATE);
-            
-            // Update receipt
-            receipt.setStatus("processed");
-            receipt.setLineItems(lineItems);
-            receipt.setStoreName(storeName);
-            receipt.setTotal(total);
-            receipt.setPurchasedAt(purchasedAt);
-            
-            receiptRepository.save(receipt);
-            
-            // Update pantry with items that have canonical product IDs
-            updatePantryFromReceipt(userId, lineItems);
-            
-            logger.info("Receipt processing completed for userId: {}, receiptId: {}", userId, receiptId);
-            
-        } catch (Exception e) {
-            logger.error("Error completing receipt processing: {}", e.getMessage(), e);
-            markAsFailed(userId, s3Key, e.getMessage());
+        // Find receipt by s3Key (extract receiptId from s3Key)
+        String receiptId = extractReceiptIdFromS3Key(s3Key);
+        Receipt receipt = receiptRepository.findById(userId, receiptId);
+        
+        if (receipt == null) {
+            logger.error("Receipt not found for userId: {}, s3Key: {}", userId, s3Key);
+            return;
         }
+        
+        // Extract store name and total from Textract response
+        String storeName = snapshotParser.extractStoreName(textractSnapshot);
+        Double total = snapshotParser.extractTotal(textractSnapshot);
+        String purchasedAt = LocalDate.now().format(DateTimeFormatter.ISO_DATE);
+        
+        // Update receipt
+        receipt.setStatus("processed");
+        receipt.setLineItems(lineItems);
+        receipt.setStoreName(storeName);
+        receipt.setTotal(total);
+        receipt.setPurchasedAt(purchasedAt);
+        receipt.setContentHash(contentHash);
+        receipt.setS3KeyTextractJson(snapshotKey);
+        
+        // Update pantry first: if saving the receipt fails, the retry replays the same
+        // idempotent pantry transaction instead of adding the items twice
+        updatePantryFromReceipt(receipt, lineItems);
+        
+        receiptRepository.save(receipt);
+        deduplicationService.record(userId, contentHash, receiptId);
+        eventPublisher.publishEvent(new ReceiptStatusEvent(receipt));
+        
+        logger.info("Receipt processing completed for userId: {}, receiptId: {}", userId, receiptId);
+    }
+    
+    /**
+     * If the same file was already processed for this user, reuse its results and return true.
+     * The pantry is not updated again: a re-upload is the same purchase, not a new one.
+     */
+    public boolean completeIfDuplicate(String userId, String s3Key, String contentHash) {
+        if (contentHash == null) {
+            return false;
+        }
+        
+        String receiptId = extractReceiptIdFromS3Key(s3Key);
+        Receipt original = deduplicationService.findProcessedDuplicate(userId, contentHash, receiptId);
+        if (original == null) {
+            return false;
+        }
+        
+        Receipt receipt = receiptRepository.findById(userId, receiptId);
+        if (receipt == null) {
+            logger.error("Receipt not found for userId: {}, s3Key: {}", userId, s3Key);
+            return true;
+        }
+        
+        deduplicationService.copyResults(original, receipt);
+        receipt.setContentHash(contentHash);
+        receiptRepository.save(receipt);
+        eventPublisher.publishEvent(new ReceiptStatusEvent(receipt));
+        
+        logger.info("Duplicate upload, reused results: userId={}, receiptId={}, original={}", 
+                userId, receiptId, original.getReceiptId());
+        return true;
     }
     
     public void completeProcessingWithMockData(String userId, String s3Key) {
@@ -103,13 +149,14 @@ public class ReceiptProcessingService {
             receipt.setTotal(31.28);
             receipt.setPurchasedAt(LocalDate.now().format(DateTimeFormatter.ISO_DATE));
             
-            receiptRepository.save(receipt);
-            
             // Update pantry with items
-            updatePantryFromReceipt(userId, lineItems);
+            updatePantryFromReceipt(receipt, lineItems);
             
-            logger.info("Receipt processing completed with mock data for userId: {}, receiptId: {}", userId, receiptId);
+            receiptRepository.save(receipt);
+            eventPublisher.publishEvent(new ReceiptStatusEvent(receipt));
             
+            logger.info("Receipt processing completed with mock data for userId: {}, receiptId: {}", userId, receiptId);
+        
         } catch (Exception e) {
             logger.error("Error completing receipt processing with mock data: {}", e.getMessage(), e);
             markAsFailed(userId, s3Key, e.getMessage());
@@ -124,6 +171,7 @@ public class ReceiptProcessingService {
             if (receipt != null) {
                 receipt.setStatus("failed");
                 receiptRepository.save(receipt);
+                eventPublisher.publishEvent(new ReceiptStatusEvent(receipt));
                 logger.error("Marked receipt as failed: userId={}, receiptId={}, error={}", 
                         userId, receiptId, errorMessage);
             }
@@ -142,68 +190,23 @@ public class ReceiptProcessingService {
         return UUID.randomUUID().toString();
     }
     
-    private String extractStoreName(AnalyzeExpenseResponse response) {
-        // Try to extract vendor/store name from summary fields
-        return response.expenseDocuments().stream()
-                .flatMap(doc -> doc.summaryFields().stream())
-                .filter(field -> field.type().toString().equals("VENDOR_NAME"))
-                .findFirst()
-                .map(field -> field.valueDetection() != null ? 
-                        field.valueDetection().text() : "Unknown Store")
-                .orElse("Unknown Store");
-    }
-    
-    private Double extractTotal(AnalyzeExpenseResponse response) {
-        return response.expenseDocuments().stream()
-                .flatMap(doc -> doc.summaryFields().stream())
-                .filter(field -> field.type().toString().equals("TOTAL"))
-                .findFirst()
-                .map(field -> {
-                    if (field.valueDetection() != null && 
-                        field.valueDetection().text() != null) {
-                        try {
-                            return Double.parseDouble(
-                                    field.valueDetection().text().replace("$", "").trim());
-                        } catch (NumberFormatException e) {
-                            return null;
-                        }
-                    }
-                    return null;
-                })
-                .orElse(null);
-    }
-    
-    private void updatePantryFromReceipt(String userId, List<ReceiptLineItem> lineItems) {
+    /**
+     * Add the receipt's mapped items to the pantry in one atomic, idempotent batch.
+     * Lines for the same product are summed first so each pantry item is written once.
+     */
+    private void updatePantryFromReceipt(Receipt receipt, List<ReceiptLineItem> lineItems) {
+        Map<String, Double> quantities = new TreeMap<>();
         for (ReceiptLineItem item : lineItems) {
             if (item.getCanonicalProductId() != null && item.getQty() != null) {
-                try {
-                    // Check if item already exists in pantry
-                    PantryItem existing = pantryRepository.findByUserIdAndProductId(
-                            userId, item.getCanonicalProductId());
-                    
-                    if (existing != null) {
-                        // Update quantity
-                        existing.setQuantity(existing.getQuantity() + item.getQty());
-                        existing.setLastUpdated(String.valueOf(System.currentTimeMillis()));
-                        pantryRepository.save(existing);
-                    } else {
-                    // Create new pantry item
-                    PantryItem newItem = new PantryItem();
-                    newItem.setUserId(userId);
-                    newItem.setProductId(item.getCanonicalProductId());
-                    newItem.setName(item.getCanonicalProductId()); // Use canonical ID as name for now
-                    newItem.setQuantity(item.getQty());
-                    newItem.setUnit("unit");
-                    newItem.setLastUpdated(String.valueOf(System.currentTimeMillis()));
-                    newItem.setSource("receipt");
-                    pantryRepository.save(newItem);
-                    }
-                } catch (Exception e) {
-                    logger.error("Error updating pantry for item {}: {}", 
-                            item.getCanonicalProductId(), e.getMessage());
-                }
+                quantities.merge(item.getCanonicalProductId(), item.getQty(), Double::sum);
             }
         }
+        
+        pantryRepository.addQuantities(
+                receipt.getUserId(),
+                quantities,
+                "receipt",
+                "receipt#" + receipt.getReceiptId(),
+                receipt.getCreatedAt());
     }
 }
-
@@ -0,0 +1,60 @@
+package com.smartcart.receipts.service;
+
+import com.smartcart.common.exception.AppException;
+import com.smartcart.receipts.model.Receipt;
+import com.smartcart.receipts.model.ReceiptLineItem;
+import com.smartcart.receipts.model.TextractSnapshot;
+import com.smartcart.receipts.repository.ReceiptRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Re-runs product mapping over a receipt's stored Textract snapshot.
+ * Costs CPU and one S3 read; Textract is not called again.
+ * The pantry is left as is: it reflects what was added at the time.
+ */
+@Service
+public class ReceiptRemapService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReceiptRemapService.class);
+    
+    private final ReceiptRepository receiptRepository;
+    private final TextractSnapshotStore snapshotStore;
+    private final TextractSnapshotParser snapshotParser;
+    
+    public ReceiptRemapService(
+            ReceiptRepository receiptRepository,
+            TextractSnapshotStore snapshotStore,
+            TextractSnapshotParser snapshotParser) {
+        this.receiptRepository = receiptRepository;
+        this.snapshotStore = snapshotStore;
+        this.snapshotParser = snapshotParser;
+    }
+    
+    /**
+     * Re-map one receipt. Returns null if the receipt does not exist.
+     */
+    public Receipt remap(String userId, String receiptId) {
+        Receipt receipt = receiptRepository.findById(userId, receiptId);
+        if (receipt == null) {
+            return null;
+        }
+        if (receipt.getS3KeyTextractJson() == null) {
+            throw new AppException("This receipt has no stored scan result to re-map", "VALIDATION_ERROR");
+        }
+        
+        TextractSnapshot snapshot = snapshotStore.load(receipt.getS3KeyTextractJson());
+        List<ReceiptLineItem> lineItems = snapshotParser.toLineItems(snapshot);
+        
+        receipt.setLineItems(lineItems);
+        receipt.setStoreName(snapshotParser.extractStoreName(snapshot));
+        receipt.setTotal(snapshotParser.extractTotal(snapshot));
+        receiptRepository.save(receipt);
+        
+        logger.info("Re-mapped receipt: userId={}, receiptId={}, lineItems={}", userId, receiptId, lineItems.size());
+        return receipt;
+    }
+}
@@ -0,0 +1,29 @@
+package com.smartcart.receipts.service;
+
+import com.smartcart.receipts.model.Receipt;
+
+/**
+ * Published in-process after a receipt's processing status is saved.
+ * Carries the saved receipt so listeners don't have to read it back.
+ */
+public record ReceiptStatusEvent(Receipt receipt) {
+    
+    public static final String STATUS_PROCESSED = "processed";
+    public static final String STATUS_FAILED = "failed";
+    
+    public String userId() {
+        return receipt.getUserId();
+    }
+    
+    public String receiptId() {
+        return receipt.getReceiptId();
+    }
+    
+    public boolean isTerminal() {
+        return isTerminal(receipt.getStatus());
+    }
+    
+    public static boolean isTerminal(String status) {
+        return STATUS_PROCESSED.equals(status) || STATUS_FAILED.equals(status);
+    }
+}
@@ -0,0 +1,133 @@
+package com.smartcart.receipts.service;
+
+import com.smartcart.receipts.dto.ReceiptResponse;
+import com.smartcart.receipts.model.Receipt;
+import com.smartcart.receipts.repository.ReceiptRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pushes receipt status changes to clients over server-sent events.
+ * Each subscription gets exactly one "status" event (when the receipt is processed or fails)
+ * and is then closed. Subscribers are held in memory and events are published in-process, so
+ * a receipt finished on another instance is never announced here; open subscriptions are
+ * therefore also rechecked against the table every few seconds.
+ */
+@Service
+public class ReceiptStatusNotifier {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReceiptStatusNotifier.class);
+    private static final String EVENT_NAME = "status";
+    
+    private final ReceiptRepository receiptRepository;
+    private final long timeoutMs;
+    private final Map<Subscription, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    
+    public ReceiptStatusNotifier(
+            ReceiptRepository receiptRepository,
+            @Value("${receipts.events.timeout-ms:120000}") long timeoutMs) {
+        this.receiptRepository = receiptRepository;
+        this.timeoutMs = timeoutMs;
+    }
+    
+    /**
+     * Open a status stream for a receipt. Returns null if the receipt does not exist.
+     * If processing already finished, the result is sent immediately.
+     */
+    public SseEmitter subscribe(String userId, String receiptId) {
+        Subscription key = new Subscription(userId, receiptId);
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        emitter.onCompletion(() -> remove(key, emitter));
+        emitter.onTimeout(() -> {
+            remove(key, emitter);
+            emitter.complete();
+        });
+        emitter.onError(error -> remove(key, emitter));
+        
+        // Register before reading, so an event published in between is not missed
+        subscribers.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(emitter);
+        
+        Receipt receipt = receiptRepository.findById(userId, receiptId);
+        if (receipt == null) {
+            remove(key, emitter);
+            return null;
+        }
+        if (ReceiptStatusEvent.isTerminal(receipt.getStatus())) {
+            remove(key, emitter);
+            send(emitter, ReceiptResponse.fromReceipt(receipt));
+        }
+        return emitter;
+    }
+    
+    @EventListener
+    public void onStatusChange(ReceiptStatusEvent event) {
+        if (!event.isTerminal()) {
+            return;
+        }
+        Set<SseEmitter> emitters = subscribers.remove(new Subscription(event.userId(), event.receiptId()));
+        if (emitters == null || emitters.isEmpty()) {
+            return;
+        }
+        
+        ReceiptResponse payload = ReceiptResponse.fromReceipt(event.receipt());
+        emitters.forEach(emitter -> send(emitter, payload));
+    }
+    
+    /**
+     * Catch receipts finished on another instance (or whose event was missed):
+     * one read per receipt that still has open subscriptions on this instance.
+     */
+    @Scheduled(fixedDelayString = "${receipts.events.recheck-interval-ms:5000}")
+    public void recheckOpenSubscriptions() {
+        for (Subscription subscription : subscribers.keySet()) {
+            try {
+                Receipt receipt = receiptRepository.findById(subscription.userId(), subscription.receiptId());
+                if (receipt == null || !ReceiptStatusEvent.isTerminal(receipt.getStatus())) {
+                    continue;
+                }
+                // Whoever removes the set sends, so an event arriving at the same time can't send twice
+                Set<SseEmitter> emitters = subscribers.remove(subscription);
+                if (emitters != null) {
+                    ReceiptResponse payload = ReceiptResponse.fromReceipt(receipt);
+                    emitters.forEach(emitter -> send(emitter, payload));
+                }
+            } catch (RuntimeException e) {
+                logger.debug("Could not recheck receipt status {}: {}", subscription.receiptId(), e.getMessage());
+            }
+        }
+    }
+    
+    private void send(SseEmitter emitter, ReceiptResponse payload) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(EVENT_NAME)
+                    .id(payload.receiptId())
+                    .data(payload));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            // Client already went away
+            logger.debug("Could not push receipt status {}: {}", payload.receiptId(), e.getMessage());
+            emitter.completeWithError(e);
+        }
+    }
+    
+    private void remove(Subscription key, SseEmitter emitter) {
+        subscribers.computeIfPresent(key, (k, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+    
+    private record Subscription(String userId, String receiptId) {
+    }
+}
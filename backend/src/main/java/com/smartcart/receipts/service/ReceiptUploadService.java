@@ -0,0 +1,108 @@
+package com.smartcart.receipts.service;
+
+import com.smartcart.common.util.TimeOrderedId;
+import com.smartcart.receipts.model.Receipt;
+import com.smartcart.receipts.repository.ReceiptRepository;
+import com.smartcart.receipts.util.ReceiptUploadStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Server-side receipt upload that streams the request body straight to S3.
+ * Type, signature and size are checked as the bytes arrive and the content hash is
+ * computed on the way through, so memory use per upload stays at one buffer
+ * regardless of file size.
+ */
+@Service
+public class ReceiptUploadService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReceiptUploadService.class);
+    
+    private final S3Service s3Service;
+    private final FileValidationService fileValidationService;
+    private final ReceiptRepository receiptRepository;
+    private final ReceiptDeduplicationService deduplicationService;
+    private final ReceiptJobQueue receiptJobQueue;
+    
+    public ReceiptUploadService(
+            S3Service s3Service,
+            FileValidationService fileValidationService,
+            ReceiptRepository receiptRepository,
+            ReceiptDeduplicationService deduplicationService,
+            ReceiptJobQueue receiptJobQueue) {
+        this.s3Service = s3Service;
+        this.fileValidationService = fileValidationService;
+        this.receiptRepository = receiptRepository;
+        this.deduplicationService = deduplicationService;
+        this.receiptJobQueue = receiptJobQueue;
+    }
+    
+    /**
+     * Store the upload and queue it for processing (or reuse an earlier result for the same file).
+     * @param contentLength declared body length, or -1 if the client streams without one
+     */
+    public Receipt upload(String userId, String contentType, long contentLength, InputStream body) {
+        fileValidationService.validateContentType(contentType);
+        fileValidationService.validateDeclaredSize(contentLength);
+        
+        String receiptId = TimeOrderedId.next();
+        String s3Key = s3Service.getS3Key(userId, receiptId, contentType);
+        
+        ReceiptUploadStream upload = null;
+        try {
+            // Peek at the leading bytes to reject mislabeled files before anything reaches S3
+            BufferedInputStream in = new BufferedInputStream(body);
+            in.mark(FileValidationService.SIGNATURE_LENGTH);
+            byte[] head = in.readNBytes(FileValidationService.SIGNATURE_LENGTH);
+            in.reset();
+            if (head.length == 0) {
+                throw new IllegalArgumentException("File is empty");
+            }
+            fileValidationService.validateSignature(contentType, head);
+            
+            upload = new ReceiptUploadStream(in, fileValidationService.getMaxFileSize());
+            s3Service.uploadStream(s3Key, contentType, upload, contentLength);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            // The S3 client wraps errors from reading the body; report the size limit as what it is
+            if (upload != null && upload.isLimitExceeded()) {
+                throw new IllegalArgumentException(
+                        String.format("File exceeds maximum size of %d bytes", fileValidationService.getMaxFileSize()));
+            }
+            if (e instanceof IOException io) {
+                throw new UncheckedIOException("Could not store receipt upload", io);
+            }
+            throw (RuntimeException) e;
+        }
+        
+        String contentHash = upload.getContentHash();
+        logger.debug("Streamed receipt upload: userId={}, receiptId={}, bytes={}", 
+                userId, receiptId, upload.getBytesRead());
+        
+        Receipt receipt = new Receipt(userId, receiptId);
+        receipt.setS3KeyOriginal(s3Key);
+        receipt.setContentHash(contentHash);
+        
+        // Same file uploaded before: reuse its results instead of analyzing again
+        Receipt original = deduplicationService.findProcessedDuplicate(userId, contentHash, receiptId);
+        if (original != null) {
+            deduplicationService.copyResults(original, receipt);
+            receiptRepository.save(receipt);
+            logger.info("Duplicate upload, reused results: userId={}, receiptId={}, original={}", 
+                    userId, receiptId, original.getReceiptId());
+            return receipt;
+        }
+        
+        receipt.setStatus("processing");
+        receiptRepository.save(receipt);
+        receiptJobQueue.enqueue(userId, receiptId, s3Key);
+        return receipt;
+    }
+}
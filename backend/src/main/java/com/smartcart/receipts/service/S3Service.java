@@ -1,19 +1,44 @@
 package com.smartcart.receipts.service;
 
+import com.smartcart.common.util.TimeOrderedId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
 import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.Duration;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.List;
 
 @Service
 public class S3Service {
     
+    private static final Logger logger = LoggerFactory.getLogger(S3Service.class);
+    
+    // S3's minimum multipart part size; also the most an upload of unknown length holds in memory
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+    
     private final S3Client s3Client;
     private final S3Presigner s3Presigner;
     private final String bucketName;
@@ -25,7 +50,8 @@ public class S3Service {
     }
     
     public PresignedUploadInfo generatePresignedUploadUrl(String userId, String contentType) {
-        String receiptId = UUID.randomUUID().toString();
+        // Time-ordered so the Receipts sort key lists newest-first without sorting in memory
+        String receiptId = TimeOrderedId.next();
         String s3Key = String.format("receipts/%s/%s.%s", 
                 userId, 
                 receiptId,
@@ -56,6 +82,113 @@ public class S3Service {
     
     public record PresignedUploadInfo(String uploadUrl, String s3Key, String receiptId) {}
     
+    /**
+     * Stream an upload into S3 without holding the whole file in memory.
+     * With a known length of at most one part the body is piped straight through a single PutObject;
+     * otherwise it is sent as a multipart upload, one part-sized buffer at a time.
+     * @param contentLength byte count of the body, or -1 if unknown
+     */
+    public void uploadStream(String s3Key, String contentType, InputStream in, long contentLength) throws IOException {
+        if (contentLength >= 0 && contentLength <= PART_SIZE) {
+            s3Client.putObject(PutObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .contentType(contentType)
+                    .build(),
+                    RequestBody.fromInputStream(in, contentLength));
+            return;
+        }
+        
+        byte[] buffer = new byte[PART_SIZE];
+        int firstPart = in.readNBytes(buffer, 0, PART_SIZE);
+        if (firstPart < PART_SIZE) {
+            // Small after all: multipart would only add round trips
+            s3Client.putObject(PutObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .contentType(contentType)
+                    .build(),
+                    RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, firstPart), firstPart));
+            return;
+        }
+        
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(s3Key)
+                .contentType(contentType)
+                .build()).uploadId();
+        try {
+            List<CompletedPart> parts = new ArrayList<>();
+            int length = firstPart;
+            while (length > 0) {
+                int partNumber = parts.size() + 1;
+                String eTag = s3Client.uploadPart(UploadPartRequest.builder()
+                        .bucket(bucketName)
+                        .key(s3Key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .contentLength((long) length)
+                        .build(),
+                        RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, length), length)).eTag();
+                parts.add(CompletedPart.builder().partNumber(partNumber).eTag(eTag).build());
+                length = in.readNBytes(buffer, 0, PART_SIZE);
+            }
+            
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build());
+        } catch (IOException | RuntimeException e) {
+            abortMultipartUpload(s3Key, uploadId);
+            throw e;
+        }
+    }
+    
+    private void abortMultipartUpload(String s3Key, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (RuntimeException e) {
+            // Left-over parts are removed by the bucket's incomplete-upload lifecycle rule
+            logger.warn("Could not abort multipart upload {} for {}: {}", uploadId, s3Key, e.getMessage());
+        }
+    }
+    
+    /**
+     * Delete every stored file under the user's receipts/ prefix (originals and Textract snapshots).
+     * Each listing page holds up to 1000 keys and is removed with one DeleteObjects call.
+     * Returns the number of objects deleted.
+     */
+    public long deleteAllForUser(String userId) {
+        long deleted = 0;
+        for (ListObjectsV2Response page : s3Client.listObjectsV2Paginator(ListObjectsV2Request.builder()
+                .bucket(bucketName)
+                .prefix(String.format("receipts/%s/", userId))
+                .build())) {
+            if (page.contents().isEmpty()) {
+                continue;
+            }
+            List<ObjectIdentifier> keys = page.contents().stream()
+                    .map(object -> ObjectIdentifier.builder().key(object.key()).build())
+                    .toList();
+            DeleteObjectsResponse response = s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                    .bucket(bucketName)
+                    .delete(Delete.builder().objects(keys).quiet(true).build())
+                    .build());
+            if (response.hasErrors() && !response.errors().isEmpty()) {
+                throw new IllegalStateException("Could not delete " + response.errors().size()
+                        + " receipt files for user " + userId + ": " + response.errors().get(0).message());
+            }
+            deleted += keys.size();
+        }
+        return deleted;
+    }
+    
     public String getS3Key(String userId, String receiptId, String contentType) {
         return String.format("receipts/%s/%s.%s", 
                 userId, 
@@ -1,179 +1,198 @@
 package com.smartcart.receipts.service;
 
+import com.smartcart.receipts.model.ReceiptLineItem;
+import com.smartcart.receipts.model.TextractSnapshot;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.textract.TextractClient;
+import software.amazon.awssdk.services.textract.TextractAsyncClient;
 import software.amazon.awssdk.services.textract.model.*;
 
-import java.util.ArrayList;
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Non-blocking receipt pipeline: hash/dedup -> image preprocessing -> rate limit -> AnalyzeExpense -> snapshot/map -> persist.
+ * No thread is held while waiting on Textract; the SDK enforces call timeouts
+ * and cancelling the returned future aborts the in-flight request.
+ */
 @Service
 public class TextractService {
     
     private static final Logger logger = LoggerFactory.getLogger(TextractService.class);
     
-    private final TextractClient textractClient;
-    private final S3Client s3Client;
+    private final TextractAsyncClient textractClient;
     private final String bucketName;
-    private final ReceiptMapperService mapperService;
+    private final String textractEndpoint;
+    private final TextractSnapshotParser snapshotParser;
+    private final TextractSnapshotStore snapshotStore;
     private final ReceiptProcessingService receiptProcessingService;
+    private final ReceiptDeduplicationService deduplicationService;
+    private final ReceiptImagePreprocessor imagePreprocessor;
+    private final Bucket rateLimiter;
+    private final Duration maxPermitWait;
+    private final ScheduledExecutorService limiterScheduler;
+    private final ExecutorService pipelineExecutor;
     
     public TextractService(
-            TextractClient textractClient,
-            S3Client s3Client,
+            TextractAsyncClient textractClient,
             @Value("${aws.s3.bucket}") String bucketName,
-            ReceiptMapperService mapperService,
-            ReceiptProcessingService receiptProcessingService) {
+            @Value("${aws.textract.endpoint:}") String textractEndpoint,
+            @Value("${aws.textract.tps:5}") int transactionsPerSecond,
+            @Value("${aws.textract.max-permit-wait-ms:30000}") long maxPermitWaitMs,
+            @Value("${aws.textract.pipeline-threads:4}") int pipelineThreads,
+            TextractSnapshotParser snapshotParser,
+            TextractSnapshotStore snapshotStore,
+            ReceiptProcessingService receiptProcessingService,
+            ReceiptDeduplicationService deduplicationService,
+            ReceiptImagePreprocessor imagePreprocessor) {
         this.textractClient = textractClient;
-        this.s3Client = s3Client;
         this.bucketName = bucketName;
-        this.mapperService = mapperService;
+        this.textractEndpoint = textractEndpoint;
+        this.snapshotParser = snapshotParser;
+        this.snapshotStore = snapshotStore;
         this.receiptProcessingService = receiptProcessingService;
+        this.deduplicationService = deduplicationService;
+        this.imagePreprocessor = imagePreprocessor;
+        // AnalyzeExpense has a per-account TPS quota; stay under it instead of eating throttling errors
+        this.rateLimiter = Bucket.builder()
+                .addLimit(Bandwidth.builder()
+                        .capacity(transactionsPerSecond)
+                        .refillGreedy(transactionsPerSecond, Duration.ofSeconds(1))
+                        .build())
+                .build();
+        this.maxPermitWait = Duration.ofMillis(maxPermitWaitMs);
+        this.limiterScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("textract-limiter"));
+        this.pipelineExecutor = Executors.newFixedThreadPool(pipelineThreads, daemonThreads("receipt-pipeline"));
     }
     
-    public void processReceipt(String userId, String s3Key) {
-        try {
-            logger.info("Starting Textract processing for receipt: {}", s3Key);
-            
-            // For local development without AWS, immediately use mock data
-            // Check if we're in local dev mode (no real AWS credentials or local S3 endpoint)
-            // Skip Textract call entirely for local dev to avoid hanging
-            if (bucketName.contains("dev") || bucketName.contains("local") || 
-                System.getenv("DYNAMO_ENDPOINT") != null) {
-                // Local development mode - use mock data immediately
-                logger.info("Local dev mode detected, using mock receipt data");
-                receiptProcessingService.completeProcessingWithMockData(userId, s3Key);
-                return;
-            }
-            
-            // Try Textract for production (with timeout protection)
-            try {
-                // Use AnalyzeExpense API (better for receipts)
-                AnalyzeExpenseRequest request = AnalyzeExpenseRequest.builder()
-                        .document(Document.builder()
-                                .s3Object(S3Object.builder()
-                                        .bucket(bucketName)
-                                        .name(s3Key)
-                                        .build())
-                            .build())
-                    .build();
-                
-                // Add timeout to prevent hanging
-                java.util.concurrent.Future<AnalyzeExpenseResponse> future = 
-                    java.util.concurrent.CompletableFuture.supplyAsync(() -> {
-                        return textractClient.analyzeExpense(request);
-                    });
-                
-                AnalyzeExpenseResponse response = future.get(5, java.util.concurrent.TimeUnit.SECONDS);
-                
-                logger.info("Textract analysis completed for receipt: {}", s3Key);
-                
-                // Parse the response and map to line items
-                List<com.smartcart.receipts.model.ReceiptLineItem> lineItems = 
-                        parseTextractResponse(response, s3Key);
-                
-                // Update receipt with parsed data and update pantry
-                receiptProcessingService.completeProcessing(userId, s3Key, lineItems, response);
-            } catch (java.util.concurrent.TimeoutException e) {
-                logger.warn("Textract request timed out, using mock data");
-                receiptProcessingService.completeProcessingWithMockData(userId, s3Key);
-            } catch (software.amazon.awssdk.core.exception.SdkClientException | 
-                     software.amazon.awssdk.core.exception.SdkServiceException e) {
-                // No AWS credentials or service error - use mock data for local dev
-                logger.info("AWS unavailable, using mock receipt data for local development: {}", e.getMessage());
-                receiptProcessingService.completeProcessingWithMockData(userId, s3Key);
-            } catch (Exception e) {
-                logger.warn("Textract failed, using mock data: {}", e.getMessage());
-                receiptProcessingService.completeProcessingWithMockData(userId, s3Key);
-            }
-            
-        } catch (Exception e) {
-            logger.error("Error processing receipt {}: {}", s3Key, e.getMessage(), e);
-            receiptProcessingService.markAsFailed(userId, s3Key, e.getMessage());
+    /**
+     * Run Textract on an uploaded receipt and persist the result.
+     * The returned future fails if any stage fails, so the job queue can retry the receipt.
+     */
+    public CompletableFuture<Void> processReceiptAsync(String userId, String s3Key) {
+        logger.info("Starting Textract processing for receipt: {}", s3Key);
+        
+        // For local development without AWS, immediately use mock data
+        // unless a local fake Textract endpoint is configured
+        if (isLocalDevWithoutTextract()) {
+            logger.info("Local dev mode detected, using mock receipt data");
+            return CompletableFuture.runAsync(
+                    () -> receiptProcessingService.completeProcessingWithMockData(userId, s3Key),
+                    pipelineExecutor);
         }
-    }
-    
-    private List<com.smartcart.receipts.model.ReceiptLineItem> parseTextractResponse(
-            AnalyzeExpenseResponse response, String s3Key) {
         
-        List<com.smartcart.receipts.model.ReceiptLineItem> lineItems = new ArrayList<>();
+        // Re-uploads of an already analyzed file reuse the earlier result
+        AtomicReference<CompletableFuture<AnalyzeExpenseResponse>> sdkCall = new AtomicReference<>();
+        CompletableFuture<Void> pipeline = CompletableFuture.supplyAsync(() -> hashUpload(s3Key), pipelineExecutor)
+                .thenCompose(contentHash -> receiptProcessingService.completeIfDuplicate(userId, s3Key, contentHash)
+                        ? CompletableFuture.completedFuture(null)
+                        : analyzeAndPersist(userId, s3Key, contentHash, sdkCall));
         
-        // Extract line items from Textract response
-        for (ExpenseDocument doc : response.expenseDocuments()) {
-            for (LineItemGroup group : doc.lineItemGroups()) {
-                for (LineItemFields item : group.lineItems()) {
-                    String description = extractField(item, "ITEM");
-                    Double price = extractPrice(item);
-                    Double quantity = extractQuantity(item);
-                    
-                    if (description != null && !description.isEmpty()) {
-                        // Map to canonical product with confidence scoring
-                        com.smartcart.receipts.service.ProductMatchResult matchResult = 
-                                mapperService.mapToProductWithConfidence(description);
-                        
-                        com.smartcart.receipts.model.ReceiptLineItem lineItem = 
-                                new com.smartcart.receipts.model.ReceiptLineItem(
-                                        description, quantity != null ? quantity : 1.0, price);
-                        lineItem.setCanonicalProductId(matchResult.canonicalProductId());
-                        lineItem.setConfidence(matchResult.confidence());
-                        
-                        lineItems.add(lineItem);
-                    }
-                }
+        // Cancellation does not flow upstream through thenCompose, so forward it to the SDK call
+        pipeline.whenComplete((ignored, error) -> {
+            CompletableFuture<AnalyzeExpenseResponse> call = sdkCall.get();
+            if (pipeline.isCancelled() && call != null) {
+                call.cancel(true);
             }
-        }
-        
-        return lineItems;
+        });
+        return pipeline;
     }
     
-    private String extractField(LineItemFields item, String type) {
-        for (ExpenseField field : item.lineItemExpenseFields()) {
-            if (field.type() != null && 
-                field.type().toString().toUpperCase().contains(type.toUpperCase())) {
-                if (field.valueDetection() != null && field.valueDetection().text() != null) {
-                    return field.valueDetection().text();
-                }
-            }
+    private CompletableFuture<Void> analyzeAndPersist(
+            String userId,
+            String s3Key,
+            String contentHash,
+            AtomicReference<CompletableFuture<AnalyzeExpenseResponse>> sdkCall) {
+        // Shrink the image first (own CPU pool), so no rate-limit permit is held while resizing
+        return imagePreprocessor.prepare(s3Key)
+                .thenCompose(document -> acquirePermit(s3Key).thenApply(permit -> document))
+                .thenCompose(document -> {
+                    // Use AnalyzeExpense API (better for receipts)
+                    AnalyzeExpenseRequest request = AnalyzeExpenseRequest.builder()
+                            .document(document)
+                            .build();
+                    CompletableFuture<AnalyzeExpenseResponse> call = textractClient.analyzeExpense(request);
+                    sdkCall.set(call);
+                    return call;
+                })
+                .thenApplyAsync(response -> {
+                    logger.info("Textract analysis completed for receipt: {}", s3Key);
+                    TextractSnapshot snapshot = TextractSnapshot.from(response);
+                    String snapshotKey = saveSnapshot(s3Key, snapshot);
+                    return new ParsedReceipt(snapshot, snapshotKey, snapshotParser.toLineItems(snapshot));
+                }, pipelineExecutor)
+                .thenAcceptAsync(parsed -> receiptProcessingService.completeProcessing(
+                        userId, s3Key, contentHash, parsed.lineItems(), parsed.snapshot(), parsed.snapshotKey()),
+                        pipelineExecutor);
+    }
+    
+    private String hashUpload(String s3Key) {
+        try {
+            return deduplicationService.hashS3Object(s3Key);
+        } catch (Exception e) {
+            // Dedup is an optimization; never fail the receipt over it
+            logger.warn("Could not hash receipt {}, skipping dedup: {}", s3Key, e.getMessage());
+            return null;
         }
-        return "";
     }
     
-    private Double extractPrice(LineItemFields item) {
-        for (ExpenseField field : item.lineItemExpenseFields()) {
-            if (field.type() != null && 
-                field.type().toString().toUpperCase().contains("PRICE")) {
-                if (field.valueDetection() != null && field.valueDetection().text() != null) {
-                    try {
-                        return Double.parseDouble(
-                                field.valueDetection().text().replace("$", "").replace(",", "").trim());
-                    } catch (NumberFormatException e) {
-                        return null;
-                    }
-                }
-            }
+    private String saveSnapshot(String s3Key, TextractSnapshot snapshot) {
+        try {
+            return snapshotStore.save(s3Key, snapshot);
+        } catch (Exception e) {
+            // The analysis itself succeeded; losing the copy only rules out re-mapping later
+            logger.warn("Could not store Textract snapshot for {}: {}", s3Key, e.getMessage());
+            return null;
         }
-        return null;
     }
     
-    private Double extractQuantity(LineItemFields item) {
-        for (ExpenseField field : item.lineItemExpenseFields()) {
-            if (field.type() != null && 
-                field.type().toString().toUpperCase().contains("QUANTITY")) {
-                if (field.valueDetection() != null && field.valueDetection().text() != null) {
-                    try {
-                        return Double.parseDouble(field.valueDetection().text().trim());
-                    } catch (NumberFormatException e) {
-                        return 1.0; // Default to 1 if can't parse
+    private CompletableFuture<Void> acquirePermit(String s3Key) {
+        return rateLimiter.asScheduler()
+                .tryConsume(1, maxPermitWait, limiterScheduler)
+                .thenAccept(acquired -> {
+                    if (!acquired) {
+                        throw new IllegalStateException("Textract rate limit wait exceeded for receipt: " + s3Key);
                     }
-                }
-            }
+                });
+    }
+    
+    private boolean isLocalDevWithoutTextract() {
+        if (textractEndpoint != null && !textractEndpoint.isEmpty()) {
+            return false;
         }
-        return 1.0;
+        return bucketName.contains("dev") || bucketName.contains("local") || 
+               System.getenv("DYNAMO_ENDPOINT") != null;
+    }
+    
+    private static java.util.concurrent.ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        limiterScheduler.shutdownNow();
+        pipelineExecutor.shutdown();
+    }
+    
+    private record ParsedReceipt(
+            TextractSnapshot snapshot,
+            String snapshotKey,
+            List<ReceiptLineItem> lineItems) {
     }
 }
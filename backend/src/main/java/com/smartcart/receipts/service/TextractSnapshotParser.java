@@ -0,0 +1,105 @@
+package com.smartcart.receipts.service;
+
+import com.smartcart.receipts.model.ReceiptLineItem;
+import com.smartcart.receipts.model.TextractSnapshot;
+import com.smartcart.receipts.model.TextractSnapshot.Field;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns a stored Textract result into receipt fields and mapped line items.
+ * Used both right after analysis and when re-mapping stored results.
+ */
+@Service
+public class TextractSnapshotParser {
+    
+    private final ReceiptMapperService mapperService;
+    
+    public TextractSnapshotParser(ReceiptMapperService mapperService) {
+        this.mapperService = mapperService;
+    }
+    
+    public List<ReceiptLineItem> toLineItems(TextractSnapshot snapshot) {
+        List<ReceiptLineItem> lineItems = new ArrayList<>();
+        
+        for (List<Field> item : snapshot.lineItems()) {
+            String description = extractField(item, "ITEM");
+            Double price = extractPrice(item);
+            Double quantity = extractQuantity(item);
+            
+            if (description != null && !description.isEmpty()) {
+                lineItems.add(new ReceiptLineItem(
+                        description, quantity != null ? quantity : 1.0, price));
+            }
+        }
+        
+        // Map the whole receipt in one batch so repeated lines are only scored once
+        List<ProductMatchResult> matches = mapperService.mapToProducts(
+                lineItems.stream().map(ReceiptLineItem::getRawDesc).toList());
+        for (int i = 0; i < lineItems.size(); i++) {
+            lineItems.get(i).setCanonicalProductId(matches.get(i).canonicalProductId());
+            lineItems.get(i).setConfidence(matches.get(i).confidence());
+        }
+        
+        return lineItems;
+    }
+    
+    public String extractStoreName(TextractSnapshot snapshot) {
+        return snapshot.summaryFields().stream()
+                .filter(field -> "VENDOR_NAME".equals(field.type()))
+                .findFirst()
+                .map(Field::text)
+                .orElse("Unknown Store");
+    }
+    
+    public Double extractTotal(TextractSnapshot snapshot) {
+        return snapshot.summaryFields().stream()
+                .filter(field -> "TOTAL".equals(field.type()))
+                .findFirst()
+                .map(field -> {
+                    try {
+                        return Double.parseDouble(field.text().replace("$", "").trim());
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                })
+                .orElse(null);
+    }
+    
+    private String extractField(List<Field> item, String type) {
+        for (Field field : item) {
+            if (field.type().toUpperCase().contains(type)) {
+                return field.text();
+            }
+        }
+        return "";
+    }
+    
+    private Double extractPrice(List<Field> item) {
+        for (Field field : item) {
+            if (field.type().toUpperCase().contains("PRICE")) {
+                try {
+                    return Double.parseDouble(field.text().replace("$", "").replace(",", "").trim());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+    
+    private Double extractQuantity(List<Field> item) {
+        for (Field field : item) {
+            if (field.type().toUpperCase().contains("QUANTITY")) {
+                try {
+                    return Double.parseDouble(field.text().trim());
+                } catch (NumberFormatException e) {
+                    return 1.0; // Default to 1 if can't parse
+                }
+            }
+        }
+        return 1.0;
+    }
+}
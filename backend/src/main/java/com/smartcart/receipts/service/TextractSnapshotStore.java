@@ -0,0 +1,84 @@
+package com.smartcart.receipts.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartcart.receipts.model.TextractSnapshot;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes gzipped Textract snapshots in the receipts bucket,
+ * next to the original upload: receipts/{userId}/{receiptId}.textract.json.gz.
+ * The full response compresses to a few KB, so it's kept whole.
+ */
+@Service
+public class TextractSnapshotStore {
+    
+    private static final String SUFFIX = ".textract.json.gz";
+    
+    private final S3Client s3Client;
+    private final ObjectMapper objectMapper;
+    private final String bucketName;
+    
+    public TextractSnapshotStore(
+            S3Client s3Client,
+            ObjectMapper objectMapper,
+            @Value("${aws.s3.bucket}") String bucketName) {
+        this.s3Client = s3Client;
+        this.objectMapper = objectMapper;
+        this.bucketName = bucketName;
+    }
+    
+    /**
+     * Store the snapshot and return its S3 key
+     */
+    public String save(String s3KeyOriginal, TextractSnapshot snapshot) {
+        String key = keyFor(s3KeyOriginal);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            objectMapper.writeValue(gzip, snapshot.response());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not serialize Textract snapshot", e);
+        }
+        
+        s3Client.putObject(PutObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .contentType("application/json")
+                        .contentEncoding("gzip")
+                        .build(),
+                RequestBody.fromBytes(bytes.toByteArray()));
+        return key;
+    }
+    
+    public TextractSnapshot load(String key) {
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build();
+        try (ResponseInputStream<GetObjectResponse> body = s3Client.getObject(request);
+             GZIPInputStream gzip = new GZIPInputStream(body)) {
+            return TextractSnapshot.read(objectMapper.readTree(gzip));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read Textract snapshot: " + key, e);
+        }
+    }
+    
+    private String keyFor(String s3KeyOriginal) {
+        int lastDot = s3KeyOriginal.lastIndexOf('.');
+        int lastSlash = s3KeyOriginal.lastIndexOf('/');
+        String base = lastDot > lastSlash ? s3KeyOriginal.substring(0, lastDot) : s3KeyOriginal;
+        return base + SUFFIX;
+    }
+}
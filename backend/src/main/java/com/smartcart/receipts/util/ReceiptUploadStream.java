@@ -0,0 +1,81 @@
+package com.smartcart.receipts.util;
+
+import com.smartcart.receipts.service.ReceiptDeduplicationService;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+/**
+ * Pass-through stream for receipt uploads: hashes and counts bytes as they are read
+ * and fails once the upload grows past the size limit, so nothing is buffered
+ * beyond what the reader asks for.
+ */
+public class ReceiptUploadStream extends FilterInputStream {
+    
+    private final long maxBytes;
+    private final MessageDigest digest = ReceiptDeduplicationService.newDigest();
+    private long bytesRead;
+    private boolean limitExceeded;
+    
+    public ReceiptUploadStream(InputStream in, long maxBytes) {
+        super(in);
+        this.maxBytes = maxBytes;
+    }
+    
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            digest.update((byte) b);
+            count(1);
+        }
+        return b;
+    }
+    
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            digest.update(buffer, offset, read);
+            count(read);
+        }
+        return read;
+    }
+    
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped bytes would be missing from the hash
+        throw new IOException("skip is not supported on upload streams");
+    }
+    
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+    
+    private void count(int read) throws IOException {
+        bytesRead += read;
+        if (bytesRead > maxBytes) {
+            limitExceeded = true;
+            throw new IOException("Upload exceeds maximum size of " + maxBytes + " bytes");
+        }
+    }
+    
+    public long getBytesRead() {
+        return bytesRead;
+    }
+    
+    public boolean isLimitExceeded() {
+        return limitExceeded;
+    }
+    
+    /**
+     * SHA-256 of everything read so far, hex encoded. Call once the stream is exhausted.
+     */
+    public String getContentHash() {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -1,6 +1,7 @@
 package com.smartcart.shoppinglist;
 
 import com.smartcart.shoppinglist.dto.ShoppingListHistoryDto;
+import com.smartcart.shoppinglist.repository.ShoppingListRepository;
 import com.smartcart.shoppinglist.service.ShoppingListService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -11,15 +12,36 @@ import java.util.List;
 @RequestMapping("/api/shopping-lists")
 public class ShoppingListController {
     
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 25;
+    private static final int MAX_PAGE_SIZE = 100;
+    
     private final ShoppingListService shoppingListService;
     
     public ShoppingListController(ShoppingListService shoppingListService) {
         this.shoppingListService = shoppingListService;
     }
     
+    /**
+     * Get shopping lists for user, newest first, one page at a time.
+     * The cursor for the next page is returned in the X-Next-Cursor header (absent on the last page).
+     */
     @GetMapping
-    public ResponseEntity<List<ShoppingListHistoryDto>> getAll(@RequestAttribute("userId") String userId) {
-        return ResponseEntity.ok(shoppingListService.getAllByUserId(userId));
+    public ResponseEntity<List<ShoppingListHistoryDto>> getAll(
+            @RequestAttribute("userId") String userId,
+            @RequestParam(value = "limit", defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        ShoppingListRepository.ShoppingListPage page = shoppingListService.getPage(userId, pageSize, cursor);
+        List<ShoppingListHistoryDto> lists = page.items().stream()
+                .map(ShoppingListHistoryDto::fromHistory)
+                .toList();
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(lists);
     }
     
     @GetMapping("/{listId}")
@@ -2,6 +2,8 @@ package com.smartcart.shoppinglist.model;
 
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondaryPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondarySortKey;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
 
@@ -10,6 +12,9 @@ import java.util.Map;
 
 @DynamoDbBean
 public class ShoppingListHistory {
+    // A user's lists newest first, whatever the form of their ids (legacy UUIDs or time-ordered)
+    public static final String CREATED_AT_INDEX = "createdAt-index";
+    
     private String userId;
     private String listId;
     private Long createdAt;
@@ -18,11 +23,14 @@ public class ShoppingListHistory {
     private Double totalCost;
     private List<String> meals;
     private Integer totalServings;
+    private Map<String, Integer> mealServings; // per-meal servings; absent on lists saved before it was recorded
     private List<String> usesPantry;
+    private Long cookedAt; // set once when the list's ingredients are taken out of the pantry
     
     public ShoppingListHistory() {}
     
     @DynamoDbPartitionKey
+    @DynamoDbSecondaryPartitionKey(indexNames = CREATED_AT_INDEX)
     @DynamoDbAttribute("userId")
     public String getUserId() {
         return userId;
@@ -42,6 +50,7 @@ public class ShoppingListHistory {
         this.listId = listId;
     }
     
+    @DynamoDbSecondarySortKey(indexNames = CREATED_AT_INDEX)
     @DynamoDbAttribute("createdAt")
     public Long getCreatedAt() {
         return createdAt;
@@ -96,6 +105,15 @@ public class ShoppingListHistory {
         this.totalServings = totalServings;
     }
     
+    @DynamoDbAttribute("mealServings")
+    public Map<String, Integer> getMealServings() {
+        return mealServings;
+    }
+    
+    public void setMealServings(Map<String, Integer> mealServings) {
+        this.mealServings = mealServings;
+    }
+    
     @DynamoDbAttribute("usesPantry")
     public List<String> getUsesPantry() {
         return usesPantry;
@@ -105,6 +123,15 @@ public class ShoppingListHistory {
         this.usesPantry = usesPantry;
     }
     
+    @DynamoDbAttribute("cookedAt")
+    public Long getCookedAt() {
+        return cookedAt;
+    }
+    
+    public void setCookedAt(Long cookedAt) {
+        this.cookedAt = cookedAt;
+    }
+    
     @DynamoDbBean
     public static class ShoppingListItem {
         private String productId;
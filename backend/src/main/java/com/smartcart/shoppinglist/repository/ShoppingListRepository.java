@@ -1,26 +1,49 @@
 package com.smartcart.shoppinglist.repository;
 
+import com.smartcart.common.exception.AppException;
+import com.smartcart.common.util.DynamoBatchDeletes;
 import com.smartcart.shoppinglist.model.ShoppingListHistory;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbIndex;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
-import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Repository
 public class ShoppingListRepository {
     
+    private static final Logger logger = LoggerFactory.getLogger(ShoppingListRepository.class);
+    
+    private final DynamoDbEnhancedClient enhancedClient;
     private final DynamoDbTable<ShoppingListHistory> shoppingListTable;
+    private final DynamoDbIndex<ShoppingListHistory> createdAtIndex;
     private static final String TABLE_NAME = "ShoppingLists";
+    // createdAt is empty in cursors of the base-table fallback
+    private static final Pattern CURSOR = Pattern.compile("(-?\\d{1,19})?:([A-Za-z0-9-]{1,64})");
     
     @Autowired
     public ShoppingListRepository(DynamoDbEnhancedClient enhancedClient) {
+        this.enhancedClient = enhancedClient;
         this.shoppingListTable = enhancedClient.table(TABLE_NAME, TableSchema.fromBean(ShoppingListHistory.class));
+        this.createdAtIndex = shoppingListTable.index(ShoppingListHistory.CREATED_AT_INDEX);
     }
     
     public void save(ShoppingListHistory shoppingList) {
@@ -35,15 +58,129 @@ public class ShoppingListRepository {
         return shoppingListTable.getItem(key);
     }
     
+    /**
+     * All of a user's lists, newest first, from a partition query sorted by createdAt
+     */
     public List<ShoppingListHistory> findAllByUserId(String userId) {
-        return shoppingListTable.scan(ScanEnhancedRequest.builder().build())
+        return shoppingListTable.query(r -> r
+                        .queryConditional(QueryConditional.keyEqualTo(k -> k.partitionValue(userId))))
                 .items()
                 .stream()
-                .filter(list -> userId.equals(list.getUserId()))
                 .sorted((a, b) -> Long.compare(b.getCreatedAt(), a.getCreatedAt()))
                 .collect(Collectors.toList());
     }
     
+    /**
+     * One page of a user's lists, newest first, read in order from createdAt-index.
+     * The sort key can't be used for this: legacy UUID list ids sort above the
+     * time-ordered ids of newer lists.
+     * Pass the previous page's nextCursor to continue; it is null on the last page.
+     * <p>
+     * The index is added to existing tables in place and can't be queried until it is built.
+     * Until then pages come from the base table, in list id order, with the same limit;
+     * a listing started that way continues that way.
+     */
+    public ShoppingListPage findPageByUserId(String userId, int limit, String cursor) {
+        Map<String, AttributeValue> exclusiveStartKey = cursor != null && !cursor.isEmpty()
+                ? decodeCursor(userId, cursor)
+                : null;
+        if (exclusiveStartKey == null || exclusiveStartKey.containsKey("createdAt")) {
+            try {
+                Page<ShoppingListHistory> page = createdAtIndex.query(r -> r
+                                .queryConditional(QueryConditional.keyEqualTo(k -> k.partitionValue(userId)))
+                                .scanIndexForward(false)
+                                .limit(limit)
+                                .exclusiveStartKey(exclusiveStartKey))
+                        .iterator()
+                        .next();
+                return new ShoppingListPage(page.items(), nextCursor(page.lastEvaluatedKey()));
+            } catch (DynamoDbException e) {
+                if (!isMissingIndex(e)) {
+                    throw e;
+                }
+                logger.warn("Table '{}' has no usable {}; listing shopping lists in list id order",
+                        TABLE_NAME, ShoppingListHistory.CREATED_AT_INDEX);
+            }
+        }
+        
+        Page<ShoppingListHistory> page = shoppingListTable.query(r -> r
+                        .queryConditional(QueryConditional.keyEqualTo(k -> k.partitionValue(userId)))
+                        .scanIndexForward(false)
+                        .limit(limit)
+                        .exclusiveStartKey(baseTableKey(exclusiveStartKey)))
+                .iterator()
+                .next();
+        Map<String, AttributeValue> lastKey = page.lastEvaluatedKey();
+        return new ShoppingListPage(page.items(), lastKey != null && lastKey.containsKey("listId")
+                ? encodeCursor("", lastKey.get("listId").s())
+                : null);
+    }
+    
+    public record ShoppingListPage(List<ShoppingListHistory> items, String nextCursor) {}
+    
+    private static boolean isMissingIndex(DynamoDbException e) {
+        String message = e.awsErrorDetails() != null ? e.awsErrorDetails().errorMessage() : e.getMessage();
+        return message != null && message.contains("specified index");
+    }
+    
+    private static String nextCursor(Map<String, AttributeValue> lastKey) {
+        return lastKey != null && lastKey.containsKey("listId") && lastKey.containsKey("createdAt")
+                ? encodeCursor(lastKey.get("createdAt").n(), lastKey.get("listId").s())
+                : null;
+    }
+    
+    private static Map<String, AttributeValue> baseTableKey(Map<String, AttributeValue> startKey) {
+        return startKey != null ? Map.of("userId", startKey.get("userId"), "listId", startKey.get("listId")) : null;
+    }
+    
+    // An index page ends on (userId, listId, createdAt); the partition is always the caller's own userId
+    private static String encodeCursor(String createdAt, String listId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt + ":" + listId).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static Map<String, AttributeValue> decodeCursor(String userId, String cursor) {
+        try {
+            Matcher matcher = CURSOR.matcher(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+            if (matcher.matches()) {
+                return matcher.group(1) == null
+                        ? Map.of(
+                                "userId", AttributeValue.fromS(userId),
+                                "listId", AttributeValue.fromS(matcher.group(2)))
+                        : Map.of(
+                                "userId", AttributeValue.fromS(userId),
+                                "listId", AttributeValue.fromS(matcher.group(2)),
+                                "createdAt", AttributeValue.fromN(matcher.group(1)));
+            }
+        } catch (IllegalArgumentException e) {
+            // fall through
+        }
+        throw new AppException("Invalid page cursor", "VALIDATION_ERROR");
+    }
+    
+    /**
+     * Transaction item that records the list as cooked. It fails if the list was already
+     * cooked (or no longer exists), so it is written together with the pantry decrements
+     * and a repeated "I cooked this" cancels instead of decrementing twice.
+     */
+    public TransactWriteItem markCookedOnce(String userId, String listId, long cookedAt) {
+        return TransactWriteItem.builder()
+                .update(Update.builder()
+                        .tableName(TABLE_NAME)
+                        .key(Map.of(
+                                "userId", AttributeValue.fromS(userId),
+                                "listId", AttributeValue.fromS(listId)))
+                        .updateExpression("SET #cookedAt = :cookedAt")
+                        .conditionExpression("attribute_exists(#listId) AND attribute_not_exists(#cookedAt)")
+                        .expressionAttributeNames(Map.of(
+                                "#listId", "listId",
+                                "#cookedAt", "cookedAt"))
+                        .expressionAttributeValues(Map.of(
+                                ":cookedAt", AttributeValue.fromN(Long.toString(cookedAt))))
+                        .build())
+                .build();
+    }
+    
     public void delete(String userId, String listId) {
         Key key = Key.builder()
                 .partitionValue(userId)
@@ -52,11 +189,14 @@ public class ShoppingListRepository {
         shoppingListTable.deleteItem(key);
     }
     
-    public void deleteAllByUserId(String userId) {
-        List<ShoppingListHistory> lists = findAllByUserId(userId);
-        for (ShoppingListHistory list : lists) {
-            shoppingListTable.deleteItem(list);
-        }
+    /**
+     * Delete every list in the user's partition: keys come from a keys-only query
+     * and are removed 25 at a time with BatchWriteItem. Returns the number deleted.
+     */
+    public long deleteAllByUserId(String userId) {
+        return DynamoBatchDeletes.deleteAll(enhancedClient, shoppingListTable, shoppingListTable.query(r -> r
+                        .queryConditional(QueryConditional.keyEqualTo(k -> k.partitionValue(userId)))
+                        .attributesToProject("userId", "listId"))
+                .items());
     }
 }
-
@@ -1,15 +1,17 @@
 package com.smartcart.shoppinglist.service;
 
+import com.smartcart.common.util.TimeOrderedId;
 import com.smartcart.optimize.dto.OptimizeResponse;
 import com.smartcart.optimize.dto.ShoppingItem;
 import com.smartcart.shoppinglist.dto.ShoppingListHistoryDto;
 import com.smartcart.shoppinglist.model.ShoppingListHistory;
 import com.smartcart.shoppinglist.repository.ShoppingListRepository;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,13 +23,16 @@ public class ShoppingListService {
         this.repository = repository;
     }
     
-    public ShoppingListHistoryDto saveShoppingList(String userId, OptimizeResponse optimizeResponse, List<String> meals, Integer totalServings) {
+    public ShoppingListHistoryDto saveShoppingList(String userId, OptimizeResponse optimizeResponse, Map<String, Integer> mealServings) {
         ShoppingListHistory history = new ShoppingListHistory();
         history.setUserId(userId);
-        history.setListId(UUID.randomUUID().toString());
-        history.setCreatedAt(System.currentTimeMillis());
-        history.setMeals(meals);
-        history.setTotalServings(totalServings);
+        long createdAt = System.currentTimeMillis();
+        // Time-ordered ids keep new lists in creation order within the partition; listing uses createdAt-index
+        history.setListId(TimeOrderedId.next(createdAt));
+        history.setCreatedAt(createdAt);
+        history.setMeals(mealServings.keySet().stream().toList());
+        history.setTotalServings(mealServings.values().stream().mapToInt(Integer::intValue).sum());
+        history.setMealServings(new HashMap<>(mealServings));
         history.setUsesPantry(optimizeResponse.usesPantry());
         
         // Convert ShoppingItem to ShoppingListItem
@@ -60,11 +65,43 @@ public class ShoppingListService {
                 .collect(Collectors.toList());
     }
     
+    /**
+     * One page of the user's lists, newest first; see ShoppingListRepository.findPageByUserId
+     */
+    public ShoppingListRepository.ShoppingListPage getPage(String userId, int limit, String cursor) {
+        return repository.findPageByUserId(userId, limit, cursor);
+    }
+    
     public ShoppingListHistoryDto getById(String userId, String listId) {
         ShoppingListHistory history = repository.findById(userId, listId);
         return history != null ? ShoppingListHistoryDto.fromHistory(history) : null;
     }
     
+    /**
+     * Servings per meal for a saved list. Lists saved before per-meal servings were recorded
+     * split their total evenly across meals (at least one serving each). Null if the list doesn't exist.
+     */
+    public Map<String, Integer> getMealServings(String userId, String listId) {
+        ShoppingListHistory history = repository.findById(userId, listId);
+        if (history == null) {
+            return null;
+        }
+        if (history.getMealServings() != null && !history.getMealServings().isEmpty()) {
+            return history.getMealServings();
+        }
+        List<String> meals = history.getMeals() != null ? history.getMeals() : List.of();
+        int total = history.getTotalServings() != null ? history.getTotalServings() : meals.size();
+        int perMeal = meals.isEmpty() ? 0 : Math.max(1, total / meals.size());
+        return meals.stream().collect(Collectors.toMap(meal -> meal, meal -> perMeal, (a, b) -> a));
+    }
+    
+    /**
+     * Transaction item marking the list as cooked, failing if it already was; see ShoppingListRepository.markCookedOnce
+     */
+    public TransactWriteItem markCookedOnce(String userId, String listId, long cookedAt) {
+        return repository.markCookedOnce(userId, listId, cookedAt);
+    }
+    
     public void delete(String userId, String listId) {
         repository.delete(userId, listId);
     }
@@ -0,0 +1,198 @@
+package com.smartcart.auth.service;
+
+import com.smartcart.auth.dto.AccountDeletionStatus;
+import com.smartcart.auth.model.User;
+import com.smartcart.auth.repository.OTPRepository;
+import com.smartcart.auth.repository.UserRepository;
+import com.smartcart.favorites.repository.MealFavoriteRepository;
+import com.smartcart.pantry.repository.PantryRepository;
+import com.smartcart.receipts.repository.ReceiptHashRepository;
+import com.smartcart.receipts.repository.ReceiptRepository;
+import com.smartcart.receipts.service.S3Service;
+import com.smartcart.shoppinglist.repository.ShoppingListRepository;
+import com.smartcart.testsupport.FakeDynamo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Background account deletion against fake repositories whose deletes can block or fail
+ */
+class AccountDeletionServiceTest {
+    
+    private static final User USER = new User("user-1", "sam@example.com", "hash");
+    
+    private final List<String> deletedUsers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger pantryDeletes = new AtomicInteger();
+    // Held closed to keep the pantry task (and so the job) running
+    private volatile CountDownLatch pantryGate;
+    private volatile boolean receiptsFail;
+    private AccountDeletionService service;
+    
+    @BeforeEach
+    void setUp() {
+        deletedUsers.clear();
+        pantryDeletes.set(0);
+        pantryGate = new CountDownLatch(0);
+        receiptsFail = false;
+        service = service();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        pantryGate.countDown();
+        service.shutdown();
+    }
+    
+    @Test
+    @DisplayName("The user is deleted once every data set is cleared")
+    void testDeletesUserAfterAllTasks() throws Exception {
+        AccountDeletionStatus started = service.start(USER);
+        
+        AccountDeletionStatus finished = awaitFinished(started.jobId());
+        
+        assertEquals("completed", finished.status());
+        assertTrue(finished.tasks().values().stream().allMatch("done"::equals), finished.tasks().toString());
+        assertEquals(7, finished.tasks().size());
+        assertEquals(Long.valueOf(3), finished.deleted().get("pantry"));
+        assertEquals(List.of("user-1"), deletedUsers);
+    }
+    
+    @Test
+    @DisplayName("A failed task keeps the account so the deletion can be started again")
+    void testFailedTaskKeepsUser() throws Exception {
+        receiptsFail = true;
+        
+        AccountDeletionStatus finished = awaitFinished(service.start(USER).jobId());
+        
+        assertEquals("failed", finished.status());
+        assertEquals("failed", finished.tasks().get("receipts"));
+        assertEquals("done", finished.tasks().get("pantry"));
+        assertTrue(deletedUsers.isEmpty());
+        
+        receiptsFail = false;
+        AccountDeletionStatus retried = awaitFinished(service.start(USER).jobId());
+        assertNotEquals(finished.jobId(), retried.jobId());
+        assertEquals("completed", retried.status());
+        assertEquals(List.of("user-1"), deletedUsers);
+    }
+    
+    @Test
+    @DisplayName("Starting again while a deletion is running returns the running job")
+    void testSecondStartReturnsRunningJob() throws Exception {
+        pantryGate = new CountDownLatch(1);
+        
+        AccountDeletionStatus first = service.start(USER);
+        AccountDeletionStatus second = service.start(USER);
+        
+        assertEquals(first.jobId(), second.jobId());
+        assertEquals("running", second.status());
+        assertTrue(deletedUsers.isEmpty());
+        
+        pantryGate.countDown();
+        assertEquals("completed", awaitFinished(first.jobId()).status());
+        assertEquals(1, pantryDeletes.get());
+        assertEquals(List.of("user-1"), deletedUsers);
+    }
+    
+    @Test
+    @DisplayName("Another user's job status isn't visible")
+    void testStatusIsScopedToUser() throws Exception {
+        AccountDeletionStatus started = service.start(USER);
+        awaitFinished(started.jobId());
+        
+        assertNull(service.getStatus("someone-else", started.jobId()));
+        assertNull(service.getStatus("user-1", "unknown-job"));
+    }
+    
+    private AccountDeletionStatus awaitFinished(String jobId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            AccountDeletionStatus status = service.getStatus(USER.getUserId(), jobId);
+            if (status != null && status.finishedAt() != null) {
+                return status;
+            }
+            Thread.sleep(10);
+        }
+        fail("Deletion job " + jobId + " did not finish");
+        return null;
+    }
+    
+    private AccountDeletionService service() {
+        DynamoDbEnhancedClient enhancedClient = FakeDynamo.enhancedClient();
+        DynamoDbClient dynamoDbClient = FakeDynamo.client();
+        
+        UserRepository userRepository = new UserRepository(enhancedClient, null, false) {
+            @Override
+            public void delete(User user) {
+                deletedUsers.add(user.getUserId());
+            }
+        };
+        OTPRepository otpRepository = new OTPRepository(enhancedClient) {
+            @Override
+            public void deleteAllByEmail(String email) {
+            }
+        };
+        PantryRepository pantryRepository = new PantryRepository(enhancedClient, dynamoDbClient,
+                new SimpleMeterRegistry(), 100, 30, 1, 1, 2, 5, 30) {
+            @Override
+            public long deleteAllByUserId(String userId) {
+                pantryDeletes.incrementAndGet();
+                try {
+                    pantryGate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 3;
+            }
+        };
+        ReceiptRepository receiptRepository = new ReceiptRepository(enhancedClient, dynamoDbClient) {
+            @Override
+            public long deleteAllByUserId(String userId) {
+                if (receiptsFail) {
+                    throw new IllegalStateException("Batch delete on Receipts left 2 unprocessed items");
+                }
+                return 2;
+            }
+        };
+        ReceiptHashRepository receiptHashRepository = new ReceiptHashRepository(enhancedClient) {
+            @Override
+            public long deleteAllByUserId(String userId) {
+                return 2;
+            }
+        };
+        S3Service s3Service = new S3Service(null, null, "bucket") {
+            @Override
+            public long deleteAllForUser(String userId) {
+                return 2;
+            }
+        };
+        MealFavoriteRepository mealFavoriteRepository = new MealFavoriteRepository(enhancedClient, dynamoDbClient) {
+            @Override
+            public long deleteAllByUserId(String userId) {
+                return 1;
+            }
+        };
+        ShoppingListRepository shoppingListRepository = new ShoppingListRepository(enhancedClient) {
+            @Override
+            public long deleteAllByUserId(String userId) {
+                return 1;
+            }
+        };
+        return new AccountDeletionService(userRepository, otpRepository, pantryRepository, receiptRepository,
+                receiptHashRepository, s3Service, mealFavoriteRepository, shoppingListRepository,
+                new SimpleMeterRegistry(), 4, 60);
+    }
+}
@@ -0,0 +1,134 @@
+package com.smartcart.auth.service;
+
+import com.smartcart.common.exception.AppException;
+import com.smartcart.common.util.Backoff;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for EmailOutbox failover and retry
+ */
+class EmailOutboxTest {
+    
+    private static final OutboundEmail EMAIL = new OutboundEmail("user@example.com", "Subject", "text", "<p>html</p>");
+    
+    private EmailOutbox outbox;
+    
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (outbox != null) {
+            outbox.shutdown();
+        }
+    }
+    
+    @Test
+    void testFailsOverToNextProvider() throws InterruptedException {
+        FakeSender primary = new FakeSender("primary", Integer.MAX_VALUE);
+        FakeSender secondary = new FakeSender("secondary", 0);
+        outbox = new EmailOutbox(List.of(primary, secondary), new SimpleMeterRegistry(), 1, 10, 5, 3, Backoff.of(1, 1));
+        
+        outbox.enqueue(EMAIL);
+        
+        assertTrue(secondary.delivered.await(2, TimeUnit.SECONDS));
+        assertEquals(1, primary.calls.get());
+        assertEquals(List.of(EMAIL), secondary.sent);
+    }
+    
+    @Test
+    void testRetriesUntilAProviderSucceeds() throws InterruptedException {
+        FakeSender flaky = new FakeSender("flaky", 2);
+        outbox = new EmailOutbox(List.of(flaky), new SimpleMeterRegistry(), 1, 10, 5, 5, Backoff.of(1, 5));
+        
+        outbox.enqueue(EMAIL);
+        
+        assertTrue(flaky.delivered.await(2, TimeUnit.SECONDS));
+        assertEquals(3, flaky.calls.get());
+    }
+    
+    @Test
+    void testSkipsDisabledProviders() throws InterruptedException {
+        FakeSender disabled = new FakeSender("disabled", 0);
+        disabled.enabled = false;
+        FakeSender enabled = new FakeSender("enabled", 0);
+        outbox = new EmailOutbox(List.of(disabled, enabled), new SimpleMeterRegistry(), 1, 10, 5, 3, Backoff.of(1, 1));
+        
+        outbox.enqueue(EMAIL);
+        
+        assertTrue(enabled.delivered.await(2, TimeUnit.SECONDS));
+        assertEquals(0, disabled.calls.get());
+    }
+    
+    @Test
+    void testRejectsWhenFull() throws InterruptedException {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        EmailSender blocking = new FakeSender("blocking", 0) {
+            @Override
+            public List<OutboundEmail> send(List<OutboundEmail> emails) {
+                sending.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return List.of();
+            }
+        };
+        outbox = new EmailOutbox(List.of(blocking), new SimpleMeterRegistry(), 1, 1, 1, 3, Backoff.of(1, 1));
+        
+        outbox.enqueue(EMAIL);
+        assertTrue(sending.await(2, TimeUnit.SECONDS));
+        outbox.enqueue(EMAIL);
+        
+        AppException e = assertThrows(AppException.class, () -> outbox.enqueue(EMAIL));
+        assertEquals("SERVICE_UNAVAILABLE", e.getErrorCode());
+        release.countDown();
+    }
+    
+    /**
+     * Fails the first failuresBeforeSuccess calls, then sends everything
+     */
+    private static class FakeSender implements EmailSender {
+        private final String name;
+        private final int failuresBeforeSuccess;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final List<OutboundEmail> sent = new CopyOnWriteArrayList<>();
+        private final CountDownLatch delivered = new CountDownLatch(1);
+        private boolean enabled = true;
+        
+        FakeSender(String name, int failuresBeforeSuccess) {
+            this.name = name;
+            this.failuresBeforeSuccess = failuresBeforeSuccess;
+        }
+        
+        @Override
+        public String name() {
+            return name;
+        }
+        
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        @Override
+        public List<OutboundEmail> send(List<OutboundEmail> emails) {
+            if (calls.incrementAndGet() <= failuresBeforeSuccess) {
+                return new ArrayList<>(emails);
+            }
+            sent.addAll(emails);
+            delivered.countDown();
+            return List.of();
+        }
+    }
+}
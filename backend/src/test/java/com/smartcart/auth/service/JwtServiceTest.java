@@ -0,0 +1,64 @@
+package com.smartcart.auth.service;
+
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for JwtService token verification
+ */
+class JwtServiceTest {
+    
+    private static final String SECRET = "test-secret-key-that-is-at-least-32-bytes-long";
+    
+    private JwtService jwtService;
+    
+    @BeforeEach
+    void setUp() {
+        jwtService = new JwtService(SECRET, 60_000, 120_000, 100, 300);
+    }
+    
+    @Test
+    @DisplayName("Should return user id and username from one verification")
+    void testVerifyAccessToken() {
+        String token = jwtService.generateAccessToken("user-1", "alice");
+        
+        JwtService.VerifiedToken verified = jwtService.verify(token);
+        
+        assertEquals("user-1", verified.userId());
+        assertEquals("alice", verified.username());
+        assertTrue(verified.expiresAt().isAfter(java.time.Instant.now()));
+        assertSame(verified, jwtService.verify(token));
+    }
+    
+    @Test
+    @DisplayName("Should reject a token with a tampered signature")
+    void testVerifyRejectsTamperedToken() {
+        String token = jwtService.generateAccessToken("user-1", "alice");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+        
+        assertThrows(JwtException.class, () -> jwtService.verify(tampered));
+        assertFalse(jwtService.validateToken(tampered, "user-1"));
+    }
+    
+    @Test
+    @DisplayName("Should reject an expired token")
+    void testVerifyRejectsExpiredToken() {
+        JwtService expiring = new JwtService(SECRET, -1_000, -1_000, 100, 300);
+        String token = expiring.generateAccessToken("user-1", "alice");
+        
+        assertThrows(JwtException.class, () -> expiring.verify(token));
+    }
+    
+    @Test
+    @DisplayName("Should reject a token signed with another key")
+    void testVerifyRejectsOtherKey() {
+        JwtService other = new JwtService("another-secret-key-that-is-also-32-bytes-long", 60_000, 120_000, 100, 300);
+        String token = other.generateAccessToken("user-1", "alice");
+        
+        assertThrows(JwtException.class, () -> jwtService.verify(token));
+    }
+}
@@ -0,0 +1,118 @@
+package com.smartcart.common.config;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.exception.ApiCallAttemptTimeoutException;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.services.textract.TextractAsyncClient;
+import software.amazon.awssdk.services.textract.model.AnalyzeExpenseRequest;
+import software.amazon.awssdk.services.textract.model.AnalyzeExpenseResponse;
+import software.amazon.awssdk.services.textract.model.Document;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TextractAsyncClient wiring against a stub Textract endpoint on localhost
+ */
+class TextractConfigTest {
+    
+    private static final String EXPENSE_RESPONSE =
+            "{\"DocumentMetadata\":{\"Pages\":1},\"ExpenseDocuments\":[{\"ExpenseIndex\":1,"
+            + "\"SummaryFields\":[{\"Type\":{\"Text\":\"VENDOR_NAME\"},\"ValueDetection\":{\"Text\":\"Corner Market\"}}]}]}";
+    
+    private final List<String> targets = new CopyOnWriteArrayList<>();
+    private final List<String> authorizations = new CopyOnWriteArrayList<>();
+    private volatile long responseDelayMs;
+    private HttpServer server;
+    private TextractAsyncClient client;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        targets.clear();
+        authorizations.clear();
+        responseDelayMs = 0;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            targets.add(exchange.getRequestHeaders().getFirst("X-Amz-Target"));
+            authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(responseDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = EXPENSE_RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/x-amz-json-1.1");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        if (client != null) {
+            client.close();
+        }
+        server.stop(0);
+    }
+    
+    @Test
+    @DisplayName("With an endpoint configured, AnalyzeExpense goes to it with the local credentials")
+    void testEndpointOverride() {
+        client = client(15000, 10000);
+        
+        AnalyzeExpenseResponse response = client.analyzeExpense(request()).join();
+        
+        assertEquals(List.of("Textract.AnalyzeExpense"), targets);
+        assertTrue(authorizations.get(0).contains("Credential=local/"), authorizations.get(0));
+        assertEquals("Corner Market",
+                response.expenseDocuments().get(0).summaryFields().get(0).valueDetection().text());
+    }
+    
+    @Test
+    @DisplayName("A slow endpoint is cut off by the SDK's own call timeout")
+    void testCallTimeoutAbortsSlowCalls() {
+        responseDelayMs = 2000;
+        client = client(500, 300);
+        
+        long start = System.nanoTime();
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> client.analyzeExpense(request()).join());
+        
+        assertTrue(e.getCause() instanceof ApiCallTimeoutException
+                || e.getCause() instanceof ApiCallAttemptTimeoutException, e.getCause().toString());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < responseDelayMs);
+    }
+    
+    private TextractAsyncClient client(long callTimeoutMs, long attemptTimeoutMs) {
+        TextractConfig config = new TextractConfig();
+        ReflectionTestUtils.setField(config, "awsRegion", "us-east-1");
+        ReflectionTestUtils.setField(config, "textractEndpoint", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(config, "maxConcurrency", 2);
+        ReflectionTestUtils.setField(config, "callTimeoutMs", callTimeoutMs);
+        ReflectionTestUtils.setField(config, "attemptTimeoutMs", attemptTimeoutMs);
+        return config.textractAsyncClient();
+    }
+    
+    private static AnalyzeExpenseRequest request() {
+        return AnalyzeExpenseRequest.builder()
+                .document(Document.builder()
+                        .bytes(SdkBytes.fromUtf8String("receipt image"))
+                        .build())
+                .build();
+    }
+}
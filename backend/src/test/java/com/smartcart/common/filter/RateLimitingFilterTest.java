@@ -1,5 +1,6 @@
 package com.smartcart.common.filter;
 
+import com.smartcart.common.ratelimit.InMemoryBucketProxyManager;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -34,7 +35,8 @@ class RateLimitingFilterTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        filter = new RateLimitingFilter();
+        // No handler mapping: buckets are keyed by the raw path
+        filter = new RateLimitingFilter(new InMemoryBucketProxyManager(10_000, 10), null, 10_000, 10);
     }
     
     @Test
@@ -0,0 +1,161 @@
+package com.smartcart.common.filter;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RequestLoggingFilter
+ */
+class RequestLoggingFilterTest {
+    
+    private final Logger filterLogger = (Logger) LoggerFactory.getLogger(RequestLoggingFilter.class);
+    private ListAppender<ILoggingEvent> appender;
+    private Level originalLevel;
+    
+    @BeforeEach
+    void setUp() {
+        // At DEBUG every request is captured, which would hide the sampling behaviour
+        originalLevel = filterLogger.getLevel();
+        filterLogger.setLevel(Level.INFO);
+        appender = new ListAppender<>();
+        appender.start();
+        filterLogger.addAppender(appender);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        filterLogger.detachAppender(appender);
+        filterLogger.setLevel(originalLevel);
+    }
+    
+    @Test
+    void testCapturedBodiesAreLoggedAndPassedThrough() throws Exception {
+        RequestLoggingFilter filter = new RequestLoggingFilter(1.0, 2048);
+        MockHttpServletRequest request = jsonRequest("/api/pantry", "{\"name\":\"milk\"}");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        filter.doFilter(request, response, echo());
+        
+        assertEquals("{\"name\":\"milk\"}", response.getContentAsString());
+        String captured = capturedLine();
+        assertTrue(captured.contains("Request: {\"name\":\"milk\"}"), captured);
+        assertTrue(captured.contains("Response: {\"name\":\"milk\"}"), captured);
+    }
+    
+    @Test
+    void testCapturedBodiesAreTruncatedButResponseIsComplete() throws Exception {
+        RequestLoggingFilter filter = new RequestLoggingFilter(1.0, 8);
+        String body = "{\"name\":\"whole milk\"}";
+        MockHttpServletRequest request = jsonRequest("/api/pantry", body);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        filter.doFilter(request, response, echo());
+        
+        assertEquals(body, response.getContentAsString());
+        String captured = capturedLine();
+        assertTrue(captured.contains("Response: {\"name\":...(truncated)"), captured);
+    }
+    
+    @Test
+    void testUnsampledRequestsPassThroughUnwrapped() throws Exception {
+        RequestLoggingFilter filter = new RequestLoggingFilter(0, 2048);
+        MockHttpServletRequest request = jsonRequest("/api/pantry", "{\"name\":\"milk\"}");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        List<ServletRequest> seenRequests = new ArrayList<>();
+        List<ServletResponse> seenResponses = new ArrayList<>();
+        
+        filter.doFilter(request, response, (req, res) -> {
+            seenRequests.add(req);
+            seenResponses.add(res);
+        });
+        
+        assertSame(request, seenRequests.get(0));
+        assertSame(response, seenResponses.get(0));
+        assertNull(capturedLineOrNull());
+    }
+    
+    @Test
+    void testAuthRoutesAreNeverCaptured() throws Exception {
+        RequestLoggingFilter filter = new RequestLoggingFilter(1.0, 2048);
+        MockHttpServletRequest request = jsonRequest("/api/auth/login", "{\"username\":\"sam\",\"password\":\"hunter2\"}");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        filter.doFilter(request, response, echo());
+        
+        assertEquals("{\"username\":\"sam\",\"password\":\"hunter2\"}", response.getContentAsString());
+        assertNull(capturedLineOrNull());
+        assertTrue(appender.list.stream().noneMatch(e -> e.getFormattedMessage().contains("hunter2")));
+    }
+    
+    @Test
+    void testCredentialFieldsAreMaskedOnOtherRoutes() throws Exception {
+        RequestLoggingFilter filter = new RequestLoggingFilter(1.0, 2048);
+        MockHttpServletRequest request = jsonRequest("/api/pantry", "{\"name\":\"milk\",\"token\":\"abc.def\"}");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        filter.doFilter(request, response, echo());
+        
+        String captured = capturedLine();
+        assertFalse(captured.contains("abc.def"), captured);
+        assertTrue(captured.contains("\"token\":\"***\""), captured);
+    }
+    
+    @Test
+    void testRedactMasksTruncatedValues() {
+        assertEquals("{\"accessToken\":\"***\",\"name\":\"milk\"}",
+                RequestLoggingFilter.redact("{\"accessToken\":\"eyJ.x\\\"y\",\"name\":\"milk\"}"));
+        assertEquals("{\"Password\": \"***\"", RequestLoggingFilter.redact("{\"Password\": \"hun"));
+    }
+    
+    private static MockHttpServletRequest jsonRequest(String uri, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        request.setContentType("application/json");
+        request.setCharacterEncoding("UTF-8");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+    
+    /**
+     * A handler that reads the request body and writes it back as the response
+     */
+    private static FilterChain echo() {
+        return (req, res) -> {
+            String body = StreamUtils.copyToString(req.getInputStream(), StandardCharsets.UTF_8);
+            res.setCharacterEncoding("UTF-8");
+            res.getWriter().write(body);
+            res.flushBuffer();
+        };
+    }
+    
+    private String capturedLine() {
+        String line = capturedLineOrNull();
+        assertNotNull(line, "expected a captured bodies log line");
+        return line;
+    }
+    
+    private String capturedLineOrNull() {
+        return appender.list.stream()
+                .map(ILoggingEvent::getFormattedMessage)
+                .filter(message -> message.startsWith("Captured bodies"))
+                .findFirst()
+                .orElse(null);
+    }
+}
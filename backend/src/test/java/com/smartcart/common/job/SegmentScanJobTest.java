@@ -0,0 +1,154 @@
+package com.smartcart.common.job;
+
+import com.smartcart.testsupport.InMemoryJobCheckpointRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.pagination.sync.SdkIterable;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Segment claims and resume against an in-memory JobCheckpoints table with the same version checks
+ */
+class SegmentScanJobTest {
+    
+    private static final String JOB_NAME = "test-backfill";
+    private static final int SEGMENTS = 2;
+    
+    // Two pages per segment: "<segment>-a", "<segment>-b" then "<segment>-c"
+    private final InMemoryJobCheckpointRepository checkpointRepository = new InMemoryJobCheckpointRepository();
+    private final Map<Integer, JobCheckpoint> stored = checkpointRepository.rows();
+    private final List<String> processed = new CopyOnWriteArrayList<>();
+    private final AtomicInteger completions = new AtomicInteger();
+    private final List<SegmentScanJob<String>> jobs = new ArrayList<>();
+    
+    @BeforeEach
+    void setUp() {
+        stored.clear();
+        processed.clear();
+        completions.set(0);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        jobs.forEach(SegmentScanJob::shutdown);
+    }
+    
+    @Test
+    @DisplayName("Every segment is scanned once and the run is marked done; later starts do nothing")
+    void testRunsToCompletion() throws Exception {
+        SegmentScanJob<String> job = job();
+        
+        String runId = job.start(false);
+        awaitIdle(job);
+        
+        assertNotNull(runId);
+        assertEquals(List.of("0-a", "0-b", "0-c", "1-a", "1-b", "1-c"), processed.stream().sorted().toList());
+        assertTrue(job.isComplete());
+        assertEquals(6, stored.get(SegmentScanJob.RUN_SEGMENT).getScanned());
+        assertEquals(1, completions.get());
+        assertNull(job.start(false));
+    }
+    
+    @Test
+    @DisplayName("A segment leased by another instance is left alone until its lease lapses, then resumed")
+    void testLeasedSegmentIsSkippedThenTakenOver() throws Exception {
+        SegmentScanJob<String> job = job();
+        JobCheckpoint run = new JobCheckpoint(JOB_NAME, SegmentScanJob.RUN_SEGMENT, "run-1", SEGMENTS);
+        run.setVersion(1);
+        stored.put(run.getSegment(), run);
+        JobCheckpoint held = new JobCheckpoint(JOB_NAME, 1, "run-1", SEGMENTS);
+        held.setOwner("other-instance");
+        held.setLeaseUntil(System.currentTimeMillis() + 60_000);
+        held.setLastKey(Map.of("id", "1-b"));
+        held.setScanned(2);
+        held.setVersion(3);
+        stored.put(held.getSegment(), held);
+        
+        job.start(false);
+        awaitIdle(job);
+        
+        assertEquals(List.of("0-a", "0-b", "0-c"), processed.stream().sorted().toList());
+        assertFalse(job.isComplete());
+        
+        // The other instance died: its lease runs out and the next start resumes after its checkpoint
+        stored.get(1).setLeaseUntil(System.currentTimeMillis() - 1);
+        job.start(false);
+        awaitIdle(job);
+        
+        assertEquals(List.of("0-a", "0-b", "0-c", "1-c"), processed.stream().sorted().toList());
+        assertTrue(job.isComplete());
+        assertEquals(6, stored.get(SegmentScanJob.RUN_SEGMENT).getScanned());
+    }
+    
+    @Test
+    @DisplayName("A second instance joins the run the first one created and finds nothing to claim")
+    void testSecondInstanceJoinsRun() throws Exception {
+        SegmentScanJob<String> first = job();
+        SegmentScanJob<String> second = job();
+        
+        String runId = first.start(false);
+        awaitIdle(first);
+        
+        assertNull(second.start(false));
+        assertEquals(6, processed.size());
+        assertEquals(runId, stored.get(0).getRunId());
+    }
+    
+    @Test
+    @DisplayName("A new run starts every segment over, replacing the previous run's progress")
+    void testNewRunReplacesProgress() throws Exception {
+        SegmentScanJob<String> job = job();
+        String firstRun = job.start(false);
+        awaitIdle(job);
+        processed.clear();
+        
+        String secondRun = job.start(true);
+        awaitIdle(job);
+        
+        assertNotEquals(firstRun, secondRun);
+        assertEquals(6, processed.size());
+        assertEquals(List.of(secondRun, secondRun), job.getCheckpoints().stream().map(JobCheckpoint::getRunId).toList());
+    }
+    
+    private SegmentScanJob<String> job() {
+        SegmentScanJob<String> job = new SegmentScanJob<>(JOB_NAME, checkpointRepository, this::scan,
+                item -> processed.add(item), completions::incrementAndGet,
+                SEGMENTS, 2, 1000, Duration.ofMinutes(5));
+        jobs.add(job);
+        return job;
+    }
+    
+    private SdkIterable<Page<String>> scan(int segment, int totalSegments,
+                                           Map<String, AttributeValue> startKey, int pageSize) {
+        List<Page<String>> pages = new ArrayList<>();
+        if (startKey == null) {
+            pages.add(Page.create(List.of(segment + "-a", segment + "-b"),
+                    Map.of("id", AttributeValue.fromS(segment + "-b"))));
+        }
+        pages.add(Page.create(List.of(segment + "-c")));
+        return pages::iterator;
+    }
+    
+    private static void awaitIdle(SegmentScanJob<?> job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (job.getCurrentRunId() != null) {
+            if (System.nanoTime() > deadline) {
+                fail("Job did not finish");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.smartcart.common.ratelimit;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for InMemoryBucketProxyManager
+ */
+class InMemoryBucketProxyManagerTest {
+    
+    private static final BucketConfiguration THREE_PER_MINUTE = BucketConfiguration.builder()
+            .addLimit(Bandwidth.simple(3, Duration.ofMinutes(1)))
+            .build();
+    
+    private InMemoryBucketProxyManager proxyManager;
+    
+    @BeforeEach
+    void setUp() {
+        proxyManager = new InMemoryBucketProxyManager(2, 10);
+    }
+    
+    @Test
+    void testProxiesForTheSameKeyShareOneBucket() {
+        Bucket first = proxyManager.builder().build("1.2.3.4:/api/pantry/{id}", () -> THREE_PER_MINUTE);
+        Bucket second = proxyManager.builder().build("1.2.3.4:/api/pantry/{id}", () -> THREE_PER_MINUTE);
+        
+        assertTrue(first.tryConsume(2));
+        assertTrue(second.tryConsume(1));
+        assertFalse(first.tryConsume(1));
+        assertFalse(second.tryConsume(1));
+    }
+    
+    @Test
+    void testKeysAreLimitedIndependently() {
+        Bucket pantry = proxyManager.builder().build("1.2.3.4:/api/pantry/{id}", () -> THREE_PER_MINUTE);
+        Bucket receipts = proxyManager.builder().build("1.2.3.4:/api/receipts/{id}", () -> THREE_PER_MINUTE);
+        
+        assertTrue(pantry.tryConsume(3));
+        assertFalse(pantry.tryConsume(1));
+        assertTrue(receipts.tryConsume(3));
+    }
+    
+    @Test
+    void testStoredBucketsAreBounded() {
+        for (int i = 0; i < 5; i++) {
+            proxyManager.builder().build("client-" + i + ":/api/pantry", () -> THREE_PER_MINUTE).tryConsume(1);
+        }
+        
+        assertEquals(2, proxyManager.size());
+    }
+    
+    @Test
+    void testAsyncOperationRunsTheSynchronousSwap() {
+        byte[] state = {1, 2, 3};
+        
+        assertTrue(proxyManager.beginAsyncCompareAndSwapOperation("k")
+                .compareAndSwap(null, state, null, Optional.empty()).join());
+        assertFalse(proxyManager.beginAsyncCompareAndSwapOperation("k")
+                .compareAndSwap(null, new byte[] {4}, null, Optional.empty()).join());
+        assertTrue(Arrays.equals(state, proxyManager.beginAsyncCompareAndSwapOperation("k")
+                .getStateData(Optional.empty()).join().orElseThrow()));
+    }
+}
@@ -0,0 +1,85 @@
+package com.smartcart.common.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BoundedCache
+ */
+class BoundedCacheTest {
+    
+    private AtomicLong now;
+    private BoundedCache<String, String> cache;
+    
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong();
+        cache = new BoundedCache<>(2, Duration.ofSeconds(10), now::get);
+    }
+    
+    @Test
+    @DisplayName("Should evict the least recently used entry when full")
+    void testLruEviction() {
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        cache.put("c", "3");
+        
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+        assertEquals(2, cache.size());
+    }
+    
+    @Test
+    @DisplayName("Should expire entries after the TTL")
+    void testExpiry() {
+        cache.put("a", "1");
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertEquals("1", cache.get("a"));
+        now.addAndGet(1);
+        assertNull(cache.get("a"));
+    }
+    
+    @Test
+    @DisplayName("Should keep entries that are still being read when expiring after access")
+    void testExpiryAfterAccess() {
+        BoundedCache<String, String> idleCache = new BoundedCache<>(2, Duration.ofSeconds(10), true, now::get);
+        idleCache.put("a", "1");
+        idleCache.put("b", "2");
+        for (int i = 0; i < 3; i++) {
+            now.addAndGet(Duration.ofSeconds(6).toNanos());
+            assertEquals("1", idleCache.get("a"));
+        }
+        assertNull(idleCache.get("b"));
+        now.addAndGet(Duration.ofSeconds(10).toNanos() + 1);
+        assertNull(idleCache.get("a"));
+    }
+    
+    @Test
+    @DisplayName("Should only call the loader on a miss")
+    void testGetOrLoad() {
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals("v", cache.getOrLoad("a", key -> { loads.incrementAndGet(); return "v"; }));
+        assertEquals("v", cache.getOrLoad("a", key -> { loads.incrementAndGet(); return "other"; }));
+        assertEquals(1, loads.get());
+    }
+    
+    @Test
+    @DisplayName("Should replace or remove entries through compute")
+    void testCompute() {
+        cache.put("a", "1");
+        assertEquals("12", cache.compute("a", (key, current) -> current + "2"));
+        assertEquals("12", cache.get("a"));
+        assertNull(cache.compute("a", (key, current) -> null));
+        assertNull(cache.get("a"));
+        assertEquals("new", cache.compute("b", (key, current) -> current == null ? "new" : current));
+    }
+}
@@ -0,0 +1,112 @@
+package com.smartcart.common.util;
+
+import com.smartcart.pantry.model.PantryItem;
+import com.smartcart.testsupport.FakeDynamo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteResult;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DynamoBatchDeletes, against a fake BatchWriteItem that can leave keys unprocessed
+ */
+class DynamoBatchDeletesTest {
+    
+    private static final String TABLE_NAME = "PantryItems";
+    
+    // Sort keys sent in each BatchWriteItem call, in order
+    private final List<List<String>> batches = new ArrayList<>();
+    // Picks the requests a call leaves unprocessed; by default everything is processed
+    private Function<List<WriteRequest>, List<WriteRequest>> unprocessed;
+    private DynamoDbEnhancedClient enhancedClient;
+    private DynamoDbTable<PantryItem> table;
+    
+    @BeforeEach
+    void setUp() {
+        batches.clear();
+        unprocessed = requests -> List.of();
+        // A real table over a client that is never called, so keys and write requests are built as in production
+        table = DynamoDbEnhancedClient.builder()
+                .dynamoDbClient(FakeDynamo.client())
+                .build()
+                .table(TABLE_NAME, TableSchema.fromBean(PantryItem.class));
+        enhancedClient = FakeDynamo.enhancedClient(tableName -> table,
+                Map.of("batchWriteItem", args -> batchWrite((BatchWriteItemEnhancedRequest) args[0])));
+    }
+    
+    @Test
+    @DisplayName("Items are deleted 25 keys per BatchWriteItem call")
+    void testDeletesInBatchesOf25() {
+        long deleted = DynamoBatchDeletes.deleteAll(enhancedClient, table, items(60));
+        
+        assertEquals(60, deleted);
+        assertEquals(List.of(25, 25, 10), batches.stream().map(List::size).toList());
+    }
+    
+    @Test
+    @DisplayName("No items means no calls")
+    void testNothingToDelete() {
+        assertEquals(0, DynamoBatchDeletes.deleteAll(enhancedClient, table, List.of()));
+        assertTrue(batches.isEmpty());
+    }
+    
+    @Test
+    @DisplayName("Unprocessed keys are resent on their own until DynamoDB takes them")
+    void testRetriesUnprocessedKeys() {
+        unprocessed = requests -> batches.size() == 1 ? requests.subList(0, 2) : List.of();
+        
+        long deleted = DynamoBatchDeletes.deleteAll(enhancedClient, table, items(5));
+        
+        assertEquals(5, deleted);
+        assertEquals(2, batches.size());
+        assertEquals(List.of("ITEM#product-0", "ITEM#product-1"), batches.get(1));
+    }
+    
+    @Test
+    @DisplayName("Keys still unprocessed after the last retry fail the delete")
+    void testGivesUpAfterMaxRetries() {
+        unprocessed = requests -> requests;
+        
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> DynamoBatchDeletes.deleteAll(enhancedClient, table, items(3)));
+        
+        assertTrue(e.getMessage().contains("3 unprocessed items"), e.getMessage());
+        // MAX_UNPROCESSED_RETRIES attempts in total
+        assertEquals(5, batches.size());
+    }
+    
+    private BatchWriteResult batchWrite(BatchWriteItemEnhancedRequest request) {
+        List<WriteRequest> requests = List.copyOf(request.writeBatches().iterator().next().writeRequests());
+        batches.add(requests.stream()
+                .map(writeRequest -> writeRequest.deleteRequest().key().get("sortKey").s())
+                .toList());
+        List<WriteRequest> left = unprocessed.apply(requests);
+        return BatchWriteResult.builder()
+                .unprocessedRequests(left.isEmpty() ? Map.of() : Map.of(TABLE_NAME, left))
+                .build();
+    }
+    
+    private static List<PantryItem> items(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> {
+                    PantryItem item = new PantryItem();
+                    item.setUserId("user-1");
+                    item.setSortKey("ITEM#product-" + i);
+                    return item;
+                })
+                .toList();
+    }
+}
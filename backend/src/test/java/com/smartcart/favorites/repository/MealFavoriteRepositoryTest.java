@@ -0,0 +1,128 @@
+package com.smartcart.favorites.repository;
+
+import com.smartcart.favorites.model.MealFavorite;
+import com.smartcart.testsupport.FakeDynamo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbIndex;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.model.PageIterable;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Favorites paging with and without lastUsed-index, against an in-memory fake table
+ */
+class MealFavoriteRepositoryTest {
+    
+    private static final String USER_ID = "user-1";
+    
+    private final List<MealFavorite> favorites = new ArrayList<>();
+    private final AtomicBoolean indexMissing = new AtomicBoolean();
+    private final AtomicInteger indexQueries = new AtomicInteger();
+    private MealFavoriteRepository repository;
+    
+    @BeforeEach
+    void setUp() {
+        favorites.clear();
+        indexMissing.set(false);
+        indexQueries.set(0);
+        favorites.add(favorite("fav-a", 3_000L));
+        favorites.add(favorite("fav-b", 1_000L));
+        favorites.add(favorite("fav-c", 4_000L));
+        favorites.add(favorite("fav-d", 2_000L));
+        repository = repository();
+    }
+    
+    @Test
+    @DisplayName("Favorites come most recently used first, across pages")
+    void testPagesByLastUsed() {
+        MealFavoriteRepository.MealFavoritePage first = repository.findPageByUserId(USER_ID, 3, null);
+        assertEquals(List.of("fav-c", "fav-a", "fav-d"), ids(first.items()));
+        
+        MealFavoriteRepository.MealFavoritePage second = repository.findPageByUserId(USER_ID, 3, first.nextCursor());
+        assertEquals(List.of("fav-b"), ids(second.items()));
+        assertNull(second.nextCursor());
+    }
+    
+    @Test
+    @DisplayName("Without the index, favorites are paged from the base table with the same limit")
+    void testPagesBaseTableWithoutIndex() {
+        indexMissing.set(true);
+        
+        MealFavoriteRepository.MealFavoritePage first = repository.findPageByUserId(USER_ID, 3, null);
+        assertEquals(List.of("fav-a", "fav-b", "fav-c"), ids(first.items()));
+        assertNotNull(first.nextCursor());
+        
+        MealFavoriteRepository.MealFavoritePage second = repository.findPageByUserId(USER_ID, 3, first.nextCursor());
+        assertEquals(List.of("fav-d"), ids(second.items()));
+        assertNull(second.nextCursor());
+        
+        // The missing index is remembered for a while instead of failing every request
+        repository.findPageByUserId(USER_ID, 3, null);
+        assertEquals(1, indexQueries.get());
+    }
+    
+    @Test
+    @DisplayName("findAllByUserId follows the fallback's cursors to the end")
+    void testFindAllWithoutIndex() {
+        indexMissing.set(true);
+        
+        assertEquals(4, repository.findAllByUserId(USER_ID).size());
+    }
+    
+    private MealFavoriteRepository repository() {
+        DynamoDbIndex<?> index = FakeDynamo.index(args -> {
+            indexQueries.incrementAndGet();
+            if (indexMissing.get()) {
+                throw FakeDynamo.missingIndex(MealFavorite.LAST_USED_INDEX);
+            }
+            QueryEnhancedRequest request = FakeDynamo.queryRequest(args);
+            Comparator<MealFavorite> order = Comparator.comparing(MealFavorite::getLastUsed)
+                    .thenComparing(MealFavorite::getFavoriteId);
+            return FakeDynamo.queryPage(sorted(Boolean.FALSE.equals(request.scanIndexForward()) ? order.reversed() : order),
+                    request, favorite -> Map.of(
+                            "userId", AttributeValue.fromS(favorite.getUserId()),
+                            "favoriteId", AttributeValue.fromS(favorite.getFavoriteId()),
+                            "lastUsed", AttributeValue.fromN(Long.toString(favorite.getLastUsed()))));
+        });
+        DynamoDbTable<?> table = FakeDynamo.table(Map.of(
+                "index", args -> index,
+                "query", args -> queryTable(FakeDynamo.queryRequest(args))));
+        return new MealFavoriteRepository(FakeDynamo.enhancedClient(table), FakeDynamo.client());
+    }
+    
+    // The base table returns a partition in favorite id order
+    private PageIterable<MealFavorite> queryTable(QueryEnhancedRequest request) {
+        return FakeDynamo.queryPage(sorted(Comparator.comparing(MealFavorite::getFavoriteId)), request,
+                favorite -> Map.of(
+                        "userId", AttributeValue.fromS(favorite.getUserId()),
+                        "favoriteId", AttributeValue.fromS(favorite.getFavoriteId())));
+    }
+    
+    private List<MealFavorite> sorted(Comparator<MealFavorite> order) {
+        return favorites.stream().sorted(order).toList();
+    }
+    
+    private static MealFavorite favorite(String favoriteId, long lastUsed) {
+        MealFavorite favorite = new MealFavorite();
+        favorite.setUserId(USER_ID);
+        favorite.setFavoriteId(favoriteId);
+        favorite.setLastUsed(lastUsed);
+        return favorite;
+    }
+    
+    private static List<String> ids(List<MealFavorite> items) {
+        return items.stream().map(MealFavorite::getFavoriteId).toList();
+    }
+}
@@ -0,0 +1,54 @@
+package com.smartcart.pantry.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ExpiryDates
+ */
+class ExpiryDatesTest {
+    
+    private static final LocalDate MARCH_14 = LocalDate.of(2025, 3, 14);
+    
+    @Test
+    @DisplayName("ISO dates, epoch millis and the common US/EU formats all parse")
+    void testSupportedFormats() {
+        assertEquals(MARCH_14, ExpiryDates.parse("2025-03-14"));
+        assertEquals(MARCH_14, ExpiryDates.parse("03/14/2025"));
+        assertEquals(MARCH_14, ExpiryDates.parse("03-14-2025"));
+        assertEquals(MARCH_14, ExpiryDates.parse("2025/03/14"));
+        // Day above 12: only the dd/MM patterns accept it
+        assertEquals(MARCH_14, ExpiryDates.parse("14/03/2025"));
+        assertEquals(MARCH_14, ExpiryDates.parse("14-03-2025"));
+        
+        long noon = MARCH_14.atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        assertEquals(MARCH_14, ExpiryDates.parse(Long.toString(noon)));
+    }
+    
+    @Test
+    @DisplayName("Ambiguous day/month dates are read US-style first")
+    void testAmbiguousDatesAreUsFirst() {
+        assertEquals(LocalDate.of(2025, 4, 3), ExpiryDates.parse("04/03/2025"));
+    }
+    
+    @Test
+    @DisplayName("Unrecognised dates are rejected by parse")
+    void testParseRejectsGarbage() {
+        assertThrows(IllegalArgumentException.class, () -> ExpiryDates.parse("next tuesday"));
+        assertThrows(IllegalArgumentException.class, () -> ExpiryDates.parse("2025-02-30"));
+    }
+    
+    @Test
+    @DisplayName("toEpochDay trims input and returns null for missing or unparseable dates")
+    void testToEpochDay() {
+        assertEquals(Long.valueOf(MARCH_14.toEpochDay()), ExpiryDates.toEpochDay(" 2025-03-14 "));
+        assertNull(ExpiryDates.toEpochDay(null));
+        assertNull(ExpiryDates.toEpochDay("   "));
+        assertNull(ExpiryDates.toEpochDay("soon"));
+    }
+}
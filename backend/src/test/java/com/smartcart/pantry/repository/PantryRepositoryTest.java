@@ -0,0 +1,134 @@
+package com.smartcart.pantry.repository;
+
+import com.smartcart.common.exception.AppException;
+import com.smartcart.pantry.model.PantryItem;
+import com.smartcart.testsupport.FakeDynamo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Read-path behavior of PantryRepository under DynamoDB throttling, against an in-memory fake table
+ */
+class PantryRepositoryTest {
+    
+    private static final int BREAKER_THRESHOLD = 5;
+    private static final int MAX_ATTEMPTS = 3;
+    
+    private final AtomicInteger queries = new AtomicInteger();
+    private final AtomicInteger scans = new AtomicInteger();
+    private final AtomicBoolean throttled = new AtomicBoolean();
+    private SimpleMeterRegistry meterRegistry;
+    
+    @BeforeEach
+    void setUp() {
+        queries.set(0);
+        scans.set(0);
+        throttled.set(false);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+    
+    @Test
+    @DisplayName("Throttled reads are bounded by retries and the circuit breaker, with no table scans")
+    void testThrottlingDoesNotMultiplyReads() {
+        PantryRepository repository = repository(30);
+        throttled.set(true);
+        
+        int requests = 200;
+        int failures = 0;
+        for (int i = 0; i < requests; i++) {
+            try {
+                repository.findByUserId("user-" + (i % 20));
+            } catch (AppException e) {
+                assertEquals("SERVICE_UNAVAILABLE", e.getErrorCode());
+                failures++;
+            }
+        }
+        
+        assertEquals(requests, failures);
+        assertEquals(0, scans.get());
+        // Only the reads before the circuit opened reached DynamoDB
+        assertEquals(BREAKER_THRESHOLD * MAX_ATTEMPTS, queries.get());
+        assertEquals(requests, meterRegistry.counter("pantry.query.degraded", "outcome", "unavailable").count(), 0.0);
+    }
+    
+    @Test
+    @DisplayName("An expired cached pantry is served while queries are throttled")
+    void testServesStaleCopyWhenThrottled() {
+        // TTL 0: every read after the first goes back to DynamoDB
+        PantryRepository repository = repository(0);
+        assertEquals(1, repository.findByUserId("user-1").size());
+        
+        throttled.set(true);
+        List<PantryItem> items = repository.findByUserId("user-1");
+        
+        assertEquals(1, items.size());
+        assertEquals("milk", items.get(0).getProductId());
+        assertEquals(1 + MAX_ATTEMPTS, queries.get());
+        assertEquals(1, meterRegistry.counter("pantry.query.degraded", "outcome", "stale").count(), 0.0);
+    }
+    
+    @Test
+    @DisplayName("Cached pantries are served without querying again")
+    void testCacheHit() {
+        PantryRepository repository = repository(30);
+        repository.findByUserId("user-1");
+        repository.findByUserId("user-1");
+        assertEquals(7L, repository.getVersion("user-1"));
+        assertEquals(1, queries.get());
+    }
+    
+    private PantryRepository repository(long ttlSeconds) {
+        return new PantryRepository(FakeDynamo.enhancedClient(fakeTable()), FakeDynamo.client(), meterRegistry,
+                100, ttlSeconds, MAX_ATTEMPTS, 1, 2, BREAKER_THRESHOLD, 3600);
+    }
+    
+    private DynamoDbTable<?> fakeTable() {
+        return FakeDynamo.table(Map.of(
+                "query", args -> {
+                    queries.incrementAndGet();
+                    if (throttled.get()) {
+                        throw ProvisionedThroughputExceededException.builder()
+                                .statusCode(400)
+                                .awsErrorDetails(AwsErrorDetails.builder()
+                                        .errorCode("ProvisionedThroughputExceededException")
+                                        .build())
+                                .build();
+                    }
+                    return FakeDynamo.pages(List.of(Page.create(List.of(item("milk"), versionItem(7)))));
+                },
+                "scan", args -> {
+                    scans.incrementAndGet();
+                    throw new AssertionError("table scan");
+                }));
+    }
+    
+    private static PantryItem item(String productId) {
+        PantryItem item = new PantryItem();
+        item.setUserId("user-1");
+        item.setProductId(productId);
+        item.setName(productId);
+        item.setQuantity(1.0);
+        return item;
+    }
+    
+    private static PantryItem versionItem(long version) {
+        PantryItem item = new PantryItem();
+        item.setUserId("user-1");
+        item.setSortKey("META#VERSION");
+        item.setPantryVersion(version);
+        return item;
+    }
+}
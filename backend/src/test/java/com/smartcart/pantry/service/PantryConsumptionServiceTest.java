@@ -0,0 +1,283 @@
+package com.smartcart.pantry.service;
+
+import com.smartcart.common.exception.AppException;
+import com.smartcart.optimize.service.OptimizerService;
+import com.smartcart.pantry.dto.ConsumePantryRequest;
+import com.smartcart.pantry.dto.PantryConsumptionResult;
+import com.smartcart.pantry.dto.PantryItemDto;
+import com.smartcart.pantry.model.PantryItem;
+import com.smartcart.pantry.repository.PantryRepository;
+import com.smartcart.shoppinglist.model.ShoppingListHistory;
+import com.smartcart.shoppinglist.repository.ShoppingListRepository;
+import com.smartcart.shoppinglist.service.ShoppingListService;
+import com.smartcart.testsupport.FakeDynamo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * "I cooked this" against in-memory fakes of the pantry and shopping list tables
+ */
+class PantryConsumptionServiceTest {
+    
+    private static final String USER_ID = "user-1";
+    private static final String LIST_ID = "list-1";
+    
+    private final List<PantryItem> pantry = new ArrayList<>();
+    private final Map<String, Double> required = new LinkedHashMap<>();
+    private final List<TransactWriteItemsRequest> transactions = new ArrayList<>();
+    // Outcome of each transactWriteItems call in turn: null commits, anything else is thrown
+    private final Deque<RuntimeException> outcomes = new ArrayDeque<>();
+    private int pantryReads;
+    private PantryConsumptionService service;
+    
+    @BeforeEach
+    void setUp() {
+        pantry.clear();
+        required.clear();
+        transactions.clear();
+        outcomes.clear();
+        pantryReads = 0;
+        pantry.add(item("milk", 2.0));
+        pantry.add(item("eggs", 12.0));
+        required.put("milk", 0.5);
+        required.put("eggs", 3.0);
+        service = service();
+    }
+    
+    @Test
+    @DisplayName("A cooked list is one transaction: request marker, list guard, decrements, version bump")
+    void testListConsumptionIsOneGuardedTransaction() {
+        PantryConsumptionResult result = service.consume(USER_ID, new ConsumePantryRequest(LIST_ID, null, "req-1"));
+        
+        assertEquals(2, result.consumed().size());
+        assertEquals(1, transactions.size());
+        TransactWriteItemsRequest request = transactions.get(0);
+        assertNotNull(request.clientRequestToken());
+        
+        List<TransactWriteItem> items = request.transactItems();
+        assertEquals(5, items.size());
+        TransactWriteItem marker = items.get(PantryRepository.CONSUME_MARKER_INDEX);
+        assertEquals("CONSUME#" + PantryConsumptionService.requestKey(new ConsumePantryRequest(LIST_ID, null, "req-1")),
+                marker.put().item().get("sortKey").s());
+        assertNotNull(marker.put().item().get(PantryRepository.TTL_ATTRIBUTE));
+        TransactWriteItem guard = items.get(PantryRepository.CONSUME_GUARD_INDEX);
+        assertEquals("ShoppingLists", guard.update().tableName());
+        assertTrue(guard.update().conditionExpression().contains("attribute_not_exists(#cookedAt)"));
+        assertEquals("ITEM#milk", items.get(2).update().key().get("sortKey").s());
+        assertEquals("0.5", items.get(2).update().expressionAttributeValues().get(":amount").n());
+        assertEquals("ITEM#eggs", items.get(3).update().key().get("sortKey").s());
+        assertEquals("META#VERSION", items.get(4).update().key().get("sortKey").s());
+    }
+    
+    @Test
+    @DisplayName("A retried request is refused by its marker without touching the pantry or re-planning")
+    void testRetriedRequestIsAppliedOnce() {
+        outcomes.add(canceled("ConditionalCheckFailed", "None", "None", "None"));
+        
+        AppException e = assertThrows(AppException.class,
+                () -> service.consume(USER_ID, new ConsumePantryRequest(null, Map.of("omelette", 1), "req-1")));
+        
+        assertEquals("CONFLICT", e.getErrorCode());
+        assertTrue(e.getUserFriendlyMessage().contains("already applied"));
+        assertEquals(1, transactions.size());
+    }
+    
+    @Test
+    @DisplayName("The request key comes from the client's request id, or else from what was cooked")
+    void testRequestKeyIgnoresTimeAndAttempt() {
+        assertEquals(PantryConsumptionService.requestKey(new ConsumePantryRequest(LIST_ID, null, "req-1")),
+                PantryConsumptionService.requestKey(new ConsumePantryRequest(null, Map.of("omelette", 1), "req-1")));
+        assertNotEquals(PantryConsumptionService.requestKey(new ConsumePantryRequest(LIST_ID, null, "req-1")),
+                PantryConsumptionService.requestKey(new ConsumePantryRequest(LIST_ID, null, "req-2")));
+        
+        Map<String, Integer> meals = new LinkedHashMap<>();
+        meals.put("omelette", 1);
+        meals.put("salad", 2);
+        Map<String, Integer> reordered = new LinkedHashMap<>();
+        reordered.put("salad", 2);
+        reordered.put("omelette", 1);
+        assertEquals(PantryConsumptionService.requestKey(new ConsumePantryRequest(null, meals, null)),
+                PantryConsumptionService.requestKey(new ConsumePantryRequest(null, reordered, null)));
+    }
+    
+    @Test
+    @DisplayName("Cooking the same list again is refused without touching the pantry or re-planning")
+    void testCookingListTwiceIsRefused() {
+        outcomes.add(canceled("None", "ConditionalCheckFailed", "None", "None", "None"));
+        
+        AppException e = assertThrows(AppException.class,
+                () -> service.consume(USER_ID, new ConsumePantryRequest(LIST_ID, null, "req-1")));
+        
+        assertEquals("CONFLICT", e.getErrorCode());
+        assertTrue(e.getUserFriendlyMessage().contains("already marked this list as cooked"));
+        assertEquals(1, transactions.size());
+    }
+    
+    @Test
+    @DisplayName("A pantry edit during consumption re-plans once from a fresh read, under the same request marker")
+    void testReplansOnceWhenPantryChanged() {
+        outcomes.add(canceled("None", "ConditionalCheckFailed", "None", "None"));
+        
+        service.consume(USER_ID, new ConsumePantryRequest(null, Map.of("omelette", 1), "req-1"));
+        
+        assertEquals(2, transactions.size());
+        // The snapshot cache would otherwise hand the re-plan the same stale items
+        assertEquals(2, pantryReads);
+        assertEquals(markerKey(transactions.get(0)), markerKey(transactions.get(1)));
+    }
+    
+    @Test
+    @DisplayName("A second pantry conflict gives up with 409")
+    void testGivesUpAfterSecondConflict() {
+        outcomes.add(canceled("None", "ConditionalCheckFailed", "None", "None"));
+        outcomes.add(canceled("None", "None", "ConditionalCheckFailed", "None"));
+        
+        AppException e = assertThrows(AppException.class,
+                () -> service.consume(USER_ID, new ConsumePantryRequest(null, Map.of("omelette", 1), "req-1")));
+        
+        assertEquals("CONFLICT", e.getErrorCode());
+        assertEquals(2, transactions.size());
+    }
+    
+    @Test
+    @DisplayName("A transaction conflict is retried with the same request, so a committed retry is a no-op")
+    void testConflictRetryReusesToken() {
+        outcomes.add(canceled("None", "TransactionConflict", "None", "None", "None"));
+        
+        service.consume(USER_ID, new ConsumePantryRequest(LIST_ID, null, "req-1"));
+        
+        assertEquals(2, transactions.size());
+        assertEquals(transactions.get(0).clientRequestToken(), transactions.get(1).clientRequestToken());
+    }
+    
+    @Test
+    @DisplayName("Plans too large for one transaction are refused before anything is written")
+    void testRejectsPlansLargerThanOneTransaction() {
+        pantry.clear();
+        required.clear();
+        IntStream.rangeClosed(0, PantryRepository.MAX_CONSUME_ITEMS).forEach(i -> {
+            pantry.add(item("product-" + i, 1.0));
+            required.put("product-" + i, 1.0);
+        });
+        
+        AppException e = assertThrows(AppException.class,
+                () -> service.consume(USER_ID, new ConsumePantryRequest(null, Map.of("feast", 1), null)));
+        
+        assertEquals("VALIDATION_ERROR", e.getErrorCode());
+        assertTrue(transactions.isEmpty());
+    }
+    
+    private PantryConsumptionService service() {
+        DynamoDbTable<?> pantryTable = fakePantryTable();
+        DynamoDbTable<?> listTable = fakeShoppingListTable();
+        DynamoDbEnhancedClient enhancedClient = FakeDynamo.enhancedClient(
+                tableName -> "ShoppingLists".equals(tableName) ? listTable : pantryTable, Map.of());
+        DynamoDbClient dynamoDbClient = FakeDynamo.client(Map.of("transactWriteItems", args -> {
+            transactions.add((TransactWriteItemsRequest) args[0]);
+            RuntimeException outcome = outcomes.poll();
+            if (outcome != null) {
+                throw outcome;
+            }
+            return TransactWriteItemsResponse.builder().build();
+        }));
+        // Cached for 30s as in production, so a re-plan only reads fresh items if the cache was dropped
+        PantryRepository pantryRepository = new PantryRepository(enhancedClient, dynamoDbClient,
+                new SimpleMeterRegistry(), 100, 30, 1, 1, 2, 5, 30);
+        ShoppingListService shoppingListService = new ShoppingListService(new ShoppingListRepository(enhancedClient));
+        return new PantryConsumptionService(pantryRepository, new FakeOptimizer(), shoppingListService, 10);
+    }
+    
+    private DynamoDbTable<?> fakePantryTable() {
+        return FakeDynamo.table(Map.of("query", args -> {
+            pantryReads++;
+            return FakeDynamo.pages(List.of(Page.create(List.copyOf(pantry))));
+        }));
+    }
+    
+    private DynamoDbTable<?> fakeShoppingListTable() {
+        ShoppingListHistory list = new ShoppingListHistory();
+        list.setUserId(USER_ID);
+        list.setListId(LIST_ID);
+        list.setMealServings(Map.of("omelette", 1));
+        return FakeDynamo.table(Map.of("getItem", args -> list));
+    }
+    
+    private static PantryItem item(String productId, double quantity) {
+        PantryItem item = new PantryItem();
+        item.setUserId(USER_ID);
+        item.setProductId(productId);
+        item.setName(productId);
+        item.setQuantity(quantity);
+        item.setUnit("unit");
+        return item;
+    }
+    
+    private static String markerKey(TransactWriteItemsRequest request) {
+        return request.transactItems().get(PantryRepository.CONSUME_MARKER_INDEX).put().item().get("sortKey").s();
+    }
+    
+    private static TransactionCanceledException canceled(String... codes) {
+        return TransactionCanceledException.builder()
+                .message("Transaction cancelled")
+                .cancellationReasons(Arrays.stream(codes)
+                        .map(code -> CancellationReason.builder().code(code).build())
+                        .toList())
+                .build();
+    }
+    
+    /**
+     * Ingredients are named after the pantry products they use, in the same units
+     */
+    private class FakeOptimizer extends OptimizerService {
+        
+        FakeOptimizer() {
+            super(null, null, null, null);
+        }
+        
+        @Override
+        public Map<String, Double> getRequiredIngredients(Map<String, Integer> mealServings) {
+            return new LinkedHashMap<>(required);
+        }
+        
+        @Override
+        public Map<String, PantryItemDto> matchPantryItems(Collection<String> ingredients, List<PantryItemDto> pantryItems) {
+            Map<String, PantryItemDto> byId = pantryItems.stream()
+                    .collect(Collectors.toMap(PantryItemDto::productId, Function.identity()));
+            Map<String, PantryItemDto> matches = new LinkedHashMap<>();
+            ingredients.stream()
+                    .filter(byId::containsKey)
+                    .forEach(ingredient -> matches.put(ingredient, byId.get(ingredient)));
+            return matches;
+        }
+        
+        @Override
+        public Double toPantryUnits(String ingredient, double needed, PantryItemDto pantryItem) {
+            return needed;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.smartcart.pantry.service;
+
+import com.smartcart.common.job.JobCheckpoint;
+import com.smartcart.pantry.model.PantryItem;
+import com.smartcart.pantry.repository.PantryRepository;
+import com.smartcart.testsupport.FakeDynamo;
+import com.smartcart.testsupport.InMemoryJobCheckpointRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.pagination.sync.SdkIterable;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Expiry sweep against in-memory fakes of the expiry-index and the JobCheckpoints table
+ */
+class PantryExpirySweepServiceTest {
+    
+    private static final LocalDate TODAY = LocalDate.now();
+    private static final int DAYS_AHEAD = 2;
+    
+    // Pages the expiry-index returns for each day bucket; a missing day has no items
+    private final Map<Long, List<List<PantryItem>>> pagesByDay = new HashMap<>();
+    private final List<Long> failingDays = new ArrayList<>();
+    private final List<Long> queriedDays = new ArrayList<>();
+    private final InMemoryJobCheckpointRepository checkpointRepository = new InMemoryJobCheckpointRepository();
+    private final Map<Integer, JobCheckpoint> checkpoints = checkpointRepository.rows();
+    private final List<PantryExpiringEvent> events = new ArrayList<>();
+    private PantryExpirySweepService service;
+    
+    @BeforeEach
+    void setUp() {
+        pagesByDay.clear();
+        failingDays.clear();
+        queriedDays.clear();
+        checkpoints.clear();
+        events.clear();
+        service = new PantryExpirySweepService(new FakePantryRepository(), checkpointRepository,
+                event -> events.add((PantryExpiringEvent) event), new SimpleMeterRegistry(), DAYS_AHEAD, 2, 60);
+    }
+    
+    @Test
+    @DisplayName("A user's items for a day are one event, even when they span pages; empty items are skipped")
+    void testGroupsItemsPerUserAcrossPages() {
+        long day = TODAY.toEpochDay();
+        pagesByDay.put(day, List.of(
+                List.of(item("alice", "milk", 1), item("alice", "eggs", 6)),
+                List.of(item("alice", "bread", 0), item("alice", "butter", 1)),
+                List.of(item("bob", "cheese", 2))));
+        
+        PantryExpirySweepService.SweepResult result = service.sweep(TODAY);
+        
+        assertEquals(4, result.items());
+        assertEquals(2, result.alerts());
+        assertEquals(2, events.size());
+        assertEquals("alice", events.get(0).userId());
+        assertEquals(List.of("milk", "eggs", "butter"), productIds(events.get(0)));
+        assertEquals(day, events.get(0).expiryEpochDay());
+        assertEquals("bob", events.get(1).userId());
+        assertEquals(List.of(day, day + 1, day + 2), queriedDays);
+    }
+    
+    @Test
+    @DisplayName("A failed day bucket is skipped and the remaining days still alert")
+    void testFailedDayIsSkipped() {
+        long day = TODAY.toEpochDay();
+        failingDays.add(day);
+        pagesByDay.put(day + 1, List.of(List.of(item("alice", "milk", 1))));
+        
+        PantryExpirySweepService.SweepResult result = service.sweep(TODAY);
+        
+        assertEquals(1, result.alerts());
+        assertEquals(day + 1, events.get(0).expiryEpochDay());
+    }
+    
+    @Test
+    @DisplayName("Only the first run of the day sweeps; its claim is recorded as done")
+    void testSweepsOncePerDay() {
+        pagesByDay.put(TODAY.toEpochDay(), List.of(List.of(item("alice", "milk", 1))));
+        
+        service.scheduledSweep();
+        service.scheduledSweep();
+        
+        assertEquals(1, events.size());
+        JobCheckpoint claim = checkpoints.get((int) TODAY.toEpochDay());
+        assertTrue(claim.isDone());
+        assertEquals(1, claim.getUpdated());
+    }
+    
+    @Test
+    @DisplayName("An unfinished claim past its lease is taken over; a recent one is left to its owner")
+    void testStaleClaimIsTakenOver() {
+        pagesByDay.put(TODAY.toEpochDay(), List.of(List.of(item("alice", "milk", 1))));
+        JobCheckpoint running = unfinishedClaim("running-run", Duration.ofMinutes(5));
+        checkpoints.put(running.getSegment(), running);
+        
+        service.scheduledSweep();
+        assertTrue(events.isEmpty());
+        assertFalse(checkpoints.get(running.getSegment()).isDone());
+        
+        JobCheckpoint crashed = unfinishedClaim("crashed-run", Duration.ofMinutes(90));
+        checkpoints.put(crashed.getSegment(), crashed);
+        
+        service.scheduledSweep();
+        assertEquals(1, events.size());
+        JobCheckpoint claim = checkpoints.get(crashed.getSegment());
+        assertTrue(claim.isDone());
+        assertNotEquals("crashed-run", claim.getRunId());
+    }
+    
+    private static JobCheckpoint unfinishedClaim(String runId, Duration age) {
+        JobCheckpoint claim = new JobCheckpoint(
+                PantryExpirySweepService.JOB_NAME, (int) TODAY.toEpochDay(), runId, DAYS_AHEAD + 1);
+        claim.setUpdatedAt(System.currentTimeMillis() - age.toMillis());
+        claim.setVersion(1);
+        return claim;
+    }
+    
+    private static PantryItem item(String userId, String productId, double quantity) {
+        PantryItem item = new PantryItem();
+        item.setUserId(userId);
+        item.setProductId(productId);
+        item.setName(productId);
+        item.setQuantity(quantity);
+        return item;
+    }
+    
+    private static List<String> productIds(PantryExpiringEvent event) {
+        return event.items().stream().map(PantryItem::getProductId).toList();
+    }
+    
+    private class FakePantryRepository extends PantryRepository {
+        
+        FakePantryRepository() {
+            super(FakeDynamo.enhancedClient(), FakeDynamo.client(), new SimpleMeterRegistry(), 100, 0, 1, 1, 2, 5, 30);
+        }
+        
+        @Override
+        public SdkIterable<Page<PantryItem>> findExpiringOn(long epochDay, int pageSize) {
+            queriedDays.add(epochDay);
+            if (failingDays.contains(epochDay)) {
+                throw new IllegalStateException("index unavailable");
+            }
+            List<Page<PantryItem>> pages = pagesByDay.getOrDefault(epochDay, List.of(List.of())).stream()
+                    .map(Page::create)
+                    .toList();
+            return pages::iterator;
+        }
+    }
+}
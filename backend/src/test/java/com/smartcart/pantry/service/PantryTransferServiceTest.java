@@ -0,0 +1,219 @@
+package com.smartcart.pantry.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartcart.common.exception.AppException;
+import com.smartcart.pantry.dto.PantryImportResult;
+import com.smartcart.pantry.model.PantryItem;
+import com.smartcart.pantry.repository.PantryRepository;
+import com.smartcart.testsupport.FakeDynamo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.hibernate.validator.messageinterpolation.ParameterMessageInterpolator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Bulk pantry import and export against a fake repository that records each batch write
+ */
+class PantryTransferServiceTest {
+    
+    private static final String USER_ID = "user-1";
+    private static final int MAX_IMPORT_ITEMS = 40;
+    
+    private static final Validator VALIDATOR = Validation.byDefaultProvider()
+            .configure()
+            .messageInterpolator(new ParameterMessageInterpolator())
+            .buildValidatorFactory()
+            .getValidator();
+    
+    private final List<List<PantryItem>> batches = new ArrayList<>();
+    private final List<PantryItem> stored = new ArrayList<>();
+    private PantryTransferService service;
+    
+    @BeforeEach
+    void setUp() {
+        batches.clear();
+        stored.clear();
+        service = new PantryTransferService(new FakePantryRepository(), new ObjectMapper(), VALIDATOR,
+                MAX_IMPORT_ITEMS, 100);
+    }
+    
+    @Test
+    @DisplayName("CSV fields may quote commas and escape quotes by doubling them")
+    void testSplitCsvLine() {
+        assertEquals(List.of("a", "b", "c"), PantryTransferService.splitCsvLine("a,b,c"));
+        assertEquals(List.of("Milk, whole", "2"), PantryTransferService.splitCsvLine("\"Milk, whole\",2"));
+        assertEquals(List.of("12\" sub", ""), PantryTransferService.splitCsvLine("\"12\"\" sub\","));
+        assertEquals(List.of("", "", ""), PantryTransferService.splitCsvLine(",,"));
+        assertThrows(IllegalArgumentException.class, () -> PantryTransferService.splitCsvLine("\"open,2"));
+    }
+    
+    @Test
+    @DisplayName("CSV import maps headers in any order, skips a BOM and reports bad rows by line")
+    void testCsvImport() throws IOException {
+        String csv = "\uFEFFQuantity,name,categories,unit\n"
+                + "2,\"Milk, whole\",dairy; breakfast,l\n"
+                + "lots,Eggs,,\n"
+                + "\n"
+                + "1,,,\n"
+                + "3,\"Flour,kg\n"
+                + "1.5,Butter,,\n";
+        
+        PantryImportResult result = importCsv(csv);
+        
+        assertEquals(2, result.imported());
+        assertEquals(3, result.rejected());
+        assertEquals(List.of(3L, 5L, 6L), result.errors().stream().map(PantryImportResult.RowError::line).toList());
+        assertTrue(result.errors().get(0).message().contains("quantity is not a number"));
+        assertTrue(result.errors().get(1).message().startsWith("name "), result.errors().get(1).message());
+        
+        PantryItem milk = stored.get(0);
+        assertEquals(USER_ID, milk.getUserId());
+        assertEquals("Milk, whole", milk.getName());
+        assertEquals(2.0, milk.getQuantity());
+        assertEquals("l", milk.getUnit());
+        assertEquals(List.of("dairy", "breakfast"), milk.getCategories());
+        assertEquals("import", milk.getSource());
+        assertEquals("unit", stored.get(1).getUnit());
+    }
+    
+    @Test
+    @DisplayName("A CSV without a name column is refused as a whole")
+    void testCsvWithoutNameColumn() {
+        AppException e = assertThrows(AppException.class, () -> importCsv("product,quantity\nmilk,1\n"));
+        assertEquals("VALIDATION_ERROR", e.getErrorCode());
+        assertTrue(stored.isEmpty());
+    }
+    
+    @Test
+    @DisplayName("NDJSON import rejects malformed and invalid lines and keeps the rest")
+    void testNdjsonImport() throws IOException {
+        String ndjson = "{\"productId\":\"milk\",\"name\":\"Milk\",\"quantity\":1}\n"
+                + "{\"name\":\"Eggs\",\"quantity\":\n"
+                + "{\"name\":\"Bread\",\"quantity\":-1}\n"
+                + "{\"productId\":\"bad id!\",\"name\":\"Jam\",\"quantity\":1}\n"
+                + "{\"name\":\"Rice\",\"quantity\":2,\"estExpiry\":\"2030-01-31\"}\n";
+        
+        PantryImportResult result = service.importItems(USER_ID, PantryTransferService.Format.NDJSON, stream(ndjson));
+        
+        assertEquals(2, result.imported());
+        assertEquals(List.of(2L, 3L, 4L), result.errors().stream().map(PantryImportResult.RowError::line).toList());
+        assertTrue(result.errors().get(0).message().startsWith("Invalid JSON"));
+        assertTrue(result.errors().get(1).message().startsWith("quantity "));
+        assertTrue(result.errors().get(2).message().startsWith("productId "));
+        assertEquals("milk", stored.get(0).getProductId());
+        // No product id: a new item is created
+        assertNotNull(stored.get(1).getProductId());
+        assertNotNull(stored.get(1).getExpiryEpochDay());
+    }
+    
+    @Test
+    @DisplayName("Rows past max-import-items are skipped with one error")
+    void testMaxImportItems() throws IOException {
+        String ndjson = IntStream.range(0, MAX_IMPORT_ITEMS + 10)
+                .mapToObj(i -> "{\"name\":\"item " + i + "\",\"quantity\":1}")
+                .collect(Collectors.joining("\n"));
+        
+        PantryImportResult result = service.importItems(USER_ID, PantryTransferService.Format.NDJSON, stream(ndjson));
+        
+        assertEquals(MAX_IMPORT_ITEMS, result.imported());
+        assertEquals(1, result.rejected());
+        assertEquals(MAX_IMPORT_ITEMS + 1, result.errors().get(0).line());
+        assertTrue(result.errors().get(0).message().contains("limited to " + MAX_IMPORT_ITEMS));
+        // Written 25 at a time
+        assertEquals(List.of(25, 15), batches.stream().map(List::size).toList());
+    }
+    
+    @Test
+    @DisplayName("A product repeated within one batch is written in a later batch, not twice in the same one")
+    void testDuplicateProductSplitsBatch() throws IOException {
+        String ndjson = "{\"productId\":\"milk\",\"name\":\"Milk\",\"quantity\":1}\n"
+                + "{\"productId\":\"eggs\",\"name\":\"Eggs\",\"quantity\":6}\n"
+                + "{\"productId\":\"milk\",\"name\":\"Milk\",\"quantity\":2}\n";
+        
+        service.importItems(USER_ID, PantryTransferService.Format.NDJSON, stream(ndjson));
+        
+        assertEquals(2, batches.size());
+        assertEquals(List.of("milk", "eggs"), batches.get(0).stream().map(PantryItem::getProductId).toList());
+        assertEquals(2.0, batches.get(1).get(0).getQuantity());
+    }
+    
+    @Test
+    @DisplayName("A CSV export imports back to the same items")
+    void testCsvExportRoundTrip() throws IOException {
+        PantryItem item = new PantryItem();
+        item.setUserId(USER_ID);
+        item.setProductId("sub");
+        item.setName("12\" sub, \"extra\" cheese");
+        item.setQuantity(1.5);
+        item.setUnit("each");
+        item.setEstExpiry("2030-01-31");
+        item.setCategories(List.of("deli", "lunch"));
+        stored.add(item);
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.exportItems(USER_ID, PantryTransferService.Format.CSV, out);
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertTrue(csv.startsWith("productId,name,quantity,unit,estExpiry,packSize,categories\n"), csv);
+        
+        stored.clear();
+        PantryImportResult result = importCsv(csv);
+        
+        assertEquals(1, result.imported());
+        PantryItem imported = stored.get(0);
+        assertEquals("sub", imported.getProductId());
+        assertEquals(item.getName(), imported.getName());
+        assertEquals(1.5, imported.getQuantity());
+        assertEquals(item.getEstExpiry(), imported.getEstExpiry());
+        assertEquals(item.getCategories(), imported.getCategories());
+    }
+    
+    @Test
+    @DisplayName("Unknown formats are a validation error")
+    void testParseFormat() {
+        assertEquals(PantryTransferService.Format.CSV, PantryTransferService.parseFormat(" csv "));
+        assertEquals("VALIDATION_ERROR",
+                assertThrows(AppException.class, () -> PantryTransferService.parseFormat("xml")).getErrorCode());
+        assertThrows(AppException.class, () -> PantryTransferService.parseFormat(null));
+    }
+    
+    private PantryImportResult importCsv(String csv) throws IOException {
+        return service.importItems(USER_ID, PantryTransferService.Format.CSV, stream(csv));
+    }
+    
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private class FakePantryRepository extends PantryRepository {
+        
+        FakePantryRepository() {
+            super(FakeDynamo.enhancedClient(), FakeDynamo.client(), new SimpleMeterRegistry(), 100, 0, 1, 1, 2, 5, 30);
+        }
+        
+        @Override
+        public void saveBatch(String userId, List<PantryItem> items) {
+            batches.add(items);
+            stored.addAll(items);
+        }
+        
+        @Override
+        public Stream<PantryItem> streamByUserId(String userId, int pageSize) {
+            return List.copyOf(stored).stream();
+        }
+    }
+}
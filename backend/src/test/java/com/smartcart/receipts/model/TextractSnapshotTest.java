@@ -0,0 +1,63 @@
+package com.smartcart.receipts.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reading typed fields back out of stored AnalyzeExpense snapshots
+ */
+class TextractSnapshotTest {
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    @Test
+    @DisplayName("Fields are read from the raw response, skipping ones without a type or value")
+    void testReadsRawResponse() throws Exception {
+        TextractSnapshot snapshot = TextractSnapshot.read(objectMapper.readTree("""
+                {"DocumentMetadata": {"Pages": 1},
+                 "ExpenseDocuments": [{
+                   "ExpenseIndex": 1,
+                   "SummaryFields": [
+                     {"Type": {"Text": "VENDOR_NAME", "Confidence": 99.1},
+                      "ValueDetection": {"Text": "Corner Market", "Confidence": 97.5,
+                                         "Geometry": {"BoundingBox": {"Width": 0.4}}}},
+                     {"Type": {"Text": "OTHER"}}
+                   ],
+                   "LineItemGroups": [{"LineItemGroupIndex": 1, "LineItems": [
+                     {"LineItemExpenseFields": [
+                       {"Type": {"Text": "ITEM"}, "ValueDetection": {"Text": "Milk", "Confidence": 90.0}},
+                       {"Type": {"Text": "PRICE"}, "ValueDetection": {"Text": "$3.49"}}
+                     ]}
+                   ]}]
+                 }]}
+                """));
+        
+        assertEquals(List.of(new TextractSnapshot.Field("VENDOR_NAME", "Corner Market", 97.5f)),
+                snapshot.summaryFields());
+        assertEquals(List.of(List.of(
+                        new TextractSnapshot.Field("ITEM", "Milk", 90.0f),
+                        new TextractSnapshot.Field("PRICE", "$3.49", null))),
+                snapshot.lineItems());
+        // Everything else Textract returned is kept for later re-mapping
+        assertEquals(0.4, snapshot.response().at("/ExpenseDocuments/0/SummaryFields/0/ValueDetection/Geometry/BoundingBox/Width").asDouble());
+    }
+    
+    @Test
+    @DisplayName("Snapshots stored in the old compact format read back the same fields")
+    void testReadsCompactFormat() throws Exception {
+        TextractSnapshot snapshot = TextractSnapshot.read(objectMapper.readTree("""
+                {"formatVersion": 1,
+                 "summaryFields": [{"type": "TOTAL", "text": "12.50", "confidence": 88.0}],
+                 "lineItems": [[{"type": "ITEM", "text": "Eggs", "confidence": null}], []]}
+                """));
+        
+        assertEquals(List.of(new TextractSnapshot.Field("TOTAL", "12.50", 88.0f)), snapshot.summaryFields());
+        assertEquals(List.of(List.of(new TextractSnapshot.Field("ITEM", "Eggs", null)), List.of()),
+                snapshot.lineItems());
+    }
+}
@@ -0,0 +1,150 @@
+package com.smartcart.receipts.repository;
+
+import com.smartcart.common.exception.AppException;
+import com.smartcart.common.util.TimeOrderedId;
+import com.smartcart.receipts.model.Receipt;
+import com.smartcart.testsupport.FakeDynamo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbIndex;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.model.PageIterable;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Receipt history ordering when legacy UUID receipt ids and time-ordered ids are mixed,
+ * against an in-memory fake table that returns items in DynamoDB's key order
+ */
+class ReceiptRepositoryTest {
+    
+    private static final String USER_ID = "user-1";
+    private static final long BASE_TIME = 1_700_000_000_000L;
+    private static final List<String> SUMMARY_PROJECTION = List.of(
+            "userId", "sortKey", "receiptId", "s3KeyOriginal", "s3KeyTextractJson", "storeName",
+            "total", "purchasedAt", "status", "createdAt", "contentHash", "duplicateOf");
+    
+    private final List<Receipt> receipts = new ArrayList<>();
+    private final AtomicBoolean indexMissing = new AtomicBoolean();
+    // Attributes projected by each base-table query
+    private final List<List<String>> projections = new ArrayList<>();
+    private ReceiptRepository repository;
+    
+    @BeforeEach
+    void setUp() {
+        receipts.clear();
+        indexMissing.set(false);
+        projections.clear();
+        // Legacy receipts used random UUIDs; lowercase hex sorts above every new "01..." id
+        receipts.add(receipt("f47ac10b-58cc-4372-a567-0e02b2c3d479", BASE_TIME));
+        receipts.add(receipt("0b1e8c2a-3d4f-4a5b-8c6d-7e8f9a0b1c2d", BASE_TIME + 1_000));
+        receipts.add(receipt(TimeOrderedId.next(BASE_TIME + 2_000), BASE_TIME + 2_000));
+        receipts.add(receipt(TimeOrderedId.next(BASE_TIME + 3_000), BASE_TIME + 3_000));
+        repository = repository();
+    }
+    
+    @Test
+    @DisplayName("Newest receipts come first when legacy UUID and time-ordered ids are mixed")
+    void testMixedIdsAreNewestFirst() {
+        ReceiptRepository.ReceiptPage page = repository.findPageByUserId(USER_ID, 10, null, false);
+        
+        assertEquals(List.of(BASE_TIME + 3_000, BASE_TIME + 2_000, BASE_TIME + 1_000, BASE_TIME), createdAts(page.items()));
+    }
+    
+    @Test
+    @DisplayName("Cursors continue in createdAt order across pages")
+    void testPagingFollowsCreatedAt() {
+        ReceiptRepository.ReceiptPage first = repository.findPageByUserId(USER_ID, 3, null, false);
+        assertEquals(List.of(BASE_TIME + 3_000, BASE_TIME + 2_000, BASE_TIME + 1_000), createdAts(first.items()));
+        assertNotNull(first.nextCursor());
+        
+        ReceiptRepository.ReceiptPage second = repository.findPageByUserId(USER_ID, 3, first.nextCursor(), false);
+        assertEquals(List.of(BASE_TIME), createdAts(second.items()));
+        assertNull(second.nextCursor());
+    }
+    
+    @Test
+    @DisplayName("While the index is still being built, receipts are paged from the base table with the same limit")
+    void testFallsBackWithoutIndex() {
+        indexMissing.set(true);
+        
+        ReceiptRepository.ReceiptPage first = repository.findPageByUserId(USER_ID, 2, null, false);
+        assertEquals(2, first.items().size());
+        assertNotNull(first.nextCursor());
+        assertEquals(List.of(SUMMARY_PROJECTION), projections);
+        
+        // Once the index is ready, a listing that started on the base table still continues there
+        indexMissing.set(false);
+        ReceiptRepository.ReceiptPage second = repository.findPageByUserId(USER_ID, 2, first.nextCursor(), false);
+        assertEquals(2, second.items().size());
+        assertNull(second.nextCursor());
+        
+        List<Long> all = new ArrayList<>(createdAts(first.items()));
+        all.addAll(createdAts(second.items()));
+        assertEquals(List.of(BASE_TIME, BASE_TIME + 1_000, BASE_TIME + 2_000, BASE_TIME + 3_000),
+                all.stream().sorted().toList());
+    }
+    
+    @Test
+    @DisplayName("A cursor that doesn't decode to a receipt position is rejected")
+    void testInvalidCursor() {
+        AppException e = assertThrows(AppException.class,
+                () -> repository.findPageByUserId(USER_ID, 10, "not-a-cursor", false));
+        assertEquals("VALIDATION_ERROR", e.getErrorCode());
+    }
+    
+    private static Receipt receipt(String receiptId, long createdAt) {
+        Receipt receipt = new Receipt(USER_ID, receiptId);
+        receipt.setCreatedAt(createdAt);
+        return receipt;
+    }
+    
+    private static List<Long> createdAts(List<Receipt> items) {
+        return items.stream().map(Receipt::getCreatedAt).toList();
+    }
+    
+    private ReceiptRepository repository() {
+        DynamoDbIndex<?> index = FakeDynamo.index(args -> {
+            if (indexMissing.get()) {
+                throw FakeDynamo.missingIndex("createdAt-index");
+            }
+            return queryIndex(FakeDynamo.queryRequest(args));
+        });
+        DynamoDbTable<?> table = FakeDynamo.table(Map.of(
+                "index", args -> index,
+                "query", args -> queryTable(FakeDynamo.queryRequest(args))));
+        return new ReceiptRepository(FakeDynamo.enhancedClient(table), FakeDynamo.client());
+    }
+    
+    // The base table returns a partition in sort key order
+    private PageIterable<Receipt> queryTable(QueryEnhancedRequest request) {
+        projections.add(request.attributesToProject());
+        Comparator<Receipt> order = Comparator.comparing(Receipt::getSortKey);
+        List<Receipt> sorted = receipts.stream()
+                .sorted(Boolean.FALSE.equals(request.scanIndexForward()) ? order.reversed() : order)
+                .toList();
+        return FakeDynamo.queryPage(sorted, request, receipt -> Map.of(
+                "userId", AttributeValue.fromS(receipt.getUserId()),
+                "sortKey", AttributeValue.fromS(receipt.getSortKey())));
+    }
+    
+    private PageIterable<Receipt> queryIndex(QueryEnhancedRequest request) {
+        Comparator<Receipt> order = Comparator.comparingLong(Receipt::getCreatedAt).thenComparing(Receipt::getSortKey);
+        List<Receipt> sorted = receipts.stream()
+                .sorted(Boolean.FALSE.equals(request.scanIndexForward()) ? order.reversed() : order)
+                .toList();
+        return FakeDynamo.queryPage(sorted, request, receipt -> Map.of(
+                "userId", AttributeValue.fromS(receipt.getUserId()),
+                "sortKey", AttributeValue.fromS(receipt.getSortKey()),
+                "createdAt", AttributeValue.fromN(Long.toString(receipt.getCreatedAt()))));
+    }
+}
@@ -0,0 +1,167 @@
+package com.smartcart.receipts.service;
+
+import com.smartcart.common.util.Backoff;
+import com.smartcart.receipts.model.ReceiptJob;
+import com.smartcart.receipts.repository.InMemoryReceiptJobStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ReceiptJobQueue leasing, retry and dead-lettering
+ */
+class ReceiptJobQueueTest {
+    
+    private static final long LEASE_MS = 60_000;
+    
+    private MutableClock clock;
+    private InMemoryReceiptJobStore store;
+    private ReceiptJobQueue queue;
+    
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(1_000_000);
+        store = new InMemoryReceiptJobStore();
+        queue = new ReceiptJobQueue(store, clock, LEASE_MS, 3, Backoff.of(1000, 10_000));
+    }
+    
+    @Test
+    void testEnqueueIsIdempotent() {
+        queue.enqueue("user-1", "r1", "receipts/user-1/r1.jpg");
+        queue.enqueue("user-1", "r1", "receipts/user-1/r1.jpg");
+        
+        assertEquals(1, queue.claim("worker-a", 10).size());
+    }
+    
+    @Test
+    void testClaimedJobIsNotClaimedTwice() {
+        queue.enqueue("user-1", "r1", "receipts/user-1/r1.jpg");
+        
+        List<ReceiptJob> first = queue.claim("worker-a", 10);
+        List<ReceiptJob> second = queue.claim("worker-b", 10);
+        
+        assertEquals(1, first.size());
+        assertEquals("worker-a", first.get(0).getLeaseOwner());
+        assertTrue(second.isEmpty());
+    }
+    
+    @Test
+    void testStaleClaimLosesRace() {
+        queue.enqueue("user-1", "r1", "receipts/user-1/r1.jpg");
+        
+        // Both workers read the same candidate; only the first write wins
+        ReceiptJob seenByA = store.findClaimable(clock.millis(), 10).get(0);
+        ReceiptJob seenByB = store.findClaimable(clock.millis(), 10).get(0);
+        assertTrue(store.tryUpdate(seenByA));
+        assertFalse(store.tryUpdate(seenByB));
+    }
+    
+    @Test
+    void testExpiredLeaseIsReclaimed() {
+        queue.enqueue("user-1", "r1", "receipts/user-1/r1.jpg");
+        ReceiptJob claimedByA = queue.claim("worker-a", 10).get(0);
+        
+        clock.advance(LEASE_MS + 1);
+        List<ReceiptJob> reclaimed = queue.claim("worker-b", 10);
+        
+        assertEquals(1, reclaimed.size());
+        assertEquals(2, reclaimed.get(0).getAttempts());
+        // Worker A finishing late must not overwrite worker B's lease
+        assertFalse(queue.complete(claimedByA));
+    }
+    
+    @Test
+    void testFailedJobIsRetriedAfterBackoff() {
+        queue.enqueue("user-1", "r1", "receipts/user-1/r1.jpg");
+        ReceiptJob job = queue.claim("worker-a", 10).get(0);
+        
+        assertFalse(queue.fail(job, "Textract throttled"));
+        assertTrue(queue.claim("worker-a", 10).isEmpty());
+        
+        clock.advance(1000);
+        List<ReceiptJob> retried = queue.claim("worker-a", 10);
+        assertEquals(1, retried.size());
+        assertEquals("Textract throttled", retried.get(0).getLastError());
+    }
+    
+    @Test
+    void testJobIsDeadLetteredAfterMaxAttempts() {
+        queue.enqueue("user-1", "r1", "receipts/user-1/r1.jpg");
+        
+        boolean dead = false;
+        for (int attempt = 1; attempt <= 3; attempt++) {
+            ReceiptJob job = queue.claim("worker-a", 10).get(0);
+            dead = queue.fail(job, "boom");
+            clock.advance(10_000);
+        }
+        
+        assertTrue(dead);
+        assertEquals(ReceiptJob.STATUS_DEAD, queue.getJob("r1").getStatus());
+        assertTrue(queue.claim("worker-a", 10).isEmpty());
+    }
+    
+    @Test
+    void testCompletedJobIsNotEnqueuedAgain() {
+        queue.enqueue("user-1", "r1", "receipts/user-1/r1.jpg");
+        assertTrue(queue.complete(queue.claim("worker-a", 10).get(0)));
+        
+        queue.enqueue("user-1", "r1", "receipts/user-1/r1.jpg");
+        
+        assertEquals(ReceiptJob.STATUS_DONE, queue.getJob("r1").getStatus());
+        assertTrue(queue.claim("worker-a", 10).isEmpty());
+    }
+    
+    @Test
+    void testDeadJobCanBeEnqueuedAgain() {
+        queue.enqueue("user-1", "r1", "receipts/user-1/r1.jpg");
+        for (int attempt = 1; attempt <= 3; attempt++) {
+            queue.fail(queue.claim("worker-a", 10).get(0), "boom");
+            clock.advance(10_000);
+        }
+        
+        queue.enqueue("user-1", "r1", "receipts/user-1/r1.jpg");
+        
+        List<ReceiptJob> jobs = queue.claim("worker-a", 10);
+        assertEquals(1, jobs.size());
+        assertEquals(1, jobs.get(0).getAttempts());
+    }
+    
+    private static class MutableClock extends Clock {
+        private long millis;
+        
+        MutableClock(long millis) {
+            this.millis = millis;
+        }
+        
+        void advance(long deltaMillis) {
+            millis += deltaMillis;
+        }
+        
+        @Override
+        public long millis() {
+            return millis;
+        }
+        
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+        
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+        
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -3,6 +3,11 @@ package com.smartcart.receipts.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -67,13 +72,42 @@ class ReceiptMapperServiceTest {
         assertNull(result.canonicalProductId());
         assertFalse(result.isConfident());
     }
+    
+    @Test
+    @DisplayName("Batch mapping should match single-line mapping in input order")
+    void testBatchMatchesSingle() {
+        List<String> lines = Arrays.asList("MILK - CLUB PRICE SALE", "milk 16oz", "milkk", "xyz123 unknown product",
+                "Whole Wheat Bread", "Large Eggs - 12 count");
+        List<ProductMatchResult> results = mapperService.mapToProducts(lines);
+        assertEquals(lines.size(), results.size());
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals(mapperService.mapToProductWithConfidence(lines.get(i)), results.get(i));
+        }
+    }
+    
+    @Test
+    @DisplayName("Batch mapping should handle duplicates and blank lines")
+    void testBatchDuplicatesAndBlanks() {
+        List<ProductMatchResult> results = mapperService.mapToProducts(Arrays.asList("milk", null, "  ", "milk", "MILK!"));
+        assertEquals(5, results.size());
+        assertEquals("milk", results.get(0).canonicalProductId());
+        assertNull(results.get(1).canonicalProductId());
+        assertNull(results.get(2).canonicalProductId());
+        assertEquals(results.get(0), results.get(3));
+        assertEquals(results.get(0), results.get(4));
+    }
+    
+    @Test
+    @DisplayName("Large batches should be scored in parallel with the same results")
+    void testLargeBatch() {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            lines.add("item " + i + " bananas");
+        }
+        List<ProductMatchResult> results = mapperService.mapToProducts(lines);
+        assertEquals(100, results.size());
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals(mapperService.mapToProductWithConfidence(lines.get(i)), results.get(i));
+        }
+    }
 }
-
-
-
-
-
-
-
-
-
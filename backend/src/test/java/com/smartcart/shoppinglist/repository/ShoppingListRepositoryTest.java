@@ -0,0 +1,145 @@
+package com.smartcart.shoppinglist.repository;
+
+import com.smartcart.common.exception.AppException;
+import com.smartcart.common.util.TimeOrderedId;
+import com.smartcart.shoppinglist.model.ShoppingListHistory;
+import com.smartcart.testsupport.FakeDynamo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbIndex;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.model.PageIterable;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Shopping list history ordering when legacy UUID list ids and time-ordered ids are mixed,
+ * against an in-memory fake table that returns items in DynamoDB's key order
+ */
+class ShoppingListRepositoryTest {
+    
+    private static final String USER_ID = "user-1";
+    private static final long BASE_TIME = 1_700_000_000_000L;
+    
+    private final List<ShoppingListHistory> lists = new ArrayList<>();
+    private final AtomicBoolean indexMissing = new AtomicBoolean();
+    private ShoppingListRepository repository;
+    
+    @BeforeEach
+    void setUp() {
+        lists.clear();
+        indexMissing.set(false);
+        // Legacy lists used random UUIDs; lowercase hex sorts above every new "01..." id
+        lists.add(list("f47ac10b-58cc-4372-a567-0e02b2c3d479", BASE_TIME));
+        lists.add(list("0b1e8c2a-3d4f-4a5b-8c6d-7e8f9a0b1c2d", BASE_TIME + 1_000));
+        lists.add(list(TimeOrderedId.next(BASE_TIME + 2_000), BASE_TIME + 2_000));
+        lists.add(list(TimeOrderedId.next(BASE_TIME + 3_000), BASE_TIME + 3_000));
+        repository = repository();
+    }
+    
+    @Test
+    @DisplayName("Newest lists come first when legacy UUID and time-ordered ids are mixed")
+    void testMixedIdsAreNewestFirst() {
+        ShoppingListRepository.ShoppingListPage page = repository.findPageByUserId(USER_ID, 10, null);
+        
+        assertEquals(List.of(BASE_TIME + 3_000, BASE_TIME + 2_000, BASE_TIME + 1_000, BASE_TIME), createdAts(page.items()));
+    }
+    
+    @Test
+    @DisplayName("Cursors continue in createdAt order across pages")
+    void testPagingFollowsCreatedAt() {
+        ShoppingListRepository.ShoppingListPage first = repository.findPageByUserId(USER_ID, 3, null);
+        assertEquals(List.of(BASE_TIME + 3_000, BASE_TIME + 2_000, BASE_TIME + 1_000), createdAts(first.items()));
+        assertNotNull(first.nextCursor());
+        
+        ShoppingListRepository.ShoppingListPage second = repository.findPageByUserId(USER_ID, 3, first.nextCursor());
+        assertEquals(List.of(BASE_TIME), createdAts(second.items()));
+        assertNull(second.nextCursor());
+    }
+    
+    @Test
+    @DisplayName("While the index is still being built, lists are paged from the base table with the same limit")
+    void testFallsBackWithoutIndex() {
+        indexMissing.set(true);
+        
+        ShoppingListRepository.ShoppingListPage first = repository.findPageByUserId(USER_ID, 2, null);
+        assertEquals(2, first.items().size());
+        assertNotNull(first.nextCursor());
+        
+        // Once the index is ready, a listing that started on the base table still continues there
+        indexMissing.set(false);
+        ShoppingListRepository.ShoppingListPage second = repository.findPageByUserId(USER_ID, 2, first.nextCursor());
+        assertEquals(2, second.items().size());
+        assertNull(second.nextCursor());
+        
+        List<Long> all = new ArrayList<>(createdAts(first.items()));
+        all.addAll(createdAts(second.items()));
+        assertEquals(List.of(BASE_TIME, BASE_TIME + 1_000, BASE_TIME + 2_000, BASE_TIME + 3_000),
+                all.stream().sorted().toList());
+    }
+    
+    @Test
+    @DisplayName("A cursor that doesn't decode to a list position is rejected")
+    void testInvalidCursor() {
+        AppException e = assertThrows(AppException.class,
+                () -> repository.findPageByUserId(USER_ID, 10, "not-a-cursor"));
+        assertEquals("VALIDATION_ERROR", e.getErrorCode());
+    }
+    
+    private static ShoppingListHistory list(String listId, long createdAt) {
+        ShoppingListHistory list = new ShoppingListHistory();
+        list.setUserId(USER_ID);
+        list.setListId(listId);
+        list.setCreatedAt(createdAt);
+        return list;
+    }
+    
+    private static List<Long> createdAts(List<ShoppingListHistory> items) {
+        return items.stream().map(ShoppingListHistory::getCreatedAt).toList();
+    }
+    
+    private ShoppingListRepository repository() {
+        DynamoDbIndex<?> index = FakeDynamo.index(args -> {
+            if (indexMissing.get()) {
+                throw FakeDynamo.missingIndex("createdAt-index");
+            }
+            return queryIndex(FakeDynamo.queryRequest(args));
+        });
+        DynamoDbTable<?> table = FakeDynamo.table(Map.of(
+                "index", args -> index,
+                "query", args -> queryTable(FakeDynamo.queryRequest(args))));
+        return new ShoppingListRepository(FakeDynamo.enhancedClient(table));
+    }
+    
+    // The base table returns a partition in sort key order
+    private PageIterable<ShoppingListHistory> queryTable(QueryEnhancedRequest request) {
+        Comparator<ShoppingListHistory> order = Comparator.comparing(ShoppingListHistory::getListId);
+        List<ShoppingListHistory> sorted = lists.stream()
+                .sorted(Boolean.FALSE.equals(request.scanIndexForward()) ? order.reversed() : order)
+                .toList();
+        return FakeDynamo.queryPage(sorted, request, list -> Map.of(
+                "userId", AttributeValue.fromS(list.getUserId()),
+                "listId", AttributeValue.fromS(list.getListId())));
+    }
+    
+    private PageIterable<ShoppingListHistory> queryIndex(QueryEnhancedRequest request) {
+        Comparator<ShoppingListHistory> order = Comparator.comparingLong(ShoppingListHistory::getCreatedAt)
+                .thenComparing(ShoppingListHistory::getListId);
+        List<ShoppingListHistory> sorted = lists.stream()
+                .sorted(Boolean.FALSE.equals(request.scanIndexForward()) ? order.reversed() : order)
+                .toList();
+        return FakeDynamo.queryPage(sorted, request, list -> Map.of(
+                "userId", AttributeValue.fromS(list.getUserId()),
+                "listId", AttributeValue.fromS(list.getListId()),
+                "createdAt", AttributeValue.fromN(Long.toString(list.getCreatedAt()))));
+    }
+}
@@ -0,0 +1,154 @@
+package com.smartcart.testsupport;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbIndex;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.enhanced.dynamodb.model.PageIterable;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * In-memory stand-ins for the DynamoDB client interfaces, shared by the repository and service tests.
+ * Each fake answers only the methods a test gives it and returns null for everything else.
+ */
+public final class FakeDynamo {
+    
+    /**
+     * Answers one method call from its arguments
+     */
+    @FunctionalInterface
+    public interface Answer {
+        Object answer(Object[] args);
+    }
+    
+    private FakeDynamo() {}
+    
+    /**
+     * A low-level client that does nothing
+     */
+    public static DynamoDbClient client() {
+        return client(Map.of());
+    }
+    
+    /**
+     * A low-level client answering the given methods by name
+     */
+    public static DynamoDbClient client(Map<String, Answer> answers) {
+        return fake(DynamoDbClient.class, answers);
+    }
+    
+    /**
+     * An enhanced client whose tables do nothing
+     */
+    public static DynamoDbEnhancedClient enhancedClient() {
+        return enhancedClient(table(Map.of()));
+    }
+    
+    /**
+     * An enhanced client that hands out the same table whatever its name
+     */
+    public static DynamoDbEnhancedClient enhancedClient(DynamoDbTable<?> table) {
+        return enhancedClient(tableName -> table, Map.of());
+    }
+    
+    /**
+     * An enhanced client that hands out tables by name and answers the given batch methods
+     */
+    public static DynamoDbEnhancedClient enhancedClient(Function<String, DynamoDbTable<?>> tablesByName,
+                                                        Map<String, Answer> answers) {
+        return fake(DynamoDbEnhancedClient.class, method -> "table".equals(method)
+                ? args -> tablesByName.apply((String) args[0])
+                : answers.get(method));
+    }
+    
+    public static DynamoDbTable<?> table(Map<String, Answer> answers) {
+        return fake(DynamoDbTable.class, answers);
+    }
+    
+    /**
+     * A secondary index answering query calls
+     */
+    public static DynamoDbIndex<?> index(Answer query) {
+        return fake(DynamoDbIndex.class, Map.of("query", query));
+    }
+    
+    /**
+     * The request of a query call, whether it was passed built or as a builder consumer
+     */
+    @SuppressWarnings("unchecked")
+    public static QueryEnhancedRequest queryRequest(Object[] args) {
+        if (args[0] instanceof QueryEnhancedRequest request) {
+            return request;
+        }
+        QueryEnhancedRequest.Builder builder = QueryEnhancedRequest.builder();
+        ((Consumer<QueryEnhancedRequest.Builder>) args[0]).accept(builder);
+        return builder.build();
+    }
+    
+    /**
+     * One page of items already in key order, the way DynamoDB serves a query: it starts after the
+     * request's exclusive start key, stops at its limit, and carries the last key if more items follow
+     */
+    public static <T> PageIterable<T> queryPage(List<T> ordered, QueryEnhancedRequest request,
+                                                Function<T, Map<String, AttributeValue>> keyOf) {
+        int from = 0;
+        Map<String, AttributeValue> startKey = request.exclusiveStartKey();
+        if (startKey != null) {
+            while (!startKey.entrySet().containsAll(keyOf.apply(ordered.get(from)).entrySet())) {
+                from++;
+            }
+            from++;
+        }
+        int to = request.limit() != null ? Math.min(ordered.size(), from + request.limit()) : ordered.size();
+        Map<String, AttributeValue> lastKey = to < ordered.size() ? keyOf.apply(ordered.get(to - 1)) : null;
+        return pages(List.of(Page.create(ordered.subList(from, to), lastKey)));
+    }
+    
+    public static <T> PageIterable<T> pages(List<Page<T>> pages) {
+        return PageIterable.create(pages::iterator);
+    }
+    
+    /**
+     * What DynamoDB throws when a query names an index the table doesn't have (yet)
+     */
+    public static DynamoDbException missingIndex(String indexName) {
+        return (DynamoDbException) DynamoDbException.builder()
+                .statusCode(400)
+                .awsErrorDetails(AwsErrorDetails.builder()
+                        .errorCode("ValidationException")
+                        .errorMessage("The table does not have the specified index: " + indexName)
+                        .build())
+                .build();
+    }
+    
+    private static <T> T fake(Class<T> type, Map<String, Answer> answers) {
+        return fake(type, answers::get);
+    }
+    
+    private static <T> T fake(Class<T> type, Function<String, Answer> answers) {
+        return type.cast(Proxy.newProxyInstance(
+                FakeDynamo.class.getClassLoader(),
+                new Class<?>[] {type},
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return switch (method.getName()) {
+                            case "equals" -> proxy == args[0];
+                            case "hashCode" -> System.identityHashCode(proxy);
+                            default -> type.getSimpleName() + " fake";
+                        };
+                    }
+                    Answer answer = answers.apply(method.getName());
+                    return answer != null ? answer.answer(args) : null;
+                }));
+    }
+}
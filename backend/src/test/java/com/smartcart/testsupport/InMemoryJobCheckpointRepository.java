@@ -0,0 +1,66 @@
+package com.smartcart.testsupport;
+
+import com.smartcart.common.job.JobCheckpoint;
+import com.smartcart.common.job.JobCheckpointRepository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JobCheckpoints for one job, kept in memory with the same version check as the real conditional put.
+ * Stores copies, so a caller's object only changes the table through tryPut.
+ */
+public class InMemoryJobCheckpointRepository extends JobCheckpointRepository {
+    
+    private final Map<Integer, JobCheckpoint> rows = new ConcurrentHashMap<>();
+    
+    public InMemoryJobCheckpointRepository() {
+        super(FakeDynamo.enhancedClient());
+    }
+    
+    /**
+     * Stored rows by segment; tests may read and seed them directly
+     */
+    public Map<Integer, JobCheckpoint> rows() {
+        return rows;
+    }
+    
+    @Override
+    public List<JobCheckpoint> findByJobName(String jobName) {
+        return rows.values().stream().map(InMemoryJobCheckpointRepository::copy).toList();
+    }
+    
+    @Override
+    public JobCheckpoint findById(String jobName, int segment) {
+        JobCheckpoint checkpoint = rows.get(segment);
+        return checkpoint != null ? copy(checkpoint) : null;
+    }
+    
+    @Override
+    public synchronized boolean tryPut(JobCheckpoint checkpoint) {
+        JobCheckpoint current = rows.get(checkpoint.getSegment());
+        long storedVersion = current != null ? current.getVersion() : 0;
+        if (storedVersion != checkpoint.getVersion()) {
+            return false;
+        }
+        checkpoint.setVersion(storedVersion + 1);
+        rows.put(checkpoint.getSegment(), copy(checkpoint));
+        return true;
+    }
+    
+    private static JobCheckpoint copy(JobCheckpoint source) {
+        JobCheckpoint copy = new JobCheckpoint(source.getJobName(), source.getSegment(), source.getRunId(),
+                source.getTotalSegments());
+        copy.setLastKey(source.getLastKey() != null ? new HashMap<>(source.getLastKey()) : null);
+        copy.setDone(source.isDone());
+        copy.setScanned(source.getScanned());
+        copy.setUpdated(source.getUpdated());
+        copy.setOwner(source.getOwner());
+        copy.setLeaseUntil(source.getLeaseUntil());
+        copy.setVersion(source.getVersion());
+        copy.setUpdatedAt(source.getUpdatedAt());
+        return copy;
+    }
+}
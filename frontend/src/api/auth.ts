@@ -7,6 +7,18 @@ export interface AuthResponse {
   username: string
 }
 
+export interface AccountDeletionStatus {
+  jobId: string
+  status: 'running' | 'completed' | 'failed'
+  tasks: Record<string, 'pending' | 'done' | 'failed'>
+  deleted: Record<string, number>
+  startedAt: number
+  finishedAt: number | null
+}
+
+const DELETION_POLL_INTERVAL_MS = 1000
+const DELETION_MAX_POLLS = 120
+
 export const authApi = {
   register: async (data: { username: string; password: string }): Promise<AuthResponse> => {
     const response = await apiClient.post<AuthResponse>('/auth/register', data)
@@ -31,7 +43,24 @@ export const authApi = {
     // Clear local storage is handled by Redux
   },
 
-  deleteAccount: async (): Promise<void> => {
-    await apiClient.delete('/auth/account')
+  // Deletion runs in the background on the server; poll until it finishes
+  deleteAccount: async (): Promise<AccountDeletionStatus> => {
+    const response = await apiClient.delete<AccountDeletionStatus>('/auth/account')
+    let status = response.data
+    for (let poll = 0; status.status === 'running' && poll < DELETION_MAX_POLLS; poll++) {
+      await new Promise((resolve) => setTimeout(resolve, DELETION_POLL_INTERVAL_MS))
+      status = await authApi.getAccountDeletionStatus(status.jobId)
+    }
+    if (status.status !== 'completed') {
+      throw new Error(status.status === 'failed'
+        ? 'Some of your data could not be deleted. Please try again.'
+        : 'Account deletion is taking longer than expected. Please check back shortly.')
+    }
+    return status
+  },
+
+  getAccountDeletionStatus: async (jobId: string): Promise<AccountDeletionStatus> => {
+    const response = await apiClient.get<AccountDeletionStatus>(`/auth/account/deletion/${jobId}`)
+    return response.data
   },
 }
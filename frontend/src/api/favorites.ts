@@ -13,10 +13,35 @@ export interface CreateFavoriteRequest {
   mealServings: Record<string, number>
 }
 
+export interface MealFavoritePage {
+  favorites: MealFavorite[]
+  nextCursor: string | null
+}
+
 export const favoritesApi = {
+  async getPage(options: { cursor?: string | null; limit?: number } = {}): Promise<MealFavoritePage> {
+    const response = await client.get('/favorites', {
+      params: {
+        cursor: options.cursor || undefined,
+        limit: options.limit,
+      },
+    })
+    return {
+      favorites: response.data,
+      nextCursor: response.headers['x-next-cursor'] || null,
+    }
+  },
+
+  // Follows the cursor through every page, most recently used first
   async getAll(): Promise<MealFavorite[]> {
-    const response = await client.get('/favorites')
-    return response.data
+    const favorites: MealFavorite[] = []
+    let cursor: string | null = null
+    do {
+      const page: MealFavoritePage = await favoritesApi.getPage({ cursor, limit: 100 })
+      favorites.push(...page.favorites)
+      cursor = page.nextCursor
+    } while (cursor)
+    return favorites
   },
 
   async getById(favoriteId: string): Promise<MealFavorite> {
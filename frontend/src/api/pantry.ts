@@ -21,6 +21,19 @@ export interface CreatePantryItemRequest {
   categories?: string[]
 }
 
+export interface ConsumePantryRequest {
+  listId?: string
+  mealServings?: Record<string, number>
+  // Same id on a retry, so the pantry is only decremented once
+  requestId?: string
+}
+
+export interface PantryConsumptionResult {
+  consumed: { productId: string; name: string; amount: number; unit: string; remaining: number }[]
+  notInPantry: string[]
+  unconvertible: string[]
+}
+
 export const pantryApi = {
   getAll: async (): Promise<PantryItem[]> => {
     const response = await apiClient.get<PantryItem[]>('/pantry')
@@ -45,5 +58,14 @@ export const pantryApi = {
     const response = await apiClient.get<PantryItem[]>('/pantry/expiring')
     return response.data
   },
+
+  // Subtract everything a cooked list or meal plan used, in one request
+  consume: async (data: ConsumePantryRequest): Promise<PantryConsumptionResult> => {
+    const response = await apiClient.post<PantryConsumptionResult>('/pantry/consume', {
+      ...data,
+      requestId: data.requestId ?? crypto.randomUUID(),
+    })
+    return response.data
+  },
 }
 
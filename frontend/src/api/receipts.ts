@@ -28,6 +28,11 @@ export interface Receipt {
   createdAt: number
 }
 
+export interface ReceiptPage {
+  receipts: Receipt[]
+  nextCursor: string | null
+}
+
 export const receiptsApi = {
   async getPresignedUrl(contentType: string = 'image/jpeg'): Promise<PresignResponse> {
     const response = await client.post(`/receipts/upload?contentType=${contentType}`, {})
@@ -60,9 +65,30 @@ export const receiptsApi = {
     return response.data
   },
 
-  async getAll(): Promise<Receipt[]> {
-    const response = await client.get('/receipts')
-    return response.data
+  async getPage(options: { cursor?: string | null; limit?: number; includeLineItems?: boolean } = {}): Promise<ReceiptPage> {
+    const response = await client.get('/receipts', {
+      params: {
+        cursor: options.cursor || undefined,
+        limit: options.limit,
+        includeLineItems: options.includeLineItems,
+      },
+    })
+    return {
+      receipts: response.data,
+      nextCursor: response.headers['x-next-cursor'] || null,
+    }
+  },
+
+  // Follows the cursor through every page; summaries only unless line items are requested
+  async getAll(includeLineItems: boolean = false): Promise<Receipt[]> {
+    const receipts: Receipt[] = []
+    let cursor: string | null = null
+    do {
+      const page: ReceiptPage = await receiptsApi.getPage({ cursor, limit: 100, includeLineItems })
+      receipts.push(...page.receipts)
+      cursor = page.nextCursor
+    } while (cursor)
+    return receipts
   },
 
   async getById(receiptId: string): Promise<Receipt> {
@@ -70,6 +96,38 @@ export const receiptsApi = {
     return response.data
   },
 
+  // Waits for the single server-sent "status" event instead of polling getById.
+  // fetch is used rather than EventSource because EventSource cannot send the Authorization header.
+  async waitForStatus(receiptId: string, signal?: AbortSignal): Promise<Receipt> {
+    const token = localStorage.getItem('accessToken') || localStorage.getItem('token')
+    const response = await fetch(`${client.defaults.baseURL}/receipts/${receiptId}/events`, {
+      headers: {
+        Accept: 'text/event-stream',
+        ...(token ? { Authorization: `Bearer ${token}` } : {}),
+      },
+      signal,
+    })
+    if (response.ok && response.body) {
+      const reader = response.body.getReader()
+      const decoder = new TextDecoder()
+      let buffer = ''
+      for (;;) {
+        const { done, value } = await reader.read()
+        if (done) break
+        buffer += decoder.decode(value, { stream: true })
+        const dataLine = buffer
+          .split('\n')
+          .find((line) => line.startsWith('data:'))
+        if (dataLine && buffer.includes('\n\n')) {
+          reader.cancel()
+          return JSON.parse(dataLine.slice('data:'.length).trim())
+        }
+      }
+    }
+    // Stream timed out or was unavailable: one regular read
+    return receiptsApi.getById(receiptId)
+  },
+
   async delete(receiptId: string): Promise<void> {
     await client.delete(`/receipts/${receiptId}`)
   },
@@ -19,10 +19,35 @@ export interface ShoppingListItem {
   price: number
 }
 
+export interface ShoppingListPage {
+  lists: ShoppingListHistory[]
+  nextCursor: string | null
+}
+
 export const shoppingListsApi = {
+  async getPage(options: { cursor?: string | null; limit?: number } = {}): Promise<ShoppingListPage> {
+    const response = await client.get('/shopping-lists', {
+      params: {
+        cursor: options.cursor || undefined,
+        limit: options.limit,
+      },
+    })
+    return {
+      lists: response.data,
+      nextCursor: response.headers['x-next-cursor'] || null,
+    }
+  },
+
+  // Follows the cursor through every page, newest first
   async getAll(): Promise<ShoppingListHistory[]> {
-    const response = await client.get('/shopping-lists')
-    return response.data
+    const lists: ShoppingListHistory[] = []
+    let cursor: string | null = null
+    do {
+      const page: ShoppingListPage = await shoppingListsApi.getPage({ cursor, limit: 100 })
+      lists.push(...page.lists)
+      cursor = page.nextCursor
+    } while (cursor)
+    return lists
   },
 
   async getById(listId: string): Promise<ShoppingListHistory> {
@@ -6,6 +6,8 @@ import { usePrefersReducedMotion } from '../hooks/usePrefersReducedMotion'
 
 export default function Receipts() {
   const [receipts, setReceipts] = useState<Receipt[]>([])
+  const [nextCursor, setNextCursor] = useState<string | null>(null)
+  const [loadingMore, setLoadingMore] = useState(false)
   const [loading, setLoading] = useState(true)
   const [uploading, setUploading] = useState(false)
   const [error, setError] = useState('')
@@ -15,8 +17,9 @@ export default function Receipts() {
 
   const loadReceipts = async () => {
     try {
-      const data = await receiptsApi.getAll()
-      setReceipts(data)
+      const page = await receiptsApi.getPage({ includeLineItems: true })
+      setReceipts(page.receipts)
+      setNextCursor(page.nextCursor)
     } catch (err: any) {
       console.error('Failed to load receipts', err)
       setError(err.message || 'Failed to load receipts. Please try again.')
@@ -25,6 +28,21 @@ export default function Receipts() {
     }
   }
 
+  const loadMoreReceipts = async () => {
+    if (!nextCursor) return
+    setLoadingMore(true)
+    try {
+      const page = await receiptsApi.getPage({ cursor: nextCursor, includeLineItems: true })
+      setReceipts((prev) => [...prev, ...page.receipts])
+      setNextCursor(page.nextCursor)
+    } catch (err: any) {
+      console.error('Failed to load more receipts', err)
+      setError(err.message || 'Failed to load more receipts. Please try again.')
+    } finally {
+      setLoadingMore(false)
+    }
+  }
+
   useEffect(() => {
     loadReceipts()
   }, [])
@@ -46,12 +64,18 @@ export default function Receipts() {
       await receiptsApi.uploadToS3(uploadUrl, file)
 
       // Step 3: Confirm upload and trigger processing
-      await receiptsApi.confirmUpload(s3Key)
+      const pending = await receiptsApi.confirmUpload(s3Key)
 
       // Reload receipts
       await loadReceipts()
 
       alert('Receipt uploaded successfully! Processing in progress...')
+
+      // Refresh once more when the server reports that processing finished
+      receiptsApi
+        .waitForStatus(pending.receiptId)
+        .then(() => loadReceipts())
+        .catch((err) => console.warn('Receipt status stream failed', err))
     } catch (err: any) {
       console.error('Failed to upload receipt', err)
       setError(err.message || 'Failed to upload receipt. Please try again.')
@@ -270,6 +294,17 @@ export default function Receipts() {
               )}
             </div>
           ))}
+          {nextCursor && (
+            <div className="text-center">
+              <button
+                onClick={loadMoreReceipts}
+                disabled={loadingMore}
+                className="px-6 py-2 bg-teal-600 text-white rounded-lg font-semibold hover:bg-teal-700 disabled:opacity-50"
+              >
+                {loadingMore ? 'Loading...' : 'Load more'}
+              </button>
+            </div>
+          )}
         </div>
       )}
     </div>
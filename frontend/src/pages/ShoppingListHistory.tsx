@@ -1,12 +1,16 @@
 import { useState, useEffect } from 'react'
 import { shoppingListsApi, type ShoppingListHistory } from '../api/shoppingLists'
-import { FaHistory, FaTrash, FaDollarSign, FaStore, FaCalendar, FaUtensils, FaSpinner } from 'react-icons/fa'
+import { pantryApi } from '../api/pantry'
+import { FaHistory, FaTrash, FaCheck, FaDollarSign, FaStore, FaCalendar, FaUtensils, FaSpinner } from 'react-icons/fa'
 import { usePrefersReducedMotion } from '../hooks/usePrefersReducedMotion'
 
 export default function ShoppingListHistory() {
   const [lists, setLists] = useState<ShoppingListHistory[]>([])
+  const [nextCursor, setNextCursor] = useState<string | null>(null)
+  const [loadingMore, setLoadingMore] = useState(false)
   const [loading, setLoading] = useState(true)
   const [error, setError] = useState('')
+  const [notice, setNotice] = useState('')
   const reduceMotion = usePrefersReducedMotion()
 
   useEffect(() => {
@@ -17,8 +21,9 @@ export default function ShoppingListHistory() {
     try {
       setLoading(true)
       setError('')
-      const data = await shoppingListsApi.getAll()
-      setLists(data)
+      const page = await shoppingListsApi.getPage()
+      setLists(page.lists)
+      setNextCursor(page.nextCursor)
     } catch (err: any) {
       console.error('Failed to load shopping lists', err)
       setError(err.message || 'Failed to load shopping lists. Please try again.')
@@ -27,6 +32,21 @@ export default function ShoppingListHistory() {
     }
   }
 
+  const loadMoreLists = async () => {
+    if (!nextCursor) return
+    setLoadingMore(true)
+    try {
+      const page = await shoppingListsApi.getPage({ cursor: nextCursor })
+      setLists((prev) => [...prev, ...page.lists])
+      setNextCursor(page.nextCursor)
+    } catch (err: any) {
+      console.error('Failed to load more shopping lists', err)
+      setError(err.message || 'Failed to load more shopping lists. Please try again.')
+    } finally {
+      setLoadingMore(false)
+    }
+  }
+
   const handleDelete = async (listId: string) => {
     if (!window.confirm('Are you sure you want to delete this shopping list?')) {
       return
@@ -40,6 +60,20 @@ export default function ShoppingListHistory() {
     }
   }
 
+  const handleCooked = async (listId: string) => {
+    if (!window.confirm('Mark these meals as cooked and use up their ingredients from your pantry?')) {
+      return
+    }
+    try {
+      setError('')
+      const result = await pantryApi.consume({ listId })
+      setNotice(`Updated ${result.consumed.length} pantry item(s).`)
+    } catch (err: any) {
+      console.error('Failed to update pantry', err)
+      setError(err.message || 'Failed to update pantry.')
+    }
+  }
+
   const formatDate = (timestamp: number) => {
     return new Date(timestamp).toLocaleDateString('en-US', {
       year: 'numeric',
@@ -70,6 +104,12 @@ export default function ShoppingListHistory() {
         </div>
       </div>
 
+      {notice && (
+        <div className="bg-teal-50 border border-teal-300 text-teal-800 px-4 py-3 rounded relative mb-4">
+          {notice}
+        </div>
+      )}
+
       {error && (
         <div className="bg-red-100 border border-red-400 text-red-700 px-4 py-3 rounded relative mb-4">
           {error}
@@ -91,12 +131,21 @@ export default function ShoppingListHistory() {
                   <FaCalendar className="w-4 h-4" />
                   <span>{formatDate(list.createdAt)}</span>
                 </div>
-                <button
-                  onClick={() => handleDelete(list.listId)}
-                  className="text-red-500 hover:text-red-700 transition"
-                >
-                  <FaTrash className="w-4 h-4" />
-                </button>
+                <div className="flex items-center space-x-3">
+                  <button
+                    onClick={() => handleCooked(list.listId)}
+                    className="text-teal-600 hover:text-teal-800 transition"
+                    title="I cooked this"
+                  >
+                    <FaCheck className="w-4 h-4" />
+                  </button>
+                  <button
+                    onClick={() => handleDelete(list.listId)}
+                    className="text-red-500 hover:text-red-700 transition"
+                  >
+                    <FaTrash className="w-4 h-4" />
+                  </button>
+                </div>
               </div>
 
               {list.meals && list.meals.length > 0 && (
@@ -160,6 +209,18 @@ export default function ShoppingListHistory() {
           ))}
         </div>
       )}
+
+      {nextCursor && (
+        <div className="text-center">
+          <button
+            onClick={loadMoreLists}
+            disabled={loadingMore}
+            className="px-6 py-2 bg-teal-600 text-white rounded-lg font-semibold hover:bg-teal-700 disabled:opacity-50"
+          >
+            {loadingMore ? 'Loading...' : 'Load more'}
+          </button>
+        </div>
+      )}
     </div>
   )
 }
@@ -14,6 +14,22 @@ resource "aws_dynamodb_table" "users" {
   }
 }
 
+# Usernames Table (username -> userId, written with the user in one transaction)
+resource "aws_dynamodb_table" "usernames" {
+  name         = "${var.app_name}-Usernames"
+  billing_mode = "PAY_PER_REQUEST"
+  hash_key     = "username"
+
+  attribute {
+    name = "username"
+    type = "S"
+  }
+
+  tags = {
+    Name = "${var.app_name}-Usernames"
+  }
+}
+
 # PantryItems Table
 resource "aws_dynamodb_table" "pantry" {
   name         = "${var.app_name}-PantryItems"
@@ -31,6 +47,19 @@ resource "aws_dynamodb_table" "pantry" {
     type = "S"
   }
 
+  attribute {
+    name = "expiryEpochDay"
+    type = "N"
+  }
+
+  # Sparse: only items with a parsed expiry date; queried one day at a time by the expiry sweep
+  global_secondary_index {
+    name            = "expiry-index"
+    hash_key        = "expiryEpochDay"
+    range_key       = "userId"
+    projection_type = "ALL"
+  }
+
   tags = {
     Name = "${var.app_name}-PantryItems"
   }
@@ -75,6 +104,19 @@ resource "aws_dynamodb_table" "receipts" {
     type = "S"
   }
 
+  attribute {
+    name = "createdAt"
+    type = "N"
+  }
+
+  # A user's receipts newest first; legacy UUID receipt ids don't sort by time
+  global_secondary_index {
+    name            = "createdAt-index"
+    hash_key        = "userId"
+    range_key       = "createdAt"
+    projection_type = "ALL"
+  }
+
   tags = {
     Name = "${var.app_name}-Receipts"
   }
@@ -106,3 +148,101 @@ resource "aws_dynamodb_table" "otps" {
 
 
 
+
+# ReceiptJobs Table (durable receipt processing queue)
+resource "aws_dynamodb_table" "receipt_jobs" {
+  name         = "${var.app_name}-ReceiptJobs"
+  billing_mode = "PAY_PER_REQUEST"
+  hash_key     = "jobId"
+
+  attribute {
+    name = "jobId"
+    type = "S"
+  }
+
+  attribute {
+    name = "status"
+    type = "S"
+  }
+
+  attribute {
+    name = "availableAt"
+    type = "N"
+  }
+
+  global_secondary_index {
+    name            = "status-availableAt-index"
+    hash_key        = "status"
+    range_key       = "availableAt"
+    projection_type = "ALL"
+  }
+
+  tags = {
+    Name = "${var.app_name}-ReceiptJobs"
+  }
+}
+
+# ReceiptHashes Table (per-user dedup index: content hash -> receiptId)
+resource "aws_dynamodb_table" "receipt_hashes" {
+  name         = "${var.app_name}-ReceiptHashes"
+  billing_mode = "PAY_PER_REQUEST"
+  hash_key     = "userId"
+  range_key    = "contentHash"
+
+  attribute {
+    name = "userId"
+    type = "S"
+  }
+
+  attribute {
+    name = "contentHash"
+    type = "S"
+  }
+
+  tags = {
+    Name = "${var.app_name}-ReceiptHashes"
+  }
+}
+
+# JobCheckpoints Table (resume points for background backfill jobs)
+resource "aws_dynamodb_table" "job_checkpoints" {
+  name         = "${var.app_name}-JobCheckpoints"
+  billing_mode = "PAY_PER_REQUEST"
+  hash_key     = "jobName"
+  range_key    = "segment"
+
+  attribute {
+    name = "jobName"
+    type = "S"
+  }
+
+  attribute {
+    name = "segment"
+    type = "N"
+  }
+
+  tags = {
+    Name = "${var.app_name}-JobCheckpoints"
+  }
+}
+
+# RateLimitBuckets Table (Bucket4j state shared by all instances; idle buckets expire via TTL)
+resource "aws_dynamodb_table" "rate_limit_buckets" {
+  name         = "${var.app_name}-RateLimitBuckets"
+  billing_mode = "PAY_PER_REQUEST"
+  hash_key     = "bucketKey"
+
+  attribute {
+    name = "bucketKey"
+    type = "S"
+  }
+
+  ttl {
+    attribute_name = "expiresAt"
+    enabled        = true
+  }
+
+  tags = {
+    Name = "${var.app_name}-RateLimitBuckets"
+  }
+}
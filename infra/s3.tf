@@ -54,4 +54,14 @@ resource "aws_s3_bucket_lifecycle_configuration" "receipts" {
       days = 3650 # Keep for 10 years
     }
   }
+
+  # Clean up parts left behind by interrupted streaming uploads
+  rule {
+    id     = "abort-incomplete-uploads"
+    status = "Enabled"
+
+    abort_incomplete_multipart_upload {
+      days_after_initiation = 1
+    }
+  }
 }